@@ -4,7 +4,7 @@ import java.awt.Point;
 import java.util.HashMap;
 import java.util.Iterator;
 
-import model.MEdge;
+import model.MGraphSnapshot;
 import model.VEdge;
 import model.VGraph;
 import model.VNode;
@@ -76,51 +76,64 @@ public class MagnetismAndSprings implements VAlgorithmIF
 	public void step() 
 	{
 		movement = 0;
-		//Calulate for each node the Force indicated by all edges and nodes
-		Iterator <VNode> mainiterator = vg.modifyNodes.getIterator();
-		while (mainiterator.hasNext())
+		//The structure does not change during a step, only the positions
+		MGraphSnapshot snap = vg.getMathGraph().snapshot();
+		//Send just one message for all moved nodes
+		vg.beginBatch();
+		try
 		{
-			VNode v = mainiterator.next(); //Actual Node to be moved
-			double force_x=0, force_y=0; //Movement of the node
-			Iterator<VEdge> edgeiterator = vg.modifyEdges.getIterator();
-			while (edgeiterator.hasNext())
+			//Calulate for each node the Force indicated by all edges and nodes
+			Iterator <VNode> mainiterator = vg.modifyNodes.getIterator();
+			while (mainiterator.hasNext())
 			{
-				VEdge e = edgeiterator.next();
-				MEdge me = vg.getMathGraph().modifyEdges.get(e.getIndex());
-				int start = me.StartIndex, ende = me.EndIndex;
-				int uindex=0;
-				if (start==v.getIndex())
-					uindex=ende;
-				else if (ende==v.getIndex())
-					uindex=start;
-				if (uindex!=0) //Edge is connected with u and so a force is added
+				VNode v = mainiterator.next(); //Actual Node to be moved
+				double force_x=0, force_y=0; //Movement of the node
+				int vpos = snap.getPosition(v.getIndex());
+				//Edges connected with v in both directions, each adjacent u adds a force, loops are ignored
+				int outdeg = snap.getOutDegree(vpos);
+				for (int k=0; k<snap.getDegree(vpos); k++)
 				{
-					VNode u = vg.modifyNodes.get(uindex);
-					double distance = v.getPosition().distance(u.getPosition());
-					double elength = edgelength; //length the edge wishes to have
-					if (useedgevalue)
-						elength *= me.Value;
-					force_x += edgestrength * (distance-elength) * (u.getPosition().x-v.getPosition().x)/distance;
-					force_y += edgestrength * (distance-elength) * (u.getPosition().y-v.getPosition().y)/distance;
+					int upos, value;
+					if (k<outdeg)
+					{
+						upos = snap.getOutTarget(snap.getOutStart(vpos)+k);
+						value = snap.getOutValue(snap.getOutStart(vpos)+k);
+					}
+					else
+					{
+						upos = snap.getInSource(snap.getInStart(vpos)+k-outdeg);
+						value = snap.getInValue(snap.getInStart(vpos)+k-outdeg);
+					}
+					if (upos!=vpos) //Edge is connected with u and so a force is added
+					{
+						VNode u = vg.modifyNodes.get(snap.getNodeIndex(upos));
+						double distance = v.getPosition().distance(u.getPosition());
+						double elength = edgelength; //length the edge wishes to have
+						if (useedgevalue)
+							elength *= value;
+						force_x += edgestrength * (distance-elength) * (u.getPosition().x-v.getPosition().x)/distance;
+						force_y += edgestrength * (distance-elength) * (u.getPosition().y-v.getPosition().y)/distance;
+					}
 				}
-			}
-			Iterator<VNode> nodeiterator = vg.modifyNodes.getIterator();
-			while (nodeiterator.hasNext())
-			{
-				VNode u = nodeiterator.next();
-				if (u.getIndex()!=v.getIndex())
+				Iterator<VNode> nodeiterator = vg.modifyNodes.getIterator();
+				while (nodeiterator.hasNext())
 				{
-					double distance = v.getPosition().distance(u.getPosition());
-					force_x += nodestrength/(distance*distance) * (u.getPosition().x-v.getPosition().x)/distance;
-					force_y += nodestrength/(distance*distance) * (u.getPosition().y-v.getPosition().y)/distance;
+					VNode u = nodeiterator.next();
+					if (u.getIndex()!=v.getIndex())
+					{
+						double distance = v.getPosition().distance(u.getPosition());
+						force_x += nodestrength/(distance*distance) * (u.getPosition().x-v.getPosition().x)/distance;
+						force_y += nodestrength/(distance*distance) * (u.getPosition().y-v.getPosition().y)/distance;
+					}
 				}
-			}
-			int x = v.getPosition().x + Math.round((new Double(force_x*movepart)).floatValue());
-			int y = v.getPosition().y + Math.round((new Double(force_y*movepart)).floatValue());
-			movement += Math.abs(Math.round((new Double(force_x*movepart)).floatValue())) + Math.abs(Math.round((new Double(force_y*movepart)).floatValue()));
-			v.setPosition(new Point(x,y));
-			vg.pushNotify(new GraphMessage(GraphConstraints.NODE|GraphConstraints.EDGE,GraphConstraints.UPDATE));
-		} //End while
+				int x = v.getPosition().x + Math.round((new Double(force_x*movepart)).floatValue());
+				int y = v.getPosition().y + Math.round((new Double(force_y*movepart)).floatValue());
+				movement += Math.abs(Math.round((new Double(force_x*movepart)).floatValue())) + Math.abs(Math.round((new Double(force_y*movepart)).floatValue()));
+				v.setPosition(new Point(x,y));
+				vg.pushNotify(new GraphMessage(GraphConstraints.NODE|GraphConstraints.EDGE,GraphConstraints.UPDATE));
+			} //End while
+		}
+		finally {vg.commitBatch();}
 		//All Nodes moved by a part of its force
 		if (movement==0)
 			finished = true;
@@ -1,15 +1,16 @@
 package algorithm.model;
 
-import java.util.Iterator;
-import java.util.Observable;
-import java.util.Observer;
-import java.util.TreeMap;
-
 import model.*;
+import model.Messages.GraphConstraints;
+import model.Messages.GraphMessage;
+import model.Messages.GraphMessageListener;
 
-public class TreeFunctions implements Observer {
+public class TreeFunctions implements GraphMessageListener {
 
-	private TreeMap<Integer,Integer> degree, indegree, outdegree, order;
+	//Snapshot of the graph the degrees and the tree checks are computed on
+	private MGraphSnapshot snap;
+	//order of each node position, 0 if the node has no order yet
+	private int[] order;
 	private int nextorderindex = 0, childMinCount=Integer.MAX_VALUE, childMaxCount=Integer.MIN_VALUE;
 	private MNode startnode;
 	private MGraph mg;
@@ -26,29 +27,32 @@ public class TreeFunctions implements Observer {
 		if (mg!=null)
 		{	
 			calculateDegrees();
-			mg.addObserver(this);
+			mg.addGraphMessageListener(this, GraphConstraints.NODE|GraphConstraints.EDGE);
 		}		
 	}
 	public int getDegree(int nodeindex)
 	{
-		if (degree.get(nodeindex)==null)
+		int pos = snap.getPosition(nodeindex);
+		if (pos==-1)
 			return -1;
 		else 
-			return degree.get(nodeindex);		
+			return snap.getDegree(pos);		
 	}
 	public int getInDegree(int nodeindex)
 	{
-		if (indegree.get(nodeindex)==null)
+		int pos = snap.getPosition(nodeindex);
+		if (pos==-1)
 			return -1;
 		else 
-			return indegree.get(nodeindex);		
+			return snap.getInDegree(pos);		
 	}
 	public int getOutDegree(int nodeindex)
 	{
-		if (outdegree.get(nodeindex)==null)
+		int pos = snap.getPosition(nodeindex);
+		if (pos==-1)
 			return -1;
 		else 
-			return outdegree.get(nodeindex);		
+			return snap.getOutDegree(pos);		
 	}
 	/** 
 	 * This Method tests, whether a graph is a tree or not.
@@ -62,46 +66,42 @@ public class TreeFunctions implements Observer {
 	{	
 		if ((mg==null)||(mg.modifyNodes.cardinality()==0))
 			return false; //An Empty Graph is no Tree
-		//This maps a number (order) to every node index
-		order = new TreeMap<Integer,Integer>();
+		calculateDegrees();
+		//This maps a number (order) to every node position
+		order = new int[snap.nodeCount()];
 		//Take any node and begin the recursive check
 		nextorderindex = 1;
-		if (mg.isDirected()) //directed Graph
+		if (snap.isDirected()) //directed Graph
 		{
-			calculateDegrees();
 			//In the directed Case there are 2 possibilities for the root node
 			//(a) there is exactely one node that has indeg 0, thats the root and the edges point "down the tree"
 			//(b) there is exactely one node that has outdeg 0, thats the root and the edges point "up the tree"
 			int acount=0, bcount=0, aindex=0, bindex=0;
-			Iterator<MNode> nodeiter = mg.modifyNodes.getIterator();
-			while (nodeiter.hasNext())
+			for (int pos=0; pos<snap.nodeCount(); pos++)
 			{
-				int actualindex = nodeiter.next().index;
-				int indeg = indegree.get(actualindex); 
-				int outdeg = outdegree.get(actualindex);
-				if (indeg==0)
+				if (snap.getInDegree(pos)==0)
 				{
 					acount++;
-					aindex=actualindex;
+					aindex=pos;
 				}
-				if (outdeg==0)
+				if (snap.getOutDegree(pos)==0)
 				{
 					bcount++;
-					bindex=actualindex;
+					bindex=pos;
 				}
 			}
 			if (acount==1) //Case (a)
 			{
-				order.put(aindex,nextorderindex++);
-				startnode = new MNode(aindex, mg.modifyNodes.get(aindex).name);
-				if (!isDirectedTreeRecursive(false,startnode))
+				order[aindex] = nextorderindex++;
+				startnode = new MNode(snap.getNodeIndex(aindex), mg.modifyNodes.get(snap.getNodeIndex(aindex)).name);
+				if (!isDirectedTreeRecursive(false,aindex))
 						return false; //No Tree
 			}
 			else if (bcount==1)
 			{
-				order.put(bindex,nextorderindex++);
-				startnode = new MNode(aindex, mg.modifyNodes.get(aindex).name);
-				if (!isDirectedTreeRecursive(true,startnode))
+				order[bindex] = nextorderindex++;
+				startnode = new MNode(snap.getNodeIndex(aindex), mg.modifyNodes.get(snap.getNodeIndex(aindex)).name);
+				if (!isDirectedTreeRecursive(true,bindex))
 					return false; //No Tree
 			}
 			else
@@ -109,16 +109,15 @@ public class TreeFunctions implements Observer {
 		}
 		else
 		{
-			startnode = mg.modifyNodes.getIterator().next(); //Choose another one than arbitrary the first in the set ?
-			order.put(startnode.index, nextorderindex++); //Initiate this one with order 1
-			if (!isUndirectedTreeRecursive(startnode,null))
+			startnode = mg.modifyNodes.get(snap.getNodeIndex(0)); //Choose another one than arbitrary the first in the set ?
+			order[0] = nextorderindex++; //Initiate this one with order 1
+			if (!isUndirectedTreeRecursive(0,-1))
 				return false; //Denn dann existiert ein Kreis			
 		}
 		// Are all nodes in the tree ?
-		Iterator<MNode> iter = mg.modifyNodes.getIterator();
-		while(iter.hasNext())
+		for (int pos=0; pos<snap.nodeCount(); pos++)
 		{
-			if (order.get(iter.next().index)==null)
+			if (order[pos]==0)
 				return false;
 		}
 		return true;
@@ -135,48 +134,44 @@ public class TreeFunctions implements Observer {
 	{	
 		if ((mg==null)||(mg.modifyNodes.cardinality()==0))
 			return false; //An Empty Graph is no Tree
-		//This maps a number (order) to every node index
-		order = new TreeMap<Integer,Integer>();
 		calculateDegrees();
+		//This maps a number (order) to every node position
+		order = new int[snap.nodeCount()];
 		childMinCount=Integer.MAX_VALUE;
 		childMaxCount=Integer.MIN_VALUE;
 		//Take any node and begin the recursive check
 		nextorderindex = 1;
-		if (mg.isDirected()) //directed Graph
+		if (snap.isDirected()) //directed Graph
 		{
 			//In the directed Case there are 2 possibilities for the root node
 			//(a) there is exactely one node that has indeg 0, thats the root and the edges point "down the tree"
 			//(b) there is exactely one node that has outdeg 0, thats the root and the edges point "up the tree"
 			int acount=0, bcount=0, aindex=0, bindex=0;
-			Iterator<MNode> nodeiter = mg.modifyNodes.getIterator();
-			while (nodeiter.hasNext())
+			for (int pos=0; pos<snap.nodeCount(); pos++)
 			{
-				int actualindex = nodeiter.next().index;
-				int indeg = indegree.get(actualindex); 
-				int outdeg = outdegree.get(actualindex);
-				if (indeg==0) //This is a node with a possibility for the root of a downward tree
+				if (snap.getInDegree(pos)==0) //This is a node with a possibility for the root of a downward tree
 				{
 					acount++;
-					aindex=actualindex;
+					aindex=pos;
 				}
-				if (outdeg==0) //This is a node with a possibility for the root of an upward tree
+				if (snap.getOutDegree(pos)==0) //This is a node with a possibility for the root of an upward tree
 				{
 					bcount++;
-					bindex=actualindex;
+					bindex=pos;
 				}
 			}
 			if (acount==1) //Case (a)
 			{
-				order.put(aindex,nextorderindex++);
-				startnode =  new MNode(aindex, mg.modifyNodes.get(aindex).name);
-				if (!isDirectedTreeRecursive(false,startnode))
+				order[aindex] = nextorderindex++;
+				startnode =  new MNode(snap.getNodeIndex(aindex), mg.modifyNodes.get(snap.getNodeIndex(aindex)).name);
+				if (!isDirectedTreeRecursive(false,aindex))
 						return false; //No Tree
 			}
 			else if (bcount==1)
 			{
-				order.put(bindex,nextorderindex++);
-				startnode =  new MNode(aindex, mg.modifyNodes.get(aindex).name);
-				if (!isDirectedTreeRecursive(true,startnode))
+				order[bindex] = nextorderindex++;
+				startnode =  new MNode(snap.getNodeIndex(aindex), mg.modifyNodes.get(snap.getNodeIndex(aindex)).name);
+				if (!isDirectedTreeRecursive(true,bindex))
 					return false; //No Tree
 			}
 			else
@@ -184,30 +179,28 @@ public class TreeFunctions implements Observer {
 		}
 		else //Non_directed Case
 		{
-			startnode = mg.modifyNodes.getIterator().next(); //Choose another one than arbitrary the first in the set ?
+			int startpos = 0; //Choose another one than arbitrary the first in the set ?
 			if (b!=0) //Chose one with b childs if existent
 			{
-				Iterator<MNode> iter = mg.modifyNodes.getIterator();
-				while (iter.hasNext())
+				for (int pos=0; pos<snap.nodeCount(); pos++)
 				{
-					MNode check = iter.next();
-					if (degree.get(check.index)==b)
-						startnode = check;
+					if (snap.getDegree(pos)==b)
+						startpos = pos;
 				}
 			}
-			if (degree.get(startnode.index)!=b) //The Startnode has no parent so the degree must be b
+			startnode = mg.modifyNodes.get(snap.getNodeIndex(startpos));
+			if (snap.getDegree(startpos)!=b) //The Startnode has no parent so the degree must be b
 			{ //No node with b children exists. So theres no root for a b.tree
 				return false;
 			}
-			order.put(startnode.index, nextorderindex++); //Initiate this one with order 1
-			if (!isUndirectedTreeRecursive(startnode,null))
+			order[startpos] = nextorderindex++; //Initiate this one with order 1
+			if (!isUndirectedTreeRecursive(startpos,-1))
 				return false; //Denn dann existiert ein Kreis			
 		}
 		//In Both Cases (dir/undir) : Are all nodes in the tree ?
-		Iterator<MNode> iter = mg.modifyNodes.getIterator();
-		while(iter.hasNext())
+		for (int pos=0; pos<snap.nodeCount(); pos++)
 		{
-			if (order.get(iter.next().index)==null)
+			if (order[pos]==0)
 				return false;
 		}
 		//Are there exactely b children in each internal (non-leaf) node ? <= b ?
@@ -228,44 +221,31 @@ public class TreeFunctions implements Observer {
 	 * the parent node is the only node that is adjacent with actual and no child
 	 * 
 	 * @param direction true means the edges point to the root (up), false, they point to the leaves (down)
-	 * @param actual actual node
-	 * @param mg
+	 * @param actual position of the actual node in the snapshot
 	 * @return true, if the actual node is root of a subtree of mg
 	 */
-	private boolean isDirectedTreeRecursive(boolean direction, MNode actual)
+	private boolean isDirectedTreeRecursive(boolean direction, int actual)
 	{
-		if ((direction)&&(indegree.get(actual.index)==0)) //Up pointing and actual has no incoming edges 
+		if ((direction)&&(snap.getInDegree(actual)==0)) //Up pointing and actual has no incoming edges 
 			return true; //And a leave is a subtree
-		if ((direction)&&(indegree.get(actual.index)==0)) //Up pointing and actual has no incoming edges 
-			return true;
-		Iterator<MNode> nodeiter = mg.modifyNodes.getIterator();
-		//Get all adjacent nodes with
-		int childcount=0;
-		while (nodeiter.hasNext())
+		//Get all adjacent nodes, UP: there must be an edge next->actual, DOWN: an edge actual->next
+		int from = direction ? snap.getInStart(actual) : snap.getOutStart(actual);
+		int to = direction ? snap.getInEnd(actual) : snap.getOutEnd(actual);
+		int childcount=0, last=-1;
+		for (int k=from; k<to; k++)
 		{
-			MNode next = nodeiter.next();
-			if ((direction)&&(mg.modifyEdges.cardinalityBetween(next.index, actual.index)>0)) //UP, then there must be an edge next->actual
-			{	//Upward Child
-				if (order.get(next.index)!=null) //Circle
-					return false;
-				else
-					order.put(next.index, nextorderindex++);
-				if (!isDirectedTreeRecursive(direction, next)) //Child no subtree
-					return false;
-				//still searching, and this child is valid 
-				childcount++;
-			}
-			if ((!direction)&&(mg.modifyEdges.cardinalityBetween(actual.index, next.index)>0)) //DOWN, then there must be an edge actual->next
-			{	//Downward Child
-				if (order.get(next.index)!=null) //Circle
-					return false;
-				else
-					order.put(next.index, nextorderindex++);
-				if (!isDirectedTreeRecursive(direction, next)) //Child no subtree
-					return false;
-				//still searching, and this child is valid 
-				childcount++;
-			}
+			int next = direction ? snap.getInSource(k) : snap.getOutTarget(k);
+			if (next==last) //multiple edge to the same child, which is already handled
+				continue;
+			last = next;
+			if (order[next]!=0) //Circle
+				return false;
+			else
+				order[next] = nextorderindex++;
+			if (!isDirectedTreeRecursive(direction, next)) //Child no subtree
+				return false;
+			//still searching, and this child is valid 
+			childcount++;
 		}
 		if (childcount!=0) //at least one child
 		{
@@ -279,30 +259,35 @@ public class TreeFunctions implements Observer {
 	 * recursive Ordering with a DFS in an undirected graph.
 	 * the parent node is the only node that is adjacent with actual and no child
 	 * 
-	 * @param actual actual node
-	 * @param parent parent of
-	 * @param mg
+	 * @param actual position of the actual node in the snapshot
+	 * @param parent position of the parent of actual, -1 for the root
 	 * @return true, if the actual node is root of a subtree, else false
 	 */
-	private boolean isUndirectedTreeRecursive(MNode actual, MNode parent)
+	private boolean isUndirectedTreeRecursive(int actual, int parent)
 	{
 		//node already has an order. So check every adjacent node despite the parent
-		Iterator<MNode> nodeiter = mg.modifyNodes.getIterator();
-		int childcount = 0;
-		while (nodeiter.hasNext()) //give every child an order index
+		//Both rows are sorted, so merge them to get each neighbour once
+		int i = snap.getOutStart(actual), iend = snap.getOutEnd(actual);
+		int j = snap.getInStart(actual), jend = snap.getInEnd(actual);
+		int childcount = 0, last=-1;
+		while ((i<iend)||(j<jend)) //give every child an order index
 		{
-			MNode next = nodeiter.next();
-			if ((next!=parent)&&(mg.modifyEdges.cardinalityBetween(actual.index, next.index)>0)) //Child
-			{
-				if (order.get(next.index)!=null) //Child has an order already
-					return false;
-				else
-					order.put(next.index, nextorderindex++);
-				if (!isUndirectedTreeRecursive(next, actual)) //Child no subtree
-					return false;
-				//correct child and still woking
-				childcount++;
-			}
+			int next;
+			if ((j>=jend)||((i<iend)&&(snap.getOutTarget(i)<=snap.getInSource(j))))
+				next = snap.getOutTarget(i++);
+			else
+				next = snap.getInSource(j++);
+			if ((next==last)||(next==parent))
+				continue;
+			last = next;
+			if (order[next]!=0) //Child has an order already
+				return false;
+			else
+				order[next] = nextorderindex++;
+			if (!isUndirectedTreeRecursive(next, actual)) //Child no subtree
+				return false;
+			//correct child and still woking
+			childcount++;
 		}
 		if (childcount!=0) //at least one child, so it's no leave
 		{
@@ -315,48 +300,16 @@ public class TreeFunctions implements Observer {
 	
 	/**Calculates the Degree for a graph
 	 * and if the graph is directed in and outdegree
-	 * 
-	 * @param vg
+	 * by taking a new snapshot of the graph
 	 */
 	private void calculateDegrees()
 	{
 		if (mg==null)
 			return;
-		degree = new TreeMap<Integer,Integer>();
-		indegree = new TreeMap<Integer,Integer>();
-		outdegree = new TreeMap<Integer,Integer>();
-		Iterator<MEdge> edgeiter = mg.modifyEdges.getIterator();
-		while (edgeiter.hasNext())
-		{
-			MEdge actual = edgeiter.next();
-			int start = actual.StartIndex, ende = actual.EndIndex;
-			if (degree.get(start)==null)
-				degree.put(start,0);
-			if (degree.get(ende)==null)
-				degree.put(ende,0);
-			if (indegree.get(ende)==null)
-				indegree.put(ende,0);
-			if (outdegree.get(start)==null)
-				outdegree.put(start,0);
-			degree.put(start,degree.get(start)+1);
-			degree.put(ende,degree.get(ende)+1);
-			outdegree.put(start,outdegree.get(start)+1);
-			indegree.put(ende,indegree.get(ende)+1);
-		} //End While edgeiter.hasnext
-		Iterator<MNode> nodeiter = mg.modifyNodes.getIterator();
-		while (nodeiter.hasNext())
-		{
-			MNode n = nodeiter.next();
-			if (degree.get(n.index)==null)
-				degree.put(n.index,0);
-			if (indegree.get(n.index)==null)
-				indegree.put(n.index,0);
-			if (outdegree.get(n.index)==null)
-				outdegree.put(n.index,0);
-		}
+		snap = mg.snapshot();
 	}
 	//Falls sich der MGraph ändert
-	public void update(Observable arg0, Object arg1) 
+	public void handleGraphMessage(GraphMessage m) 
 	{
 			calculateDegrees();
 	}
@@ -90,7 +90,7 @@ public class CommonEdgeDragListener
 	{
 		if (vg==null)
 			return;
-		Iterator<VEdge> edgeiter = vg.modifyEdges.getIterator();
+		Iterator<VEdge> edgeiter = vg.modifyEdges.getSelectedIterator();
 		while (edgeiter.hasNext()) // drawNodes
 		{
 			VEdge temp = edgeiter.next();
@@ -118,7 +118,7 @@ public class CommonEdgeDragListener
 	{
 		if (vhg==null)
 			return;
-		Iterator<VHyperEdge> edgeiter = vhg.modifyHyperEdges.getIterator();
+		Iterator<VHyperEdge> edgeiter = vhg.modifyHyperEdges.getSelectedIterator();
 		while (edgeiter.hasNext()) // drawNodes
 		{
 			VHyperEdge temp = edgeiter.next();
@@ -155,15 +155,8 @@ public class CommonEdgeDragListener
 				hyperedgeInRange = vhg.getEdgeinRangeOf(pointInGraph,2.0*((float)vgc.getZoom()/100));
 			if ((hyperedgeInRange!=null)&&(!hyperedgeInRange.getShape().isEmpty()))
 			{
-				float pos = hyperedgeInRange.getTextProperties().getPosition();
-				if (pos > .5f)
-					pos = 1-(pos - .5f)*2f;
-				else
-					pos *= 2f;
-				double scalepos = pos+0.01f;
-				if (scalepos > 1f)
-					scalepos = pos-0.01f;
-				DragStartScale = 25f * ((float) hyperedgeInRange.getShape().CurveRelativeAt(pos).distance(hyperedgeInRange.getShape().CurveRelativeAt(scalepos)) );
+				//The text position is relative to the length of the shape, so 25 times the length of 1% of the edge is a quarter of it
+				DragStartScale = 0.25f * ((float) hyperedgeInRange.getShape().getLength());
 			}
 		}
 		
@@ -36,6 +36,7 @@ import model.VSubgraph;
 import model.VSubgraphSet;
 import model.Messages.GraphConstraints;
 import model.Messages.GraphMessage;
+import model.Messages.GraphMessageListener;
 import view.Gui;
 import view.VCommonGraphic;
 import view.VGraphic;
@@ -51,6 +52,7 @@ import view.VHyperGraphic;
 public class ContextMenuClickListener
 		implements
 			MouseListener,
+			GraphMessageListener,
 			ActionListener,
 			Observer {
 
@@ -84,7 +86,7 @@ public class ContextMenuClickListener
 		vgc= g;
 		gp = GeneralPreferences.getInstance();
 		vg = g.getGraph();
-		vg.addObserver(this); //Sub
+		vg.addGraphMessageListener(this, GraphConstraints.SUBGRAPH); //Sub
 		initPopups();
 		updateSubgraphList();
 	}
@@ -93,16 +95,16 @@ public class ContextMenuClickListener
 		vgc= g;
 		gp = GeneralPreferences.getInstance();
 		vhg = g.getGraph();
-		vhg.addObserver(this); //Sub
+		vhg.addGraphMessageListener(this, GraphConstraints.SUBGRAPH); //Sub
 		initPopups();
 		updateSubgraphList();
 	}
 	public void removeObservers()
 	{
 		if (vg!=null)
-			vg.deleteObserver(this);
+			vg.removeGraphMessageListener(this);
 		else if (vhg!=null)
-			vhg.deleteObserver(this);
+			vhg.removeGraphMessageListener(this);
 	}
 	private void initPopups() {
 		initBackgroundPopup();
@@ -417,11 +419,13 @@ public class ContextMenuClickListener
 			{
 				int newindex = vg.getMathGraph().modifyNodes.getNextIndex();
 				new JNodeDialog(newindex,gp.getNodeName(newindex),PopupCoordinates.x,PopupCoordinates.y,gp.getIntValue("node.size"),vg);
+				vg.getMathGraph().modifyNodes.releaseIndex(newindex); //Modal dialog closed, index unused if cancelled
 			}
 			else if (vhg!=null)
 			{
 					int newindex = vhg.getMathGraph().modifyNodes.getNextIndex();
 					new JNodeDialog(newindex,gp.getNodeName(newindex),PopupCoordinates.x,PopupCoordinates.y,gp.getIntValue("node.size"),vhg);
+					vhg.getMathGraph().modifyNodes.releaseIndex(newindex); //Modal dialog closed, index unused if cancelled
 			}
 			PopupCoordinates = new Point(0,0);
 		} 
@@ -464,7 +468,9 @@ public class ContextMenuClickListener
 					if ((actual.getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED)
 						selEdges.set(actual.getIndex());
 				}
-				new JSubgraphDialog(vg.getMathGraph().modifySubgraphs.getNextIndex(),gp.getSubgraphName(vg.getMathGraph().modifySubgraphs.getNextIndex()),c,vg,selNodes,selEdges);
+				int newindex = vg.getMathGraph().modifySubgraphs.getNextIndex();
+				new JSubgraphDialog(newindex,gp.getSubgraphName(newindex),c,vg,selNodes,selEdges);
+				vg.getMathGraph().modifySubgraphs.releaseIndex(newindex); //Modal dialog closed, index unused if cancelled
 			}
 			else if (vhg!=null)
 			{
@@ -484,7 +490,9 @@ public class ContextMenuClickListener
 					if ((actual.getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED)
 						selEdges.set(actual.getIndex());
 				}
-				new JSubgraphDialog(vhg.getMathGraph().modifySubgraphs.getNextIndex(),gp.getSubgraphName(vhg.getMathGraph().modifySubgraphs.getNextIndex()),c,vhg,selNodes,selEdges);
+				int newindex = vhg.getMathGraph().modifySubgraphs.getNextIndex();
+				new JSubgraphDialog(newindex,gp.getSubgraphName(newindex),c,vhg,selNodes,selEdges);
+				vhg.getMathGraph().modifySubgraphs.releaseIndex(newindex); //Modal dialog closed, index unused if cancelled
 			}
 		}
 	}
@@ -613,11 +621,14 @@ public class ContextMenuClickListener
 	//(nonjavadoc) - @see Observer 
 	public void update(Observable o, Object arg)
 	{
-		GraphMessage m = (GraphMessage)arg;
-			if (m!=null)
-			{ //If we get an GraphMessage and a SUBGRAPH is AFFECTED
-				if ((m.getAffectedElementTypes()&GraphConstraints.SUBGRAPH)==GraphConstraints.SUBGRAPH)
-					updateSubgraphList();
-			}
+		if (arg instanceof GraphMessage)
+			handleGraphMessage((GraphMessage)arg);
+	}
+	//(nonjavadoc) - @see GraphMessageListener
+	public void handleGraphMessage(GraphMessage m)
+	{
+		//If a SUBGRAPH is AFFECTED
+		if ((m.getAffectedElementTypes()&GraphConstraints.SUBGRAPH)==GraphConstraints.SUBGRAPH)
+			updateSubgraphList();
 	}
 }
\ No newline at end of file
@@ -39,6 +39,7 @@ public class NodeDragEdgeCreationListener implements MouseListener, MouseMotionL
 	private VNode StartNode,DragNode;
 	
 	private boolean multiple, firstdrag;
+	private int DragEdgeMax; //Maximal edge index before the temporary edges to the DragNode were created
 	/**
 	 * Initializes the Drag Handler to observe a specific VGraph
 	 * 
@@ -52,6 +53,7 @@ public class NodeDragEdgeCreationListener implements MouseListener, MouseMotionL
 		DragNode = null;
 		multiple = false;
 		firstdrag = false;
+		DragEdgeMax = -1;
 	}
 	/**
 	 * Return the status of a drag action.
@@ -75,6 +77,7 @@ public class NodeDragEdgeCreationListener implements MouseListener, MouseMotionL
 			if (firstdrag)
 			{
 				firstdrag=false;
+				DragEdgeMax = vg.getMathGraph().modifyEdges.getMaxIndex();
 				if (!multiple)
 				{
 					int i = vg.getMathGraph().modifyEdges.getNextIndex();
@@ -131,7 +134,10 @@ public class NodeDragEdgeCreationListener implements MouseListener, MouseMotionL
 		if (((e.getPoint().x==-1)&&(e.getPoint().y==-1))||(firstdrag==true)) //never dragged
 		{	
 			if (DragNode!=null)
+			{
 				vg.modifyNodes.remove(DragNode.getIndex());
+				releaseDragEdgeIndices();
+			}
 			StartNode = null;
 			DragNode = null;
 			return;
@@ -141,6 +147,7 @@ public class NodeDragEdgeCreationListener implements MouseListener, MouseMotionL
 		{	
 			if (vg.modifyNodes.get(DragNode.getIndex())!=null)
 				vg.modifyNodes.remove(DragNode.getIndex());
+			releaseDragEdgeIndices();
 			
 			VNode EndNode = vg.modifyNodes.getFirstinRangeOf(p);
 			if (EndNode!=null)
@@ -177,6 +184,8 @@ public class NodeDragEdgeCreationListener implements MouseListener, MouseMotionL
 							vg.pushNotify(new GraphMessage(GraphConstraints.EDGE,i,GraphConstraints.BLOCK_ABORT|GraphConstraints.BLOCK_END,GraphConstraints.EDGE|GraphConstraints.NODE));							
 						}
 					}
+					//Loop or similar edge rejected: give the index back, if the edge was added this does nothing
+					vg.getMathGraph().modifyEdges.releaseIndex(i);
 				}
 				else if (DragNode!=null)
 				{	
@@ -193,6 +202,19 @@ public class NodeDragEdgeCreationListener implements MouseListener, MouseMotionL
 			StartNode = null;
 		}
 	}
+	/**
+	 * Give back the indices of the temporary edges to the DragNode, which are removed with that node,
+	 * so that they may be used for the new edges
+	 */
+	private void releaseDragEdgeIndices()
+	{
+		if (DragEdgeMax < 0) //No temporary edges created
+			return;
+		//Descending, so that the maximal index decreases step by step
+		for (int i=vg.getMathGraph().modifyEdges.getMaxIndex(); i>DragEdgeMax; i--)
+			vg.getMathGraph().modifyEdges.releaseIndex(i);
+		DragEdgeMax = -1;
+	}
 	public void mouseMoved(MouseEvent arg0) {}
 	public void mouseClicked(MouseEvent e) {}
 	public void mouseEntered(MouseEvent e) {}
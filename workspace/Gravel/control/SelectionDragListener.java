@@ -11,6 +11,7 @@ import java.awt.event.MouseMotionListener;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Line2D;
 import java.awt.geom.QuadCurve2D;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Vector;
 
@@ -22,6 +23,7 @@ import model.VHyperEdge;
 import model.VHyperGraph;
 import model.VItem;
 import model.VNode;
+import model.VNodeSet;
 import model.VOrthogonalEdge;
 import model.VQuadCurveEdge;
 import model.VSegmentedEdge;
@@ -52,6 +54,9 @@ public class SelectionDragListener
 	boolean altwaspressed = false,shiftwaspressed = false, firstdrag = true;
 	Point selstart = null;
 	Rectangle selrect = null;
+	//Items inside the rectangle on the last update and the status they got
+	HashSet<VItem> itemsinrect = null;
+	int itemsinrectstatus = 0;
 
 	public SelectionDragListener(VGraphic g)
 	{
@@ -80,26 +85,33 @@ public class SelectionDragListener
 	private void updateSelection(int status)
 	{
 		float zoom = ((float)vgc.getZoom()/100);
-		Iterator<VNode> nodeiter = null;
+		VNodeSet nodes = null;
 		if (vg!=null)
-			nodeiter = vg.modifyNodes.getIterator();
+			nodes = vg.modifyNodes;
 		else if (vhg!=null)
-			nodeiter = vhg.modifyNodes.getIterator();
+			nodes = vhg.modifyNodes;
 		else
 			return;
+		//The rectangle in graph coordinates, enlarged by the rounding errors of the zoom
+		int pad = (int)Math.ceil(1.0f/zoom)+1;
+		Rectangle graphrect = new Rectangle((int)Math.floor((float)selrect.x/zoom)-pad, (int)Math.floor((float)selrect.y/zoom)-pad,
+				(int)Math.ceil((float)selrect.width/zoom)+2*pad, (int)Math.ceil((float)selrect.height/zoom)+2*pad);
+		HashSet<VItem> inside = new HashSet<VItem>();
+		Iterator<VNode> nodeiter = nodes.getNodesinRectangle(graphrect);
 		while (nodeiter.hasNext())
 		{
 			VNode act = nodeiter.next();
 			//rectangle of the node w/ zoom
 			Rectangle noderect = new Rectangle(Math.round((float)act.getPosition().x*zoom-(float)act.getSize()*zoom/2.0f),Math.round((float)act.getPosition().y*zoom-(float)act.getSize()*zoom/2.0f),Math.round((float)act.getSize()*zoom),Math.round((float)act.getSize()*zoom));
 			if (selrect.intersects(noderect)) //If Node is Inside selrect
+			{
 				act.setSelectedStatus(act.getSelectedStatus() | status);
-			else
-				act.setSelectedStatus(act.getSelectedStatus() & (~status));
+				inside.add(act);
+			}
 		}
 		if (vg!=null)
 		{
-			Iterator<VEdge> edgeiter = vg.modifyEdges.getIterator();
+			Iterator<VEdge> edgeiter = vg.modifyEdges.getEdgesinRectangle(graphrect);
 			while (edgeiter.hasNext())
 			{
 				VEdge e = edgeiter.next();
@@ -147,25 +159,60 @@ public class SelectionDragListener
 					}
 				} //end switch
 				if (intersects) //edge lies somewhere in the rect
+				{
 					e.setSelectedStatus(e.getSelectedStatus() | status);
-				else
-					e.setSelectedStatus(e.getSelectedStatus() & (~status));
+					inside.add(e);
+				}
 			} //End while edges
 		} //end vg!=null	
 		else if (vhg!=null)
 		{
-			Iterator<VHyperEdge> edgeiter = vhg.modifyHyperEdges.getIterator();
+			//The shape is compared with the rectangle as it is
+			Iterator<VHyperEdge> edgeiter = vhg.modifyHyperEdges.getHyperEdgesinRectangle(selrect);
 			while (edgeiter.hasNext())
 			{
 				VHyperEdge actualhe = edgeiter.next();
 				//just rough shape
 				if (actualhe.getShape().getCurve(50d/(double)zoom).intersects(selrect))
+				{
 					actualhe.setSelectedStatus(actualhe.getSelectedStatus() | status);
-				else
-					actualhe.setSelectedStatus(actualhe.getSelectedStatus() & (~status));
+					inside.add(actualhe);
+				}
 			}
 		}
 			
+		//Deactivate everything outside. Only the items inside on the last update might have the status from this drag
+		if ((itemsinrect==null)||(itemsinrectstatus!=status))
+		{
+			nodeiter = nodes.getIterator();
+			while (nodeiter.hasNext())
+				deactivate(nodeiter.next(),inside,status);
+			if (vg!=null)
+			{
+				Iterator<VEdge> edgeiter = vg.modifyEdges.getIterator();
+				while (edgeiter.hasNext())
+					deactivate(edgeiter.next(),inside,status);
+			}
+			else
+			{
+				Iterator<VHyperEdge> edgeiter = vhg.modifyHyperEdges.getIterator();
+				while (edgeiter.hasNext())
+					deactivate(edgeiter.next(),inside,status);
+			}
+		}
+		else
+		{
+			Iterator<VItem> itemiter = itemsinrect.iterator();
+			while (itemiter.hasNext())
+				deactivate(itemiter.next(),inside,status);
+		}
+		itemsinrect = inside;
+		itemsinrectstatus = status;
+	}
+	private void deactivate(VItem item, HashSet<VItem> inside, int status)
+	{
+		if (!inside.contains(item))
+			item.setSelectedStatus(item.getSelectedStatus() & (~status));
 	}
 
 	public Rectangle getSelectionRectangle()
@@ -191,6 +238,7 @@ public class SelectionDragListener
 		shiftwaspressed=false;
 		selstart=null;
 		selrect = null;
+		itemsinrect = null;
 		firstdrag = true;
 	}
 	//One every Click a potental Drag is initialized but firstdrag = true signals, that no Drag-Movement happened yet
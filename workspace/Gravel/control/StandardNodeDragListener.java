@@ -146,9 +146,9 @@ public class StandardNodeDragListener implements MouseListener, MouseMotionListe
 			//Move Selected Nodes
 			Iterator<VNode> nodeiter=null;
 			if (vg!=null)
-				nodeiter = vg.modifyNodes.getIterator();
+				nodeiter = vg.modifyNodes.getSelectedIterator();
 			else if (vhg!=null)
-				nodeiter = vhg.modifyNodes.getIterator();
+				nodeiter = vhg.modifyNodes.getSelectedIterator();
 			else
 				return;
 			while (nodeiter.hasNext()) // drawNodes
@@ -176,7 +176,7 @@ public class ShapeSubcurveSelectionHandler implements
 				/ ((double) zoom));
 		double tol = (new Integer(gp.getIntValue("vgraphic.selwidth"))).doubleValue() + ((double) HyperEdgeRef.getWidth() / 2d);
 		//Project with real stripped curve
-		NURBSShapeProjection proj = new NURBSShapeProjection(temporaryShape.stripDecorations().clone(), DragOrigin);
+		NURBSShapeProjection proj = new NURBSShapeProjection(temporaryShape.stripDecorations(), DragOrigin);
 		//One Value not given - set it
 		if ((Double.isNaN(tempStart))||(Double.isNaN(Double.NaN)))
 		{
@@ -214,7 +214,7 @@ public class ShapeSubcurveSelectionHandler implements
 					.getPoint().x
 					/ ((double) zoom), (double) e.getPoint().y
 					/ ((double) zoom));
-			NURBSShapeProjection proj = new NURBSShapeProjection(temporaryShape.stripDecorations().clone(), exactPointInGraph);
+			NURBSShapeProjection proj = new NURBSShapeProjection(temporaryShape.stripDecorations(), exactPointInGraph);
 			if (DragsetsStart)
 				tempStart = proj.getResultParameter();
 			else
@@ -260,7 +260,7 @@ public class ShapeSubcurveSelectionHandler implements
 		Point2D exactPointInGraph = new Point2D.Double((double) e.getPoint().x
 				/ ((double) zoom), (double) e.getPoint().y
 				/ ((double) zoom));
-		NURBSShapeProjection proj = new NURBSShapeProjection(temporaryShape.stripDecorations().clone(), exactPointInGraph);
+		NURBSShapeProjection proj = new NURBSShapeProjection(temporaryShape.stripDecorations(), exactPointInGraph);
 		double tol = (new Integer(gp.getIntValue("vgraphic.selwidth"))).doubleValue() + ((double) HyperEdgeRef.getWidth() / 2d);
 		if (proj.getResultPoint().distance(exactPointInGraph) <= tol)
 		{			// clicked on curve with tol. -> Update subcurve in a block so that after that VHyperShapeGraphic redraws
@@ -14,8 +14,6 @@ import io.LaTeXPictureWriter;
 import java.awt.Component;
 
 import java.io.File;
-import java.util.Observable;
-import java.util.Observer;
 
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
@@ -28,6 +26,7 @@ import model.VGraphInterface;
 import model.VHyperGraph;
 import model.Messages.GraphConstraints;
 import model.Messages.GraphMessage;
+import model.Messages.GraphMessageListener;
 
 import view.Gui;
 import view.VCommonGraphic;
@@ -51,7 +50,7 @@ import view.VHyperGraphic;
  * 
  * @author Ronny Bergmann
  */
-public class JFileDialogs implements Observer 
+public class JFileDialogs implements GraphMessageListener 
 {
 	/**
 	 * A Simple FileFilter that only displays Folders and the files of a given Extension
@@ -160,12 +159,12 @@ public class JFileDialogs implements Observer
 		if (GraphType==VCommonGraphic.VGRAPHIC)
 		{
 			vG = ((VGraphic)vGc).getGraph(); 
-			((VGraphic)vGc).getGraph().addObserver(this);
+			((VGraphic)vGc).getGraph().addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 		}
 		else
 		{
 			vG = ((VHyperGraphic)vGc).getGraph(); 
-			((VHyperGraphic)vGc).getGraph().addObserver(this);
+			((VHyperGraphic)vGc).getGraph().addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 		}
 		actualState=vGc.getGraphHistoryManager().IsGraphUnchanged();
 	}
@@ -210,12 +209,12 @@ public class JFileDialogs implements Observer
 			Gui.getInstance().getParentWindow().setTitle(Gui.WindowName+" - "+f.getName()+"");
 			if (GraphType==VCommonGraphic.VGRAPHIC)
 			{
-				((VGraphic)vGc).getGraph().addObserver(this);
+				((VGraphic)vGc).getGraph().addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 				((VGraphic)vGc).getGraph().pushNotify(new GraphMessage(GraphConstraints.GRAPH_ALL_ELEMENTS,GraphConstraints.REPLACEMENT));
 			}
 			else
 			{
-				((VHyperGraphic)vGc).getGraph().addObserver(this);
+				((VHyperGraphic)vGc).getGraph().addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 				((VHyperGraphic)vGc).getGraph().pushNotify(new GraphMessage(GraphConstraints.HYPERGRAPH_ALL_ELEMENTS,GraphConstraints.REPLACEMENT));
 			}
 			//Set actual State saved.
@@ -282,12 +281,12 @@ public class JFileDialogs implements Observer
 			Gui.getInstance().getParentWindow().setTitle(Gui.WindowName+" - "+f.getName()+"");
 			if (GraphType==VCommonGraphic.VGRAPHIC)
 			{
-				((VGraphic)vGc).getGraph().addObserver(this);
+				((VGraphic)vGc).getGraph().addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 				((VGraphic)vGc).getGraph().pushNotify(new GraphMessage(GraphConstraints.GRAPH_ALL_ELEMENTS,GraphConstraints.REPLACEMENT));
 			}
 			else
 			{
-				((VHyperGraphic)vGc).getGraph().addObserver(this);
+				((VHyperGraphic)vGc).getGraph().addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 				((VHyperGraphic)vGc).getGraph().pushNotify(new GraphMessage(GraphConstraints.HYPERGRAPH_ALL_ELEMENTS,GraphConstraints.REPLACEMENT));
 			}
 			//Set actual State saved.
@@ -431,9 +430,9 @@ public class JFileDialogs implements Observer
 						GeneralPreferences.getInstance().setStringValue("graph.lastfile",f.getAbsolutePath());
 						//Observe VGraph
 						if (GraphType==VCommonGraphic.VGRAPHIC)
-							((VGraphic)vGc).getGraph().addObserver(this);
+							((VGraphic)vGc).getGraph().addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 						else if (GraphType==VCommonGraphic.VHYPERGRAPHIC)
-							((VHyperGraphic)vGc).getGraph().addObserver(this);
+							((VHyperGraphic)vGc).getGraph().addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 						Gui.getInstance().getParentWindow().setTitle(Gui.WindowName+" - "+f.getName());
 		    			//Set actual State saved.
 		    			vGc.getGraphHistoryManager().setGraphSaved();
@@ -449,9 +448,9 @@ public class JFileDialogs implements Observer
 						GeneralPreferences.getInstance().setStringValue("graph.lastfile",f.getAbsolutePath());
 						//Observe MGraph
 						if (GraphType==VCommonGraphic.VGRAPHIC)
-							((VGraphic)vGc).getGraph().addObserver(this);
+							((VGraphic)vGc).getGraph().addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 						else
-							((VHyperGraphic)vGc).getGraph().addObserver(this);
+							((VHyperGraphic)vGc).getGraph().addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 						Gui.getInstance().getParentWindow().setTitle(Gui.WindowName+" - "+f.getName()+" (math only)");
 		    			//Set actual State saved.
 		    			vGc.getGraphHistoryManager().setGraphSaved();
@@ -654,7 +653,7 @@ public class JFileDialogs implements Observer
 	/**
 	 * Handle Graph Updates and check, whether a loaded graph is still saved
 	 */
-	public void update(Observable arg0, Object arg1) {
+	public void handleGraphMessage(GraphMessage m) {
 		if (this.actualState!=vGc.getGraphHistoryManager().IsGraphUnchanged()) //State Changed
 			actualState = vGc.getGraphHistoryManager().IsGraphUnchanged();
 		else
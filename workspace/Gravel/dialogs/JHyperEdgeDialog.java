@@ -195,6 +195,9 @@ public class JHyperEdgeDialog extends JDialog implements ActionListener, ItemLis
 		setLocation(p.x,p.y);
 		
 		this.setVisible(true);
+		//Modal, so the dialog is closed here. If the reserved index was not used (cancelled or changed), give it back
+		if (isNewHyperedge)
+			graphref.getMathGraph().modifyHyperEdges.releaseIndex(oldmhyperedge.index);
 	}
 	/**
 	 * Build the main Tab containing the mathematical values and the standard visual properties
@@ -58,10 +58,10 @@ import view.pieces.GridComponent;
 	 */
 	private static final long serialVersionUID = 42L;
 	private GeneralPreferences gp;
-	private IntegerTextField iNodeSize, iEdgeWidth, iEdgeValue, iControlPointSize, iUndoStacksize;
+	private IntegerTextField iNodeSize, iEdgeWidth, iEdgeValue, iControlPointSize, iUndoStacksize, iUndoMemorysize;
 	private JTextField tNodeName, tSubgraphName, tEdgeName;
 	private JLabel tNodePreview, tSubgraphPreview, tEdgePreview;
-	private JCheckBox bControlPoint,bSaveOnExit,bAllowLoops, bAllowMultiple, bLoadLastGraphOnStart, bUndotrackSelection;
+	private JCheckBox bControlPoint,bSaveOnExit,bAllowLoops, bAllowMultiple, bLoadLastGraphOnStart, bUndotrackSelection, bUndoswapToFile;
 	private ButtonGroup GraphType,GraphMainType;
 	private JRadioButton rDirected, rUndirected,rGraph,rHyperGraph;
 	private GridComponent grid;
@@ -176,6 +176,8 @@ import view.pieces.GridComponent;
 		bLoadLastGraphOnStart.setSelected(gp.getBoolValue("graph.loadfileonstart"));
 		bUndotrackSelection.setSelected(gp.getBoolValue("history.trackSelection"));
 		iUndoStacksize.setValue(gp.getIntValue("history.Stacksize"));
+		iUndoMemorysize.setValue(gp.getIntValue("history.Memorysize"));
+		bUndoswapToFile.setSelected(gp.getBoolValue("history.swapToFile"));
 		
 		rDirected.setSelected(gp.getBoolValue("graph.directed"));
 		rUndirected.setSelected(!gp.getBoolValue("graph.directed"));
@@ -468,6 +470,15 @@ import view.pieces.GridComponent;
 		c.gridx++;
 		content.add(iUndoStacksize,c);
 		iUndoStacksize.setPreferredSize(new Dimension(100, 20));
+		c.gridx = 0; c.gridy++;c.gridwidth=1; 
+		content.add(new JLabel("<html>Speicher f"+main.CONST.html_ue+"r diese Aktionen (kB)<br><font size=-2>0 f"+main.CONST.html_ue+"r unbegrenzt</font></html>"),c);
+		iUndoMemorysize = new IntegerTextField();
+		c.gridx++;
+		content.add(iUndoMemorysize,c);
+		iUndoMemorysize.setPreferredSize(new Dimension(100, 20));
+		c.gridx = 0; c.gridy++;c.gridwidth=2; 
+		bUndoswapToFile = new JCheckBox("<html>Alte Aktionen in tempor"+main.CONST.html_ae+"re Dateien auslagern</html>");
+		content.add(bUndoswapToFile,c);
 		c.gridx = 0; c.gridy++;c.gridwidth=2; 
 		bUndotrackSelection = new JCheckBox("<html>Ver"+main.CONST.html_ae+"nderungen der Auswahl aufzeichnen<br><font size=-2>Durch Aufzeichnung k"+main.CONST.html_oe+"nnen diese widerrufen werden.</font></html>");
 		content.add(bUndotrackSelection,c);
@@ -484,6 +495,8 @@ import view.pieces.GridComponent;
 	{
 		if (iUndoStacksize.getValue()==-1)
 			return "Die Anzahl Aktionen, die Widerrufen werden k"+main.CONST.html_oe+"nnen, ist nicht angegeben";
+		if (iUndoMemorysize.getValue()==-1)
+			return "Der Speicher f"+main.CONST.html_ue+"r widerrufbare Aktionen ist nicht angegeben";
 		if (bControlPoint.isSelected()&&(iControlPointSize.getValue()==-1))
 		{
 			return "<html>Die Kantenkontrollpunktgr"+main.CONST.html_oe+""+main.CONST.html_sz+"e ist fehlerhaft</html>";
@@ -552,6 +565,8 @@ import view.pieces.GridComponent;
 		
 		gp.setBoolValue("history.trackSelection", bUndotrackSelection.isSelected());
 		gp.setIntValue("history.Stacksize", iUndoStacksize.getValue());
+		gp.setIntValue("history.Memorysize", iUndoMemorysize.getValue());
+		gp.setBoolValue("history.swapToFile", bUndoswapToFile.isSelected());
 		
 		gp.setStringValue("node.name", tNodeName.getText());
 		gp.setIntValue("node.size", iNodeSize.getValue());
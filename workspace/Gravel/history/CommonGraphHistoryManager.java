@@ -1,15 +1,17 @@
 package history;
 
 import model.*;
+import model.Messages.GraphBatchMessage;
 import model.Messages.GraphConstraints;
 import model.Messages.GraphMessage;
+import model.Messages.GraphMessageListener;
 
 import io.GeneralPreferences;
 
+import java.io.IOException;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.Observable;
-import java.util.Observer;
 
 /**
  * This class tacks all actions happening to a graph and saves the last few ones.
@@ -19,17 +21,30 @@ import java.util.Observer;
  * 
  * It also provides Undo(), Redo() and the methods to check their possibility
  * 
- * This Observer may only subscribe to Observables that sends GraphMessages.
+ * The Manager subscribes to all GraphMessages of the tracked graph.
+ * Each action only stores the elements touched since the last action (see GraphDeltaAction), 
+ * their previous state is taken from lastGraph, which is updated only in these elements afterwards
+ * 
+ * Besides their number, the actions on both stacks are limited by the memory they use (history.Memorysize in kB).
+ * If they exceed this limit, the oldest actions are packed into a compressed binary form, then swapped to
+ * temporary files (if history.swapToFile is set) and if that is still not enough, removed from the stacks.
+ * A limit of 0 disables this.
  * @author Ronny Bergmann
  * @since 0.3
  */
-public class CommonGraphHistoryManager implements Observer
+public class CommonGraphHistoryManager implements GraphMessageListener
 {
 	//Lastgraph is for the creation of actions, for delete especially
 	protected VGraphInterface trackedGraph, lastGraph;
+	//Elements touched since the last action, touchedTypes are types, whose elements are all touched
+	private BitSet touchedNodes, touchedEdges, touchedSubgraphs;
+	private int touchedTypes;
+	private boolean touchedSelection;
 	protected GraphMessage Blockstart;
 	boolean active, trackSelection;
 	protected int blockdepth, stacksize, SavedUndoStackSize, graphType;
+	protected long memorysize;
+	protected boolean swapToFile;
 	protected LinkedList<CommonGraphAction> UndoStack, RedoStack;
 	
 	/**
@@ -55,24 +70,113 @@ public class CommonGraphHistoryManager implements Observer
 
 	protected void CommonInitialization()
 	{
-		if (trackedGraph.getType()==VGraphInterface.GRAPH)
-		{
-			((VGraph)trackedGraph).deleteObserver(this); //For not adding double
-			((VGraph)trackedGraph).addObserver(this); 			
-		}
-		else if (trackedGraph.getType()==VGraphInterface.HYPERGRAPH)
-		{
-			((VHyperGraph)trackedGraph).deleteObserver(this); //For not adding double
-			((VHyperGraph)trackedGraph).addObserver(this); 						
-		}
+		trackedGraph.addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK); //is not added double
 		active=true;
 		Blockstart=null;
 		blockdepth=0;
+		if (UndoStack!=null) //Graph was replaced, remove temporary files of the old actions
+		{
+			while (!UndoStack.isEmpty())
+				discard(UndoStack.remove());
+			while (!RedoStack.isEmpty())
+				discard(RedoStack.remove());
+		}
 		UndoStack = new LinkedList<CommonGraphAction>();
 		RedoStack = new LinkedList<CommonGraphAction>();
 		stacksize=GeneralPreferences.getInstance().getIntValue("history.Stacksize");
+		memorysize=GeneralPreferences.getInstance().getIntValue("history.Memorysize")*1024L;
+		swapToFile=GeneralPreferences.getInstance().getBoolValue("history.swapToFile");
 		trackSelection=GeneralPreferences.getInstance().getBoolValue("history.trackSelection");
 		SavedUndoStackSize = 0;
+		resetTouched();
+	}
+	private void resetTouched()
+	{
+		touchedNodes = new BitSet();
+		touchedEdges = new BitSet();
+		touchedSubgraphs = new BitSet();
+		touchedTypes = 0;
+		touchedSelection = false;
+	}
+	/**
+	 * Remember the elements modified by a message, they belong to the next action
+	 * @param m
+	 */
+	private void touch(GraphMessage m)
+	{
+		int type = m.getModifiedElementTypes();
+		if ((type==GraphConstraints.SELECTION)&&(!trackSelection))
+			return; //Selection is copied to lastGraph anyway
+		if ((type&GraphConstraints.SELECTION)==GraphConstraints.SELECTION)
+			touchedSelection = true;
+		if (m instanceof GraphBatchMessage)
+		{
+			GraphBatchMessage bm = (GraphBatchMessage)m;
+			touchedNodes.or(bm.getNodes());
+			touchedEdges.or(bm.getEdges());
+			touchedEdges.or(bm.getHyperEdges());
+			touchedSubgraphs.or(bm.getSubgraphs());
+			if (bm.isComplete())
+				return;
+		}
+		else if (m.getElementID() > 0)
+		{
+			switch(type)
+			{
+				case GraphConstraints.NODE: touchedNodes.set(m.getElementID()); return;
+				case GraphConstraints.EDGE:
+				case GraphConstraints.HYPEREDGE: touchedEdges.set(m.getElementID()); return;
+				case GraphConstraints.SUBGRAPH: touchedSubgraphs.set(m.getElementID()); return;
+				default: break;
+			}
+		}
+		//Changes of the selection only touch the selected elements, other changes touch all elements of their types
+		if ((type&GraphConstraints.SELECTION)==GraphConstraints.SELECTION)
+			return;
+		touchedTypes |= type&(GraphConstraints.NODE|GraphConstraints.EDGE|GraphConstraints.HYPEREDGE|GraphConstraints.SUBGRAPH);
+		if ((type&(GraphConstraints.DIRECTION|GraphConstraints.LOOPS|GraphConstraints.MULTIPLE))!=0)
+			touchedTypes |= GraphConstraints.EDGE;
+	}
+	/**
+	 * Create the action for all elements touched since the last action, including the edges
+	 * incident to touched nodes, and update these elements in lastGraph
+	 * @param Itemchange true if elements changed, false if only the selection changed
+	 * @return the action or null if nothing was touched
+	 */
+	private CommonGraphAction createDeltaAction(boolean Itemchange)
+	{
+		GraphDeltaAction.touchAll(trackedGraph, touchedTypes, touchedNodes, touchedEdges, touchedSubgraphs);
+		GraphDeltaAction.touchAll(lastGraph, touchedTypes, touchedNodes, touchedEdges, touchedSubgraphs);
+		if (touchedSelection)
+		{
+			GraphDeltaAction.touchSelection(trackedGraph, touchedNodes, touchedEdges);
+			GraphDeltaAction.touchSelection(lastGraph, touchedNodes, touchedEdges);
+			if (Itemchange) //Elements might be removed or added without beeing selected
+			{
+				GraphDeltaAction.touchExistence(trackedGraph, lastGraph, touchedNodes, touchedEdges);
+				GraphDeltaAction.touchExistence(lastGraph, trackedGraph, touchedNodes, touchedEdges);
+			}
+		}
+		if (Itemchange)
+		{
+			GraphDeltaAction.touchIncident(trackedGraph, touchedNodes, touchedEdges);
+			GraphDeltaAction.touchIncident(lastGraph, touchedNodes, touchedEdges);
+		}
+		GraphDeltaAction act;
+		try
+		{
+			act = new GraphDeltaAction(lastGraph, touchedNodes, touchedEdges, touchedSubgraphs, Itemchange);
+		}
+		catch (GraphActionException e)
+		{
+			main.DEBUG.println(main.DEBUG.MIDDLE,"Handling an action for the touched elements failed:"+e.getMessage());
+			return null;
+		}
+		resetTouched();
+		if (act.isEmpty())
+			return null;
+		act.copyTouched(trackedGraph, lastGraph);
+		return act;
 	}
 	/**
 	 * Create an Action based on the message, that came from the Graph,
@@ -82,131 +186,60 @@ public class CommonGraphHistoryManager implements Observer
 	 */
 	protected CommonGraphAction handleSingleAction(GraphMessage m)
 	{
-		int action = 0;
-		//Check, which Graph contains the Information for the information, we need to create an Action
-		VGraphInterface InformationalGraph; //which Graph provides information for the action?
 		switch(m.getModification()&(GraphConstraints.ACTIONMASK)) //Action must be status updates only (neither part nor block info
-		{	case GraphConstraints.ADDITION: //Node added, Create action and modify lastgraph
-				action = GraphConstraints.ADDITION;
-				InformationalGraph = trackedGraph; //get Information from actual Graph;
-				break;
+		{
+			case GraphConstraints.ADDITION:
 			case GraphConstraints.REMOVAL:
-				action = GraphConstraints.REMOVAL;
-				InformationalGraph = lastGraph; //Information of the deleted Node must be taken from last status
-				break;
 			case GraphConstraints.INDEXCHANGED:
 			case GraphConstraints.UPDATE:
 			case GraphConstraints.TRANSLATION:
-				action = GraphConstraints.UPDATE;
-				InformationalGraph = lastGraph;
-				break;
+				//The element of the message is touched, so the action contains it
+				return createDeltaAction(true);
 			default: //not suitable action
 				return null;
-		}		
-		CommonGraphAction act = null;
-		if (m.getModifiedElementTypes()==GraphConstraints.NODE) //Action on unique node
-		{
-			try { 
-				if (InformationalGraph.getType()==VGraphInterface.GRAPH)	//TODO: Optimize temp.clone();
-					act = new GraphAction(((VGraph)InformationalGraph).modifyNodes.get(m.getElementID()).clone(),action,((VGraph)InformationalGraph).clone()); 
-				else if (InformationalGraph.getType()==VGraphInterface.HYPERGRAPH)	//TODO: Optimize temp.clone();
-					act = new HyperGraphAction(((VHyperGraph)InformationalGraph).modifyNodes.get(m.getElementID()).clone(),action,((VHyperGraph)InformationalGraph).clone()); 
-				else
-					act=null;
-			}
-			catch (GraphActionException e)
-			{
-				act=null;
-				main.DEBUG.println(main.DEBUG.MIDDLE,"Handling single action for Node (#"+m.getElementID()+") failed with action ("+action+"); Message:"+e.getMessage());
-			}
-		} //End Handling Node
-		else if (m.getModifiedElementTypes()==GraphConstraints.EDGE) //Change on Unique Edge
-		{
-			try { 
-				if (InformationalGraph.getType()!=VGraphInterface.GRAPH)
-					act = null;
-				//TODO: Optimize Environment Graph
-				act = new GraphAction(((VGraph)InformationalGraph).modifyEdges.get(m.getElementID()).clone(),action,((VGraph)InformationalGraph).clone());
-			}
-			catch (GraphActionException e2)
-			{
-				act=null; 
-				main.DEBUG.println(main.DEBUG.MIDDLE, "Handling single action for edge (#"+m.getElementID()+")failed:"+e2.getMessage());
-			}
 		}
-		else if (m.getModifiedElementTypes()==GraphConstraints.HYPEREDGE) //Change on Unique HyperEdge
-		{
-			try { 
-				if (InformationalGraph.getType()!=VGraphInterface.HYPERGRAPH)
-					act = null;
-				//TODO: Optimize Environment Graph
-				act = new HyperGraphAction(((VHyperGraph)InformationalGraph).modifyHyperEdges.get(m.getElementID()).clone(),action,((VHyperGraph)InformationalGraph).clone());
-			}
-			catch (GraphActionException e2)
-			{
-				act=null; 
-				main.DEBUG.println(main.DEBUG.MIDDLE,"Handling single action for hyperedge (#"+m.getElementID()+" failed:"+e2.getMessage());
-			}
-		}
-		else if (m.getModifiedElementTypes()==GraphConstraints.SUBGRAPH)
-		{
-			try { 
-				if (InformationalGraph.getType()==VGraphInterface.GRAPH)	//TODO: Optimize temp.clone();
-					act = new GraphAction(((VGraph)InformationalGraph).modifySubgraphs.get(m.getElementID()).clone(),action,((VGraph)InformationalGraph).getMathGraph().modifySubgraphs.get(m.getElementID()).clone()); 
-				else if (InformationalGraph.getType()==VGraphInterface.HYPERGRAPH)	//TODO: Optimize temp.clone();
-					act = new HyperGraphAction(((VHyperGraph)InformationalGraph).modifySubgraphs.get(m.getElementID()).clone(),action,((VHyperGraph)InformationalGraph).getMathGraph().modifySubgraphs.get(m.getElementID()).clone()); 
-				else
-					return null;
-			}
-			catch (GraphActionException e2)
-			{
-				act=null; 
-				main.DEBUG.println(main.DEBUG.MIDDLE, "Handling single action for subgraph (#"+m.getElementID()+") failed:"+e2.getMessage());
-			}	
-		}
-		return act;
 	}
 	/**
 	 * Updates the last Graph to the Selection of the tracked Graph
-	 *
+	 * Only the elements selected in one of both graphs may differ, so only these are updated
 	 */
 	private void updateLastSelection()
 	{
-		Iterator<VNode> ni;
-		VNodeSet lastNodeSet;
+		BitSet nodes = new BitSet(), edges = new BitSet();
+		GraphDeltaAction.touchSelection(trackedGraph, nodes, edges);
+		GraphDeltaAction.touchSelection(lastGraph, nodes, edges);
+		VNodeSet trackedNodeSet, lastNodeSet;
 		if (trackedGraph.getType()==VGraphInterface.GRAPH)
 		{
-			Iterator<VEdge> ei = ((VGraph)trackedGraph).modifyEdges.getIterator();
-			while (ei.hasNext())
+			for (int i=edges.nextSetBit(0); i>=0; i=edges.nextSetBit(i+1))
 			{
-				VEdge e = ei.next();
-				VEdge e2 = ((VGraph)lastGraph).modifyEdges.get(e.getIndex());
-				if (e2!=null)
+				VEdge e = ((VGraph)trackedGraph).modifyEdges.get(i);
+				VEdge e2 = ((VGraph)lastGraph).modifyEdges.get(i);
+				if ((e!=null)&&(e2!=null))
 					e2.setSelectedStatus(e.getSelectedStatus());
 			}
-			ni = ((VGraph)trackedGraph).modifyNodes.getIterator();
+			trackedNodeSet = ((VGraph)trackedGraph).modifyNodes;
 			lastNodeSet = ((VGraph)lastGraph).modifyNodes;
 		}
 		else if (trackedGraph.getType()==VGraphInterface.HYPERGRAPH)
 		{
-			Iterator<VHyperEdge> ei = ((VHyperGraph)trackedGraph).modifyHyperEdges.getIterator();
-			while (ei.hasNext())
+			for (int i=edges.nextSetBit(0); i>=0; i=edges.nextSetBit(i+1))
 			{
-				VHyperEdge e = ei.next();
-				VHyperEdge e2 = ((VHyperGraph)lastGraph).modifyHyperEdges.get(e.getIndex());
-				if (e2!=null)
+				VHyperEdge e = ((VHyperGraph)trackedGraph).modifyHyperEdges.get(i);
+				VHyperEdge e2 = ((VHyperGraph)lastGraph).modifyHyperEdges.get(i);
+				if ((e!=null)&&(e2!=null))
 					e2.setSelectedStatus(e.getSelectedStatus());
 			}
-			ni = ((VHyperGraph)trackedGraph).modifyNodes.getIterator();
+			trackedNodeSet = ((VHyperGraph)trackedGraph).modifyNodes;
 			lastNodeSet = ((VHyperGraph)lastGraph).modifyNodes;
 		}
 		else
 			return;
-		while (ni.hasNext())
+		for (int i=nodes.nextSetBit(0); i>=0; i=nodes.nextSetBit(i+1))
 		{
-			VNode n = ni.next();
-			VNode n2 = lastNodeSet.get(n.getIndex());
-			if (n2!=null)
+			VNode n = trackedNodeSet.get(i);
+			VNode n2 = lastNodeSet.get(i);
+			if ((n!=null)&&(n2!=null))
 				n2.setSelectedStatus(n.getSelectedStatus());
 		}
 	}
@@ -221,37 +254,125 @@ public class CommonGraphHistoryManager implements Observer
 		CommonGraphAction act = null;
 		if (m.getElementID() > 0) //Message for single stuff thats not just selection
 			act = handleSingleAction(m);
-		else //multiple modifications, up to know just a replace */
-		{
-			//Last status in action - and yes there was an Change in the items
-			try {						
-				//New Action, that tracks the graph or only the selection
-				if (lastGraph.getType()==VGraphInterface.GRAPH)
-					act = new GraphAction((VGraph)lastGraph, GraphConstraints.UPDATE, m.getModifiedElementTypes()!=GraphConstraints.SELECTION); 
-				else if (lastGraph.getType()==VGraphInterface.HYPERGRAPH)
-					act = new HyperGraphAction((VHyperGraph)lastGraph, GraphConstraints.UPDATE, m.getModifiedElementTypes()!=GraphConstraints.SELECTION); 
-				else
-					throw new GraphActionException("Unknown Graph Type");
-			}
-			catch (GraphActionException e)
-			{
-				act=null; 
-				main.DEBUG.println(main.DEBUG.MIDDLE,"Handling an acion for the graph failed:"+e.getMessage());				
-			}
-		}
+		else //multiple modifications, the action contains all elements touched since the last action
+			act = createDeltaAction(m.getModifiedElementTypes()!=GraphConstraints.SELECTION);
 	
 		if (act==null)
 			return;
-		clonetrackedGraph();
-		if (!RedoStack.isEmpty())
-			RedoStack.clear();
+		pushAction(act);
+	}
+	/**
+	 * Put a new action on the UndoStack, this clears the RedoStack
+	 * and removes the oldest action, if the UndoStack is full
+	 * @param act
+	 */
+	protected void pushAction(CommonGraphAction act)
+	{
+		while (!RedoStack.isEmpty())
+			discard(RedoStack.remove());
 		if (UndoStack.size()>=stacksize)
 		{	//Now it can't get Unchanged by Undo
 			SavedUndoStackSize--;
-			UndoStack.remove();
+			discard(UndoStack.remove());
 		}
 		UndoStack.add(act);
+		limitMemory();
+	}
+	/**
+	 * Free the resources of an action removed from the stacks
+	 * @param act
+	 */
+	protected void discard(CommonGraphAction act)
+	{
+		if (act instanceof GraphDeltaAction)
+			((GraphDeltaAction)act).discard();
+	}
+	/**
+	 * Reduce the memory used by the actions on both stacks until it is at most memorysize.
+	 * The oldest actions are packed and swapped first, the newest of each stack only if that is not enough.
+	 * Actions are removed only if even all packed actions exceed the limit
+	 */
+	private void limitMemory()
+	{
+		long used = getMemoryUsage();
+		if ((memorysize<=0)||(used<=memorysize)) //0 for no limit
+			return;
+		//Oldest first
+		LinkedList<GraphDeltaAction> old = new LinkedList<GraphDeltaAction>();
+		LinkedList<GraphDeltaAction> newest = new LinkedList<GraphDeltaAction>();
+		for (int i=0; i<UndoStack.size(); i++)
+			if (UndoStack.get(i) instanceof GraphDeltaAction)
+				((i<UndoStack.size()-1) ? old : newest).add((GraphDeltaAction)UndoStack.get(i));
+		for (int i=0; i<RedoStack.size(); i++)
+			if (RedoStack.get(i) instanceof GraphDeltaAction)
+				((i<RedoStack.size()-1) ? old : newest).add((GraphDeltaAction)RedoStack.get(i));
+		used = reduceMemory(old, used);
+		used = reduceMemory(newest, used);
+		while ((used>memorysize)&&(UndoStack.size()>1))
+		{	//Now it can't get Unchanged by Undo
+			SavedUndoStackSize--;
+			CommonGraphAction act = UndoStack.remove();
+			used -= getMemoryUsage(act);
+			discard(act);
+		}
+		while ((used>memorysize)&&(RedoStack.size()>1))
+		{
+			CommonGraphAction act = RedoStack.remove();
+			used -= getMemoryUsage(act);
+			discard(act);
+		}
+	}
+	/**
+	 * Pack and, if enabled, swap the given actions in their order, until the used memory is at most memorysize
+	 * @param actions
+	 * @param used memory used before
+	 * @return memory used afterwards
+	 */
+	private long reduceMemory(LinkedList<GraphDeltaAction> actions, long used)
+	{
+		Iterator<GraphDeltaAction> iter = actions.iterator();
+		while (iter.hasNext()&&(used>memorysize))
+		{
+			GraphDeltaAction act = iter.next();
+			used -= act.getMemoryUsage();
+			try
+			{
+				act.pack();
+			}
+			catch (IOException e)
+			{
+				main.DEBUG.println(main.DEBUG.MIDDLE,"Packing an Action of the history failed: "+e.getMessage());
+			}
+			used += act.getMemoryUsage();
+		}
+		if (!swapToFile)
+			return used;
+		iter = actions.iterator();
+		while (iter.hasNext()&&(used>memorysize))
+		{
+			GraphDeltaAction act = iter.next();
+			used -= act.getMemoryUsage();
+			try
+			{
+				act.swap();
+			}
+			catch (IOException e)
+			{
+				main.DEBUG.println(main.DEBUG.MIDDLE,"Swapping an Action of the history to a file failed: "+e.getMessage());
+			}
+			used += act.getMemoryUsage();
+		}
+		return used;
 	}
+	private long getMemoryUsage(CommonGraphAction act)
+	{
+		if (act instanceof GraphDeltaAction)
+			return ((GraphDeltaAction)act).getMemoryUsage();
+		return 0;
+	}
+	/**
+	 * Set lastGraph to a copy of the tracked graph, this is only needed, if the graph is replaced completely
+	 */
 	protected void clonetrackedGraph()
 	{
 		if (lastGraph.getType()==VGraphInterface.GRAPH)
@@ -259,26 +380,39 @@ public class CommonGraphHistoryManager implements Observer
 		else if (lastGraph.getType()==VGraphInterface.HYPERGRAPH)
 			lastGraph = ((VHyperGraph)trackedGraph).clone(); //Actual status as last status.clone
 	}
+	/**
+	 * Update the elements in lastGraph that were changed by undoing or redoing an action
+	 * @param act the action
+	 */
+	private void updateLastGraph(CommonGraphAction act)
+	{
+		if (act instanceof GraphDeltaAction)
+			((GraphDeltaAction)act).copyTouched(trackedGraph, lastGraph);
+		else
+		{
+			if (act instanceof HyperEdgeShapeAction)
+				touchedEdges.set(((HyperEdgeShapeAction)act).VHEdgeRef.getIndex());
+			updateLastGraph();
+		}
+	}
+	/**
+	 * Update all elements touched since the last action in lastGraph without creating an action
+	 * e.g. if an action was created in another way
+	 */
+	protected void updateLastGraph()
+	{
+		createDeltaAction(true);
+	}
 	/**
 	 * (De)Activate Observation and with that the acvitiy of the History-Manager itself
 	 * @param observing true if it should be set to active, else false
 	 */
 	public void setObservation(boolean observing)
 	{
-		if (lastGraph.getType()==VGraphInterface.GRAPH)
-		{
-			if (observing)
-				((VGraph)trackedGraph).addObserver(this);
-			else
-				((VGraph)trackedGraph).deleteObserver(this);
-		}
-		else if (lastGraph.getType()==VGraphInterface.HYPERGRAPH)
-		{
-			if (observing)
-				((VHyperGraph)trackedGraph).addObserver(this);
-			else
-				((VHyperGraph)trackedGraph).deleteObserver(this);
-		}
+		if (observing)
+			trackedGraph.addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
+		else
+			trackedGraph.removeGraphMessageListener(this);
 	}
 	/**
 	 * Indicates, whether an undo is possible or not
@@ -301,15 +435,16 @@ public class CommonGraphHistoryManager implements Observer
 		CommonGraphAction LastAction = UndoStack.removeLast();
 		try{
 			LastAction.UnDoAction(trackedGraph);
-			clonetrackedGraph();
+			updateLastGraph(LastAction);
 		}
 		catch (GraphActionException e)
 		{
 			main.DEBUG.println(main.DEBUG.MIDDLE,"An Error Occured while Undoing an Action "+e.getMessage());
 		}
 		if (RedoStack.size()>=stacksize)
-			RedoStack.remove();
+			discard(RedoStack.remove());
 		RedoStack.add(LastAction);
+		limitMemory();
 		setObservation(true); //Activate Tracking again
 	}
 	/**
@@ -333,7 +468,7 @@ public class CommonGraphHistoryManager implements Observer
 		CommonGraphAction LastAction = RedoStack.removeLast();
 		try{
 			LastAction.redoAction(trackedGraph);
-			clonetrackedGraph();
+			updateLastGraph(LastAction);
 		}
 		catch (GraphActionException e)
 		{
@@ -342,9 +477,10 @@ public class CommonGraphHistoryManager implements Observer
 		if (UndoStack.size()>=stacksize)
 		{	
 			SavedUndoStackSize--;
-			UndoStack.remove();
+			discard(UndoStack.remove());
 		}
 		UndoStack.add(LastAction);
+		limitMemory();
 		setObservation(true); //Activate Tracking again
 	}
 	/**
@@ -392,12 +528,60 @@ public class CommonGraphHistoryManager implements Observer
 	{
 		return stacksize;
 	}
+	/**
+	 * get the maximum memory the actions of Undo- and RedoStack may use.
+	 * Like the size of the stacks it is set by the GeneralPreferences and gets active on a new graph
+	 *
+	 * @return the limit in bytes
+	 */
+	public long getMemoryLimit()
+	{
+		return memorysize;
+	}
+	/**
+	 * get the (estimated) memory used by the actions on Undo- and RedoStack at the moment,
+	 * packed actions count with the size of their binary form, swapped actions not at all
+	 *
+	 * @return the memory in bytes
+	 */
+	public long getMemoryUsage()
+	{
+		long used = 0;
+		Iterator<CommonGraphAction> iter = UndoStack.iterator();
+		while (iter.hasNext())
+			used += getMemoryUsage(iter.next());
+		iter = RedoStack.iterator();
+		while (iter.hasNext())
+			used += getMemoryUsage(iter.next());
+		return used;
+	}
+	/**
+	 * get the number of bytes the swapped actions of Undo- and RedoStack use in their temporary files
+	 *
+	 * @return the size in bytes
+	 */
+	public long getSwappedSize()
+	{
+		long swapped = 0;
+		Iterator<CommonGraphAction> iter = UndoStack.iterator();
+		while (iter.hasNext())
+		{
+			CommonGraphAction act = iter.next();
+			if (act instanceof GraphDeltaAction)
+				swapped += ((GraphDeltaAction)act).getSwappedSize();
+		}
+		iter = RedoStack.iterator();
+		while (iter.hasNext())
+		{
+			CommonGraphAction act = iter.next();
+			if (act instanceof GraphDeltaAction)
+				swapped += ((GraphDeltaAction)act).getSwappedSize();
+		}
+		return swapped;
+	}
 
-	public void update(Observable o, Object arg)
+	public void handleGraphMessage(GraphMessage m)
 	{
-		GraphMessage m = (GraphMessage)arg;
-		if (m==null)
-			return;
 		if ((m.getModification()&GraphConstraints.HISTORY)>0) //Ignore them, they'Re from us 
 			return;
 		//Complete Replacement of Graphor Hypergraph Handling (Happens when loading a new graph
@@ -409,6 +593,7 @@ public class CommonGraphHistoryManager implements Observer
 				CommonInitialization();
 				return;
 		}
+		touch(m);
 		if ((m.getModifiedElementTypes()==GraphConstraints.SELECTION)&&(!trackSelection))
 		{ //Reine Selection Veränderung, aber wir verfolgen sowas nicht -> Update LastGraph
 			if (active) //not every update but on ends of blocks
@@ -0,0 +1,869 @@
+package history;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import model.*;
+import model.Messages.GraphConstraints;
+import model.Messages.GraphMessage;
+/**
+ * GraphDeltaAction represents one action on a VGraph or VHyperGraph by the state of
+ * the elements it touched. The touched elements (nodes, edges or hyperedges and subgraphs) are given by their indices,
+ * for these elements the state of the graph before the action is stored:
+ * - the visual and mathematical element, or nothing, if the element did not exist
+ * - the subgraphs each node and (hyper)edge belonged to
+ * - whether the graph was directed and allowed loops or multiple edges
+ *
+ * A Selection change only stores the selection status of the touched nodes and (hyper)edges.
+ *
+ * Undo and redo both exchange the stored state with the actual state of the touched elements in the graph,
+ * so like the replace in GraphAction the action is its own undo. Only the touched elements are copied,
+ * so neither the action nor its undo or redo needs a copy of the whole graph
+ *
+ * To save memory an older action may be packed, that is its state is kept only in a compressed binary form
+ * (see GraphElementCodec), and even swapped to a temporary file. The state is unpacked again, when the action
+ * is undone or redone.
+ *
+ * @author Ronny Bergmann
+ * @since 0.4
+ */
+public class GraphDeltaAction extends CommonGraphAction {
+
+	//Rough heap sizes in bytes of the stored elements, including their map entries
+	private static final int NODE_SIZE = 256, EDGE_SIZE = 384, HYPEREDGE_SIZE = 448, SUBGRAPH_SIZE = 160,
+		POINT_SIZE = 40, NURBS_POINT_SIZE = 128, SELECTION_SIZE = 64;
+
+	private BitSet nodes, edges, subgraphs;
+	private int graphType;
+	private State stored;
+	//The stored state, if the action is packed, in memory or in a file
+	private byte[] packed;
+	private File swapFile;
+	private long size, swapSize;
+	/**
+	 * Create a new Action for the touched Elements of a graph
+	 *
+	 * @param before Graph containing the touched elements as they were before the action
+	 * @param n indices of the touched nodes
+	 * @param e indices of the touched edges or hyperedges
+	 * @param s indices of the touched subgraphs
+	 * @param Itemchange Indicator for the change happened: True if an Node/Edge/Subgraph was changed, false if only selection was changed
+	 * @throws GraphActionException
+	 */
+	public GraphDeltaAction(VGraphInterface before, BitSet n, BitSet e, BitSet s, boolean Itemchange) throws GraphActionException
+	{
+		if ((before==null)||(n==null)||(e==null)||(s==null))
+			throw new GraphActionException("Could not Create Action: Graph and touched Elements must not be null.");
+		if ((before.getType()!=VGraphInterface.GRAPH)&&(before.getType()!=VGraphInterface.HYPERGRAPH))
+			throw new GraphActionException("Could not Create Action: Graphtype unknown.");
+		nodes = n;
+		edges = e;
+		subgraphs = s;
+		Action = GraphConstraints.UPDATE;
+		if (!Itemchange)
+			Objecttype = GraphConstraints.SELECTION;
+		else if (before.getType()==VGraphInterface.GRAPH)
+			Objecttype = GraphConstraints.GRAPH;
+		else
+			Objecttype = GraphConstraints.HYPERGRAPH;
+		graphType = before.getType();
+		stored = new State(before);
+		size = stored.estimateSize();
+		ActionObject = stored;
+	}
+	/**
+	 * Indicates, whether this action touched any element at all
+	 * @return true, if no element was touched
+	 */
+	public boolean isEmpty()
+	{
+		return nodes.isEmpty()&&edges.isEmpty()&&subgraphs.isEmpty();
+	}
+	/**
+	 * Copy the state of all elements touched by this action from one graph to another
+	 * e.g. to update a copy of the graph after this action was undone or redone
+	 * @param from graph the elements are taken from
+	 * @param to graph the elements are set in
+	 */
+	public void copyTouched(VGraphInterface from, VGraphInterface to)
+	{
+		if ((from.getType()!=to.getType())||(from.getType()!=graphType))
+			return;
+		new State(from).setIn(to);
+	}
+	/**
+	 * Get the (estimated) number of bytes this action uses in memory.
+	 * A packed action needs the size of its binary form, a swapped one nearly nothing
+	 * @return the size in bytes
+	 */
+	public long getMemoryUsage()
+	{
+		if (stored!=null)
+			return size;
+		if (packed!=null)
+			return packed.length;
+		return 0;
+	}
+	/**
+	 * Get the number of bytes this action uses in its temporary file
+	 * @return the size in bytes or 0 if the action is not swapped
+	 */
+	public long getSwappedSize()
+	{
+		return swapSize;
+	}
+	/**
+	 * Indicates whether the state of this action is only available in its binary form
+	 * @return true, if the action is packed or swapped
+	 */
+	public boolean isPacked()
+	{
+		return stored==null;
+	}
+	/**
+	 * Indicates whether the state of this action is stored in a temporary file
+	 * @return true, if the action is swapped
+	 */
+	public boolean isSwapped()
+	{
+		return swapFile!=null;
+	}
+	/**
+	 * Keep the stored state only in its compressed binary form
+	 * @throws IOException
+	 */
+	public void pack() throws IOException
+	{
+		if (stored==null)
+			return;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes));
+		stored.write(out);
+		out.close();
+		packed = bytes.toByteArray();
+		stored = null;
+		ActionObject = null;
+	}
+	/**
+	 * Pack the action and move its binary form to a temporary file
+	 * @throws IOException
+	 */
+	public void swap() throws IOException
+	{
+		pack();
+		if (swapFile!=null)
+			return;
+		File f = File.createTempFile("gravelhistory", ".bin");
+		f.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(f);
+		try
+		{
+			out.write(packed);
+		}
+		finally {out.close();}
+		swapFile = f;
+		swapSize = packed.length;
+		packed = null;
+	}
+	/**
+	 * Get the stored state back from its binary form
+	 * @throws GraphActionException if the binary form could not be read
+	 */
+	private void unpack() throws GraphActionException
+	{
+		if (stored!=null)
+			return;
+		try
+		{
+			InputStream source;
+			if (swapFile!=null)
+				source = new BufferedInputStream(new FileInputStream(swapFile));
+			else
+				source = new ByteArrayInputStream(packed);
+			DataInputStream in = new DataInputStream(new InflaterInputStream(source));
+			try
+			{
+				stored = new State(in);
+			}
+			finally {in.close();}
+		}
+		catch (IOException e)
+		{
+			throw new GraphActionException("Could not read the packed Action: "+e.getMessage());
+		}
+		discard();
+		size = stored.estimateSize();
+		ActionObject = stored;
+	}
+	/**
+	 * Free the binary form and delete the temporary file of this action, if it has one.
+	 * This should be called, when an action is removed from the history without beeing unpacked
+	 */
+	public void discard()
+	{
+		if (swapFile!=null)
+			swapFile.delete();
+		swapFile = null;
+		swapSize = 0;
+		packed = null;
+	}
+	/**
+	 * Exchange the stored state with the state of the touched elements in the graph
+	 * @param graph
+	 * @return the graph
+	 * @throws GraphActionException
+	 */
+	private VGraphInterface exchange(VGraphInterface graph) throws GraphActionException
+	{
+		if (graph.getType()!=graphType)
+			throw new GraphActionException("Can't exchange the Elements: Wrong Type of Graph");
+		unpack();
+		State actual = new State(graph);
+		stored.setIn(graph);
+		stored = actual;
+		size = stored.estimateSize();
+		ActionObject = stored;
+		int type = 0;
+		if (!nodes.isEmpty())
+			type |= GraphConstraints.NODE;
+		if (!edges.isEmpty())
+			type |= (graph.getType()==VGraphInterface.GRAPH) ? GraphConstraints.EDGE : GraphConstraints.HYPEREDGE;
+		if (!subgraphs.isEmpty())
+			type |= GraphConstraints.SUBGRAPH;
+		if (Objecttype==GraphConstraints.SELECTION)
+			type = GraphConstraints.SELECTION;
+		graph.pushNotify(new GraphMessage(type, GraphConstraints.UPDATE|GraphConstraints.HISTORY, GraphConstraints.ELEMENT_MASK));
+		return graph;
+	}
+
+	public VGraphInterface redoAction(VGraphInterface graph) throws GraphActionException
+	{
+		return exchange(graph);
+	}
+
+	public VGraphInterface UnDoAction(VGraphInterface graph) throws GraphActionException
+	{
+		return exchange(graph);
+	}
+
+	protected VGraphInterface doReplace(VGraphInterface graph) throws GraphActionException
+	{
+		return exchange(graph);
+	}
+
+	protected VGraphInterface doCreate(VGraphInterface graph) throws GraphActionException
+	{
+		throw new GraphActionException("Can't doCreate() on a delta of elements, use redo or undo");
+	}
+
+	protected VGraphInterface doDelete(VGraphInterface graph) throws GraphActionException
+	{
+		throw new GraphActionException("Can't doDelete() on a delta of elements, use redo or undo");
+	}
+	/**
+	 * Mark all elements of the given types, that exist in the graph, as touched
+	 * @param g graph
+	 * @param types NODE, EDGE, HYPEREDGE and SUBGRAPH may be combined
+	 * @param n touched nodes
+	 * @param e touched edges or hyperedges
+	 * @param s touched subgraphs
+	 */
+	static void touchAll(VGraphInterface g, int types, BitSet n, BitSet e, BitSet s)
+	{
+		VNodeSet vNodes;
+		VSubgraphSet vSubgraphs;
+		if (g.getType()==VGraphInterface.GRAPH)
+		{
+			vNodes = ((VGraph)g).modifyNodes; vSubgraphs = ((VGraph)g).modifySubgraphs;
+			if ((types&GraphConstraints.EDGE)==GraphConstraints.EDGE)
+			{
+				Iterator<VEdge> ei = ((VGraph)g).modifyEdges.getIterator();
+				while (ei.hasNext())
+					e.set(ei.next().getIndex());
+			}
+		}
+		else if (g.getType()==VGraphInterface.HYPERGRAPH)
+		{
+			vNodes = ((VHyperGraph)g).modifyNodes; vSubgraphs = ((VHyperGraph)g).modifySubgraphs;
+			if ((types&GraphConstraints.HYPEREDGE)==GraphConstraints.HYPEREDGE)
+			{
+				Iterator<VHyperEdge> ei = ((VHyperGraph)g).modifyHyperEdges.getIterator();
+				while (ei.hasNext())
+					e.set(ei.next().getIndex());
+			}
+		}
+		else
+			return;
+		if ((types&GraphConstraints.NODE)==GraphConstraints.NODE)
+		{
+			Iterator<VNode> ni = vNodes.getIterator();
+			while (ni.hasNext())
+				n.set(ni.next().getIndex());
+		}
+		if ((types&GraphConstraints.SUBGRAPH)==GraphConstraints.SUBGRAPH)
+		{
+			Iterator<VSubgraph> si = vSubgraphs.getIterator();
+			while (si.hasNext())
+				s.set(si.next().getIndex());
+		}
+	}
+	/**
+	 * Mark all selected nodes and edges or hyperedges of the graph as touched
+	 * @param g graph
+	 * @param n touched nodes
+	 * @param e touched edges or hyperedges
+	 */
+	static void touchSelection(VGraphInterface g, BitSet n, BitSet e)
+	{
+		Iterator<VNode> ni;
+		if (g.getType()==VGraphInterface.GRAPH)
+		{
+			ni = ((VGraph)g).modifyNodes.getSelectedIterator();
+			Iterator<VEdge> ei = ((VGraph)g).modifyEdges.getSelectedIterator();
+			while (ei.hasNext())
+				e.set(ei.next().getIndex());
+		}
+		else if (g.getType()==VGraphInterface.HYPERGRAPH)
+		{
+			ni = ((VHyperGraph)g).modifyNodes.getSelectedIterator();
+			Iterator<VHyperEdge> ei = ((VHyperGraph)g).modifyHyperEdges.getSelectedIterator();
+			while (ei.hasNext())
+				e.set(ei.next().getIndex());
+		}
+		else
+			return;
+		while (ni.hasNext())
+			n.set(ni.next().getIndex());
+	}
+	/**
+	 * Mark all nodes and edges or hyperedges that exist in the first but not in the second graph as touched
+	 * @param g first graph
+	 * @param other second graph
+	 * @param n touched nodes
+	 * @param e touched edges or hyperedges
+	 */
+	static void touchExistence(VGraphInterface g, VGraphInterface other, BitSet n, BitSet e)
+	{
+		if (g.getType()!=other.getType())
+			return;
+		VNodeSet vNodes, otherNodes;
+		if (g.getType()==VGraphInterface.GRAPH)
+		{
+			vNodes = ((VGraph)g).modifyNodes; otherNodes = ((VGraph)other).modifyNodes;
+			Iterator<VEdge> ei = ((VGraph)g).modifyEdges.getIterator();
+			while (ei.hasNext())
+			{
+				int i = ei.next().getIndex();
+				if (((VGraph)other).modifyEdges.get(i)==null)
+					e.set(i);
+			}
+		}
+		else if (g.getType()==VGraphInterface.HYPERGRAPH)
+		{
+			vNodes = ((VHyperGraph)g).modifyNodes; otherNodes = ((VHyperGraph)other).modifyNodes;
+			Iterator<VHyperEdge> ei = ((VHyperGraph)g).modifyHyperEdges.getIterator();
+			while (ei.hasNext())
+			{
+				int i = ei.next().getIndex();
+				if (((VHyperGraph)other).modifyHyperEdges.get(i)==null)
+					e.set(i);
+			}
+		}
+		else
+			return;
+		Iterator<VNode> ni = vNodes.getIterator();
+		while (ni.hasNext())
+		{
+			int i = ni.next().getIndex();
+			if (otherNodes.get(i)==null)
+				n.set(i);
+		}
+	}
+	/**
+	 * Mark all edges or hyperedges incident to a touched node as touched,
+	 * because they are changed or removed together with the node
+	 * @param g graph
+	 * @param n touched nodes
+	 * @param e touched edges or hyperedges
+	 */
+	static void touchIncident(VGraphInterface g, BitSet n, BitSet e)
+	{
+		for (int i=n.nextSetBit(0); i>=0; i=n.nextSetBit(i+1))
+		{
+			if (g.getType()==VGraphInterface.GRAPH)
+			{
+				MEdgeSet mEdges = ((VGraph)g).getMathGraph().modifyEdges;
+				Iterator<Integer> ii = mEdges.indicesFrom(i).iterator();
+				while (ii.hasNext())
+					e.set(ii.next());
+				ii = mEdges.indicesTo(i).iterator();
+				while (ii.hasNext())
+					e.set(ii.next());
+			}
+			else if (g.getType()==VGraphInterface.HYPERGRAPH)
+			{
+				Iterator<Integer> ii = ((VHyperGraph)g).getMathGraph().modifyHyperEdges.indicesContainingNode(i).iterator();
+				while (ii.hasNext())
+					e.set(ii.next());
+			}
+		}
+	}
+	/**
+	 * The State of all touched elements in a graph
+	 */
+	private class State
+	{
+		int type;
+		boolean directed, loops, multiple;
+		//Elements, an index missing here did not exist
+		HashMap<Integer,VNode> vNodes = new HashMap<Integer,VNode>();
+		HashMap<Integer,MNode> mNodes = new HashMap<Integer,MNode>();
+		HashMap<Integer,VEdge> vEdges = new HashMap<Integer,VEdge>();
+		HashMap<Integer,MEdge> mEdges = new HashMap<Integer,MEdge>();
+		HashMap<Integer,VHyperEdge> vHyperEdges = new HashMap<Integer,VHyperEdge>();
+		HashMap<Integer,MHyperEdge> mHyperEdges = new HashMap<Integer,MHyperEdge>();
+		HashMap<Integer,VSubgraph> vSubgraphs = new HashMap<Integer,VSubgraph>();
+		HashMap<Integer,MSubgraph> mSubgraphs = new HashMap<Integer,MSubgraph>();
+		//Subgraphs each node and (hyper)edge belongs to
+		HashMap<Integer,BitSet> nodeSubgraphs = new HashMap<Integer,BitSet>();
+		HashMap<Integer,BitSet> edgeSubgraphs = new HashMap<Integer,BitSet>();
+		//Selection only
+		HashMap<Integer,Integer> nodeSelection = new HashMap<Integer,Integer>();
+		HashMap<Integer,Integer> edgeSelection = new HashMap<Integer,Integer>();
+
+		State(VGraphInterface g)
+		{
+			type = g.getType();
+			VNodeSet gNodes;
+			MNodeSet gMNodes;
+			MSubgraphSet gMSubgraphs;
+			VSubgraphSet gSubgraphs;
+			if (type==VGraphInterface.GRAPH)
+			{
+				VGraph vg = (VGraph)g;
+				gNodes = vg.modifyNodes; gMNodes = vg.getMathGraph().modifyNodes;
+				gSubgraphs = vg.modifySubgraphs; gMSubgraphs = vg.getMathGraph().modifySubgraphs;
+				directed = vg.getMathGraph().isDirected();
+				loops = vg.getMathGraph().isLoopAllowed();
+				multiple = vg.getMathGraph().isMultipleAllowed();
+				for (int i=edges.nextSetBit(0); i>=0; i=edges.nextSetBit(i+1))
+				{
+					VEdge e = vg.modifyEdges.get(i);
+					if (e==null)
+						continue;
+					if (Objecttype==GraphConstraints.SELECTION)
+						edgeSelection.put(i,e.getSelectedStatus());
+					else
+					{
+						vEdges.put(i,e.clone());
+						mEdges.put(i,vg.getMathGraph().modifyEdges.get(i).clone());
+						edgeSubgraphs.put(i,memberships(gMSubgraphs,i,false));
+					}
+				}
+			}
+			else
+			{
+				VHyperGraph vhg = (VHyperGraph)g;
+				gNodes = vhg.modifyNodes; gMNodes = vhg.getMathGraph().modifyNodes;
+				gSubgraphs = vhg.modifySubgraphs; gMSubgraphs = vhg.getMathGraph().modifySubgraphs;
+				for (int i=edges.nextSetBit(0); i>=0; i=edges.nextSetBit(i+1))
+				{
+					VHyperEdge e = vhg.modifyHyperEdges.get(i);
+					if (e==null)
+						continue;
+					if (Objecttype==GraphConstraints.SELECTION)
+						edgeSelection.put(i,e.getSelectedStatus());
+					else
+					{
+						vHyperEdges.put(i,e.clone());
+						mHyperEdges.put(i,vhg.getMathGraph().modifyHyperEdges.get(i).clone());
+						edgeSubgraphs.put(i,memberships(gMSubgraphs,i,false));
+					}
+				}
+			}
+			for (int i=nodes.nextSetBit(0); i>=0; i=nodes.nextSetBit(i+1))
+			{
+				VNode n = gNodes.get(i);
+				if (n==null)
+					continue;
+				if (Objecttype==GraphConstraints.SELECTION)
+					nodeSelection.put(i,n.getSelectedStatus());
+				else
+				{
+					vNodes.put(i,n.clone());
+					mNodes.put(i,gMNodes.get(i).clone());
+					nodeSubgraphs.put(i,memberships(gMSubgraphs,i,true));
+				}
+			}
+			if (Objecttype==GraphConstraints.SELECTION)
+				return;
+			for (int i=subgraphs.nextSetBit(0); i>=0; i=subgraphs.nextSetBit(i+1))
+			{
+				VSubgraph s = gSubgraphs.get(i);
+				if (s==null)
+					continue;
+				vSubgraphs.put(i,s.clone());
+				mSubgraphs.put(i,gMSubgraphs.get(i).clone());
+			}
+		}
+		/**
+		 * Read a state from its binary form, see write()
+		 * @param in
+		 * @throws IOException
+		 */
+		State(DataInputStream in) throws IOException
+		{
+			type = in.readInt();
+			directed = in.readBoolean();
+			loops = in.readBoolean();
+			multiple = in.readBoolean();
+			int count = in.readInt();
+			for (int i=0; i<count; i++)
+				nodeSelection.put(in.readInt(), in.readInt());
+			count = in.readInt();
+			for (int i=0; i<count; i++)
+				edgeSelection.put(in.readInt(), in.readInt());
+			count = in.readInt();
+			for (int i=0; i<count; i++)
+			{
+				VNode n = GraphElementCodec.readVNode(in);
+				vNodes.put(n.getIndex(), n);
+				mNodes.put(n.getIndex(), GraphElementCodec.readMNode(in, n.getIndex()));
+				nodeSubgraphs.put(n.getIndex(), GraphElementCodec.readBitSet(in));
+			}
+			count = in.readInt();
+			for (int i=0; i<count; i++)
+			{
+				if (type==VGraphInterface.GRAPH)
+				{
+					VEdge e = GraphElementCodec.readVEdge(in);
+					vEdges.put(e.getIndex(), e);
+					mEdges.put(e.getIndex(), GraphElementCodec.readMEdge(in, e.getIndex()));
+					edgeSubgraphs.put(e.getIndex(), GraphElementCodec.readBitSet(in));
+				}
+				else
+				{
+					VHyperEdge e = GraphElementCodec.readVHyperEdge(in);
+					vHyperEdges.put(e.getIndex(), e);
+					mHyperEdges.put(e.getIndex(), GraphElementCodec.readMHyperEdge(in, e.getIndex()));
+					edgeSubgraphs.put(e.getIndex(), GraphElementCodec.readBitSet(in));
+				}
+			}
+			count = in.readInt();
+			for (int i=0; i<count; i++)
+			{
+				VSubgraph s = GraphElementCodec.readVSubgraph(in);
+				vSubgraphs.put(s.getIndex(), s);
+				mSubgraphs.put(s.getIndex(), GraphElementCodec.readMSubgraph(in, s.getIndex()));
+			}
+		}
+		/**
+		 * Write the state in its binary form
+		 * @param out
+		 * @throws IOException
+		 */
+		void write(DataOutputStream out) throws IOException
+		{
+			out.writeInt(type);
+			out.writeBoolean(directed);
+			out.writeBoolean(loops);
+			out.writeBoolean(multiple);
+			writeSelection(out, nodeSelection);
+			writeSelection(out, edgeSelection);
+			out.writeInt(vNodes.size());
+			Iterator<Integer> ii = vNodes.keySet().iterator();
+			while (ii.hasNext())
+			{
+				int i = ii.next();
+				GraphElementCodec.writeVNode(out, vNodes.get(i));
+				GraphElementCodec.writeMNode(out, mNodes.get(i));
+				GraphElementCodec.writeBitSet(out, nodeSubgraphs.get(i));
+			}
+			if (type==VGraphInterface.GRAPH)
+			{
+				out.writeInt(vEdges.size());
+				ii = vEdges.keySet().iterator();
+				while (ii.hasNext())
+				{
+					int i = ii.next();
+					GraphElementCodec.writeVEdge(out, vEdges.get(i));
+					GraphElementCodec.writeMEdge(out, mEdges.get(i));
+					GraphElementCodec.writeBitSet(out, edgeSubgraphs.get(i));
+				}
+			}
+			else
+			{
+				out.writeInt(vHyperEdges.size());
+				ii = vHyperEdges.keySet().iterator();
+				while (ii.hasNext())
+				{
+					int i = ii.next();
+					GraphElementCodec.writeVHyperEdge(out, vHyperEdges.get(i));
+					GraphElementCodec.writeMHyperEdge(out, mHyperEdges.get(i));
+					GraphElementCodec.writeBitSet(out, edgeSubgraphs.get(i));
+				}
+			}
+			out.writeInt(vSubgraphs.size());
+			ii = vSubgraphs.keySet().iterator();
+			while (ii.hasNext())
+			{
+				int i = ii.next();
+				GraphElementCodec.writeVSubgraph(out, vSubgraphs.get(i));
+				GraphElementCodec.writeMSubgraph(out, mSubgraphs.get(i));
+			}
+		}
+		private void writeSelection(DataOutputStream out, HashMap<Integer,Integer> selection) throws IOException
+		{
+			out.writeInt(selection.size());
+			Iterator<Integer> ii = selection.keySet().iterator();
+			while (ii.hasNext())
+			{
+				int i = ii.next();
+				out.writeInt(i);
+				out.writeInt(selection.get(i));
+			}
+		}
+		/**
+		 * Estimate the number of bytes this state uses in memory
+		 * @return the estimated size in bytes
+		 */
+		long estimateSize()
+		{
+			long bytes = (nodeSelection.size()+edgeSelection.size())*SELECTION_SIZE;
+			bytes += vNodes.size()*NODE_SIZE;
+			Iterator<VEdge> ei = vEdges.values().iterator();
+			while (ei.hasNext())
+			{
+				VEdge e = ei.next();
+				bytes += EDGE_SIZE;
+				if (e.getEdgeType()==VEdge.SEGMENTED)
+					bytes += e.getControlPoints().size()*POINT_SIZE;
+			}
+			Iterator<VHyperEdge> hi = vHyperEdges.values().iterator();
+			while (hi.hasNext())
+			{
+				NURBSShape shape = hi.next().getShape();
+				bytes += HYPEREDGE_SIZE + (shape.controlPoints.size()+shape.Knots.size())*NURBS_POINT_SIZE;
+			}
+			Iterator<MSubgraph> si = mSubgraphs.values().iterator();
+			while (si.hasNext())
+			{
+				MSubgraph s = si.next();
+				bytes += SUBGRAPH_SIZE + (s.getNodes().size()+s.getEdges().size())/8;
+			}
+			return bytes;
+		}
+		/**
+		 * Get the indices of all subgraphs a node or an edge belongs to
+		 */
+		private BitSet memberships(MSubgraphSet s, int index, boolean node)
+		{
+			BitSet member = new BitSet();
+			Iterator<MSubgraph> si = s.getIterator();
+			while (si.hasNext())
+			{
+				MSubgraph actual = si.next();
+				if ((node&&actual.containsNode(index))||((!node)&&actual.containsEdge(index)))
+					member.set(actual.getIndex());
+			}
+			return member;
+		}
+		/**
+		 * Set the touched elements of the graph to this state. The state itself is not changed, so it may be set again
+		 * @param g
+		 */
+		void setIn(VGraphInterface g)
+		{
+			g.beginBatch();
+			try
+			{
+				if (Objecttype==GraphConstraints.SELECTION)
+					setSelectionIn(g);
+				else if (type==VGraphInterface.GRAPH)
+					setIn((VGraph)g);
+				else
+					setIn((VHyperGraph)g);
+			}
+			finally {g.commitBatch();}
+		}
+		private void setSelectionIn(VGraphInterface g)
+		{
+			VNodeSet gNodes = (type==VGraphInterface.GRAPH) ? ((VGraph)g).modifyNodes : ((VHyperGraph)g).modifyNodes;
+			for (int i=nodes.nextSetBit(0); i>=0; i=nodes.nextSetBit(i+1))
+			{
+				VNode n = gNodes.get(i);
+				if (n!=null)
+					n.setSelectedStatus(nodeSelection.containsKey(i) ? nodeSelection.get(i) : VItem.DESELECTED);
+			}
+			for (int i=edges.nextSetBit(0); i>=0; i=edges.nextSetBit(i+1))
+			{
+				VItem e = (type==VGraphInterface.GRAPH) ? ((VGraph)g).modifyEdges.get(i) : ((VHyperGraph)g).modifyHyperEdges.get(i);
+				if (e!=null)
+					e.setSelectedStatus(edgeSelection.containsKey(i) ? edgeSelection.get(i) : VItem.DESELECTED);
+			}
+		}
+		private void setIn(VGraph g)
+		{
+			MGraph mg = g.getMathGraph();
+			//Allow more first, so that all elements of this state may be added
+			if (directed&&!mg.isDirected())
+				mg.setDirected(true);
+			if (loops&&!mg.isLoopAllowed())
+				mg.setLoopsAllowed(true);
+			if (multiple&&!mg.isMultipleAllowed())
+				mg.setMultipleAllowed(true);
+			//Remove elements not existent in this state, edges first, so none is removed silently with its node
+			for (int i=edges.nextSetBit(0); i>=0; i=edges.nextSetBit(i+1))
+				if ((g.modifyEdges.get(i)!=null)&&(!vEdges.containsKey(i)))
+					g.modifyEdges.remove(i);
+			for (int i=nodes.nextSetBit(0); i>=0; i=nodes.nextSetBit(i+1))
+				if ((g.modifyNodes.get(i)!=null)&&(!vNodes.containsKey(i)))
+					g.modifyNodes.remove(i);
+			for (int i=subgraphs.nextSetBit(0); i>=0; i=subgraphs.nextSetBit(i+1))
+				if (g.modifySubgraphs.get(i)!=null)
+					g.modifySubgraphs.remove(i);
+			BitSet addedNodes = new BitSet(), addedEdges = new BitSet();
+			Iterator<Integer> ii = vNodes.keySet().iterator();
+			while (ii.hasNext())
+			{
+				int i = ii.next();
+				if (g.modifyNodes.get(i)==null)
+				{
+					g.modifyNodes.add(vNodes.get(i).clone(), mNodes.get(i).clone());
+					addedNodes.set(i);
+				}
+				else
+					g.modifyNodes.replace(vNodes.get(i), mNodes.get(i).clone());
+			}
+			ii = vEdges.keySet().iterator();
+			while (ii.hasNext())
+			{
+				int i = ii.next();
+				MEdge me = mEdges.get(i).clone();
+				if (g.modifyEdges.get(i)==null)
+				{
+					if ((g.modifyNodes.get(me.StartIndex)==null)||(g.modifyNodes.get(me.EndIndex)==null))
+						continue;
+					g.modifyEdges.add(vEdges.get(i).clone(), me, g.modifyNodes.get(me.StartIndex).getPosition(), g.modifyNodes.get(me.EndIndex).getPosition());
+					addedEdges.set(i);
+				}
+				else
+					g.modifyEdges.replace(vEdges.get(i), me);
+			}
+			ii = vSubgraphs.keySet().iterator();
+			while (ii.hasNext())
+			{
+				int i = ii.next();
+				g.modifySubgraphs.add(vSubgraphs.get(i), mSubgraphs.get(i).clone());
+			}
+			setMemberships(g.modifySubgraphs, mg.modifySubgraphs, addedNodes, addedEdges);
+			//Restrict afterwards, when the elements that had to be removed are already gone
+			if (!directed&&mg.isDirected())
+				mg.setDirected(false);
+			if (!loops&&mg.isLoopAllowed())
+				mg.setLoopsAllowed(false);
+			if (!multiple&&mg.isMultipleAllowed())
+				mg.setMultipleAllowed(false);
+		}
+		private void setIn(VHyperGraph g)
+		{
+			for (int i=edges.nextSetBit(0); i>=0; i=edges.nextSetBit(i+1))
+				if ((g.modifyHyperEdges.get(i)!=null)&&(!vHyperEdges.containsKey(i)))
+					g.modifyHyperEdges.remove(i);
+			for (int i=nodes.nextSetBit(0); i>=0; i=nodes.nextSetBit(i+1))
+				if ((g.modifyNodes.get(i)!=null)&&(!vNodes.containsKey(i)))
+					g.modifyNodes.remove(i);
+			for (int i=subgraphs.nextSetBit(0); i>=0; i=subgraphs.nextSetBit(i+1))
+				if (g.modifySubgraphs.get(i)!=null)
+					g.modifySubgraphs.remove(i);
+			BitSet addedNodes = new BitSet(), addedEdges = new BitSet();
+			Iterator<Integer> ii = vNodes.keySet().iterator();
+			while (ii.hasNext())
+			{
+				int i = ii.next();
+				if (g.modifyNodes.get(i)==null)
+				{
+					g.modifyNodes.add(vNodes.get(i).clone(), mNodes.get(i).clone());
+					addedNodes.set(i);
+				}
+				else
+					g.modifyNodes.replace(vNodes.get(i), mNodes.get(i).clone());
+			}
+			ii = vHyperEdges.keySet().iterator();
+			while (ii.hasNext())
+			{
+				int i = ii.next();
+				if (g.modifyHyperEdges.get(i)==null)
+				{
+					g.modifyHyperEdges.add(vHyperEdges.get(i).clone(), mHyperEdges.get(i).clone());
+					addedEdges.set(i);
+				}
+				else
+					g.modifyHyperEdges.replace(vHyperEdges.get(i), mHyperEdges.get(i).clone());
+			}
+			ii = vSubgraphs.keySet().iterator();
+			while (ii.hasNext())
+			{
+				int i = ii.next();
+				g.modifySubgraphs.add(vSubgraphs.get(i), mSubgraphs.get(i).clone());
+			}
+			setMemberships(g.modifySubgraphs, g.getMathGraph().modifySubgraphs, addedNodes, addedEdges);
+		}
+		/**
+		 * Set the memberships of the touched nodes and edges in all subgraphs, that were not touched themselves
+		 * (these are already complete). Added elements might still be marked in a subgraph, e.g. if an edge was removed
+		 * silently together with its node, so these are removed first to get their color right
+		 */
+		private void setMemberships(VSubgraphSet gSubgraphs, MSubgraphSet gMSubgraphs, BitSet addedNodes, BitSet addedEdges)
+		{
+			Iterator<VSubgraph> si = gSubgraphs.getIterator();
+			while (si.hasNext())
+			{
+				int s = si.next().getIndex();
+				if (subgraphs.get(s))
+					continue;
+				Iterator<Integer> ii = nodeSubgraphs.keySet().iterator();
+				while (ii.hasNext())
+				{
+					int i = ii.next();
+					boolean member = nodeSubgraphs.get(i).get(s);
+					boolean contained = gMSubgraphs.get(s).containsNode(i);
+					if (contained&&((!member)||addedNodes.get(i)))
+					{
+						gSubgraphs.removeNodefromSubgraph(i,s);
+						contained = false;
+					}
+					if (member&&!contained)
+						gSubgraphs.addNodetoSubgraph(i,s);
+				}
+				ii = edgeSubgraphs.keySet().iterator();
+				while (ii.hasNext())
+				{
+					int i = ii.next();
+					boolean member = edgeSubgraphs.get(i).get(s);
+					boolean contained = gMSubgraphs.get(s).containsEdge(i);
+					if (contained&&((!member)||addedEdges.get(i)))
+					{
+						gSubgraphs.removeEdgefromSubgraph(i,s);
+						contained = false;
+					}
+					if (member&&!contained)
+						gSubgraphs.addEdgetoSubgraph(i,s);
+				}
+			}
+		}
+	}
+}
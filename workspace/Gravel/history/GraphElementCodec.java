@@ -0,0 +1,274 @@
+package history;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.geom.Point2D;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Vector;
+
+import model.*;
+/**
+ * Compact binary form of the single elements of a graph, used by the history to keep
+ * old actions packed in memory or in a file.
+ *
+ * Each element is written with all its values (not only those differing from the
+ * GeneralPreferences like the GravelML writer does), because the preferences may change
+ * between writing and reading. Values only computed from other values (e.g. the
+ * homogeneous control points of a NURBSShape or the color of an item) are not written.
+ *
+ * @author Ronny Bergmann
+ * @since 0.4
+ */
+final class GraphElementCodec
+{
+	private GraphElementCodec() {}
+
+	static void writeBitSet(DataOutputStream out, BitSet b) throws IOException
+	{
+		out.writeInt(b.cardinality());
+		for (int i=b.nextSetBit(0); i>=0; i=b.nextSetBit(i+1))
+			out.writeInt(i);
+	}
+	static BitSet readBitSet(DataInputStream in) throws IOException
+	{
+		BitSet b = new BitSet();
+		int count = in.readInt();
+		for (int i=0; i<count; i++)
+			b.set(in.readInt());
+		return b;
+	}
+	static void writeVNode(DataOutputStream out, VNode n) throws IOException
+	{
+		out.writeInt(n.getIndex());
+		out.writeInt(n.getSelectedStatus());
+		out.writeInt(n.getPosition().x);
+		out.writeInt(n.getPosition().y);
+		out.writeInt(n.getSize());
+		out.writeInt(n.getNameDistance());
+		out.writeInt(n.getNameRotation());
+		out.writeInt(n.getNameSize());
+		out.writeBoolean(n.isNameVisible());
+	}
+	static VNode readVNode(DataInputStream in) throws IOException
+	{
+		int index = in.readInt();
+		int status = in.readInt();
+		int x = in.readInt(), y = in.readInt();
+		VNode n = new VNode(index,x,y,in.readInt(),in.readInt(),in.readInt(),in.readInt(),in.readBoolean());
+		n.setSelectedStatus(status);
+		return n;
+	}
+	static void writeMNode(DataOutputStream out, MNode m) throws IOException
+	{
+		out.writeUTF(m.name);
+	}
+	static MNode readMNode(DataInputStream in, int index) throws IOException
+	{
+		return new MNode(index,in.readUTF());
+	}
+	static void writeText(DataOutputStream out, VEdgeText t) throws IOException
+	{
+		out.writeInt(t.getDistance());
+		out.writeFloat(t.getPosition());
+		out.writeInt(t.getSize());
+		out.writeBoolean(t.isVisible());
+		out.writeBoolean(t.isshowvalue());
+	}
+	static VEdgeText readText(DataInputStream in) throws IOException
+	{
+		return new VEdgeText(in.readInt(),in.readFloat(),in.readInt(),in.readBoolean(),in.readBoolean());
+	}
+	static void writeLinestyle(DataOutputStream out, VEdgeLinestyle l) throws IOException
+	{
+		out.writeInt(l.getType());
+		out.writeInt(l.getLength());
+		out.writeInt(l.getDistance());
+	}
+	static VEdgeLinestyle readLinestyle(DataInputStream in) throws IOException
+	{
+		return new VEdgeLinestyle(in.readInt(),in.readInt(),in.readInt());
+	}
+	static void writeVEdge(DataOutputStream out, VEdge e) throws IOException
+	{
+		out.writeInt(e.getIndex());
+		out.writeInt(e.getSelectedStatus());
+		out.writeInt(e.getWidth());
+		out.writeByte(e.getEdgeType());
+		switch (e.getEdgeType())
+		{
+			case VEdge.QUADCURVE:
+				Point p = e.getControlPoints().firstElement();
+				out.writeInt(p.x);
+				out.writeInt(p.y);
+				break;
+			case VEdge.SEGMENTED:
+				Vector<Point> points = e.getControlPoints();
+				int count = 0;
+				for (int i=0; i<points.size(); i++)
+					if (points.get(i)!=null)
+						count++;
+				out.writeInt(count);
+				for (int i=0; i<points.size(); i++)
+					if (points.get(i)!=null)
+					{
+						out.writeInt(points.get(i).x);
+						out.writeInt(points.get(i).y);
+					}
+				break;
+			case VEdge.ORTHOGONAL:
+				out.writeBoolean(((VOrthogonalEdge)e).getVerticalFirst());
+				break;
+			case VEdge.LOOP:
+				VLoopEdge vle = (VLoopEdge)e;
+				out.writeInt(vle.getLength());
+				out.writeInt(vle.getDirection());
+				out.writeDouble(vle.getProportion());
+				out.writeBoolean(vle.isClockwise());
+				break;
+			default: break;
+		}
+		VEdgeArrow a = e.getArrow();
+		out.writeFloat(a.getSize());
+		out.writeFloat(a.getPart());
+		out.writeFloat(a.getAngle());
+		out.writeFloat(a.getPos());
+		writeText(out, e.getTextProperties());
+		writeLinestyle(out, e.getLinestyle());
+	}
+	static VEdge readVEdge(DataInputStream in) throws IOException
+	{
+		int index = in.readInt();
+		int status = in.readInt();
+		int width = in.readInt();
+		VEdge e;
+		switch (in.readByte())
+		{
+			case VEdge.QUADCURVE:
+				e = new VQuadCurveEdge(index,width,new Point(in.readInt(),in.readInt()));
+				break;
+			case VEdge.SEGMENTED:
+				Vector<Point> points = new Vector<Point>();
+				int count = in.readInt();
+				for (int i=0; i<count; i++)
+					points.add(new Point(in.readInt(),in.readInt()));
+				e = new VSegmentedEdge(index,width,points);
+				break;
+			case VEdge.ORTHOGONAL:
+				e = new VOrthogonalEdge(index,width,in.readBoolean());
+				break;
+			case VEdge.LOOP:
+				e = new VLoopEdge(index,width,in.readInt(),in.readInt(),in.readDouble(),in.readBoolean());
+				break;
+			default:
+				e = new VStraightLineEdge(index,width);
+				break;
+		}
+		e.setArrow(new VEdgeArrow(in.readFloat(),in.readFloat(),in.readFloat(),in.readFloat()));
+		e.setTextProperties(readText(in));
+		e.setLinestyle(readLinestyle(in));
+		e.setSelectedStatus(status);
+		return e;
+	}
+	static void writeMEdge(DataOutputStream out, MEdge m) throws IOException
+	{
+		out.writeInt(m.StartIndex);
+		out.writeInt(m.EndIndex);
+		out.writeInt(m.Value);
+		out.writeUTF(m.name);
+	}
+	static MEdge readMEdge(DataInputStream in, int index) throws IOException
+	{
+		return new MEdge(index,in.readInt(),in.readInt(),in.readInt(),in.readUTF());
+	}
+	/**
+	 * Write a visual hyperedge including its NURBSShape (without decorations)
+	 */
+	static void writeVHyperEdge(DataOutputStream out, VHyperEdge e) throws IOException
+	{
+		out.writeInt(e.getIndex());
+		out.writeInt(e.getSelectedStatus());
+		out.writeInt(e.getWidth());
+		out.writeInt(e.getMinimumMargin());
+		writeText(out, e.getTextProperties());
+		writeLinestyle(out, e.getLinestyle());
+		NURBSShape s = e.getShape();
+		out.writeInt(s.Knots.size());
+		for (int i=0; i<s.Knots.size(); i++)
+			out.writeDouble(s.Knots.get(i));
+		out.writeInt(s.controlPoints.size());
+		for (int i=0; i<s.controlPoints.size(); i++)
+		{
+			out.writeDouble(s.controlPoints.get(i).getX());
+			out.writeDouble(s.controlPoints.get(i).getY());
+			out.writeDouble(s.cpWeight.get(i));
+		}
+	}
+	static VHyperEdge readVHyperEdge(DataInputStream in) throws IOException
+	{
+		int index = in.readInt();
+		int status = in.readInt();
+		int width = in.readInt();
+		int margin = in.readInt();
+		VEdgeText t = readText(in);
+		VEdgeLinestyle l = readLinestyle(in);
+		Vector<Double> knots = new Vector<Double>();
+		int count = in.readInt();
+		for (int i=0; i<count; i++)
+			knots.add(in.readDouble());
+		Vector<Point2D> points = new Vector<Point2D>();
+		Vector<Double> weights = new Vector<Double>();
+		count = in.readInt();
+		for (int i=0; i<count; i++)
+		{
+			points.add(new Point2D.Double(in.readDouble(),in.readDouble()));
+			weights.add(in.readDouble());
+		}
+		NURBSShape s = (count==0) ? new NURBSShape() : new NURBSShape(knots,points,weights);
+		VHyperEdge e = new VHyperEdge(index,width,margin,s,t,l);
+		e.setSelectedStatus(status);
+		return e;
+	}
+	static void writeMHyperEdge(DataOutputStream out, MHyperEdge m) throws IOException
+	{
+		out.writeInt(m.Value);
+		out.writeUTF(m.name);
+		writeBitSet(out, m.getEndNodes());
+	}
+	static MHyperEdge readMHyperEdge(DataInputStream in, int index) throws IOException
+	{
+		MHyperEdge m = new MHyperEdge(index,in.readInt(),in.readUTF());
+		BitSet endnodes = readBitSet(in);
+		for (int i=endnodes.nextSetBit(0); i>=0; i=endnodes.nextSetBit(i+1))
+			m.addNode(i);
+		return m;
+	}
+	static void writeVSubgraph(DataOutputStream out, VSubgraph s) throws IOException
+	{
+		out.writeInt(s.getIndex());
+		out.writeInt(s.getColor().getRGB());
+	}
+	static VSubgraph readVSubgraph(DataInputStream in) throws IOException
+	{
+		return new VSubgraph(in.readInt(),new Color(in.readInt(),true));
+	}
+	static void writeMSubgraph(DataOutputStream out, MSubgraph m) throws IOException
+	{
+		out.writeUTF(m.getName());
+		writeBitSet(out, m.getNodes());
+		writeBitSet(out, m.getEdges());
+	}
+	static MSubgraph readMSubgraph(DataInputStream in, int index) throws IOException
+	{
+		MSubgraph m = new MSubgraph(index,in.readUTF());
+		BitSet b = readBitSet(in);
+		for (int i=b.nextSetBit(0); i>=0; i=b.nextSetBit(i+1))
+			m.addNode(i);
+		b = readBitSet(in);
+		for (int i=b.nextSetBit(0); i>=0; i=b.nextSetBit(i+1))
+			m.addEdge(i);
+		return m;
+	}
+}
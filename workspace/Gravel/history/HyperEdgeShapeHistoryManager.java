@@ -5,8 +5,6 @@ import model.Messages.GraphConstraints;
 import model.Messages.GraphMessage;
 import model.Messages.NURBSCreationMessage;
 
-import java.util.Observable;
-
 import view.VHyperShapeGraphic;
 
 /**
@@ -17,7 +15,7 @@ import view.VHyperShapeGraphic;
  * 
  * It also provides Undo(), Redo() and the methods to check their possibility
  * 
- * This Observer may only subscribe to Observables that sends GraphMessages.
+ * The Manager subscribes to all GraphMessages of the tracked graph.
  * @author Ronny Bergmann
  * @since 0.3
  */
@@ -37,10 +35,7 @@ public class HyperEdgeShapeHistoryManager extends CommonGraphHistoryManager
 	public HyperEdgeShapeHistoryManager(VHyperShapeGraphic vhsg, int vheIndex)
 	{
 		super(vhsg.getGraph()); //Super does the normal stuff
-		trackedGraph = vhsg.getGraph();
-		lastGraph = vhsg.getGraph().clone();
 		ParameterVectorReference = vhsg;
-		CommonInitialization();
 //		VHyperEdgeIndex=vheIndex;
 	}
 	
@@ -149,32 +144,21 @@ public class HyperEdgeShapeHistoryManager extends CommonGraphHistoryManager
 			act = handleSingleAction(m,nm);	
 			if (act==null)
 				return;
-			clonetrackedGraph();
-			if (!RedoStack.isEmpty())
-				RedoStack.clear();
-			if (UndoStack.size()>=stacksize)
-			{	//Now it can't get Unchanged by Undo
-				SavedUndoStackSize--;
-				UndoStack.remove();
-			}
-			UndoStack.add(act);
-
+			updateLastGraph();
+			pushAction(act);
 		}
 		else //multiple modifications, up to know just a replace */
 			super.addAction(m);
 	}
 
-	public void update(Observable o, Object arg)
+	public void handleGraphMessage(GraphMessage m)
 	{
 		GraphMessage temp = null;
 		if (Blockstart!=null)
 			temp = Blockstart.clone();
 		//Handle normal stuff
-		super.update(o, arg);
+		super.handleGraphMessage(m);
 		
-		GraphMessage m = (GraphMessage)arg;
-		if (m==null)
-			return;
 		if ((m.getModification()&GraphConstraints.HISTORY)>0) //Ignore them, they'Re from us
 			return;
 		//Complete Replacement of Graphor Hypergraph Handling (Happens when loading a new graph
@@ -196,7 +180,7 @@ public class HyperEdgeShapeHistoryManager extends CommonGraphHistoryManager
 			&& (actualAction.getElementID() != 0)
 			&& (actualAction.getAffectedElementTypes() ==GraphConstraints.HYPEREDGE))
 		{// The type of action we want to track here - than it was tracked wrong before
-			UndoStack.removeLast(); //Undo the undo-push from superclass and handle seperately
+			discard(UndoStack.removeLast()); //Undo the undo-push from superclass and handle seperately
 			addAction(actualAction, ParameterVectorReference.getShapeParameters()); //Do our action upon that
 			//Update Menu, 
 			trackedGraph.pushNotify(new GraphMessage(GraphConstraints.HYPERGRAPH_ALL_ELEMENTS, GraphConstraints.HISTORY));
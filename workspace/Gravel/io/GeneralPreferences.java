@@ -380,6 +380,8 @@ public class GeneralPreferences extends Observable
 
 		if (BoolValues.get("history.trackSelection")==null) return false;
 		if (IntValues.get("history.Stacksize")==null) return false;
+		if (IntValues.get("history.Memorysize")==null) return false;
+		if (BoolValues.get("history.swapToFile")==null) return false;
 				
 		if (StringValues.get("node.name")==null) return false;
 		if (IntValues.get("node.size")==null) return false;
@@ -398,6 +400,9 @@ public class GeneralPreferences extends Observable
 		if (BoolValues.get("vgraphic.cpshow")==null) return false;
 		if (IntValues.get("vgraphic.cpsize")==null) return false;
 		if (IntValues.get("vgraphic.framedistance")==null) return false;
+		if (FloatValues.get("vgraphic.lod_antialiaszoom")==null) return false;
+		if (FloatValues.get("vgraphic.lod_labelzoom")==null) return false;
+		if (FloatValues.get("vgraphic.lod_shapezoom")==null) return false;
 		if (IntValues.get("vgraphic.selcolb")==null) return false;
 		if (IntValues.get("vgraphic.selcolg")==null) return false;
 		if (IntValues.get("vgraphic.selcolr")==null) return false;
@@ -443,6 +448,7 @@ public class GeneralPreferences extends Observable
 		IntValues.put("grid.x",50);
 		IntValues.put("grid.y",50);
 		IntValues.put("history.Stacksize",50);
+		IntValues.put("history.Memorysize",16384);
 
 		IntValues.put("hyperedge.value",1);		
 		IntValues.put("hyperedge.width",1);		
@@ -477,6 +483,7 @@ public class GeneralPreferences extends Observable
 		BoolValues.put("grid.synchron", true);
 		BoolValues.put("grid.orientated", true);
 		BoolValues.put("history.trackSelection", false);
+		BoolValues.put("history.swapToFile", false);
 
 		BoolValues.put("node.name_visible",false);
 		BoolValues.put("pref.saveonexit",true);
@@ -491,6 +498,10 @@ public class GeneralPreferences extends Observable
 		StringValues.put("subgraph.name","Untergraph #$ID");
 
 		FloatValues.put("zoom", 1.0f);
+		//Zoom below which labels, shapes or antialiasing are left out while painting, 0 to never leave them out
+		FloatValues.put("vgraphic.lod_labelzoom", 0.4f);
+		FloatValues.put("vgraphic.lod_shapezoom", 0.3f);
+		FloatValues.put("vgraphic.lod_antialiaszoom", 0.0f);
 	}
 	/**
 	 * Read the Preferences from the xml file
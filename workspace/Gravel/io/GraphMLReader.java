@@ -84,6 +84,23 @@ public class GraphMLReader {
 		//Check for Attributes of the graph
 		readAttributesAndInitGraph(n);
 		if (ErrorOccured()) return;
+		if (loadedVGraph!=null)
+		{	//Loading sends one message for all elements
+			loadedVGraph.beginBatch();
+			try {parseGraphElements(n);}
+			finally {loadedVGraph.commitBatch();}
+		}
+		else
+			parseGraphElements(n);
+	}
+	/**
+	 * Parse all nodes, edges or hyperedges and subgraphs of the graph-Element
+	 * into the graph initialized by readAttributesAndInitGraph
+	 *
+	 * @param n the graph-Element
+	 */
+	private void parseGraphElements(Node n)
+	{
 		//Parse all Node-Elements, that are direct children of n
 		parseNodes(n);
 		if (ErrorOccured())	return;
@@ -313,7 +313,10 @@ public class GravelMLContentHandler implements ContentHandler
 					gp.setBoolValue("graph.directed", true);
 				//sonst lassen wie s is
 				if (isVisual)
+				{
 					vG = new VGraph(gp.getBoolValue("graph.directed"),gp.getBoolValue("graph.allowloops"),gp.getBoolValue("graph.allowmultiple"));
+					vG.beginBatch(); //All passes are one batch, committed by the GravelMLReader
+				}
 				else
 					mG = new MGraph(gp.getBoolValue("graph.directed"),gp.getBoolValue("graph.allowloops"),gp.getBoolValue("graph.allowmultiple"));
 		}
@@ -380,6 +380,11 @@ public class GravelMLReader
 			e2.printStackTrace();
 			return "Beim Parsen der Datei "+f.getName()+" ist ein Fehler aufgetreten "+e2.getLocalizedMessage();
 		}
+		finally
+		{	//Send one message for all loaded elements
+			if (ggMLCH.getVGraph()!=null)
+				ggMLCH.getVGraph().commitBatch();
+		}
 	}
 
 	public String getGraphType()
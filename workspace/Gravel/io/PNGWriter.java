@@ -5,8 +5,23 @@ import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 import javax.imageio.ImageIO;
 
@@ -17,10 +32,19 @@ import view.VGraphic;
 import view.VHyperGraphic;
 /**
  * Export the Graph to a PNG-File
+ *
+ * Large images are exported in tiles, i.e. strips of rows, that are painted in parallel
+ * and written to the file one after another, so only a few tiles are kept in memory
+ *
  * @author Ronny Bergmann
  */
 public class PNGWriter
 {
+	//Number of pixels of one tile
+	private static final int TILE_PIXELS = 1<<20;
+	//Images with more pixels are exported in tiles by default
+	private static final long MAX_IMAGE_PIXELS = 1<<24;
+
 	private VCommonGraphic vGc; //Die Umgebung zum zeichnen
 	/**
 	 * Init the exporter to a given Graphic Enviroment, that draws the 
@@ -33,13 +57,27 @@ public class PNGWriter
 	}
 	/**
 	 * Exports the Graph given in the Initialization to a file an resize the graph to a specified size
-	 * 
+	 * If the graph would need a large image to be painted, it is exported in tiles
+	 *
 	 * @param f specified file F
 	 * @param x Export Size x 
 	 * @param y Export Size y
 	 * @param tB - Set this value to true, if the Background should be transparent, to set the BG wwhite choose false
 	 */
 	public void PNGExport(File f,int x,int y, boolean tB)
+	{
+		PNGExport(f,x,y,tB,null);
+	}
+	/**
+	 * Exports the Graph given in the Initialization to a file an resize the graph to a specified size
+	 *
+	 * @param f specified file F
+	 * @param x Export Size x
+	 * @param y Export Size y
+	 * @param tB - Set this value to true, if the Background should be transparent, to set the BG wwhite choose false
+	 * @param tiled true to export in tiles, false to paint the whole image at once and null to decide by the size of the image
+	 */
+	public void PNGExport(File f,int x,int y, boolean tB, Boolean tiled)
 	{
 		BufferedImage img;
 		String type="png";
@@ -54,26 +92,224 @@ public class PNGWriter
 		int origx = (max.x-min.x);
 		float z2 = (float)x/(float)origx;
 		vGc.setZoom(Math.round(z2*100));
-		img = new BufferedImage(Math.round((float)max.x*z2)+1,Math.round((float)max.y*z2)+1, BufferedImage.TYPE_INT_ARGB );
-		
-		Graphics2D g = img.createGraphics();
-	
+		int offx = (new Double(Math.ceil((double)min.x*(double)z2))).intValue();
+		int offy = (new Double(Math.ceil((double)min.y*(double)z2))).intValue();
 		//Actual Image Size
-		Dimension dim = new Dimension((new Double(Math.ceil((double)min.x*(double)z2))).intValue()+x,(new Double(Math.ceil((double)min.y*(double)z2))).intValue()+y);
-		if (!tB)
+		Dimension dim = new Dimension(offx+x,offy+y);
+		vGc.setSize(dim);
+		boolean reduce = vGc.isDetailReduction();
+		vGc.setDetailReduction(false); //Export all details
+		try
+		{
+			if (tiled==null)
+				tiled = ((long)(Math.round((float)max.x*z2)+1)*(long)(Math.round((float)max.y*z2)+1) > MAX_IMAGE_PIXELS);
+			if (tiled)
+			{
+				try {
+					exportTiles_(f,offx,offy,x,y,tB);
+				} catch (IOException e) {
+		        	main.DEBUG.println(main.DEBUG.MIDDLE,"PNG Writing failed : "+e.getMessage());
+				}
+				return;
+			}
+			img = new BufferedImage(Math.round((float)max.x*z2)+1,Math.round((float)max.y*z2)+1, BufferedImage.TYPE_INT_ARGB );
+			
+			Graphics2D g = img.createGraphics();
+		
+			if (!tB)
+			{
+				g.setBackground(Color.WHITE);		
+				//Set complete area to white
+				g.clearRect(0,0,offx+x,offy+y);
+			}
+			vGc.paint(g);
+			img = img.getSubimage(offx,offy,x,y);
+			try {
+				ImageIO.write(img, type, f);
+			} catch (IOException e) {
+	        	main.DEBUG.println(main.DEBUG.MIDDLE,"PNG Writing failed : "+e.getMessage());
+			}
+		}
+		finally
+		{ //Restore the editor, even if painting failed
+			vGc.setDetailReduction(reduce);
+			vGc.setZoom(oldz);
+		}
+	}
+	/**
+	 * Paint the image in tiles of whole rows on all processors and write them to the file in their order.
+	 * At most one tile per processor is painted while the next one is written.
+	 *
+	 * @param f the file
+	 * @param offx left border of the image in coordinates of the graphic
+	 * @param offy top border of the image in coordinates of the graphic
+	 * @param x width of the image
+	 * @param y height of the image
+	 * @param tB true for a transparent background
+	 * @throws IOException
+	 */
+	private void exportTiles_(File f, int offx, int offy, int x, int y, boolean tB) throws IOException
+	{
+		int rows = Math.max(1,Math.min(y,TILE_PIXELS/x));
+		int workers = Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		LinkedList<Future<BufferedImage>> tiles = new LinkedList<Future<BufferedImage>>();
+		PNGStream png = new PNGStream(new BufferedOutputStream(new FileOutputStream(f)),x,y);
+		try
 		{
-			g.setBackground(Color.WHITE);		
-			//Set complete area to white
-			g.clearRect(0,0,(new Double(Math.ceil((double)min.x*(double)z2))).intValue()+x,(new Double(Math.ceil((double)min.y*(double)z2))).intValue()+y);
+			//Paint the first tile here, so the graph updates its spatial indices before the tiles are painted in parallel
+			int next = Math.min(rows,y);
+			png.writeRows(new TilePainter(offx,offy,x,0,next,tB).call());
+			while ((next < y)||(!tiles.isEmpty()))
+			{
+				while ((tiles.size() < workers)&&(next < y))
+				{
+					int height = Math.min(rows,y-next);
+					tiles.add(pool.submit(new TilePainter(offx,offy,x,next,height,tB)));
+					next += height;
+				}
+				png.writeRows(tiles.removeFirst().get());
+			}
+			png.close();
 		}
-		vGc.setSize(dim);
-		vGc.paint(g);
-		img = img.getSubimage((new Double(Math.ceil((double)min.x*(double)z2))).intValue(),(new Double(Math.ceil((double)min.y*(double)z2))).intValue(),x,y);
-		try {
-			ImageIO.write(img, type, f);
-		} catch (IOException e) {
-        	main.DEBUG.println(main.DEBUG.MIDDLE,"PNG Writing failed : "+e.getMessage());
+		catch (InterruptedException e)
+		{
+			throw new IOException("Export interrupted");
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error)e.getCause();
+			throw new IOException(e.getCause().getMessage());
+		}
+		finally
+		{
+			pool.shutdownNow();
+			png.closeFile();
+		}
+	}
+	/**
+	 * Paint one tile of the image, i.e. some rows of it, with the graphic
+	 */
+	private class TilePainter implements Callable<BufferedImage>
+	{
+		private int offx, offy, width, top, height;
+		private boolean transparent;
+		TilePainter(int offx, int offy, int width, int top, int height, boolean transparent)
+		{
+			this.offx = offx; this.offy = offy;
+			this.width = width; this.top = top; this.height = height;
+			this.transparent = transparent;
+		}
+		public BufferedImage call()
+		{
+			BufferedImage tile = new BufferedImage(width,height,BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = tile.createGraphics();
+			if (!transparent)
+			{
+				g.setBackground(Color.WHITE);
+				g.clearRect(0,0,width,height);
+			}
+			g.translate(-offx,-(offy+top));
+			g.setClip(offx,offy+top,width,height);
+			vGc.paint(g);
+			g.dispose();
+			return tile;
+		}
+	}
+	/**
+	 * Write an image with 8 bit RGBA colors to a PNG stream, row by row
+	 */
+	private static class PNGStream
+	{
+		private static final byte[] SIGNATURE = {(byte)137,80,78,71,13,10,26,10};
+		//Size of the compressed data written in one IDAT chunk
+		private static final int CHUNK_SIZE = 1<<16;
+		private DataOutputStream out;
+		private ByteArrayOutputStream data;
+		private DeflaterOutputStream deflater;
+		private byte[] line;
+		private int width;
+
+		PNGStream(OutputStream os, int width, int height) throws IOException
+		{
+			out = new DataOutputStream(os);
+			this.width = width;
+			line = new byte[4*width+1];
+			out.write(SIGNATURE);
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			DataOutputStream h = new DataOutputStream(header);
+			h.writeInt(width);
+			h.writeInt(height);
+			h.writeByte(8); //Bits per sample
+			h.writeByte(6); //Truecolor with alpha
+			h.writeByte(0); //Deflate
+			h.writeByte(0); //Adaptive filtering
+			h.writeByte(0); //No interlace
+			writeChunk("IHDR",header.toByteArray(),header.size());
+			data = new ByteArrayOutputStream(2*CHUNK_SIZE);
+			deflater = new DeflaterOutputStream(data,new Deflater(Deflater.DEFAULT_COMPRESSION));
+		}
+		/**
+		 * Write all rows of an image of TYPE_INT_ARGB and the width of this image
+		 * @param tile the rows
+		 * @throws IOException
+		 */
+		void writeRows(BufferedImage tile) throws IOException
+		{
+			int[] pixels = ((DataBufferInt)tile.getRaster().getDataBuffer()).getData();
+			for (int row=0; row<tile.getHeight(); row++)
+			{
+				line[0] = 1; //Filter Sub, each byte minus the byte of the pixel left of it
+				int prev = 0;
+				for (int i=0; i<width; i++)
+				{
+					int argb = pixels[row*width+i];
+					line[4*i+1] = (byte)((argb>>16)-(prev>>16));
+					line[4*i+2] = (byte)((argb>>8)-(prev>>8));
+					line[4*i+3] = (byte)(argb-prev);
+					line[4*i+4] = (byte)((argb>>24)-(prev>>24));
+					prev = argb;
+				}
+				deflater.write(line);
+				if (data.size() >= CHUNK_SIZE)
+				{
+					writeChunk("IDAT",data.toByteArray(),data.size());
+					data.reset();
+				}
+			}
+		}
+		/**
+		 * Finish the image after all rows are written
+		 * @throws IOException
+		 */
+		void close() throws IOException
+		{
+			deflater.finish();
+			writeChunk("IDAT",data.toByteArray(),data.size());
+			writeChunk("IEND",new byte[0],0);
+			out.flush();
+		}
+		/**
+		 * Close the file, even if the image is not finished
+		 * @throws IOException
+		 */
+		void closeFile() throws IOException
+		{
+			out.close();
+		}
+		private void writeChunk(String type, byte[] content, int length) throws IOException
+		{
+			byte[] t = type.getBytes("US-ASCII");
+			CRC32 crc = new CRC32();
+			crc.update(t);
+			crc.update(content,0,length);
+			out.writeInt(length);
+			out.write(t);
+			out.write(content,0,length);
+			out.writeInt((int)crc.getValue());
 		}
-		vGc.setZoom(oldz);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,189 @@
+package model;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Spatial index of the edges of a VEdgeSet or the hyperedges of a VHyperEdgeSet
+ *
+ * For each edge a bounding box and (for edges) its path flattened to a polyline are cached
+ * and the edge is kept in all cells of a grid its bounding box touches, like the nodes in
+ * the NodeSpatialIndex.
+ *
+ * The geometry of an edge depends on values the index can't compute itself (e.g. the positions
+ * of its nodes), so the items and sets only mark edges as invalid, whenever their geometry changes.
+ * The set computes the new geometry of all invalid edges before it uses the index, so that a
+ * whole drag of nodes only computes the geometry once.
+ *
+ * @author Ronny Bergmann
+ * @since 0.4
+ */
+class EdgeSpatialIndex {
+
+	//Edge length of the cells in px
+	private static final int CELLSIZE = 64;
+	private HashMap<Long,ArrayList<Integer>> cells;
+	private HashMap<Integer,Rectangle2D.Double> boxes;
+	private HashMap<Integer,double[]> lines;
+	private BitSet invalid;
+	private Lock SpatialLock;
+
+	EdgeSpatialIndex()
+	{
+		cells = new HashMap<Long,ArrayList<Integer>>();
+		boxes = new HashMap<Integer,Rectangle2D.Double>();
+		lines = new HashMap<Integer,double[]>();
+		invalid = new BitSet();
+		SpatialLock = new ReentrantLock();
+	}
+	private static int cell(double c)
+	{
+		return (int)Math.floor(c/(double)CELLSIZE);
+	}
+	private static long key(int cx, int cy)
+	{
+		return (((long)cx)<<32) | (cy & 0xffffffffL);
+	}
+	/**
+	 * Mark the geometry of an edge as invalid, so it is recomputed before the next query
+	 * @param i index of the edge
+	 */
+	void invalidate(int i)
+	{
+		if (i < 0)
+			return;
+		SpatialLock.lock();
+		try {invalid.set(i);}
+		finally {SpatialLock.unlock();}
+	}
+	/**
+	 * Get and reset the indices of all edges marked invalid since the last call
+	 * @return a BitSet of the edge indices
+	 */
+	BitSet takeInvalid()
+	{
+		SpatialLock.lock();
+		try
+		{
+			BitSet b = invalid;
+			invalid = new BitSet();
+			return b;
+		}
+		finally {SpatialLock.unlock();}
+	}
+	/**
+	 * Set the geometry of an edge
+	 * @param i index of the edge
+	 * @param box its bounding box including its width
+	 * @param line its polyline as x and y coordinates or null, if there is none
+	 */
+	void put(int i, Rectangle2D.Double box, double[] line)
+	{
+		SpatialLock.lock();
+		try
+		{
+			remove_(i);
+			boxes.put(i,box);
+			if (line!=null)
+				lines.put(i,line);
+			for (int cx=cell(box.x); cx<=cell(box.x+box.width); cx++)
+				for (int cy=cell(box.y); cy<=cell(box.y+box.height); cy++)
+				{
+					ArrayList<Integer> c = cells.get(key(cx,cy));
+					if (c==null)
+					{
+						c = new ArrayList<Integer>();
+						cells.put(key(cx,cy),c);
+					}
+					c.add(i);
+				}
+		}
+		finally {SpatialLock.unlock();}
+	}
+	/**
+	 * Remove an edge from the index
+	 * @param i index of the edge
+	 */
+	void remove(int i)
+	{
+		SpatialLock.lock();
+		try
+		{
+			remove_(i);
+			invalid.clear(i);
+		}
+		finally {SpatialLock.unlock();}
+	}
+	private void remove_(int i)
+	{
+		lines.remove(i);
+		Rectangle2D.Double b = boxes.remove(i);
+		if (b==null)
+			return;
+		for (int cx=cell(b.x); cx<=cell(b.x+b.width); cx++)
+			for (int cy=cell(b.y); cy<=cell(b.y+b.height); cy++)
+			{
+				ArrayList<Integer> c = cells.get(key(cx,cy));
+				if (c==null)
+					continue;
+				c.remove(Integer.valueOf(i)); //by value, not by position
+				if (c.isEmpty())
+					cells.remove(key(cx,cy));
+			}
+	}
+	/**
+	 * Get the cached polyline of an edge
+	 * @param i index of the edge
+	 * @return the x and y coordinates of the polyline or null, if there is none
+	 */
+	double[] getPolyline(int i)
+	{
+		SpatialLock.lock();
+		try {return lines.get(i);}
+		finally {SpatialLock.unlock();}
+	}
+	/**
+	 * Get all edges whose bounding box intersects a rectangle (including its border)
+	 * @param r a rectangle
+	 * @return a BitSet of the edge indices
+	 */
+	BitSet collect(Rectangle2D r)
+	{
+		BitSet result = new BitSet();
+		SpatialLock.lock();
+		try
+		{
+			int x1 = cell(r.getMinX()), x2 = cell(r.getMaxX()), y1 = cell(r.getMinY()), y2 = cell(r.getMaxY());
+			if ((long)(x2-x1+1)*(long)(y2-y1+1) <= cells.size())
+			{
+				for (int cx=x1; cx<=x2; cx++)
+					for (int cy=y1; cy<=y2; cy++)
+						collect_(cells.get(key(cx,cy)),r,result);
+			}
+			else //Rectangle covers more cells than exist, so look at the existing ones
+			{
+				Iterator<ArrayList<Integer>> c = cells.values().iterator();
+				while (c.hasNext())
+					collect_(c.next(),r,result);
+			}
+		}
+		finally {SpatialLock.unlock();}
+		return result;
+	}
+	private void collect_(ArrayList<Integer> c, Rectangle2D r, BitSet result)
+	{
+		if (c==null)
+			return;
+		for (int j=0; j<c.size(); j++)
+		{
+			Rectangle2D.Double b = boxes.get(c.get(j));
+			if ((b.x <= r.getMaxX())&&(r.getMinX() <= b.x+b.width)&&(b.y <= r.getMaxY())&&(r.getMinY() <= b.y+b.height))
+				result.set(c.get(j));
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package model;
+
+import java.util.BitSet;
+
+import model.Messages.GraphBatchMessage;
+import model.Messages.GraphConstraints;
+import model.Messages.GraphMessage;
+
+/**
+ * Records the GraphMessages of a VGraph or VHyperGraph between beginBatch() and commitBatch()
+ * to send them as one GraphBatchMessage
+ *
+ * Batches may be nested, the summary is created when the outermost batch is committed.
+ * Block Indicators inside a batch are dropped, because the batch itself is the block
+ *
+ * @author Ronny Bergmann
+ * @since 0.4
+ */
+class GraphBatch {
+
+	private int depth;
+	private int type, status, affected, lastID, count;
+	//Indicates a recorded message without a unique element
+	private boolean unindexed;
+	private BitSet nodes, edges, hyperedges, subgraphs;
+
+	GraphBatch()
+	{
+		depth = 0;
+		reset();
+	}
+	private void reset()
+	{
+		type = 0; status = 0; affected = 0; lastID = -1; count = 0; unindexed = false;
+		nodes = new BitSet(); edges = new BitSet(); hyperedges = new BitSet(); subgraphs = new BitSet();
+	}
+	/**
+	 * Start a (nested) batch
+	 */
+	void begin()
+	{
+		depth++;
+	}
+	/**
+	 * Indicates whether messages are recorded at the moment
+	 * @return true if at least one batch is not yet committed
+	 */
+	boolean isRecording()
+	{
+		return depth > 0;
+	}
+	/**
+	 * Record a message
+	 * @param m
+	 */
+	void record(GraphMessage m)
+	{
+		int mod = m.getModification()&(GraphConstraints.ACTIONMASK|GraphConstraints.PARTINFORMATIONMASK);
+		if ((mod==0)&&((m.getModification()&GraphConstraints.BLOCKMASK)!=0))
+			return; //Pure Block-Start or -End
+		type |= m.getModifiedElementTypes();
+		status |= mod;
+		affected |= m.getAffectedElementTypes();
+		count++;
+		int id = m.getElementID();
+		if (id <= 0)
+		{
+			unindexed = true;
+			return;
+		}
+		lastID = id;
+		switch(m.getModifiedElementTypes())
+		{
+			case GraphConstraints.NODE: nodes.set(id); break;
+			case GraphConstraints.EDGE: edges.set(id); break;
+			case GraphConstraints.HYPEREDGE: hyperedges.set(id); break;
+			case GraphConstraints.SUBGRAPH: subgraphs.set(id); break;
+			default: unindexed = true; break;
+		}
+	}
+	/**
+	 * End a batch. If the outermost batch ends and messages were recorded, the summary is returned
+	 * @return the summarizing message or null if there is nothing to send (yet)
+	 */
+	GraphBatchMessage commit()
+	{
+		if (depth==0)
+			return null;
+		depth--;
+		if ((depth > 0)||(count==0))
+			return null;
+		int id = -1;
+		//One Element modified in one way - the summary is equal to a single message
+		if ((!unindexed)&&(lastID > 0)&&(Integer.bitCount(type)==1)&&(Integer.bitCount(status&GraphConstraints.ACTIONMASK)==1)
+				&&(nodes.cardinality()+edges.cardinality()+hyperedges.cardinality()+subgraphs.cardinality()==1))
+			id = lastID;
+		GraphBatchMessage m = new GraphBatchMessage(type, id, status, affected, nodes, edges, hyperedges, subgraphs, !unindexed);
+		reset();
+		return m;
+	}
+}
@@ -4,12 +4,12 @@ import java.awt.Point;
 import java.awt.geom.PathIterator;
 import java.util.Iterator;
 import java.util.Observable;
-import java.util.Observer;
 import java.util.TreeMap;
 import java.util.Vector;
 
 import model.Messages.GraphConstraints;
 import model.Messages.GraphMessage;
+import model.Messages.GraphMessageListener;
 
 import view.VCommonGraphic;
 import view.VGraphic;
@@ -21,11 +21,11 @@ import view.VHyperGraphic;
  * This Class observes the Graph and reacts on Graph-Changes
  * and is observable, so that GUI-Classes who use this class can update their fields
  * 
- * This Observer may only subscribe to GraphMessage-delivering Classes
+ * It subscribes as GraphMessageListener to the graph
  * @author Ronny Bergmann
  *
  */
-public class GraphStatisticAtoms extends Observable implements Observer {
+public class GraphStatisticAtoms extends Observable implements GraphMessageListener {
 
 	public static final String[] ATOMS = {
 	"$Node.Count", //Knotenanzahl
@@ -73,17 +73,17 @@ public class GraphStatisticAtoms extends Observable implements Observer {
 		{
 			vg = ((VGraphic)g).getGraph();
 			vhg=null;
-			vg.addObserver(this);
+			vg.addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 			//INIT VALUES
-			update(vg,new GraphMessage(GraphConstraints.GRAPH_ALL_ELEMENTS,GraphConstraints.ADDITION,GraphConstraints.GRAPH_ALL_ELEMENTS));
+			handleGraphMessage(new GraphMessage(GraphConstraints.GRAPH_ALL_ELEMENTS,GraphConstraints.ADDITION,GraphConstraints.GRAPH_ALL_ELEMENTS));
 		}
 		else if (g.getType()==VCommonGraphic.VHYPERGRAPHIC)
 		{
 			vg = null;
 			vhg= ((VHyperGraphic)g).getGraph();
-			vhg.addObserver(this);
+			vhg.addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 			//INIT VALUES
-			update(vhg,new GraphMessage(GraphConstraints.HYPERGRAPH_ALL_ELEMENTS,GraphConstraints.ADDITION,GraphConstraints.HYPERGRAPH_ALL_ELEMENTS));
+			handleGraphMessage(new GraphMessage(GraphConstraints.HYPERGRAPH_ALL_ELEMENTS,GraphConstraints.ADDITION,GraphConstraints.HYPERGRAPH_ALL_ELEMENTS));
 		}
 	}
 	/**
@@ -329,9 +329,8 @@ public class GraphStatisticAtoms extends Observable implements Observer {
 		return ret;
 	}
 	
-	public void update(Observable arg0, Object arg1) 
+	public void handleGraphMessage(GraphMessage m) 
 	{	
-		GraphMessage m = (GraphMessage)arg1;
 		if ((m.getModification()&GraphConstraints.BLOCK_END)==GraphConstraints.BLOCK_END) //Block ends with this Message
 		{
 			if (blockdepth > 0)
@@ -0,0 +1,159 @@
+package model;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps track of the indices in use by a set of nodes, edges, hyperedges or subgraphs
+ * to return a free index without iterating the elements of the set
+ *
+ * The sets inform the allocator about each index that gets used or freed.
+ * Depending on the policy the next index is
+ * <br>- MONOTONIC: the maximal index ever used + 1, so even indices freed afterwards are not used again
+ * <br>- COMPACTING: the smallest index not in use, so freed indices are reused
+ * <br>Both start at 1, because the index 0 is reserved for temporary elements
+ * <br>An index returned by allocate() is marked as used at once, so concurrent callers never get the same index.
+ * If no element gets that index afterwards, it has to be given back by release()
+ *
+ * @author Ronny Bergmann
+ * @since 0.4
+ */
+public class IndexAllocator {
+
+	public final static int MONOTONIC = 0;
+	public final static int COMPACTING = 1;
+
+	private BitSet used;
+	private int max; //Maximal index ever used or allocated
+	private int policy;
+	private Lock IndexLock;
+	/**
+	 * Create a new allocator with the monotonic policy
+	 */
+	public IndexAllocator()
+	{
+		this(MONOTONIC);
+	}
+	/**
+	 * Create a new Allocator
+	 * @param p policy, either MONOTONIC or COMPACTING
+	 */
+	public IndexAllocator(int p)
+	{
+		used = new BitSet();
+		max = 0;
+		IndexLock = new ReentrantLock();
+		setPolicy(p);
+	}
+	/**
+	 * Set the policy to a new value
+	 * @param p new policy, either MONOTONIC or COMPACTING, every other value is ignored
+	 */
+	public void setPolicy(int p)
+	{
+		if ((p==MONOTONIC)||(p==COMPACTING))
+			policy = p;
+	}
+	/**
+	 * Get the actual policy
+	 * @return MONOTONIC or COMPACTING
+	 */
+	public int getPolicy()
+	{
+		return policy;
+	}
+	/**
+	 * Mark an index as used
+	 * @param i index, negative values are ignored
+	 */
+	public void use(int i)
+	{
+		if (i < 0)
+			return;
+		IndexLock.lock();
+		try
+		{
+			used.set(i);
+			if (i > max)
+				max = i;
+		}
+		finally {IndexLock.unlock();}
+	}
+	/**
+	 * Mark an index as free again
+	 * @param i index, negative values are ignored
+	 */
+	public void free(int i)
+	{
+		if (i < 0)
+			return;
+		IndexLock.lock();
+		try {used.clear(i);}
+		finally {IndexLock.unlock();}
+	}
+	/**
+	 * Get the next free index depending on the policy without marking it as used.
+	 * Another caller may get the same index, so use allocate() to get an index for a new element
+	 * @return the index allocate() would return now, at least 1
+	 */
+	public int getNextIndex()
+	{
+		IndexLock.lock();
+		try {return next_();}
+		finally {IndexLock.unlock();}
+	}
+	/**
+	 * Get the next free index depending on the policy and mark it as used in one step
+	 * @return the index for a new element, at least 1
+	 */
+	public int allocate()
+	{
+		IndexLock.lock();
+		try
+		{
+			int i = next_();
+			used.set(i);
+			if (i > max)
+				max = i;
+			return i;
+		}
+		finally {IndexLock.unlock();}
+	}
+	/**
+	 * Give back an index returned by allocate() that was not used for an element,
+	 * e.g. because the addition was cancelled. If it was the last index allocated,
+	 * the maximal index is decreased again, so the index is not lost in either policy
+	 * @param i index, negative values are ignored
+	 */
+	public void release(int i)
+	{
+		if (i < 0)
+			return;
+		IndexLock.lock();
+		try
+		{
+			used.clear(i);
+			if (i==max)
+				max = i-1;
+		}
+		finally {IndexLock.unlock();}
+	}
+	/**
+	 * Get the maximal index that was ever used or allocated
+	 * @return the index or 0, if none was used
+	 */
+	public int getMaxIndex()
+	{
+		IndexLock.lock();
+		try {return max;}
+		finally {IndexLock.unlock();}
+	}
+	private int next_()
+	{
+		if (policy==COMPACTING)
+			return used.nextClearBit(1);
+		else
+			return max+1;
+	}
+}
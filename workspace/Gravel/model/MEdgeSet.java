@@ -1,9 +1,11 @@
 package model;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.TreeSet;
 import java.util.Vector;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -20,12 +22,21 @@ import model.Messages.MGraphMessage;
  * Internal Messages are neccessary to react on internal changes before they
  * get externally known (mainly deletions and index change)
  * 
+ * Beside the edges themselves the set keeps the incidences of each node
+ * (outgoing and incoming edges) and the edges between each pair of nodes, so that
+ * all adjacency queries only depend on the degree of the nodes involved
+ * 
  * @author Ronny Bergmann
  *
  */
 public class MEdgeSet extends Observable implements Observer {
 
-	private HashSet<MEdge> mEdges;
+	private HashMap<Integer,MEdge> mEdges;
+	//Incidences: node index -> indices of edges starting / ending there
+	private HashMap<Integer,HashSet<Integer>> outEdges, inEdges;
+	//(start,end) -> indices of edges from start to end
+	private HashMap<Long,TreeSet<Integer>> pairEdges;
+	private IndexAllocator indices;
 	Lock EdgeLock;
 	//Saved graph values
 	private boolean allowloops, allowmultiple,directed;
@@ -43,7 +54,11 @@ public class MEdgeSet extends Observable implements Observer {
 		allowloops = l;
 		allowmultiple = m;
 		directed = d;
-		mEdges = new HashSet<MEdge>();
+		mEdges = new HashMap<Integer,MEdge>();
+		outEdges = new HashMap<Integer,HashSet<Integer>>();
+		inEdges = new HashMap<Integer,HashSet<Integer>>();
+		pairEdges = new HashMap<Long,TreeSet<Integer>>();
+		indices = new IndexAllocator();
 		EdgeLock = new ReentrantLock();
 	}
 	/**
@@ -82,11 +97,79 @@ public class MEdgeSet extends Observable implements Observer {
 		EdgeLock.lock();
 		try 
 		{
-			mEdges.add(new MEdge(e.index, e.StartIndex, e.EndIndex, e.Value, e.name));
+			MEdge copy = new MEdge(e.index, e.StartIndex, e.EndIndex, e.Value, e.name);
+			mEdges.put(copy.index,copy);
+			addIncidences(copy);
+			indices.use(copy.index);
 		} 
 		finally{EdgeLock.unlock();}
 		return true;
 	}
+	/**
+	 * Key of a pair of nodes (start,end) in the pair map
+	 */
+	private static long pairKey(int start, int end)
+	{
+		return (((long)start)<<32) | (end & 0xffffffffL);
+	}
+	/**
+	 * Add the edge to the incidence lists of its nodes and to the pair map
+	 * ATTENTION: the lock has to be held by the caller
+	 * @param e edge that was added to the set
+	 */
+	private void addIncidences(MEdge e)
+	{
+		HashSet<Integer> out = outEdges.get(e.StartIndex);
+		if (out==null)
+		{
+			out = new HashSet<Integer>();
+			outEdges.put(e.StartIndex, out);
+		}
+		out.add(e.index);
+		HashSet<Integer> in = inEdges.get(e.EndIndex);
+		if (in==null)
+		{
+			in = new HashSet<Integer>();
+			inEdges.put(e.EndIndex, in);
+		}
+		in.add(e.index);
+		TreeSet<Integer> pair = pairEdges.get(pairKey(e.StartIndex,e.EndIndex));
+		if (pair==null)
+		{
+			pair = new TreeSet<Integer>();
+			pairEdges.put(pairKey(e.StartIndex,e.EndIndex), pair);
+		}
+		pair.add(e.index);
+	}
+	/**
+	 * Remove the edge from the incidence lists of its nodes and from the pair map
+	 * ATTENTION: the lock has to be held by the caller
+	 * @param e edge that is removed from the set
+	 */
+	private void removeIncidences(MEdge e)
+	{
+		HashSet<Integer> out = outEdges.get(e.StartIndex);
+		if (out!=null)
+		{
+			out.remove(e.index);
+			if (out.isEmpty())
+				outEdges.remove(e.StartIndex);
+		}
+		HashSet<Integer> in = inEdges.get(e.EndIndex);
+		if (in!=null)
+		{
+			in.remove(e.index);
+			if (in.isEmpty())
+				inEdges.remove(e.EndIndex);
+		}
+		TreeSet<Integer> pair = pairEdges.get(pairKey(e.StartIndex,e.EndIndex));
+		if (pair!=null)
+		{
+			pair.remove(e.index);
+			if (pair.isEmpty())
+				pairEdges.remove(pairKey(e.StartIndex,e.EndIndex));
+		}
+	}
 	/**
 	 * Get the Mathematical Edge with index i
 	 * @param i index of edge
@@ -94,16 +177,12 @@ public class MEdgeSet extends Observable implements Observer {
 	 */
 	public MEdge get(int i)
 	{
-		Iterator<MEdge> n = mEdges.iterator();
-		while (n.hasNext())
+		EdgeLock.lock();
+		try
 		{
-			MEdge e = n.next();
-			if (e.index==i)
-			{
-				return e;
-			}
+			return mEdges.get(i);
 		}
-		return null;
+		finally {EdgeLock.unlock();}
 	}
 	/**
 	 * Replace the an edge in the graph
@@ -118,15 +197,24 @@ public class MEdgeSet extends Observable implements Observer {
 		EdgeLock.lock();
 		try
 		{
-			mEdges.remove(old);
+			if (old!=null)
+			{
+				mEdges.remove(old.index);
+				removeIncidences(old);
+				indices.free(old.index);
+			}
 			changed = add_(edge);
 			if (changed) //New edge was adable
 			{
 					setChanged();
 					notifyObservers(new GraphMessage(GraphConstraints.EDGE,edge.index,GraphConstraints.UPDATE,GraphConstraints.EDGE));	
 			}
-			else
-				mEdges.add(old); //Don't replace
+			else if (old!=null) //Don't replace
+			{
+				mEdges.put(old.index,old);
+				addIncidences(old);
+				indices.use(old.index);
+			}
 		}
 		finally {EdgeLock.unlock();}
 		return changed;
@@ -147,7 +235,9 @@ public class MEdgeSet extends Observable implements Observer {
 				//Notify SubSets
 				setChanged();
 				notifyObservers(new MGraphMessage(GraphConstraints.EDGE,i,GraphConstraints.REMOVAL));
-				mEdges.remove(toDel);
+				mEdges.remove(i);
+				removeIncidences(toDel);
+				indices.free(i);
 				setChanged();
 				notifyObservers(new GraphMessage(GraphConstraints.EDGE,i,GraphConstraints.REMOVAL,GraphConstraints.EDGE));	
 			}
@@ -155,26 +245,68 @@ public class MEdgeSet extends Observable implements Observer {
 		finally {EdgeLock.unlock();}
 	}
 	/**
-	 * get a free edge index
-	 * @return max_exge_index + 1
+	 * Get a free edge index for a new edge. The index is reserved at once,
+	 * so that concurrent callers never get the same index
+	 * @return max edge index +1 or the smallest free index, depending on the index policy
 	 */
 	public int getNextIndex()
+	{
+		return indices.allocate();
+	}
+	/**
+	 * Give back an index from getNextIndex() that was not used for a new edge,
+	 * e.g. because the edge was not added or the creation was cancelled.
+	 * If a edge with this index exists, nothing happens
+	 * @param i index to give back
+	 */
+	public void releaseIndex(int i)
 	{
 		EdgeLock.lock();
-		int index = 1;
-		try {
-			Iterator<MEdge> n = mEdges.iterator();
-			while (n.hasNext()) {
-				MEdge temp = n.next();
-				if (temp.index >= index) // index vergeben
-				{
-					index = temp.index + 1;
-				}
+		try
+		{
+			if (mEdges.get(i)==null)
+				indices.release(i);
+		}
+		finally {EdgeLock.unlock();}
+	}
+	/**
+	 * @return the maximal edge index ever used, so all edges have an index of at most this value
+	 */
+	public int getMaxIndex()
+	{
+		return indices.getMaxIndex();
+	}
+	/**
+	 * Add copies of all edges of another set without notification and without checking
+	 * loops or multiple edges, because the other set already fulfills them.
+	 * This is only used to clone a graph into a new and empty graph, where nobody has to be informed
+	 * @param s the set to copy the edges from
+	 */
+	void addAll_(MEdgeSet s)
+	{
+		s.EdgeLock.lock();
+		EdgeLock.lock();
+		try
+		{
+			Iterator<MEdge> n = s.mEdges.values().iterator();
+			while (n.hasNext())
+			{
+				MEdge c = n.next().clone();
+				mEdges.put(c.index,c);
+				addIncidences(c);
+				indices.use(c.index);
 			}
-		} finally {
-			EdgeLock.unlock();
+			indices.setPolicy(s.indices.getPolicy());
 		}
-		return index;
+		finally {EdgeLock.unlock(); s.EdgeLock.unlock();}
+	}
+	/**
+	 * Set the policy for new indices, see IndexAllocator
+	 * @param p either IndexAllocator.MONOTONIC or IndexAllocator.COMPACTING
+	 */
+	public void setIndexPolicy(int p)
+	{
+		indices.setPolicy(p);
 	}
 	/**
 	 * get a list of the edge names in a vector, where each edge name is stored at it's index
@@ -186,7 +318,7 @@ public class MEdgeSet extends Observable implements Observer {
 	 */	
 	public Vector<String> getNames() {
 		Vector<String> ret = new Vector<String>();
-		Iterator<MEdge> n = mEdges.iterator();
+		Iterator<MEdge> n = mEdges.values().iterator();
 		while (n.hasNext()) {
 			MEdge actual = n.next();
 			if ((actual.index + 1) > ret.size()) {
@@ -211,14 +343,14 @@ public class MEdgeSet extends Observable implements Observer {
 		int count = 0;
 		EdgeLock.lock();
 		try{
-				Iterator<MEdge> n = mEdges.iterator();
-				while (n.hasNext())
+				TreeSet<Integer> pair = pairEdges.get(pairKey(start,ende));
+				if (pair!=null)
+					count += pair.size(); //count these edges because they are from start to end
+				if ((!directed)&&(start!=ende))
 				{
-					MEdge e = n.next();
-					if ( ( e.StartIndex==start ) && (e.EndIndex==ende) )
-						count ++; //count this edge because it is from start to end
-					else if ( ( !directed ) && ( e.StartIndex==ende ) && ( e.EndIndex==start ) )
-						count ++; //count this edge because in the nondirected case this is also from start to end
+					pair = pairEdges.get(pairKey(ende,start));
+					if (pair!=null)
+						count += pair.size(); //count these edges because in the nondirected case they are also from start to end
 				}
 			} finally {EdgeLock.unlock();}
 		return count;
@@ -234,24 +366,78 @@ public class MEdgeSet extends Observable implements Observer {
 		Vector<Integer> liste = new Vector<Integer>();
 		EdgeLock.lock();
 		try{
-				Iterator<MEdge> n = mEdges.iterator();
-				while (n.hasNext())
+				TreeSet<Integer> pair = pairEdges.get(pairKey(start,ende));
+				if (pair!=null)
+					liste.addAll(pair);
+				if ((!directed)&&(start!=ende))
 				{
-					MEdge e = n.next();
-					if ( ( e.StartIndex==start ) && (e.EndIndex==ende) )
-					{
-						liste.add(e.index);
-					}
-					//return e.index;
-					else if ( ( !directed ) && ( e.StartIndex==ende ) && ( e.EndIndex==start ) )
-					{
-						liste.add(e.index);
-					}
-					//return e.index;
+					pair = pairEdges.get(pairKey(ende,start));
+					if (pair!=null)
+						liste.addAll(pair);
 				}
 			} finally {EdgeLock.unlock();}
 		return liste;
 	}
+	/**
+	 * Get the indices of all edges starting at a node. In the nondirected case
+	 * these are only the edges stored with this node as start node
+	 * @param start index of the node
+	 * @return a Vector of the edge indices
+	 */
+	public Vector<Integer> indicesFrom(int start)
+	{
+		Vector<Integer> liste = new Vector<Integer>();
+		EdgeLock.lock();
+		try{
+				HashSet<Integer> out = outEdges.get(start);
+				if (out!=null)
+					liste.addAll(out);
+			} finally {EdgeLock.unlock();}
+		return liste;
+	}
+	/**
+	 * Get the indices of all edges ending at a node. In the nondirected case
+	 * these are only the edges stored with this node as end node
+	 * @param ende index of the node
+	 * @return a Vector of the edge indices
+	 */
+	public Vector<Integer> indicesTo(int ende)
+	{
+		Vector<Integer> liste = new Vector<Integer>();
+		EdgeLock.lock();
+		try{
+				HashSet<Integer> in = inEdges.get(ende);
+				if (in!=null)
+					liste.addAll(in);
+			} finally {EdgeLock.unlock();}
+		return liste;
+	}
+	/**
+	 * Get the number of edges starting at a node (outdegree)
+	 * @param start index of the node
+	 * @return number of edges with this start node
+	 */
+	public int cardinalityFrom(int start)
+	{
+		EdgeLock.lock();
+		try{
+				HashSet<Integer> out = outEdges.get(start);
+				return (out==null) ? 0 : out.size();
+			} finally {EdgeLock.unlock();}
+	}
+	/**
+	 * Get the number of edges ending at a node (indegree)
+	 * @param ende index of the node
+	 * @return number of edges with this end node
+	 */
+	public int cardinalityTo(int ende)
+	{
+		EdgeLock.lock();
+		try{
+				HashSet<Integer> in = inEdges.get(ende);
+				return (in==null) ? 0 : in.size();
+			} finally {EdgeLock.unlock();}
+	}
 	/**
 	 * Get the number of edges in the mgraph
 	 * @return number of edges
@@ -265,34 +451,45 @@ public class MEdgeSet extends Observable implements Observer {
 	 */
 	public Iterator<MEdge> getIterator()
 	{
-		return mEdges.iterator();
+		return mEdges.values().iterator();
 	}
 	private void handleNodeUpdate(MGraphMessage mm)
 	{
 		int mod = mm.getModificationType();
 		if ((mod!=GraphConstraints.INDEXCHANGED)&&(mod!=GraphConstraints.REMOVAL))
 				return;
+		//the node whose incident edges are affected
+		int node = (mod==GraphConstraints.REMOVAL) ? mm.getElementID() : mm.getOldElementID();
 		EdgeLock.lock();
 		try
 		{
-			Iterator<MEdge> e = mEdges.iterator();
+			HashSet<Integer> adjacentIndices = new HashSet<Integer>();
+			if (outEdges.containsKey(node))
+				adjacentIndices.addAll(outEdges.get(node));
+			if (inEdges.containsKey(node))
+				adjacentIndices.addAll(inEdges.get(node));
 			HashSet<MEdge> adjacent = new HashSet<MEdge>();
-			while (e.hasNext()) {
-				MEdge edge = e.next();
-				if ((edge.EndIndex==mm.getElementID())&&(mod==GraphConstraints.REMOVAL))
-						adjacent.add(edge);
-				else if ((edge.StartIndex==mm.getElementID())&&(mod==GraphConstraints.REMOVAL))
-					adjacent.add(edge);
-				else if ((edge.EndIndex==mm.getOldElementID())&&(mod==GraphConstraints.INDEXCHANGED))
-					edge.EndIndex = mm.getElementID();
-				else if ((edge.StartIndex==mm.getOldElementID())&&(mod==GraphConstraints.INDEXCHANGED))
-					edge.StartIndex = mm.getElementID();
-			}	
-			e = adjacent.iterator();
+			Iterator<Integer> ii = adjacentIndices.iterator();
+			while (ii.hasNext())
+				adjacent.add(mEdges.get(ii.next()));
+			Iterator<MEdge> e = adjacent.iterator();
 			while (e.hasNext())
 			{
-				//So remove them silent
-				mEdges.remove(e.next());
+				MEdge edge = e.next();
+				removeIncidences(edge);
+				if (mod==GraphConstraints.REMOVAL) //So remove them silent
+				{
+					mEdges.remove(edge.index);
+					indices.free(edge.index);
+				}
+				else
+				{
+					if (edge.StartIndex==node)
+						edge.StartIndex = mm.getElementID();
+					if (edge.EndIndex==node)
+						edge.EndIndex = mm.getElementID();
+					addIncidences(edge);
+				}
 			}
 		}
 		finally {EdgeLock.unlock();}
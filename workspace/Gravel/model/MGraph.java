@@ -9,6 +9,8 @@ import java.util.Observable;
 
 import model.Messages.GraphConstraints;
 import model.Messages.GraphMessage;
+import model.Messages.GraphMessageBus;
+import model.Messages.GraphMessageListener;
 import model.Messages.MGraphMessage;
 /**
  * MGraph
@@ -33,6 +35,7 @@ public class MGraph extends Observable implements Observer, MGraphInterface
 	public MNodeSet modifyNodes;
 	public MEdgeSet modifyEdges;
 	public MSubgraphSet modifySubgraphs;
+	private GraphMessageBus bus;
 	boolean directed;
 	boolean allowloops;
 	boolean allowmultiple;
@@ -44,6 +47,7 @@ public class MGraph extends Observable implements Observer, MGraphInterface
 	 */
 	public MGraph(boolean d, boolean l, boolean m)
 	{
+		bus = new GraphMessageBus();
 		modifyNodes = new MNodeSet();
 		modifyEdges = new MEdgeSet(d,l,m);
 		modifySubgraphs = new MSubgraphSet();
@@ -61,50 +65,37 @@ public class MGraph extends Observable implements Observer, MGraphInterface
 		allowmultiple = m;
 	}
 	/**
-	 * clone this graph and 
+	 * clone this graph. The sets are copied directly without any notification, so
+	 * the time needed is linear in the number of elements and subgraphs
 	 * @return the copy
 	 */
 	public MGraph clone()
 	{
 		MGraph clone = new MGraph(directed,allowloops, allowmultiple);
-		//Untergraphen
-		Iterator<MSubgraph> n1 = modifySubgraphs.getIterator();
-		while (n1.hasNext())
-			clone.modifySubgraphs.add(n1.next().clone()); //Jedes Set kopieren
-		//Knoten
-		Iterator<MNode> n2 = modifyNodes.getIterator();
-		while (n2.hasNext())
+		clone.modifyNodes.addAll_(modifyNodes);
+		clone.modifyEdges.addAll_(modifyEdges);
+		clone.modifySubgraphs.addAll_(modifySubgraphs);
+		return clone;
+	}
+	/**
+	 * Create a read-only snapshot of the nodes and edges of this graph in compressed sparse rows,
+	 * that is not affected by later modifications of the graph
+	 * 
+	 * @return the snapshot
+	 */
+	public MGraphSnapshot snapshot()
+	{
+		modifyNodes.NodeLock.lock();
+		modifyEdges.EdgeLock.lock();
+		try
 		{
-			MNode actualNode = n2.next();
-			MNode Nodeclone = actualNode.clone();
-			clone.modifyNodes.add(Nodeclone);
-			//In alle Sets einfuegen
-			n1 = modifySubgraphs.getIterator();
-			while (n1.hasNext())
-			{
-				MSubgraph actualSet = n1.next();
-				if (actualSet.containsNode(actualNode.index))
-					clone.modifySubgraphs.addNodetoSubgraph(actualNode.index, actualSet.getIndex()); //Jedes Set kopieren
-			}
+			return new MGraphSnapshot(this);
 		}
-		//Analog Kanten
-		Iterator<MEdge> n3 = modifyEdges.getIterator();
-		while (n3.hasNext())
+		finally
 		{
-			MEdge actualEdge = n3.next();
-			MEdge cEdge = actualEdge.clone();
-			clone.modifyEdges.add(cEdge);
-			//In alle Sets einfuegen
-			n1 = modifySubgraphs.getIterator();
-			while (n1.hasNext())
-			{
-				MSubgraph actualSet = n1.next();
-				if (actualSet.containsEdge(actualEdge.index))
-					clone.modifySubgraphs.addEdgetoSubgraph(actualEdge.index, actualSet.getIndex()); //Jedes Set kopieren
-			}
+			modifyEdges.EdgeLock.unlock();
+			modifyNodes.NodeLock.unlock();
 		}
-		//und zurückgeben
-		return clone;
 	}
 	 /** informs all subscribers about a change. This Method is used to push a notify from outside
 	 * mit dem Oject o als Parameter
@@ -141,28 +132,28 @@ public class MGraph extends Observable implements Observer, MGraphInterface
 			setChanged();
 			notifyObservers(new GraphMessage(GraphConstraints.EDGE|GraphConstraints.DIRECTION,GraphConstraints.UPDATE|GraphConstraints.BLOCK_START,GraphConstraints.EDGE));
 			endstatus=GraphConstraints.BLOCK_END;
-			Iterator<MNode> n = modifyNodes.getIterator();				
+			//Only pairs of nodes with an edge between them are affected, so iterate the edges
+			Vector<MEdge> edges = new Vector<MEdge>();
+			Iterator<MEdge> n = modifyEdges.getIterator();				
+			while (n.hasNext())
+				edges.add(n.next());
+			n = edges.iterator();
 			while (n.hasNext())
 			{
-				MNode t = n.next();
-				Iterator<MNode> n2 = modifyNodes.getIterator();
-				while (n2.hasNext())
+				MEdge t = n.next();
+				if ((t.StartIndex < t.EndIndex)&&(modifyEdges.get(t.index)!=null))
 				{
-					MNode t2 = n2.next();
-					if (t.index <= t2.index)
+					Vector<Integer> ttot2 = modifyEdges.indicesBetween(t.StartIndex, t.EndIndex);
+					Vector<Integer> t2tot = modifyEdges.indicesBetween(t.EndIndex, t.StartIndex);
+					//In the nonmultiple case each Vector has exactely one or no edge in it
+					if ((!ttot2.isEmpty())&&(!t2tot.isEmpty()))
 					{
-						Vector<Integer> ttot2 = modifyEdges.indicesBetween(t.index, t2.index);
-						Vector<Integer> t2tot = modifyEdges.indicesBetween(t2.index, t.index);
-						//In the nonmultiple case each Vector has exactely one or no edge in it
-						if ((!ttot2.isEmpty())&&(!t2tot.isEmpty()))
-						{
-							int e1 = ttot2.firstElement();
-							int e2 = t2tot.firstElement();
-							MEdge m = modifyEdges.get(e2);
-							m.Value = modifyEdges.get(e2).Value+modifyEdges.get(e1).Value;
-							modifyEdges.remove(e1);
-							removed.set(e1);
-						}
+						int e1 = ttot2.firstElement();
+						int e2 = t2tot.firstElement();
+						MEdge m = modifyEdges.get(e2);
+						m.Value = modifyEdges.get(e2).Value+modifyEdges.get(e1).Value;
+						modifyEdges.remove(e1);
+						removed.set(e1);
 					}
 				}
 			}
@@ -237,34 +228,31 @@ public class MGraph extends Observable implements Observer, MGraphInterface
 			setChanged();
 			notifyObservers(new GraphMessage(GraphConstraints.MULTIPLE,GraphConstraints.UPDATE|GraphConstraints.BLOCK_START,GraphConstraints.EDGE));	
 			endstatus=GraphConstraints.BLOCK_END;
-			Iterator<MNode> n = modifyNodes.getIterator();				
+			//Only pairs of nodes with an edge between them are affected, so iterate the edges
+			Vector<MEdge> edges = new Vector<MEdge>();
+			Iterator<MEdge> n = modifyEdges.getIterator();				
+			while (n.hasNext())
+				edges.add(n.next());
+			n = edges.iterator();
 			while (n.hasNext())
 			{
-				MNode t = n.next();
-				Iterator<MNode> n2 = modifyNodes.getIterator();
-				while (n2.hasNext())
+				MEdge t = n.next();
+				//Already merged pairs contain just one edge, so they are not handled twice
+				if ((modifyEdges.get(t.index)!=null)&&(modifyEdges.cardinalityBetween(t.StartIndex, t.EndIndex)>1)) //we have to delete
 				{
-					MNode t2 = n2.next();
-					//if the graph is directed
-					if (((!directed)&&(t2.index<=t.index))||(directed)) //in the nondirected case only half the cases
+					Vector<Integer> multipleedges = modifyEdges.indicesBetween(t.StartIndex, t.EndIndex);
+					int value = modifyEdges.get(multipleedges.firstElement()).Value;
+					//Add up the values and remove the edges from the second to the last
+					Iterator<Integer> iter = multipleedges.iterator();
+					iter.next();
+					while(iter.hasNext())
 					{
-						if (modifyEdges.cardinalityBetween(t.index, t2.index)>1) //we have to delete
-						{
-							Vector<Integer> multipleedges = modifyEdges.indicesBetween(t.index, t2.index);
-							int value = modifyEdges.get(multipleedges.firstElement()).Value;
-							//Add up the values and remove the edges from the second to the last
-							Iterator<Integer> iter = multipleedges.iterator();
-							iter.next();
-							while(iter.hasNext())
-							{
-									int nextindex = iter.next();
-									value += modifyEdges.get(nextindex).Value;
-									modifyEdges.remove(nextindex);
-									removed.set(nextindex);
-							}
-							modifyEdges.get(multipleedges.firstElement()).Value = value;
-						}
-					}					
+							int nextindex = iter.next();
+							value += modifyEdges.get(nextindex).Value;
+							modifyEdges.remove(nextindex);
+							removed.set(nextindex);
+					}
+					modifyEdges.get(multipleedges.firstElement()).Value = value;
 				}
 			}
 		}
@@ -275,6 +263,33 @@ public class MGraph extends Observable implements Observer, MGraphInterface
 		notifyObservers(new GraphMessage(GraphConstraints.MULTIPLE,GraphConstraints.UPDATE|endstatus,GraphConstraints.EDGE));	
 		return removed;
 	}
+	/**
+	 * Subscribe a listener to the GraphMessages of this graph
+	 * @param l the listener
+	 * @param mask the element types (see GraphConstraints) the listener is interested in
+	 */
+	public void addGraphMessageListener(GraphMessageListener l, int mask)
+	{
+		bus.subscribe(l,mask);
+	}
+	/**
+	 * Remove a listener from this graph
+	 * @param l the listener
+	 */
+	public void removeGraphMessageListener(GraphMessageListener l)
+	{
+		bus.unsubscribe(l);
+	}
+	/**
+	 * Send GraphMessages to the matching GraphMessageListeners before informing the Observers,
+	 * which are mostly the internal sets
+	 */
+	public void notifyObservers(Object arg)
+	{
+		if ((arg instanceof GraphMessage)&&hasChanged())
+			bus.publish((GraphMessage)arg);
+		super.notifyObservers(arg);
+	}
 	public int getType()
 	{
 		return MGraphInterface.GRAPH;
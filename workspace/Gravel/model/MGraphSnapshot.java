@@ -0,0 +1,281 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * A read-only copy of the structure of an MGraph, taken at one point in time
+ *
+ * The nodes are renumbered densely from 0 to nodeCount()-1 (their position) and
+ * the edges are stored in compressed sparse rows, i.e. for each position v the
+ * outgoing edges are the entries getOutStart(v) to getOutEnd(v)-1, the incoming ones
+ * the entries getInStart(v) to getInEnd(v)-1. Within a row the entries are sorted by
+ * the position of the adjacent node.
+ *
+ * Because all values are kept in primitive arrays, algorithms may iterate the snapshot
+ * without any allocation and without locking, even while the MGraph it was taken from
+ * is modified.
+ *
+ * @author Ronny Bergmann
+ * @see MGraph#snapshot()
+ */
+public class MGraphSnapshot {
+
+	private final boolean directed, allowloops, allowmultiple;
+	//position -> node index
+	private final int[] nodeIndices;
+	//node index -> position, -1 if no such node exists
+	private final int[] positions;
+	//Rows of the outgoing and incoming edges
+	private final int[] outOffsets, outTargets, outEdges, outValues;
+	private final int[] inOffsets, inSources, inEdges, inValues;
+	/**
+	 * Create the snapshot of an MGraph. The caller has to ensure, that the graph
+	 * is not modified while this is running
+	 *
+	 * @param g the graph
+	 */
+	MGraphSnapshot(MGraph g)
+	{
+		directed = g.isDirected();
+		allowloops = g.isLoopAllowed();
+		allowmultiple = g.isMultipleAllowed();
+		int n = g.modifyNodes.cardinality();
+		nodeIndices = new int[n];
+		int maxindex = 0, pos=0;
+		Iterator<MNode> nodeiter = g.modifyNodes.getIterator();
+		while (nodeiter.hasNext())
+		{
+			int index = nodeiter.next().index;
+			nodeIndices[pos++] = index;
+			if (index > maxindex)
+				maxindex = index;
+		}
+		Arrays.sort(nodeIndices);
+		positions = new int[maxindex+1];
+		Arrays.fill(positions,-1);
+		for (int i=0; i<n; i++)
+			positions[nodeIndices[i]] = i;
+		//Count the degrees and build the offsets
+		int m = g.modifyEdges.cardinality();
+		MEdge[] edges = new MEdge[m];
+		outOffsets = new int[n+1];
+		inOffsets = new int[n+1];
+		Iterator<MEdge> edgeiter = g.modifyEdges.getIterator();
+		int e=0;
+		while (edgeiter.hasNext())
+		{
+			MEdge me = edgeiter.next();
+			edges[e++] = me;
+			outOffsets[positions[me.StartIndex]+1]++;
+			inOffsets[positions[me.EndIndex]+1]++;
+		}
+		for (int i=0; i<n; i++)
+		{
+			outOffsets[i+1] += outOffsets[i];
+			inOffsets[i+1] += inOffsets[i];
+		}
+		//Fill the rows, sorted by edge index first, so that equal neighbours stay in index order
+		Arrays.sort(edges, new Comparator<MEdge>()
+		{
+			public int compare(MEdge a, MEdge b)
+			{
+				return (a.index < b.index) ? -1 : ((a.index==b.index) ? 0 : 1);
+			}
+		});
+		outTargets = new int[m]; outEdges = new int[m]; outValues = new int[m];
+		inSources = new int[m]; inEdges = new int[m]; inValues = new int[m];
+		int[] outFill = new int[n], inFill = new int[n];
+		for (int i=0; i<m; i++)
+		{
+			int s = positions[edges[i].StartIndex], t = positions[edges[i].EndIndex];
+			int k = outOffsets[s] + outFill[s]++;
+			outTargets[k] = t; outEdges[k] = edges[i].index; outValues[k] = edges[i].Value;
+			k = inOffsets[t] + inFill[t]++;
+			inSources[k] = s; inEdges[k] = edges[i].index; inValues[k] = edges[i].Value;
+		}
+		for (int i=0; i<n; i++)
+		{
+			sortRow(outTargets, outEdges, outValues, outOffsets[i], outOffsets[i+1]);
+			sortRow(inSources, inEdges, inValues, inOffsets[i], inOffsets[i+1]);
+		}
+	}
+	/**
+	 * Sort one row by the adjacent node (stable insertion sort, rows are short)
+	 */
+	private static void sortRow(int[] adj, int[] edge, int[] value, int from, int to)
+	{
+		for (int i=from+1; i<to; i++)
+		{
+			int a = adj[i], e = edge[i], v = value[i];
+			int j = i-1;
+			while ((j>=from)&&(adj[j]>a))
+			{
+				adj[j+1] = adj[j]; edge[j+1] = edge[j]; value[j+1] = value[j];
+				j--;
+			}
+			adj[j+1] = a; edge[j+1] = e; value[j+1] = v;
+		}
+	}
+	/**
+	 * Indicator whether the graph was directed
+	 */
+	public boolean isDirected()
+	{
+		return directed;
+	}
+	/**
+	 * Indicator whether the graph allowed loops
+	 */
+	public boolean isLoopAllowed()
+	{
+		return allowloops;
+	}
+	/**
+	 * Indicator whether the graph allowed multiple edges
+	 */
+	public boolean isMultipleAllowed()
+	{
+		return allowmultiple;
+	}
+	/**
+	 * @return number of nodes in the snapshot
+	 */
+	public int nodeCount()
+	{
+		return nodeIndices.length;
+	}
+	/**
+	 * @return number of edges in the snapshot
+	 */
+	public int edgeCount()
+	{
+		return outTargets.length;
+	}
+	/**
+	 * Get the index of the node at a position
+	 * @param pos position between 0 and nodeCount()-1
+	 * @return the node index
+	 */
+	public int getNodeIndex(int pos)
+	{
+		return nodeIndices[pos];
+	}
+	/**
+	 * Get the position of a node
+	 * @param nodeindex index of the node
+	 * @return its position or -1 if no such node was in the graph
+	 */
+	public int getPosition(int nodeindex)
+	{
+		if ((nodeindex < 0)||(nodeindex >= positions.length))
+			return -1;
+		return positions[nodeindex];
+	}
+	/**
+	 * @param pos position of a node
+	 * @return first entry of the outgoing edges of the node
+	 */
+	public int getOutStart(int pos)
+	{
+		return outOffsets[pos];
+	}
+	/**
+	 * @param pos position of a node
+	 * @return entry after the last outgoing edge of the node
+	 */
+	public int getOutEnd(int pos)
+	{
+		return outOffsets[pos+1];
+	}
+	/**
+	 * @param k entry of an outgoing edge
+	 * @return position of the end node of that edge
+	 */
+	public int getOutTarget(int k)
+	{
+		return outTargets[k];
+	}
+	/**
+	 * @param k entry of an outgoing edge
+	 * @return index of that edge
+	 */
+	public int getOutEdge(int k)
+	{
+		return outEdges[k];
+	}
+	/**
+	 * @param k entry of an outgoing edge
+	 * @return value of that edge
+	 */
+	public int getOutValue(int k)
+	{
+		return outValues[k];
+	}
+	/**
+	 * @param pos position of a node
+	 * @return first entry of the incoming edges of the node
+	 */
+	public int getInStart(int pos)
+	{
+		return inOffsets[pos];
+	}
+	/**
+	 * @param pos position of a node
+	 * @return entry after the last incoming edge of the node
+	 */
+	public int getInEnd(int pos)
+	{
+		return inOffsets[pos+1];
+	}
+	/**
+	 * @param k entry of an incoming edge
+	 * @return position of the start node of that edge
+	 */
+	public int getInSource(int k)
+	{
+		return inSources[k];
+	}
+	/**
+	 * @param k entry of an incoming edge
+	 * @return index of that edge
+	 */
+	public int getInEdge(int k)
+	{
+		return inEdges[k];
+	}
+	/**
+	 * @param k entry of an incoming edge
+	 * @return value of that edge
+	 */
+	public int getInValue(int k)
+	{
+		return inValues[k];
+	}
+	/**
+	 * @param pos position of a node
+	 * @return number of edges starting at that node
+	 */
+	public int getOutDegree(int pos)
+	{
+		return outOffsets[pos+1]-outOffsets[pos];
+	}
+	/**
+	 * @param pos position of a node
+	 * @return number of edges ending at that node
+	 */
+	public int getInDegree(int pos)
+	{
+		return inOffsets[pos+1]-inOffsets[pos];
+	}
+	/**
+	 * The degree of a node, where a loop counts twice
+	 * @param pos position of a node
+	 * @return number of edge ends at that node
+	 */
+	public int getDegree(int pos)
+	{
+		return getOutDegree(pos)+getInDegree(pos);
+	}
+}
@@ -27,6 +27,7 @@ import model.Messages.MGraphMessage;
 public class MHyperEdgeSet extends Observable implements Observer {
 
 	private HashSet<MHyperEdge> mHyperEdges;
+	private IndexAllocator indices;
 	Lock HyperEdgeLock;
 	/**
 	 * Create a Hyperdge Set for Hypergraphs. 
@@ -34,6 +35,7 @@ public class MHyperEdgeSet extends Observable implements Observer {
 	public MHyperEdgeSet()
 	{
 		mHyperEdges = new HashSet<MHyperEdge>();
+		indices = new IndexAllocator();
 		HyperEdgeLock = new ReentrantLock();
 	}
 	/**
@@ -68,6 +70,7 @@ public class MHyperEdgeSet extends Observable implements Observer {
 		try 
 		{
 			mHyperEdges.add(e.clone());
+			indices.use(e.index);
 		} 
 		finally{HyperEdgeLock.unlock();}
 		return true;
@@ -127,15 +130,22 @@ public class MHyperEdgeSet extends Observable implements Observer {
 		HyperEdgeLock.lock();
 		try
 		{
-			mHyperEdges.remove(old);
+			if (old!=null)
+			{
+				mHyperEdges.remove(old);
+				indices.free(old.index);
+			}
 			changed = add_(he);
 			if (changed) //New edge was adable
 			{
 					setChanged();
 					notifyObservers(new GraphMessage(GraphConstraints.HYPEREDGE,he.index,GraphConstraints.UPDATE,GraphConstraints.HYPEREDGE));	
 			}
-			else
+			else if (old!=null)
+			{
 				mHyperEdges.add(old); //Don't replace, add again
+				indices.use(old.index);
+			}
 		}
 		finally {HyperEdgeLock.unlock();}
 		return changed;
@@ -157,6 +167,7 @@ public class MHyperEdgeSet extends Observable implements Observer {
 				setChanged();
 				notifyObservers(new MGraphMessage(GraphConstraints.EDGE,i,GraphConstraints.REMOVAL));
 				mHyperEdges.remove(toDel);
+				indices.free(i);
 				setChanged();
 				notifyObservers(new GraphMessage(GraphConstraints.EDGE,i,GraphConstraints.REMOVAL,GraphConstraints.EDGE));	
 			}
@@ -202,26 +213,66 @@ public class MHyperEdgeSet extends Observable implements Observer {
 		}
 	}
 	/**
-	 * get a free edge index
-	 * @return max_exge_index + 1
+	 * Get a free hyperedge index for a new hyperedge. The index is reserved at once,
+	 * so that concurrent callers never get the same index
+	 * @return max hyperedge index +1 or the smallest free index, depending on the index policy
 	 */
 	public int getNextIndex()
+	{
+		return indices.allocate();
+	}
+	/**
+	 * Give back an index from getNextIndex() that was not used for a new hyperedge,
+	 * e.g. because the hyperedge was not added or the creation was cancelled.
+	 * If a hyperedge with this index exists, nothing happens
+	 * @param i index to give back
+	 */
+	public void releaseIndex(int i)
 	{
 		HyperEdgeLock.lock();
-		int index = 1;
-		try {
-			Iterator<MHyperEdge> n = mHyperEdges.iterator();
-			while (n.hasNext()) {
-				MHyperEdge temp = n.next();
-				if (temp.index >= index) // index vergeben
-				{
-					index = temp.index + 1;
-				}
+		try
+		{
+			if (get(i)==null)
+				indices.release(i);
+		}
+		finally {HyperEdgeLock.unlock();}
+	}
+	/**
+	 * @return the maximal hyperedge index ever used, so all hyperedges have an index of at most this value
+	 */
+	public int getMaxIndex()
+	{
+		return indices.getMaxIndex();
+	}
+	/**
+	 * Add copies of all hyperedges of another set without notification.
+	 * This is only used to clone a hypergraph into a new and empty one, where nobody has to be informed
+	 * @param s the set to copy the hyperedges from
+	 */
+	void addAll_(MHyperEdgeSet s)
+	{
+		s.HyperEdgeLock.lock();
+		HyperEdgeLock.lock();
+		try
+		{
+			Iterator<MHyperEdge> n = s.mHyperEdges.iterator();
+			while (n.hasNext())
+			{
+				MHyperEdge c = n.next().clone();
+				mHyperEdges.add(c);
+				indices.use(c.index);
 			}
-		} finally {
-			HyperEdgeLock.unlock();
+			indices.setPolicy(s.indices.getPolicy());
 		}
-		return index;
+		finally {HyperEdgeLock.unlock(); s.HyperEdgeLock.unlock();}
+	}
+	/**
+	 * Set the policy for new indices, see IndexAllocator
+	 * @param p either IndexAllocator.MONOTONIC or IndexAllocator.COMPACTING
+	 */
+	public void setIndexPolicy(int p)
+	{
+		indices.setPolicy(p);
 	}
 	/**
 	 * get a list of the edge names in a vector, where each edge name is stored at it's index
@@ -327,7 +378,9 @@ public class MHyperEdgeSet extends Observable implements Observer {
 			while (e.hasNext())
 			{
 				//So remove them silent
-				mHyperEdges.remove(e.next());
+				MHyperEdge edge = e.next();
+				mHyperEdges.remove(edge);
+				indices.free(edge.index);
 			}
 		}
 		finally {HyperEdgeLock.unlock();}
@@ -5,6 +5,8 @@ import java.util.Observer;
 import java.util.Observable;
 
 import model.Messages.GraphMessage;
+import model.Messages.GraphMessageBus;
+import model.Messages.GraphMessageListener;
 /**
  * MHyperGraph
  * 
@@ -24,6 +26,7 @@ public class MHyperGraph extends Observable implements Observer, MGraphInterface
 	public MNodeSet modifyNodes;
 	public MHyperEdgeSet modifyHyperEdges;
 	public MSubgraphSet modifySubgraphs;
+	private GraphMessageBus bus;
 	/**
 	 * Create a new Graph where
 	 * @param d indicates whether edges are directed (true) or not (false
@@ -32,6 +35,7 @@ public class MHyperGraph extends Observable implements Observer, MGraphInterface
 	 */
 	public MHyperGraph()
 	{
+		bus = new GraphMessageBus();
 		modifyNodes = new MNodeSet();
 		modifyHyperEdges = new MHyperEdgeSet();
 		modifySubgraphs = new MSubgraphSet();
@@ -46,49 +50,16 @@ public class MHyperGraph extends Observable implements Observer, MGraphInterface
 		addObserver(modifyHyperEdges); //for changes of the Booleans
 	}
 	/**
-	 * clone this graph and 
+	 * clone this graph. The sets are copied directly without any notification, so
+	 * the time needed is linear in the number of elements and subgraphs
 	 * @return the copy
 	 */
 	public MHyperGraph clone()
 	{
 		MHyperGraph clone = new MHyperGraph();
-		//Untergraphen
-		Iterator<MSubgraph> n1 = modifySubgraphs.getIterator();
-		while (n1.hasNext())
-			clone.modifySubgraphs.add(n1.next().clone()); //Jedes Set kopieren
-		//Knoten
-		Iterator<MNode> n2 = modifyNodes.getIterator();
-		while (n2.hasNext())
-		{
-			MNode actualNode = n2.next();
-			MNode Nodeclone = actualNode.clone();
-			clone.modifyNodes.add(Nodeclone);
-			//In alle Sets einfuegen
-			n1 = modifySubgraphs.getIterator();
-			while (n1.hasNext())
-			{
-				MSubgraph actualSet = n1.next();
-				if (actualSet.containsNode(actualNode.index))
-					clone.modifySubgraphs.addNodetoSubgraph(actualNode.index, actualSet.getIndex()); //Jedes Set kopieren
-			}
-		}
-		//Analog Kanten
-		Iterator<MHyperEdge> n3 = modifyHyperEdges.getIterator();
-		while (n3.hasNext())
-		{
-			MHyperEdge actualEdge = n3.next();
-			MHyperEdge cEdge = actualEdge.clone();
-			clone.modifyHyperEdges.add(cEdge);
-			//In alle Sets einfuegen
-			n1 = modifySubgraphs.getIterator();
-			while (n1.hasNext())
-			{
-				MSubgraph actualSet = n1.next();
-				if (actualSet.containsEdge(actualEdge.index))
-					clone.modifySubgraphs.addEdgetoSubgraph(actualEdge.index, actualSet.getIndex()); //Jedes Set kopieren
-			}
-		}
-		//und zurückgeben
+		clone.modifyNodes.addAll_(modifyNodes);
+		clone.modifyHyperEdges.addAll_(modifyHyperEdges);
+		clone.modifySubgraphs.addAll_(modifySubgraphs);
 		return clone;
 	}
 	 /** informs all subscribers about a change. This Method is used to push a notify from outside
@@ -101,6 +72,33 @@ public class MHyperGraph extends Observable implements Observer, MGraphInterface
 		else
 			notifyObservers(o);
 	}	
+	/**
+	 * Subscribe a listener to the GraphMessages of this graph
+	 * @param l the listener
+	 * @param mask the element types (see GraphConstraints) the listener is interested in
+	 */
+	public void addGraphMessageListener(GraphMessageListener l, int mask)
+	{
+		bus.subscribe(l,mask);
+	}
+	/**
+	 * Remove a listener from this graph
+	 * @param l the listener
+	 */
+	public void removeGraphMessageListener(GraphMessageListener l)
+	{
+		bus.unsubscribe(l);
+	}
+	/**
+	 * Send GraphMessages to the matching GraphMessageListeners before informing the Observers,
+	 * which are mostly the internal sets
+	 */
+	public void notifyObservers(Object arg)
+	{
+		if ((arg instanceof GraphMessage)&&hasChanged())
+			bus.publish((GraphMessage)arg);
+		super.notifyObservers(arg);
+	}
 	public int getType()
 	{
 		return MGraphInterface.HYPERGRAPH;
@@ -1,6 +1,6 @@
 package model;
 
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Observable;
 import java.util.Observer;
@@ -20,17 +20,21 @@ import model.Messages.MGraphMessage;
  * Internal Messages are neccessary to react on internal changes before they
  * get externally known (mainly deletions and index change)
  * 
+ * The nodes are stored by their index, so that each access by index is in constant time
+ * 
  * @author Ronny Bergmann
  *
  */
 public class MNodeSet extends Observable implements Observer {
 
-	private HashSet<MNode> mNodes;
+	private HashMap<Integer,MNode> mNodes;
+	private IndexAllocator indices;
 	Lock NodeLock;
 	
 	public MNodeSet()
 	{
-		mNodes = new HashSet<MNode>();
+		mNodes = new HashMap<Integer,MNode>();
+		indices = new IndexAllocator();
 		NodeLock = new ReentrantLock();
 	}
 	/**
@@ -44,7 +48,8 @@ public class MNodeSet extends Observable implements Observer {
 		NodeLock.lock();
 		try 
 		{
-			mNodes.add(m);
+			mNodes.put(m.index,m);
+			indices.use(m.index);
 			//No internal message
 			setChanged();
 			notifyObservers(new GraphMessage(GraphConstraints.NODE,m.index,GraphConstraints.ADDITION));	
@@ -62,15 +67,8 @@ public class MNodeSet extends Observable implements Observer {
 		NodeLock.lock();
 		try
 		{
-			Iterator<MNode> n = mNodes.iterator();
-			while (n.hasNext())
-			{
-				MNode t = n.next();
-				if (t.index==i)
-					return t;
-			}
+			return mNodes.get(i);
 		} finally {NodeLock.unlock();}
-		return null;
 	}
 	/**
 	 * remove a node from the graph. thereby the adjacent edges are removed too. The indices of the deleted edges
@@ -84,7 +82,12 @@ public class MNodeSet extends Observable implements Observer {
 		MNode toDel = get(i);
 		if (toDel==null)
 			return; //Nothing to delete
-		mNodes.remove(toDel);
+		NodeLock.lock();
+		try
+		{
+			mNodes.remove(i);
+			indices.free(i);
+		} finally {NodeLock.unlock();}
 		//Notify all Edges and Subsets about removal - MGraph INternal
 		setChanged();
 		notifyObservers(new MGraphMessage(GraphConstraints.NODE,i,GraphConstraints.REMOVAL));
@@ -105,8 +108,7 @@ public class MNodeSet extends Observable implements Observer {
 		NodeLock.lock();
 		try 
 		{
-			mNodes.remove(oldnode);
-			mNodes.add(node);
+			mNodes.put(node.index,node);
 			//Only External because the internal integrity is not affected
 			setChanged();
 			notifyObservers(new GraphMessage(GraphConstraints.NODE,node.index,GraphConstraints.UPDATE,GraphConstraints.NODE));	
@@ -132,28 +134,79 @@ public class MNodeSet extends Observable implements Observer {
 		setChanged();
 		notifyObservers(new MGraphMessage(GraphConstraints.NODE, newi, oldi, GraphConstraints.INDEXCHANGED));
 		//And Change the oldnode aswell
-		oldn.index=newi;
+		NodeLock.lock();
+		try
+		{
+			mNodes.remove(oldi);
+			oldn.index=newi;
+			mNodes.put(newi,oldn);
+			indices.free(oldi);
+			indices.use(newi);
+		} finally {NodeLock.unlock();}
 		setChanged();
 		notifyObservers(new GraphMessage(GraphConstraints.NODE, GraphConstraints.INDEXCHANGED, GraphConstraints.GRAPH_ALL_ELEMENTS));	
 	}
 	/**
-	 * @return max node index +1
+	 * Get a free node index for a new node. The index is reserved at once,
+	 * so that concurrent callers never get the same index
+	 * @return max node index +1 or the smallest free index, depending on the index policy
 	 */
 	public int getNextIndex()
 	{
-		int index = 1;
+		return indices.allocate();
+	}
+	/**
+	 * Give back an index from getNextIndex() that was not used for a new node,
+	 * e.g. because the node was not added or the creation was cancelled.
+	 * If a node with this index exists, nothing happens
+	 * @param i index to give back
+	 */
+	public void releaseIndex(int i)
+	{
 		NodeLock.lock();
-		try {
-			Iterator<MNode> n = mNodes.iterator();
-			while (n.hasNext()) {
-				MNode temp = n.next();
-				if (temp.index >= index) // index vergeben
-				{
-					index = temp.index + 1;
-				}
+		try
+		{
+			if (mNodes.get(i)==null)
+				indices.release(i);
+		}
+		finally {NodeLock.unlock();}
+	}
+	/**
+	 * @return the maximal node index ever used, so all nodes have an index of at most this value
+	 */
+	public int getMaxIndex()
+	{
+		return indices.getMaxIndex();
+	}
+	/**
+	 * Add copies of all nodes of another set without notification.
+	 * This is only used to clone a graph into a new and empty graph, where nobody has to be informed
+	 * @param s the set to copy the nodes from
+	 */
+	void addAll_(MNodeSet s)
+	{
+		s.NodeLock.lock();
+		NodeLock.lock();
+		try
+		{
+			Iterator<MNode> n = s.mNodes.values().iterator();
+			while (n.hasNext())
+			{
+				MNode c = n.next().clone();
+				mNodes.put(c.index,c);
+				indices.use(c.index);
 			}
-		} finally {NodeLock.unlock();}
-		return index;
+			indices.setPolicy(s.indices.getPolicy());
+		}
+		finally {NodeLock.unlock(); s.NodeLock.unlock();}
+	}
+	/**
+	 * Set the policy for new indices, see IndexAllocator
+	 * @param p either IndexAllocator.MONOTONIC or IndexAllocator.COMPACTING
+	 */
+	public void setIndexPolicy(int p)
+	{
+		indices.setPolicy(p);
 	}
 	/**
 	 * get a list of the node names in a vector, where each node name is stored at it's index
@@ -163,14 +216,14 @@ public class MNodeSet extends Observable implements Observer {
 	 */
 	public Vector<String> getNames() {
 		Vector<String> ret = new Vector<String>();
-		Iterator<MNode> n = mNodes.iterator();
+		Iterator<MNode> n = mNodes.values().iterator();
 		while (n.hasNext()) {
 			MNode actual = n.next();
 			if ((actual.index + 1) > ret.size()) {
 				ret.setSize(actual.index + 1);
 			}
 			if (actual.index!=0) //kein temp-knoten
-				ret.set(actual.index, get(actual.index).name);
+				ret.set(actual.index, actual.name);
 		}
 		return ret;
 	}
@@ -188,7 +241,7 @@ public class MNodeSet extends Observable implements Observer {
 	 */
 	public Iterator<MNode> getIterator()
 	{
-			return mNodes.iterator();
+			return mNodes.values().iterator();
 	}
 	
 	public void update(Observable o, Object arg) {
@@ -32,12 +32,8 @@ public class MSubgraph
 	public MSubgraph clone()
 	{
 		MSubgraph c = new MSubgraph(index, SetName);
-		for (int i=0; i < setnodes.size(); i++)
-			if (setnodes.get(i))
-				c.addNode(i);
-		for (int i=0; i < setedges.size(); i++)
-			if (setedges.get(i))
-				c.addEdge(i);
+		c.setnodes = (BitSet)setnodes.clone();
+		c.setedges = (BitSet)setedges.clone();
 		return c;
 	}
 	/**
@@ -94,6 +90,24 @@ public class MSubgraph
 	{
 		return setedges.get(i);
 	}
+	/**
+	 * Get the indices of all nodes of this MSubgraph.
+	 * Changes to the returned Value don't affect the MSubgraph itself
+	 * @return a BitSet of the node indices
+	 */
+	public BitSet getNodes()
+	{
+		return (BitSet) setnodes.clone();
+	}
+	/**
+	 * Get the indices of all edges or hyperedges of this MSubgraph.
+	 * Changes to the returned Value don't affect the MSubgraph itself
+	 * @return a BitSet of the edge indices
+	 */
+	public BitSet getEdges()
+	{
+		return (BitSet) setedges.clone();
+	}
 	/**
 	 * Get the Name of the MSubgraph
 	 * @return the name
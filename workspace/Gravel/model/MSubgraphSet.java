@@ -19,10 +19,12 @@ import model.Messages.MGraphMessage;
 public class MSubgraphSet extends Observable implements Observer {
 
 	HashSet<MSubgraph> mSubgraphs;
+	private IndexAllocator indices;
 
 	public MSubgraphSet()
 	{
 		mSubgraphs = new HashSet<MSubgraph>();
+		indices = new IndexAllocator();
 	}
 	/**
 	 * Add a new subgraph. if the index is already in use, nothing happens
@@ -33,6 +35,7 @@ public class MSubgraphSet extends Observable implements Observer {
 		if (get(s.getIndex())==null)
 		{
 			mSubgraphs.add(s.clone());
+			indices.use(s.getIndex());
 			setChanged();
 			notifyObservers(new GraphMessage(GraphConstraints.SUBGRAPH,s.getIndex(),GraphConstraints.ADDITION,GraphConstraints.SUBGRAPH));	
 	
@@ -49,6 +52,7 @@ public class MSubgraphSet extends Observable implements Observer {
 		if (toDelete!=null)
 		{
 			mSubgraphs.remove(toDelete);
+			indices.free(index);
 			setChanged();
 			notifyObservers(new GraphMessage(GraphConstraints.SUBGRAPH,index,GraphConstraints.REMOVAL,GraphConstraints.GRAPH_ALL_ELEMENTS));	
 			return true;
@@ -74,20 +78,55 @@ public class MSubgraphSet extends Observable implements Observer {
 		return null;
 	}
 	/**
-	 * Get a free subgraph index
-	 * @return max_subgraph_index + 1
+	 * Get a free subgraph index for a new subgraph. The index is reserved at once,
+	 * so that concurrent callers never get the same index
+	 * @return max subgraph index +1 or the smallest free index, depending on the index policy
 	 */
-	public int getNextIndex() {
-		int index = 1;
-		Iterator<MSubgraph> n = mSubgraphs.iterator();
-		while (n.hasNext()) {
-			MSubgraph temp = n.next();
-			if (temp.getIndex() >= index) // index vergeben
-			{
-				index = temp.getIndex() + 1;
-			}
+	public int getNextIndex()
+	{
+		return indices.allocate();
+	}
+	/**
+	 * Give back an index from getNextIndex() that was not used for a new subgraph,
+	 * e.g. because the subgraph was not added or the creation was cancelled.
+	 * If a subgraph with this index exists, nothing happens
+	 * @param i index to give back
+	 */
+	public void releaseIndex(int i)
+	{
+		if (get(i)==null)
+			indices.release(i);
+	}
+	/**
+	 * @return the maximal subgraph index ever used, so all subgraphs have an index of at most this value
+	 */
+	public int getMaxIndex()
+	{
+		return indices.getMaxIndex();
+	}
+	/**
+	 * Add copies of all subgraphs of another set including their nodes and edges without notification.
+	 * This is only used to clone a graph into a new and empty graph, where nobody has to be informed
+	 * @param s the set to copy the subgraphs from
+	 */
+	void addAll_(MSubgraphSet s)
+	{
+		Iterator<MSubgraph> n = s.mSubgraphs.iterator();
+		while (n.hasNext())
+		{
+			MSubgraph c = n.next().clone();
+			mSubgraphs.add(c);
+			indices.use(c.getIndex());
 		}
-		return index;
+		indices.setPolicy(s.indices.getPolicy());
+	}
+	/**
+	 * Set the policy for new indices, see IndexAllocator
+	 * @param p either IndexAllocator.MONOTONIC or IndexAllocator.COMPACTING
+	 */
+	public void setIndexPolicy(int p)
+	{
+		indices.setPolicy(p);
 	}
 	/**
 	 * Add a Node to a Subgraph
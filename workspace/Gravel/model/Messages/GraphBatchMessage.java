@@ -0,0 +1,96 @@
+package model.Messages;
+
+import java.util.BitSet;
+/**
+ * A GraphMessage that summarizes all modifications of a batch,
+ * so that a whole bunch of changes is sent as just one message.
+ *
+ * Type, Status and Affected are the union of all recorded messages.
+ * The ID is only given, if exactely one element was modified in exactely one way,
+ * then this message behaves like the single message it replaces.
+ *
+ * Additionally the indices of all elements that were reported individually
+ * are kept for each type of element
+ *
+ * @author Ronny Bergmann
+ * @since 0.4
+ */
+public class GraphBatchMessage extends GraphMessage {
+
+	private BitSet nodes, edges, hyperedges, subgraphs;
+	private boolean complete;
+	/**
+	 * Create the summary of a batch
+	 * @param pType Type of Elements changed
+	 * @param pID ID of the only modified element or -1
+	 * @param pStatus the updates
+	 * @param pAffected Elements affected by this
+	 * @param n indices of modified nodes
+	 * @param e indices of modified edges
+	 * @param he indices of modified hyperedges
+	 * @param s indices of modified subgraphs
+	 * @param c true, if each recorded message was reported for one element, so that the indices contain all modified elements
+	 */
+	public GraphBatchMessage(int pType, int pID, int pStatus, int pAffected, BitSet n, BitSet e, BitSet he, BitSet s, boolean c)
+	{
+		super(pType,pID,pStatus,pAffected);
+		nodes = n;
+		edges = e;
+		hyperedges = he;
+		subgraphs = s;
+		complete = c;
+	}
+
+	public GraphMessage clone()
+	{
+		GraphBatchMessage clone = new GraphBatchMessage(getModifiedElementTypes(), getElementID(), getModification(), getAffectedElementTypes(),
+				(BitSet)nodes.clone(), (BitSet)edges.clone(), (BitSet)hyperedges.clone(), (BitSet)subgraphs.clone(), complete);
+		clone.setMessage(getMessage());
+		return clone;
+	}
+	/**
+	 * Get the indices of all nodes modified in the batch
+	 * @return a BitSet where each modified node index is set
+	 */
+	public BitSet getNodes()
+	{
+		return nodes;
+	}
+	/**
+	 * Get the indices of all edges modified in the batch
+	 * @return a BitSet where each modified edge index is set
+	 */
+	public BitSet getEdges()
+	{
+		return edges;
+	}
+	/**
+	 * Get the indices of all hyperedges modified in the batch
+	 * @return a BitSet where each modified hyperedge index is set
+	 */
+	public BitSet getHyperEdges()
+	{
+		return hyperedges;
+	}
+	/**
+	 * Get the indices of all subgraphs modified in the batch
+	 * @return a BitSet where each modified subgraph index is set
+	 */
+	public BitSet getSubgraphs()
+	{
+		return subgraphs;
+	}
+	/**
+	 * Indicates whether the indices contain all modified elements. This is not the case
+	 * if a message of the batch did not name a single element, e.g. a translation of the whole graph
+	 * @return true if all modified elements are given by their indices
+	 */
+	public boolean isComplete()
+	{
+		return complete;
+	}
+	public String toString()
+	{
+		return "Batch "+super.toString()+" Nodes:"+nodes+" Edges:"+edges+" HyperEdges:"+hyperedges+" Subgraphs:"+subgraphs;
+	}
+}
@@ -0,0 +1,106 @@
+package model.Messages;
+
+/**
+ * The GraphMessageBus delivers GraphMessages to all subscribed GraphMessageListeners
+ * 
+ * Each listener subscribes with a mask of element types and gets only
+ * messages, where the modified or affected element types share at least one
+ * type with the mask.
+ * 
+ * The Subscriptions are kept in an array that is copied on each (un)subscription, so
+ * sending a message needs neither a lock nor an allocation and listeners may
+ * (un)subscribe while a message is sent
+ * 
+ * @author Ronny Bergmann
+ * @since 0.4
+ */
+public class GraphMessageBus {
+
+	private static class Subscription
+	{
+		final GraphMessageListener listener;
+		final int mask;
+		Subscription(GraphMessageListener l, int m)
+		{
+			listener = l;
+			mask = m;
+		}
+	}
+	private static final Subscription[] NOSUBSCRIPTIONS = new Subscription[0];
+	
+	private volatile Subscription[] subscriptions = NOSUBSCRIPTIONS;
+	/**
+	 * Subscribe a listener for all messages matching the mask.
+	 * If the listener is already subscribed, only its mask is changed
+	 * @param l the listener
+	 * @param mask element types of GraphConstraints, e.g. NODE|SELECTION, or GraphConstraints.ELEMENT_MASK for all messages
+	 */
+	public synchronized void subscribe(GraphMessageListener l, int mask)
+	{
+		if (l==null)
+			return;
+		Subscription[] old = subscriptions;
+		for (int i=0; i<old.length; i++)
+		{
+			if (old[i].listener==l)
+			{
+				Subscription[] s = old.clone();
+				s[i] = new Subscription(l,mask);
+				subscriptions = s;
+				return;
+			}
+		}
+		Subscription[] s = new Subscription[old.length+1];
+		System.arraycopy(old, 0, s, 0, old.length);
+		s[old.length] = new Subscription(l,mask);
+		subscriptions = s;
+	}
+	/**
+	 * Remove a listener, if it is subscribed
+	 * @param l the listener
+	 */
+	public synchronized void unsubscribe(GraphMessageListener l)
+	{
+		Subscription[] old = subscriptions;
+		for (int i=0; i<old.length; i++)
+		{
+			if (old[i].listener==l)
+			{
+				Subscription[] s = new Subscription[old.length-1];
+				System.arraycopy(old, 0, s, 0, i);
+				System.arraycopy(old, i+1, s, i, old.length-i-1);
+				subscriptions = s;
+				return;
+			}
+		}
+	}
+	/**
+	 * Indicates whether a listener is subscribed
+	 * @param l the listener
+	 * @return true if the listener is subscribed to this bus
+	 */
+	public boolean isSubscribed(GraphMessageListener l)
+	{
+		Subscription[] s = subscriptions;
+		for (int i=0; i<s.length; i++)
+			if (s[i].listener==l)
+				return true;
+		return false;
+	}
+	/**
+	 * Send a message to all listeners with a matching mask
+	 * @param m the message
+	 */
+	public void publish(GraphMessage m)
+	{
+		if (m==null)
+			return;
+		Subscription[] s = subscriptions;
+		int types = m.getModifiedElementTypes()|m.getAffectedElementTypes();
+		for (int i=0; i<s.length; i++)
+		{
+			if ((s[i].mask&types)!=0)
+				s[i].listener.handleGraphMessage(m);
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package model.Messages;
+/**
+ * A Listener for the GraphMessages of a graph (VGraph, VHyperGraph or MGraph)
+ * 
+ * It is subscribed with a mask of element types (see GraphConstraints)
+ * and only gets the messages, whose modified or affected elements
+ * match at least one of the types in the mask
+ * 
+ * @author Ronny Bergmann
+ * @since 0.4
+ */
+public interface GraphMessageListener {
+	/**
+	 * Handle a message of a graph the listener subscribed to
+	 * @param m the message, never null
+	 */
+	public void handleGraphMessage(GraphMessage m);
+}
@@ -1,10 +1,12 @@
 package model;
 
 import java.awt.Point;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Stack;
 import java.util.Vector;
 
 /**
@@ -41,11 +43,85 @@ public class NURBSShape {
 	public Vector<Point2D> controlPoints; //ControlPoints, TODO: Set protected after DEBUG
 	public Vector<Double> cpWeight;
 	protected Vector<Point2dHom> controlPointsHom; //b in homogeneous coordinates multiplied by weight
+	//The Vectors above are the interface to the curve, all algorithms work on these arrays, see refreshInternalValues()
+	protected double[] knotArray; //Knots
+	protected double[] PwArray; //controlPointsHom packed as x,y,w of each point
 	protected int NURBSType; //May be clamped or unclamped	
 	//TODO: Set Protected after finishing debug
 	public int maxKnotIndex, //The Knots are numbered 0,1,...,maxKnotIndex
 				maxCPIndex; //The ControlPoints are numbered 0,1,...,maxCPIndex
 	public int	degree; //Order of the piecewise polynomials - depends on the maxIndices Above: degree = maxKnotIndex-maxCPindex-1
+	//Number of tolerances the approximated curve is kept for
+	private static final int MAX_CACHED_CURVES = 4;
+	//Approximations of the curve by tolerance bucket, see getCurve
+	private HashMap<Integer,GeneralPath> curves = new HashMap<Integer,GeneralPath>();
+	//Number of pieces each knot intervall is divided into for the arc length table
+	private static final int ARC_LENGTH_PIECES = 8;
+	//Relative difference of the quadratures of a piece and its halves, up to which a piece of the table is not divided
+	private static final double ARC_LENGTH_TOLERANCE = 1e-10;
+	//Part of a piece, below which a piece is not divided any further
+	private static final double ARC_LENGTH_MIN_WIDTH = 1d/(double)(1<<20);
+	//Nodes and weights of the Gauss-Legendre quadrature with 5 points on [-1,1]
+	private static final double[] GAUSS_NODES = {-0.9061798459386640, -0.5384693101056831, 0d, 0.5384693101056831, 0.9061798459386640};
+	private static final double[] GAUSS_WEIGHTS = {0.2369268850561891, 0.4786286704993665, 0.5688888888888889, 0.4786286704993665, 0.2369268850561891};
+	//Arc length table, the parameters of the pieces and the length of the curve up to each of them, see getLength
+	private double[] arcParameters = null, arcLengths = null;
+	//Clamped Bezier segments with the bounding boxes of their control polygons for projections, see getBezierHierarchy
+	private NURBSShapeProjection.BezierHierarchy bezierHierarchy = null;
+	//Number of points sampleUniform computes by forward differences before it restarts them with exact values
+	private static final int FORWARD_STEPS = 64;
+	//Workspace of each thread for the evaluations that return new Points or Vectors
+	private static final ThreadLocal<Workspace> workspaces = new ThreadLocal<Workspace>()
+	{
+		protected Workspace initialValue()
+		{
+			return new Workspace();
+		}
+	};
+	/**
+	 * Scratch arrays for the evaluation of NURBSShapes, so that evaluating a curve
+	 * point by point does not allocate any memory.
+	 * 
+	 * The arrays grow with the degree and the number of derivatives of the evaluations,
+	 * so one workspace may be used for several curves, though not by two threads at the same time
+	 * 
+	 * @author Ronny Bergmann
+	 * @since 0.4
+	 */
+	public static class Workspace
+	{
+		private int maxDegree=-1, maxDerivate=-1;
+		//de Boor points and forward differences, x,y,w each
+		private double[] Pw, forward;
+		//Nonzero basis functions
+		private double[] basis, left, right;
+		private double[][] N;
+		//ControlPoints of the derivatives and the homogeneous derivatives, x,y,w each
+		private double[][] PK;
+		private double[] ders;
+		/**
+		 * Enlarge the arrays for curves up to degree d and derivatives up to deriv, if needed
+		 */
+		private void fit(int d, int deriv)
+		{
+			if (d > maxDegree)
+			{
+				maxDegree = d;
+				Pw = new double[3*(d+1)];
+				forward = new double[3*(d+1)];
+				basis = new double[d+1];
+				left = new double[d+1];
+				right = new double[d+1];
+				N = new double[d+1][d+1];
+				PK = new double[d+1][3*(d+1)];
+			}
+			if (deriv > maxDerivate)
+			{
+				maxDerivate = deriv;
+				ders = new double[3*(deriv+1)];
+			}
+		}
+	}
 	/**
 	 * Create an empty NURBSShape,
 	 * which has no controlpoints, weights nor knots
@@ -97,6 +173,15 @@ public class NURBSShape {
 		}
 		setCurveTo(knots, controlPoints, cpWeight);
 	}
+	/**
+	 * Private Constructor to (re)create with packed Knots and homogeneous ControlPoints
+	 * @param knots
+	 * @param pPw x,y,w of each ControlPoint in homogeneous coordinates
+	 */
+	protected NURBSShape(double[] knots, double[] pPw)
+	{
+		setCurveTo(toVector(knots), toControlPoints(pPw), toWeights(pPw));
+	}
 	/**
 	 * Set the Curve to another NURBS
 	 * @param pKnots
@@ -120,6 +205,11 @@ public class NURBSShape {
 		degree = Knots.size()-controlPoints.size()-1;
 		if (!isEmpty())
 			refreshInternalValues();
+		else
+		{
+			knotArray = new double[0];
+			PwArray = new double[0];
+		}
 	}
 	/**
 	 * Return the type of NURBS-Curve that is contained in here
@@ -246,16 +336,32 @@ public class NURBSShape {
 		controlPoints = new Vector<Point2D>();
 		maxCPIndex=0; maxKnotIndex=0; degree=0;
 		controlPointsHom = new Vector<Point2dHom>();
+		knotArray = new double[0];
+		PwArray = new double[0];
+		curves.clear();
+		arcParameters = null;
+		arcLengths = null;
+		bezierHierarchy = null;
 	}
 	/**
-	 * Initialization of the internal homogeneous Vector
-	 * Should be called everytime either the b or w vector are completly exchanged
+	 * Initialization of the internal homogeneous Vector and the arrays of Knots and homogeneous ControlPoints
+	 * Should be called everytime either the t, b or w vector are changed
 	 */
 	protected void refreshInternalValues()
 	{
+		curves.clear();
+		arcParameters = null;
+		arcLengths = null;
+		bezierHierarchy = null;
+		knotArray = new double[Knots.size()];
+		Iterator<Double> it = Knots.iterator();
+		int i=0;
+		while (it.hasNext())
+			knotArray[i++] = it.next().doubleValue();
 		controlPointsHom = new Vector<Point2dHom>();
+		PwArray = new double[3*controlPoints.size()];
 		Iterator<Point2D> ib =  controlPoints.iterator();
-		int i=0;
+		i=0;
 		while (ib.hasNext()) //Modify to be 3D Coordinates (homogeneous 2D)
 		{
 			Point2D p = ib.next();
@@ -263,9 +369,59 @@ public class NURBSShape {
 			Point2dHom newp = new Point2dHom(p.getX(),p.getY(),weight);
 			newp.set(newp.x*weight, newp.y*weight, weight);
 			controlPointsHom.add(newp);
+			PwArray[3*i] = newp.x;
+			PwArray[3*i+1] = newp.y;
+			PwArray[3*i+2] = weight;
 			i++;
 		}
 	}
+	/**
+	 * Set Knots and ControlPoints from their arrays, where the ControlPoints are given in homogeneous coordinates
+	 * the curve is not validated again
+	 * @param knots
+	 * @param pPw x,y,w of each ControlPoint
+	 */
+	private void setHomogeneous(double[] knots, double[] pPw)
+	{
+		Knots = toVector(knots);
+		controlPoints = toControlPoints(pPw);
+		cpWeight = toWeights(pPw);
+		maxCPIndex = controlPoints.size()-1;
+		maxKnotIndex = Knots.size()-1;
+		degree = Knots.size()-controlPoints.size()-1;
+		refreshInternalValues();
+	}
+	private static Vector<Double> toVector(double[] values)
+	{
+		Vector<Double> v = new Vector<Double>(values.length);
+		for (int i=0; i<values.length; i++)
+			v.add(values[i]);
+		return v;
+	}
+	/**
+	 * Get the ControlPoints from homogeneous ones, i.e. divided by their weight
+	 * @param pPw x,y,w of each ControlPoint
+	 * @return
+	 */
+	private static Vector<Point2D> toControlPoints(double[] pPw)
+	{
+		Vector<Point2D> v = new Vector<Point2D>(pPw.length/3);
+		for (int i=0; i<pPw.length; i+=3)
+		{
+			if (pPw[i+2]==0)
+				v.add(new Point2D.Double(pPw[i],pPw[i+1]));
+			else
+				v.add(new Point2D.Double(pPw[i]/pPw[i+2], pPw[i+1]/pPw[i+2]));
+		}
+		return v;
+	}
+	private static Vector<Double> toWeights(double[] pPw)
+	{
+		Vector<Double> v = new Vector<Double>(pPw.length/3);
+		for (int i=2; i<pPw.length; i+=3)
+			v.add(pPw[i]);
+		return v;
+	}
 	/**
 	 * Return a complete independent Copy of this Shape
 	 */
@@ -288,7 +444,13 @@ public class NURBSShape {
 			Point2D next = iter2.next();
 			p.addElement((Point2D) next.clone());			
 		}
-		return new NURBSShape(k,p,w);
+		NURBSShape c = new NURBSShape(k,p,w);
+		synchronized(curves) //The cache may be filled by other threads at the same time, e.g. while exporting
+		{
+			c.curves.putAll(curves); //The approximations are never modified, so they can be shared
+			c.bezierHierarchy = bezierHierarchy;
+		}
+		return c;
 	}
 	/**
 	 * Get Maximum (bottom right edge) of the CP bunding box
@@ -395,52 +557,228 @@ public class NURBSShape {
 	 * 
 	 * @return
 	 */
-	public GeneralPath getCurve(double maxdist) //Adapt to a length on the curve?
+	public GeneralPath getCurve(double maxdist)
+	{
+		return getCurve(maxdist,null);
+	}
+	/**
+	 * Get the Curve as a piecewise approximated linear Java Path transformed by at, e.g. scaled by the zoom.
+	 * 
+	 * The approximation is computed for the largest power of two not above maxdist
+	 * and kept for all values of maxdist in the same range until the curve changes
+	 * 
+	 * @param maxdist is the maximum distance of two consecutive Points of the Path before the transformation
+	 * @param at the transformation or null
+	 * @return
+	 */
+	public GeneralPath getCurve(double maxdist, AffineTransform at)
+	{
+		GeneralPath path;
+		if ((isEmpty())||(!(maxdist > 0d))||(Double.isInfinite(maxdist)))
+			path = computeCurve(maxdist);
+		else
+		{
+			int bucket = Math.getExponent(maxdist);
+			synchronized(curves) //Shapes may be painted from several threads, e.g. while exporting
+			{
+				GeneralPath cached = curves.get(bucket);
+				if (cached==null)
+				{
+					if (curves.size() >= MAX_CACHED_CURVES)
+						curves.clear();
+					cached = computeCurve(Math.scalb(1d,bucket));
+					curves.put(bucket,cached);
+				}
+				path = new GeneralPath(cached);
+			}
+		}
+		if (at!=null)
+			path.transform(at);
+		return path;
+	}
+	private GeneralPath computeCurve(double maxdist) //Adapt to a length on the curve?
 	{
 		GeneralPath path = new GeneralPath();
 		if (isEmpty())
 			return path;
-		Stack<Point2D> calculatedPoints = new Stack<Point2D>();
-		Stack<Double> calculatedParameters = new Stack<Double>();
+		//Start with a uniform sampling, two points per knot intervall on average, that contains the middle,
+		//because start and end might be equal
+		int n = 2*(maxKnotIndex-2*degree)+1;
+		double[] samples = sampleUniform(n);
+		Workspace ws = workspaces.get();
+		double a = knotArray[degree], b = knotArray[maxKnotIndex-degree];
+		//Stack of the calculated parameters and their points, u,x,y each
+		double[] calculated = new double[3*(n+16)];
+		int top = 0;
+		double[] actualPoint = new double[2];
 		//Startpoint
-		double actualu = Knots.get(degree);
-		Point2D actualPoint = this.CurveAt(actualu);
-		path.moveTo((float)actualPoint.getX(), (float)actualPoint.getY());
-		//Init Stack with the endpoint
-		calculatedParameters.push(Knots.get(maxKnotIndex-degree)); //Last value, that can be evaluated
-		calculatedPoints.push(CurveAt(calculatedParameters.peek().doubleValue()));
-		calculatedParameters.push((Knots.get(maxKnotIndex-degree)+Knots.get(degree))/2d); //Middle, because start and end ar equal
-		calculatedPoints.push(CurveAt(calculatedParameters.peek().doubleValue()));
+		double actualu = a;
+		actualPoint[0] = samples[0];
+		actualPoint[1] = samples[1];
+		path.moveTo((float)actualPoint[0], (float)actualPoint[1]);
+		//Init Stack with the other samples, the endpoint at the bottom
+		for (int k=n-1; k>0; k--)
+		{
+			calculated[top] = (k==n-1) ? b : a + (b-a)*(double)k/(double)(n-1);
+			calculated[top+1] = samples[2*k];
+			calculated[top+2] = samples[2*k+1];
+			top += 3;
+		}
 		//
 		//Calculate values in between as long as they are not near enough
 		//
-		while(!calculatedPoints.empty())
+		while(top > 0)
 		{
-			Point2D comparePoint = calculatedPoints.peek();
-			double compareu = calculatedParameters.peek();
-			if (actualPoint.distance(comparePoint) <= maxdist) //these two are near enough
+			double compareu = calculated[top-3];
+			double dx = calculated[top-2]-actualPoint[0], dy = calculated[top-1]-actualPoint[1];
+			double middleu = (compareu+actualu)/2d;
+			if ((Math.sqrt(dx*dx+dy*dy) <= maxdist) //these two are near enough
+				|| (middleu==compareu)||(middleu==actualu)) //Bei Maschinengenauigkeit angelangt
 			{
-				actualPoint = calculatedPoints.pop();
-				actualu = calculatedParameters.pop();
-				path.lineTo((float)actualPoint.getX(), (float)actualPoint.getY());
+				top -= 3;
+				actualu = compareu;
+				actualPoint[0] = calculated[top+1];
+				actualPoint[1] = calculated[top+2];
+				path.lineTo((float)actualPoint[0], (float)actualPoint[1]);
 			}
 			else //Not near enough - take middle between them and push that
 			{
-				double middleu = (compareu+actualu)/2d;
-				if ((middleu==compareu)||(middleu==actualu)) //Bei Maschinengenauigkeit angelangt
+				if (top==calculated.length)
+					calculated = Arrays.copyOf(calculated, 2*calculated.length);
+				calculated[top] = middleu;
+				CurveAt(middleu, calculated, top+1, ws);
+				top += 3;
+			}
+		}
+		return path;
+	}
+	/**
+	 * Evaluate the Curve at several parameters at once
+	 * 
+	 * Consecutive parameters in the same knot intervall share its search, so this is fastest for sorted parameters
+	 * 
+	 * @param params the parameters u \in [t_0,t_m]
+	 * @param outXY the x and y values of the ith point are stored at 2i and 2i+1, or NaN if the ith parameter is out of range
+	 */
+	public void evaluate(double[] params, double[] outXY)
+	{
+		if (isEmpty())
+		{
+			Arrays.fill(outXY, 0, 2*params.length, Double.NaN);
+			return;
+		}
+		Workspace ws = workspaces.get();
+		int span = -1;
+		for (int i=0; i<params.length; i++)
+		{
+			double u = params[i];
+			if ((span==-1)||(u<knotArray[span])||(u>=knotArray[span+1]))
+				span = findSpan(u);
+			if (span==-1)
+			{
+				outXY[2*i] = Double.NaN;
+				outXY[2*i+1] = Double.NaN;
+			}
+			else
+			{
+				deBoer3D(u, span, ws);
+				project(ws.Pw, 3*degree, outXY, 2*i);
+			}
+		}
+	}
+	/**
+	 * Sample the curve at n parameters equally distributed over the whole definition intervall
+	 * 
+	 * The knot intervalls are walked in order and inside each intervall the values are computed
+	 * by forward differences of the polynomials in homogeneous coordinates. These are restarted
+	 * every few steps by exact values to bound the rounding errors
+	 * 
+	 * @param n number of points, at least 2, the first is the start, the last the end of the curve
+	 * @return the x and y values of the ith point at 2i and 2i+1
+	 */
+	public double[] sampleUniform(int n)
+	{
+		double[] outXY = new double[2*n];
+		if (isEmpty()||(n<2))
+		{
+			Arrays.fill(outXY, Double.NaN);
+			return outXY;
+		}
+		Workspace ws = workspaces.get();
+		ws.fit(degree,0);
+		double a = knotArray[degree], b = knotArray[maxKnotIndex-degree];
+		double h = (b-a)/(double)(n-1);
+		int lastSpan = maxKnotIndex-degree-1;
+		int span = degree;
+		int k = 0;
+		while (k<n)
+		{
+			double u = (k==n-1) ? b : a + (b-a)*(double)k/(double)(n-1);
+			while ((span < lastSpan)&&(u >= knotArray[span+1]))
+				span++;
+			//all samples k,...,end-1 are inside this span
+			int end = k+1;
+			while ((end<n)&&((span==lastSpan)||(a + (b-a)*(double)end/(double)(n-1) < knotArray[span+1])))
+				end++;
+			while (k<end) //In blocks of at most FORWARD_STEPS
+			{
+				int block = Math.min(end-k, FORWARD_STEPS);
+				u = (k==n-1) ? b : a + (b-a)*(double)k/(double)(n-1);
+				if (block <= degree+1) //Forward differences would need more exact values than we want
 				{
-					actualPoint = calculatedPoints.pop();
-					actualu = calculatedParameters.pop();
-					path.lineTo((float)actualPoint.getX(), (float)actualPoint.getY());					
+					for (int j=0; j<block; j++)
+					{
+						double uj = (k+j==n-1) ? b : a + (b-a)*(double)(k+j)/(double)(n-1);
+						deBoer3D(uj, span, ws);
+						project(ws.Pw, 3*degree, outXY, 2*(k+j));
+					}
 				}
 				else
 				{
-					calculatedPoints.push(CurveAt(middleu));
-					calculatedParameters.push(middleu);
+					double[] D = ws.forward;
+					//Exact values at u,u+h,...,u+degree*h
+					for (int j=0; j<=degree; j++)
+					{
+						deBoer3D(u+j*h, span, ws);
+						System.arraycopy(ws.Pw, 3*degree, D, 3*j, 3);
+					}
+					//Differences, afterwards D[j] is the jth forward difference at u
+					for (int l=1; l<=degree; l++)
+						for (int j=degree; j>=l; j--)
+							for (int c=0; c<3; c++)
+								D[3*j+c] -= D[3*(j-1)+c];
+					for (int j=0; j<block; j++)
+					{
+						project(D, 0, outXY, 2*(k+j));
+						for (int l=0; l<degree; l++)
+							for (int c=0; c<3; c++)
+								D[3*l+c] += D[3*(l+1)+c];
+					}
 				}
+				k += block;
 			}
 		}
-		return path;
+		//Interpolated exactly
+		deBoer3D(b, lastSpan, ws);
+		project(ws.Pw, 3*degree, outXY, 2*(n-1));
+		return outXY;
+	}
+	/**
+	 * Divide a homogeneous Point x,y,w at offset by its weight and store it at resultOffset
+	 */
+	private static void project(double[] hom, int offset, double[] result, int resultOffset)
+	{
+		double w = hom[offset+2];
+		if (w==0)
+		{
+			result[resultOffset] = hom[offset];
+			result[resultOffset+1] = hom[offset+1];
+		}
+		else
+		{
+			result[resultOffset] = hom[offset]/w;
+			result[resultOffset+1] = hom[offset+1]/w;
+		}
 	}
 	/**
 	 * Find the interval u \in [t.get(j),t.get(j+1)) and return the index j
@@ -451,22 +789,22 @@ public class NURBSShape {
 	 */
 	protected int findSpan(double u)
 	{
-		if ((u<Knots.firstElement())||(u>Knots.lastElement())) //Out of range for all types
+		if ((u<knotArray[0])||(u>knotArray[maxKnotIndex])) //Out of range for all types
 				return -1;
 		if ((NURBSType&UNCLAMPED)==UNCLAMPED) //Unclamped Curve, starts with Knots.get(d) ends with maxCPIndex-d
 		{
-			if ((u<Knots.get(degree))||(u>Knots.get(maxKnotIndex-degree)))
+			if ((u<knotArray[degree])||(u>knotArray[maxKnotIndex-degree]))
 					return -1;			
 		}
 		//Binary Search for the intervall
 		int low = degree; //because the first d+1 are equal too
 		int high = maxKnotIndex-degree; //see above
-		if (u==Knots.get(high)) //Special case because the last intervall is not open to the right
+		if (u==knotArray[high]) //Special case because the last intervall is not open to the right
 			return high-1; //So t_{m-d} belongs just as endpoint to the curve Part [t_m-d-1,t_m-d]
 		int mid = Math.round((low+high)/2);
-		while ((u<Knots.get(mid)) || (u>=Knots.get(mid+1)))
+		while ((u<knotArray[mid]) || (u>=knotArray[mid+1]))
 		{ 
-			if (u < Knots.get(mid))
+			if (u < knotArray[mid])
 					high = mid;
 			else
 				low = mid;
@@ -485,8 +823,8 @@ public class NURBSShape {
 	{
 		if (u>1)
 			u -= Math.floor(u);
-		double a = Knots.get(degree);
-		double b = Knots.get(maxKnotIndex-degree);
+		double a = knotArray[degree];
+		double b = knotArray[maxKnotIndex-degree];
 		double rel = a + (b-a)*u;
 		return CurveAt(rel);
 	}
@@ -502,11 +840,189 @@ public class NURBSShape {
 	{
 		if (u>1)
 			u -= Math.floor(u);
-		double a = Knots.get(degree);
-		double b = Knots.get(maxKnotIndex-degree);
+		double a = knotArray[degree];
+		double b = knotArray[maxKnotIndex-degree];
 		double rel = a + (b-a)*u;
 		return DerivateCurveValuesAt(deriv,rel).get(deriv);
 	}
+	/**
+	 * Get the length of the whole curve
+	 * 
+	 * @return the arc length or 0 if the curve is empty
+	 */
+	public double getLength()
+	{
+		if (isEmpty())
+			return 0d;
+		double[] lengths;
+		synchronized(curves)
+		{
+			buildArcLengths_();
+			lengths = arcLengths;
+		}
+		return lengths[lengths.length-1];
+	}
+	/**
+	 * Get the length of the curve from its start to the point at u
+	 * 
+	 * @param u \in [t_0,t_m]
+	 * @return the arc length up to C(u) or NaN if u is outside the definition intervall
+	 */
+	public double LengthAt(double u)
+	{
+		if ((isEmpty())||(u<knotArray[degree])||(u>knotArray[maxKnotIndex-degree]))
+			return Double.NaN;
+		double[] params, lengths;
+		synchronized(curves)
+		{
+			buildArcLengths_();
+			params = arcParameters;
+			lengths = arcLengths;
+		}
+		if (params.length==1) //Curve of one point
+			return 0d;
+		int k = findPiece(params,u);
+		return lengths[k] + lengthBetween(params[k],u,workspaces.get(),new double[4]);
+	}
+	/**
+	 * Get the parameter of the point of the curve, that has the arc length s from the start of the curve
+	 * 
+	 * The piece containing s is found in the arc length table and the parameter inside that piece
+	 * by a Newton iteration, that falls back to bisection, so the result is monotone in s
+	 * 
+	 * @param s arc length, values outside [0,getLength()] are set to the nearest of these
+	 * @return the parameter u \in [t_0,t_m] with LengthAt(u) = s or NaN if the curve is empty
+	 */
+	public double ParameterAtLength(double s)
+	{
+		if (isEmpty())
+			return Double.NaN;
+		double[] params, lengths;
+		synchronized(curves)
+		{
+			buildArcLengths_();
+			params = arcParameters;
+			lengths = arcLengths;
+		}
+		int last = lengths.length-1;
+		if (!(s > 0d))
+			return params[0];
+		if (s >= lengths[last])
+			return params[last];
+		int k = findPiece(lengths,s);
+		double lo = params[k], hi = params[k+1];
+		double u = lo + (hi-lo)*(s-lengths[k])/(lengths[k+1]-lengths[k]);
+		double tolerance = Math.ulp(lengths[last])*16d;
+		Workspace ws = workspaces.get();
+		double[] ders = new double[4];
+		for (int i=0; i<32; i++)
+		{
+			double f = lengths[k] + lengthBetween(params[k],u,ws,ders) - s;
+			if (Math.abs(f) <= tolerance)
+				break;
+			if (f>0)
+				hi = u;
+			else
+				lo = u;
+			DerivateCurveValuesAt(1,u,ders,ws);
+			double speed = Math.sqrt(ders[2]*ders[2]+ders[3]*ders[3]);
+			double next = (speed > 0d) ? u - f/speed : Double.NaN;
+			if (!((next > lo)&&(next < hi))) //Newton left the bracket, bisect
+				next = (lo+hi)/2d;
+			if (next==u)
+				break;
+			u = next;
+		}
+		return u;
+	}
+	/**
+	 * Build the arc length table, if it does not exist. The caller has to hold the lock on the approximated curves
+	 * 
+	 * Each nonempty knot intervall is divided into ARC_LENGTH_PIECES pieces, whose lengths are computed
+	 * by a Gauss-Legendre quadrature of the speed of the curve. Pieces, where the quadrature of the two halves
+	 * differs from the whole one, e.g. near cusps, are divided further
+	 */
+	private void buildArcLengths_()
+	{
+		if (arcLengths!=null)
+			return;
+		double[] params = new double[(maxKnotIndex-2*degree)*ARC_LENGTH_PIECES+1];
+		double[] lengths = new double[params.length];
+		int k = 0;
+		Workspace ws = workspaces.get();
+		double[] ders = new double[4];
+		params[0] = knotArray[degree];
+		//Stack of the ends of the pieces still to be measured
+		double[] ends = new double[32];
+		for (int i=degree; i<maxKnotIndex-degree; i++)
+		{
+			if (knotArray[i] >= knotArray[i+1])
+				continue;
+			double h = (knotArray[i+1]-knotArray[i])/(double)ARC_LENGTH_PIECES;
+			double minWidth = h*ARC_LENGTH_MIN_WIDTH;
+			for (int j=ARC_LENGTH_PIECES; j>0; j--)
+				ends[ARC_LENGTH_PIECES-j] = (j==ARC_LENGTH_PIECES) ? knotArray[i+1] : knotArray[i] + h*(double)j;
+			int top = ARC_LENGTH_PIECES;
+			double start = knotArray[i];
+			while (top > 0)
+			{
+				double end = ends[top-1];
+				double middle = (start+end)/2d;
+				double whole = lengthBetween(start,end,ws,ders);
+				double halves = lengthBetween(start,middle,ws,ders) + lengthBetween(middle,end,ws,ders);
+				if ((Math.abs(whole-halves) <= ARC_LENGTH_TOLERANCE*halves) || (end-start <= minWidth)) //exact enough
+				{
+					if (k+1==params.length)
+					{
+						params = Arrays.copyOf(params, 2*params.length);
+						lengths = Arrays.copyOf(lengths, 2*lengths.length);
+					}
+					params[k+1] = end;
+					lengths[k+1] = lengths[k] + halves;
+					k++;
+					start = end;
+					top--;
+				}
+				else //measure the first half on its own
+				{
+					if (top==ends.length)
+						ends = Arrays.copyOf(ends, 2*ends.length);
+					ends[top++] = middle;
+				}
+			}
+		}
+		arcParameters = Arrays.copyOf(params, k+1);
+		arcLengths = Arrays.copyOf(lengths, k+1);
+	}
+	/**
+	 * Length of the curve between a and b, that have to be in the same piece of the polynomial
+	 */
+	private double lengthBetween(double a, double b, Workspace ws, double[] ders)
+	{
+		double middle = (a+b)/2d, half = (b-a)/2d, sum = 0d;
+		for (int i=0; i<GAUSS_NODES.length; i++)
+		{
+			DerivateCurveValuesAt(1,middle+half*GAUSS_NODES[i],ders,ws);
+			sum += GAUSS_WEIGHTS[i]*Math.sqrt(ders[2]*ders[2]+ders[3]*ders[3]);
+		}
+		return sum*half;
+	}
+	/**
+	 * Find the last index k &lt; values.length-1 with values[k] <= v in the nondecreasing values by binary search
+	 */
+	private static int findPiece(double[] values, double v)
+	{
+		int low = 0, high = values.length-1;
+		while (high-low > 1)
+		{
+			int mid = (low+high)>>>1;
+			if (values[mid] <= v)
+				low = mid;
+			else
+				high = mid;
+		}
+		return low;
+	}
 	/**
 	 * Evaluate the Curve at given point u \in [t_0,t_m]
 	 * @param u
@@ -514,27 +1030,56 @@ public class NURBSShape {
 	 */
 	public Point2D.Double CurveAt(double u)
 	{	
-		Point2dHom erg = deBoer3D(u); //Result in homogeneous Values on Our Points		
-		if (erg==null)
+		Workspace ws = workspaces.get();
+		if (!deBoer3D(u,ws)) //Result in homogeneous Values on Our Points
 		{
-        	main.DEBUG.println(main.DEBUG.MIDDLE,"NURBSShape::CurveAt "+u+" not in definition intervall ["+Knots.get(degree)+","+Knots.get(maxKnotIndex-degree)+"], returning null");
+        	main.DEBUG.println(main.DEBUG.MIDDLE,"NURBSShape::CurveAt "+u+" not in definition intervall ["+knotArray[degree]+","+knotArray[maxKnotIndex-degree]+"], returning null");
 			return null;
 		}
-		if (erg.w==0) //
-			return new Point2D.Double(erg.x,erg.y);
+		double[] erg = ws.Pw;
+		int r = 3*degree;
+		if (erg[r+2]==0) //
+			return new Point2D.Double(erg[r],erg[r+1]);
 		else
-			return new Point2D.Double(erg.x/erg.w,erg.y/erg.w);
+			return new Point2D.Double(erg[r]/erg[r+2],erg[r+1]/erg[r+2]);
 		
 	}
+	/**
+	 * Evaluate the Curve at given point u \in [t_0,t_m] without allocating any memory
+	 * 
+	 * @param u
+	 * @param result the x and y value of the point are stored at offset and offset+1
+	 * @param offset
+	 * @param ws a workspace for the computation
+	 * @return true, if u is inside the definition intervall, else false and the result is unchanged
+	 */
+	public boolean CurveAt(double u, double[] result, int offset, Workspace ws)
+	{
+		if (!deBoer3D(u,ws))
+			return false;
+		double[] erg = ws.Pw;
+		int r = 3*degree;
+		if (erg[r+2]==0)
+		{
+			result[offset] = erg[r];
+			result[offset+1] = erg[r+1];
+		}
+		else
+		{
+			result[offset] = erg[r]/erg[r+2];
+			result[offset+1] = erg[r+1]/erg[r+2];
+		}
+		return true;
+	}
 	public double WeightAt(double u)
 	{
-		Point2dHom erg = deBoer3D(u); //Result in homogeneous Values on Our Points
-		if (erg==null)
+		Workspace ws = workspaces.get();
+		if (!deBoer3D(u,ws)) //Result in homogeneous Values on Our Points
 		{
-        	main.DEBUG.println(main.DEBUG.MIDDLE,"NURBSShape::WeightAt "+u+" not in definition intervall ["+Knots.get(degree)+","+Knots.get(maxKnotIndex-degree)+"], returning null");
+        	main.DEBUG.println(main.DEBUG.MIDDLE,"NURBSShape::WeightAt "+u+" not in definition intervall ["+knotArray[degree]+","+knotArray[maxKnotIndex-degree]+"], returning null");
 			return Double.NaN;
 		}
-			return erg.w;
+			return ws.Pw[3*degree+2];
 	}
 	/**
 	 * get the Value of all derivates up to derivate-th Degree of the NURBSShape at Position u
@@ -544,131 +1089,150 @@ public class NURBSShape {
 	 */
 	public Vector<Point2D> DerivateCurveValuesAt(int derivate, double u)
 	{
-		int maxMultiplicity = 1, temp=1;
-		for (int i=degree+1; i<=maxKnotIndex-degree; i++)
-		{
-			if (Knots.get(i).doubleValue()==Knots.get(i-1).doubleValue())
-				temp++;
-			else if (temp > maxMultiplicity)
-				maxMultiplicity = temp;
-		}
 		Vector<Point2D> CK = new Vector<Point2D>(); //result
 		if (derivate==0)
 		{
 			CK.add(CurveAt(u));
 			return CK;
 		}
-		Vector<Point2dHom> AdersWders = getDerivatesHomAt(derivate, u); //x,y are the Aders, z is wders
-		CK.setSize(derivate+1);
+		Workspace ws = workspaces.get();
+		double[] ck = new double[2*(derivate+1)];
+		if (!DerivateCurveValuesAt(derivate, u, ck, ws))
+		{
+        	main.DEBUG.println(main.DEBUG.MIDDLE,"NURBSShape::DerivateCurveValuesAt "+u+" not in definition intervall ["+knotArray[degree]+","+knotArray[maxKnotIndex-degree]+"], returning null");
+			return null;
+		}
+		for (int k=0; k<=derivate; k++)
+			CK.add(new Point2D.Double(ck[2*k],ck[2*k+1]));
+		return CK;
+	}
+	/**
+	 * get the Value of all derivates up to derivate-th Degree of the NURBSShape at Position u without allocating any memory
+	 * 
+	 * @param derivate
+	 * @param u
+	 * @param result x and y of the kth derivative are stored at 2k and 2k+1 for k=0,...,derivate
+	 * @param ws a workspace for the computation
+	 * @return true, if u is inside the definition intervall, else false
+	 */
+	public boolean DerivateCurveValuesAt(int derivate, double u, double[] result, Workspace ws)
+	{
+		if (!derivatesHomAt(derivate, u, ws)) //x,y are the Aders, w is wders
+			return false;
+		double[] AdersWders = ws.ders;
 		for (int k=0; k<=derivate; k++)
 		{ //Calculate kth Derivate
-			double vx = AdersWders.get(k).x;
-			double vy = AdersWders.get(k).y;
+			double vx = AdersWders[3*k];
+			double vy = AdersWders[3*k+1];
 			for (int i=1; i<=k; i++)
 			{
-				double factor = binomial(k,i)*AdersWders.get(i).w;
-				vx -= factor*CK.get(k-i).getX();
-				vy -= factor*CK.get(k-i).getY();
+				double factor = binomial(k,i)*AdersWders[3*i+2];
+				vx -= factor*result[2*(k-i)];
+				vy -= factor*result[2*(k-i)+1];
 			}
-			if ((AdersWders.get(0).w!=0.0)) //wders[0]!=0
+			if ((AdersWders[2]!=0.0)) //wders[0]!=0
 			{
-				vx /= AdersWders.get(0).w;
-				vy /= AdersWders.get(0).w;
+				vx /= AdersWders[2];
+				vy /= AdersWders[2];
 			}
-			CK.set(k,new Point2D.Double(vx,vy));
+			result[2*k] = vx;
+			result[2*k+1] = vy;
 		}
-		return CK;
+		return true;
 	}
 	/**
-	 * Calculate all Nonvanishing BasisFunctions at u
+	 * Calculate all Nonvanishing BasisFunctions at u in the span i
 	 * This is a Variation of Alg 2.2 from the NURBS-Book
+	 * The result is stored in ws.N, where N[j][deg] the value of the jth nonzero function of degree deg
 	 */
-	private Vector<Vector<Double>> AllBasisFunctions(double u)
+	private void AllBasisFunctions(double u, int i, Workspace ws)
 	{
-		Vector<Vector<Double>> N = new Vector<Vector<Double>>();
-		N.setSize(degree+1);
-		int i = findSpan(u);
-		if (i==-1)
-			return N;
-		for (int j=0; j<=degree; j++)
-		{
-			N.set(j, new Vector<Double>());
-			N.get(j).setSize(degree+1);
-		}				
+		double[][] N = ws.N;
+		double[] left = ws.left, right = ws.right;
 		for (int deg=0; deg<=degree; deg++) //All Degrees less then degree
 		{ //Inside this 
-			Vector<Double> left = new Vector<Double>(); left.setSize(deg+1);
-			Vector<Double> right = new Vector<Double>(); right.setSize(deg+1);
-			N.get(0).set(deg,1.0);
+			N[0][deg] = 1.0;
 			for (int j=1; j<=deg; j++) //All Basis Values of degree 
 			{
-				left.set(j,u-Knots.get(i+1-j));
-				right.set(j,Knots.get(i+j)-u);
+				left[j] = u-knotArray[i+1-j];
+				right[j] = knotArray[i+j]-u;
 				double saved = 0d;
 				for (int r=0; r<j; r++)
 				{
-					double temp = N.get(r).get(deg)/(right.get(r+1)+left.get(j-r));
-					N.get(r).set(deg, saved+right.get(r+1)*temp);
-					saved = left.get(j-r)*temp;
+					double temp = N[r][deg]/(right[r+1]+left[j-r]);
+					N[r][deg] = saved+right[r+1]*temp;
+					saved = left[j-r]*temp;
 				}
-				N.get(j).set(deg,saved);
+				N[j][deg] = saved;
 			}
 		}
-		return N;
 	}
 	/**
 	 * Compute ControlPoints of the Derivatives up to deriv
 	 * Based on Alg 3.3 with 
+	 * The result is stored in ws.PK, where PK[k] are the homogeneous ControlPoints of the kth derivative packed as x,y,w
 	 * @param derivative
 	 */
-	private Vector<Vector<Point2dHom>> CurveDerivativeControlPointsHom(int d, int r1, int r2)
+	private void CurveDerivativeControlPointsHom(int d, int r1, int r2, Workspace ws)
 	{ //n==maxCPIndex, d<=degree, p==degree, U==Knots, P==ControlPointsHom
 		//
-		Vector<Vector<Point2dHom>> PK = new Vector<Vector<Point2dHom>>();
-		if (d>degree)
-			return PK;
-		PK.setSize(d+1);
+		double[][] PK = ws.PK;
 		int r = r2-r1;
-		PK.set(0,new Vector<Point2dHom>());PK.get(0).setSize(r+1);
-		for (int i=0; i<=r; i++)
-			PK.get(0).set(i, (Point2dHom) controlPointsHom.get(r1+i).clone());
+		System.arraycopy(PwArray, 3*r1, PK[0], 0, 3*(r+1));
 		for (int k=1; k<=d; k++) //through all derivatives
 		{
-			PK.set(k,new Vector<Point2dHom>()); PK.get(k).setSize(r-k+1);
 			int tmp = degree-k+1;
 			for (int i=0; i<=r-k; i++)
 			{ //Code from p. 99
-				double denom = Knots.get(r1+i+degree+1)-Knots.get(r1+i+k);
-				double newx = tmp*(PK.get(k-1).get(i+1).x - PK.get(k-1).get(i).x)/denom;
-				double newy = tmp*(PK.get(k-1).get(i+1).y - PK.get(k-1).get(i).y)/denom;
-				double newz = tmp*(PK.get(k-1).get(i+1).w - PK.get(k-1).get(i).w)/denom;
-				PK.get(k).set(i, new Point2dHom(newx,newy,newz));
+				double denom = knotArray[r1+i+degree+1]-knotArray[r1+i+k];
+				for (int c=0; c<3; c++)
+					PK[k][3*i+c] = tmp*(PK[k-1][3*(i+1)+c] - PK[k-1][3*i+c])/denom;
 			}
 		}	
-		return PK;
 	}
 	public Vector<Point2dHom> getDerivatesHomAt(int d, double u)
-	{//n==maxCPIndex, p==degree, U==Knots, P==controlPointsHom
+	{
+		Workspace ws = workspaces.get();
 		Vector<Point2dHom> CK = new Vector<Point2dHom>();
-		CK.setSize(d+1);
-		int du = Math.min(d,degree);
-		for (int k=degree+1; k<=degree; k++)
-			CK.set(k, new Point2dHom(0d,0d,0d));
+		if (!derivatesHomAt(d,u,ws))
+			return CK;
+		double[] ck = ws.ders;
+		for (int k=0; k<=d; k++)
+			CK.add(new Point2dHom(ck[3*k],ck[3*k+1],ck[3*k+2]));
+		return CK;
+	}
+	/**
+	 * Compute the derivatives of the curve in homogeneous coordinates up to the dth
+	 * The result is stored in ws.ders with x,y,w of the kth derivative at 3k,3k+1,3k+2 for k=0,...,d
+	 * @param d
+	 * @param u
+	 * @param ws
+	 * @return true, if u is inside the definition intervall, else false
+	 */
+	private boolean derivatesHomAt(int d, double u, Workspace ws)
+	{//n==maxCPIndex, p==degree, U==Knots, P==controlPointsHom
 		int span = findSpan(u);
-		Vector<Vector<Double>> N = AllBasisFunctions(u);
-		Vector<Vector<Point2dHom>> PK = CurveDerivativeControlPointsHom(du,span-degree,span);
+		if (span==-1)
+			return false;
+		ws.fit(degree,d);
+		double[] CK = ws.ders;
+		int du = Math.min(d,degree);
+		for (int k=0; k<3*(d+1); k++)
+			CK[k] = 0d; //Derivatives higher than the degree stay zero
+		AllBasisFunctions(u,span,ws);
+		CurveDerivativeControlPointsHom(du,span-degree,span,ws);
+		double[][] N = ws.N, PK = ws.PK;
 		for (int k=0; k<=du; k++)
 		{
-			CK.set(k,new Point2dHom(0d,0d,0d));
 			for (int j=0; j<=degree-k; j++)
 			{
-				double newx = CK.get(k).x + N.get(j).get(degree-k)*PK.get(k).get(j).x;
-				double newy = CK.get(k).y + N.get(j).get(degree-k)*PK.get(k).get(j).y;
-				double newz = CK.get(k).w + N.get(j).get(degree-k)*PK.get(k).get(j).w;
-				CK.set(k, new Point2dHom(newx,newy,newz));
+				double n = N[j][degree-k];
+				CK[3*k] += n*PK[k][3*j];
+				CK[3*k+1] += n*PK[k][3*j+1];
+				CK[3*k+2] += n*PK[k][3*j+2];
 			}
 		}
-		return CK;
+		return true;
 	}
 	/**
 	 * Calulation of Alpha, refer to deBoer-Algorithm
@@ -679,9 +1243,9 @@ public class NURBSShape {
 	 */
 	private double alpha(double u,int i, int j)
 	{
-		if ((u==Knots.get(i)&&(Knots.get(i+degree-j+1)==Knots.get(i))))
+		if ((u==knotArray[i]&&(knotArray[i+degree-j+1]==knotArray[i])))
 			return 0;
-		return (u-Knots.get(i))/(Knots.get(i+degree-j+1)-Knots.get(i));
+		return (u-knotArray[i])/(knotArray[i+degree-j+1]-knotArray[i]);
 	}
 	/**
 	 * Calculate the Value of the NURBSCurve in homogeneous Coordinates iterative
@@ -689,35 +1253,43 @@ public class NURBSShape {
 	 * This method works for 2d homogeneous or 3d Stuff.
 	 *
 	 * @param u Point u \in [a,b], whose point we want
-	 * @return a 3d-Value of the Point in the Curve or null if u is out of range
+	 * @param ws workspace, whose Pw contains the 3d-Value of the Point in the Curve at 3*degree afterwards
+	 * @return true or false if u is out of range
 	 */
-	private Point2dHom deBoer3D(double u)
+	private boolean deBoer3D(double u, Workspace ws)
 	{
 		int i = findSpan(u);
 		if (i==-1)
-			return null;
-		Vector<Point2dHom> fixedj = new Vector<Point2dHom>();
-		fixedj.setSize(degree+1); //for values 0,...,d, because only d+1 Basis Functions are nonzero
-		//Init with the Points
-		for (int l=i; l>=i-degree; l--) //Beginning with i,0 up to i-d,0
-		{
-			fixedj.set(l-i+degree,controlPointsHom.get(l));
-		}
-		
+			return false;
+		deBoer3D(u,i,ws);
+		return true;
+	}
+	/**
+	 * Calculate the Value of the polynomial of the knot intervall i in homogeneous Coordinates,
+	 * which is the value of the NURBSCurve, if u is inside that intervall
+	 * 
+	 * @param u
+	 * @param i a knot intervall degree <= i < maxKnotIndex-degree
+	 * @param ws workspace, whose Pw contains the 3d-Value of the Point at 3*degree afterwards
+	 */
+	private void deBoer3D(double u, int i, Workspace ws)
+	{
+		ws.fit(degree,0);
+		//for values 0,...,d, because only d+1 Basis Functions are nonzero, each x,y,w
+		double[] fixedj = ws.Pw;
+		//Init with the Points i-d,0 up to i,0
+		System.arraycopy(PwArray, 3*(i-degree), fixedj, 0, 3*(degree+1));
 		for (int k=1; k<=degree; k++) //Compute higher and hihger values of the degree
 		{
 			for (int l=i; l>=i-degree+k; l--) //Stop each iteration one earlier
 			{
-				Point2dHom bimjm = fixedj.get(l-i+degree-1);//b_i-1^j-1
+				int bijm = 3*(l-i+degree); //b_i^j-1, b_i-1^j-1 is the one before
 				double alpha = alpha(u,l,k);
-				Point2dHom bijm = fixedj.get(l-i+degree);
-				double x = (1-alpha)*bimjm.x + alpha*bijm.x;
-				double y = (1-alpha)*bimjm.y + alpha*bijm.y;
-				double z = (1-alpha)*bimjm.w + alpha*bijm.w;
-				fixedj.set(l-i+degree,new Point2dHom(x,y,z));
+				fixedj[bijm] = (1-alpha)*fixedj[bijm-3] + alpha*fixedj[bijm];
+				fixedj[bijm+1] = (1-alpha)*fixedj[bijm-2] + alpha*fixedj[bijm+1];
+				fixedj[bijm+2] = (1-alpha)*fixedj[bijm-1] + alpha*fixedj[bijm+2];
 			}
 		}
-		return fixedj.get(degree);
 	}
 	/**
 	 * Calculate all Nonzero BSpline-Functions of this NURBS.
@@ -732,43 +1304,48 @@ public class NURBSShape {
 	 * @return All nonzero Values of BSpline-Basis-Functions at u
 	 */
 	protected Vector<Double> BasisBSpline(double u)
+	{
+		double[] N = new double[degree+1];
+		basisBSpline(u,findSpan(u),N);
+		return toVector(N);
+	}
+	/**
+	 * Nonzero BSpline-Functions at u in the span max, see BasisBSpline
+	 * @param N array for the d+1 values
+	 */
+	private void basisBSpline(double u, int max, double[] N)
 	{
 		//Calculate all Needed Values
-		int max = findSpan(u); //Only constant function that is nonzero
+		//max is the Only constant function that is nonzero
 		//this is also the maximum value that is nonzero in the resulting BasisN
 		int min = max-degree; //minimum nonzero function in N due to loaclity
-		Vector<Double> N = new Vector<Double>();
-		N.setSize(degree+1); //Due to locality only d+1 values (from min to max) are needed
-		for (int k=0; k<degree; k++)
-		{
-			N.set(k,0.0d); //Set min+k to zero
-		}
-		N.set(degree, 1.0); //The highest constant (N_i,0) is 0 all others are zero
+		for (int k=0; k<degree; k++) //Due to locality only d+1 values (from min to max) are needed
+			N[k] = 0.0d; //Set min+k to zero
+		N[degree] = 1.0; //The highest constant (N_i,0) is 0 all others are zero
 		for (int actualDegree=1; actualDegree<=degree; actualDegree++) //calcutlate higher degrees
 		{
 			//Max-actualDegree is the first nonzero function, max the last
 			for (int k=max-actualDegree; k<=max; k++)
 			{ //Calculate N_k,actualDegree
 				double fac1,fac2;
-				if (Knots.get(k+actualDegree).doubleValue()==Knots.get(k).doubleValue()) //divided by 0 -> per Def 1
+				if (knotArray[k+actualDegree]==knotArray[k]) //divided by 0 -> per Def 1
 					fac1=0.0d;
 				else
-					fac1 = (u-Knots.get(k))/(Knots.get(k+actualDegree)-Knots.get(k));
-				if (Knots.get(k+actualDegree+1).doubleValue()==Knots.get(k+1).doubleValue()) //divided by 0 per Def. 1
+					fac1 = (u-knotArray[k])/(knotArray[k+actualDegree]-knotArray[k]);
+				if (knotArray[k+actualDegree+1]==knotArray[k+1]) //divided by 0 per Def. 1
 					fac2=0.0d;
 				else
-					fac2 = (Knots.get(k+actualDegree+1)-u)/(Knots.get(k+actualDegree +1)-Knots.get(k+1));
+					fac2 = (knotArray[k+actualDegree+1]-u)/(knotArray[k+actualDegree +1]-knotArray[k+1]);
 				
-				double kth = N.get(k-min); //N_k of value one degree less (shiftet by min)
+				double kth = N[k-min]; //N_k of value one degree less (shiftet by min)
 				double kpth = 0.0d; //N_k+1 of previous degree init with 0, because it stays 0 if k=max
 				if (k<max)
-					kpth = N.get(k+1-min); //shiftet by min
+					kpth = N[k+1-min]; //shiftet by min
 				
-				N.set(k-min, fac1*kth + fac2*kpth); //Override kth entry because it is not needed anymore
+				N[k-min] = fac1*kth + fac2*kpth; //Override kth entry because it is not needed anymore
 				//Calculate N_k,actualDegree
 			}
 		}
-		return N;
 	}
 	/**
 	 * Get the Value of the ith NURBS-BasisFunction R_number,d at Point u
@@ -783,12 +1360,15 @@ public class NURBSShape {
 		if ((number<min)||(number>max))
 			return 0.0d; //Due to locality R_i,d is zero in these cases
 		//Else Compute BSpline-Basis
-		Vector<Double> N = BasisBSpline(u);		
-		double nomin = N.get(number-min)*cpWeight.get(number); //get Specific B-Spline (see function above shiftet by min multiply by its weight
+		Workspace ws = workspaces.get();
+		ws.fit(degree,0);
+		double[] N = ws.basis;
+		basisBSpline(u,max,N);		
+		double nomin = N[number-min]*PwArray[3*number+2]; //get Specific B-Spline (see function above shiftet by min multiply by its weight
 		double denomin = 0.0d;
 		for (int k=0; k<=degree; k++)
 		{
-			denomin += N.get(k)* cpWeight.get(k+min); //See above shiftet by min
+			denomin += N[k]* PwArray[3*(k+min)+2]; //See above shiftet by min
 		}
 		return (nomin/denomin);
 	}
@@ -899,7 +1479,7 @@ public class NURBSShape {
 		double minDist = Double.MAX_VALUE;
 		for (int i=degree+1; i<maxKnotIndex-degree; i++) //Search for Knot with minimum Distance to p
 		{
-			Point2D actualKnotPoint  = CurveAt(Knots.get(i));
+			Point2D actualKnotPoint  = CurveAt(knotArray[i]);
 			if (actualKnotPoint.distance(p) <= minDist)
 			{
 				knotIndex = i;
@@ -910,76 +1490,55 @@ public class NURBSShape {
 			return false;
 		//Multiplicity of knotIndex
 		int mult = knotIndex;
-		while (Knots.get(mult)==Knots.get(knotIndex))
+		while (knotArray[mult]==knotArray[knotIndex])
 			mult++;
 		mult = mult - knotIndex; //Is the multiplicity
 		//Removal with a simplificated version of ALGORITHM 5.8 from NURBSBook
-		double knotu = Knots.get(knotIndex);
+		double knotu = knotArray[knotIndex];
 		int lastAffected = knotIndex-mult, firstAffected = knotIndex-degree, offSet = firstAffected-1; //OffSet from temporary Vector to original
-		Vector<Point2dHom> temp = new Vector<Point2dHom>();
-		temp.setSize(lastAffected-offSet+2);
-		temp.set(0,(Point2dHom)controlPointsHom.get(offSet).clone()); temp.set(lastAffected-offSet+1, (Point2dHom)controlPointsHom.get(lastAffected+1).clone());
+		double[] temp = new double[3*(lastAffected-offSet+2)];
+		System.arraycopy(PwArray, 3*offSet, temp, 0, 3);
+		System.arraycopy(PwArray, 3*(lastAffected+1), temp, 3*(lastAffected-offSet+1), 3);
 		int i=firstAffected, j=lastAffected, ii=1, jj=lastAffected-offSet; //i,j are the values of the actual Controlpoints, ii,jj are those of the temporary Vector
 		while ((j-i) > 0) //Just one removal, t=0 from the algorithm
 		{
-			double alphi = (knotu-Knots.get(i).doubleValue()) / (Knots.get(i+degree+1)-Knots.get(i));
-			double alphj = (knotu-Knots.get(j).doubleValue()) / (Knots.get(j+degree+1)-Knots.get(j));
-			Point2dHom newii = (Point2dHom) controlPointsHom.get(i).clone();
-			Point2dHom newiisummand = (Point2dHom)temp.get(ii-1).clone();
-			newiisummand.scale(-1d*(1d-alphi));	newii.add(newiisummand);newii.scale(alphi);
-			temp.set(ii,newii);
-			Point2dHom newjj = (Point2dHom) controlPointsHom.get(j).clone();
-			Point2dHom newjjsummand = (Point2dHom)temp.get(jj+1).clone();
-			newjjsummand.scale(-1d*(alphj)); newjj.add(newjjsummand);newjj.scale(1d-alphj);
-			temp.set(jj,newjj);
+			double alphi = (knotu-knotArray[i]) / (knotArray[i+degree+1]-knotArray[i]);
+			double alphj = (knotu-knotArray[j]) / (knotArray[j+degree+1]-knotArray[j]);
+			for (int c=0; c<3; c++)
+			{
+				temp[3*ii+c] = (PwArray[3*i+c] + temp[3*(ii-1)+c]*(-1d*(1d-alphi)))*alphi;
+				temp[3*jj+c] = (PwArray[3*j+c] + temp[3*(jj+1)+c]*(-1d*(alphj)))*(1d-alphj);
+			}
 			i++; ii++; j--; jj--;
 		}
-		for (int k=0; k<temp.size(); k++)
+		for (int k=2; k<temp.length; k+=3)
 		{
-			if (temp.get(k)!=null)
+			if (temp[k]<0)
 			{
-				if (temp.get(k).w<0)
-				{
-		        	main.DEBUG.println(main.DEBUG.MIDDLE,"NURBSShape::removeKnoteNear() : Can't remove Knot, because in the calculation one weight got negative!");
-					return false;
-				}
+	        	main.DEBUG.println(main.DEBUG.MIDDLE,"NURBSShape::removeKnoteNear() : Can't remove Knot, because in the calculation one weight got negative!");
+				return false;
 			}
 		}
 		//Leave out the check for removal, we have undo, save new cp (see algorithm and think about t=1)
+		double[] newPw = PwArray.clone();
 		i=firstAffected; j=lastAffected;
 		while ((j-i) > 0)
 		{
-			controlPointsHom.set(i, temp.get(i-offSet));
-			controlPointsHom.set(j, temp.get(j-offSet));
+			System.arraycopy(temp, 3*(i-offSet), newPw, 3*i, 3);
+			System.arraycopy(temp, 3*(j-offSet), newPw, 3*j, 3);
 			i++; j--;
 		}
 		//Shift unaffected Knots
-		for (int k=knotIndex+1; k<=maxKnotIndex; k++)
-			Knots.set(k-1, Knots.get(k).doubleValue());
-		Knots.setSize(Knots.size()-1); //Remove last Element
+		double[] newt = new double[maxKnotIndex];
+		System.arraycopy(knotArray, 0, newt, 0, knotIndex);
+		System.arraycopy(knotArray, knotIndex+1, newt, knotIndex, maxKnotIndex-knotIndex);
 		//Shift all unaffected ControlPoints
 		int firstCPOut = (2*knotIndex-mult-degree)/2;
-		for (int k=firstCPOut+1; k<=maxCPIndex; k++)
-			controlPointsHom.set(k-1, controlPointsHom.get(k));
-		//Remove Last Element
-		controlPointsHom.setSize(controlPointsHom.size()-1);
+		double[] shiftedPw = new double[3*maxCPIndex];
+		System.arraycopy(newPw, 0, shiftedPw, 0, 3*firstCPOut);
+		System.arraycopy(newPw, 3*(firstCPOut+1), shiftedPw, 3*firstCPOut, 3*(maxCPIndex-firstCPOut));
 		//Recompute Points & weights
-		controlPoints = new Vector<Point2D>(); 
-		cpWeight = new Vector<Double>();
-		Iterator<Point2dHom> Pwi = controlPointsHom.iterator();
-		while (Pwi.hasNext())
-		{
-			Point2dHom p1 = Pwi.next();
-			if (p1.w==0)
-				controlPoints.add(new Point2D.Double(p1.x,p1.y));
-			else
-				controlPoints.add(new Point2D.Double(p1.x/p1.w, p1.y/p1.w));
-			cpWeight.add(p1.w);
-		}
-		maxCPIndex = controlPoints.size()-1;
-		maxKnotIndex = Knots.size()-1;
-		degree = Knots.size()-controlPoints.size()-1;
-		refreshInternalValues();
+		setHomogeneous(newt, shiftedPw);
 		if (knotIndex<=2*degree)
 			updateCircular(false);
 		else if (knotIndex>=(maxKnotIndex+1-2*degree)) //+1 for the old values
@@ -1008,69 +1567,50 @@ public class NURBSShape {
 		int a = findSpan(X.firstElement()), b=findSpan(X.lastElement())+1;
 		if ((a==-1)||(b==0))
 			return; //Out of range
-		Vector<Point2dHom> newPw;
-		newPw = new Vector<Point2dHom>();
-		newPw.setSize(controlPointsHom.size()+X.size());
-		Vector<Double> newt = new Vector<Double>();
-		newt.setSize(Knots.size()+X.size());
-		for (int j=0; j<=a-degree; j++)//Copy the first not changed values of the CPs
-			newPw.set(j, (Point2dHom) controlPointsHom.get(j).clone());
-		for (int j=b-1; j<=maxCPIndex; j++)//Copy the last not changed values of the CPs
-			newPw.set(j+X.size(), (Point2dHom) controlPointsHom.get(j).clone());
-		for (int j=0; j<=a; j++)//Copy the first not changed values of t
-			newt.set(j, Knots.get(j).doubleValue());
-		for (int j=b+degree; j<=maxKnotIndex; j++)//Copy the last not changed values of t
-			newt.set(j+X.size(), Knots.get(j).doubleValue());
+		int r = X.size();
+		double[] x = new double[r];
+		for (int j=0; j<r; j++)
+			x[j] = X.get(j).doubleValue();
+		double[] newPw = new double[PwArray.length+3*r];
+		double[] newt = new double[knotArray.length+r];
+		//Copy the first not changed values of the CPs
+		System.arraycopy(PwArray, 0, newPw, 0, 3*(a-degree+1));
+		//Copy the last not changed values of the CPs
+		System.arraycopy(PwArray, 3*(b-1), newPw, 3*(b-1+r), 3*(maxCPIndex-b+2));
+		//Copy the first not changed values of t
+		System.arraycopy(knotArray, 0, newt, 0, a+1);
+		//Copy the last not changed values of t
+		System.arraycopy(knotArray, b+degree, newt, b+degree+r, maxKnotIndex-b-degree+1);
 		
 		int i=b+degree-1; //Last Value that's new in t
-		int k=b+degree+X.size()-1; //Last Value that's new in Pw
-		for (int j=X.size()-1; j>=0; j--) //Insert new knots backwards beginning at X.lastElement
+		int k=b+degree+r-1; //Last Value that's new in Pw
+		for (int j=r-1; j>=0; j--) //Insert new knots backwards beginning at X.lastElement
 		{ 
-			while ((X.get(j) <= Knots.get(i)) && (i > a)) //These Values are not affected by Insertion of actual Not, copy them
+			while ((x[j] <= knotArray[i]) && (i > a)) //These Values are not affected by Insertion of actual Not, copy them
 			{
-				newPw.set(k-degree-1, (Point2dHom) controlPointsHom.get(i-degree-1).clone());
-				newt.set(k, Knots.get(i).doubleValue());
+				System.arraycopy(PwArray, 3*(i-degree-1), newPw, 3*(k-degree-1), 3);
+				newt[k] = knotArray[i];
 				k--;i--;
 			}
-			newPw.set(k-degree-1, (Point2dHom) newPw.get(k-degree).clone());
+			System.arraycopy(newPw, 3*(k-degree), newPw, 3*(k-degree-1), 3);
 			for (int l=1; l<=degree; l++)
 			{
-				int actualindex = k-degree+l;
-				double alpha = newt.get(k+l).doubleValue()-X.get(j).doubleValue();
+				int actualindex = 3*(k-degree+l);
+				double alpha = newt[k+l]-x[j];
 				if (Math.abs(alpha) == 0.0d)
-					newPw.set(actualindex-1, (Point2dHom) newPw.get(actualindex).clone());
+					System.arraycopy(newPw, actualindex, newPw, actualindex-3, 3);
 				else
 				{
-					alpha = alpha/(newt.get(k+l).doubleValue()-Knots.get(i-degree+l).doubleValue());
-					Point2dHom p1 = (Point2dHom) newPw.get(actualindex-1).clone();
-					p1.scale(alpha);
-					Point2dHom p2 = (Point2dHom) newPw.get(actualindex).clone();
-					p2.scale(1.0d - alpha);
-					p1.add(p2);
-					newPw.set(actualindex-1,p1);
+					alpha = alpha/(newt[k+l]-knotArray[i-degree+l]);
+					for (int c=0; c<3; c++)
+						newPw[actualindex-3+c] = newPw[actualindex-3+c]*alpha + newPw[actualindex+c]*(1.0d - alpha);
 				}
 			} //All Points recomputed for this insertion
-			newt.set(k, X.get(j).doubleValue());
+			newt[k] = x[j];
 			k--;
 		}
 		//Recompute Points & weights
-		controlPoints = new Vector<Point2D>(); 
-		cpWeight = new Vector<Double>();
-		Iterator<Point2dHom> Pwi = newPw.iterator();
-		while (Pwi.hasNext())
-		{
-			Point2dHom p1 = Pwi.next();
-			if (p1.w==0)
-				controlPoints.add(new Point2D.Double(p1.x,p1.y));
-			else
-				controlPoints.add(new Point2D.Double(p1.x/p1.w, p1.y/p1.w));
-			cpWeight.add(p1.w);
-		}
-		Knots = newt;
-		maxCPIndex = controlPoints.size()-1;
-		maxKnotIndex = Knots.size()-1;
-		degree = Knots.size()-controlPoints.size()-1;
-		refreshInternalValues();
+		setHomogeneous(newt, newPw);
 	}
 	/**
 	 * For Display-Purposes - get the Points that lie on the curve at the knot-parameter-points
@@ -1083,10 +1623,25 @@ public class NURBSShape {
 		Vector<Point2D> KnotPoints = new Vector<Point2D>();
 		for (int i=degree+1; i<maxKnotIndex-degree; i++)
 		{
-			KnotPoints.add(CurveAt(Knots.get(i)));
+			KnotPoints.add(CurveAt(knotArray[i]));
 		}
 		return KnotPoints;
 	}
+	/**
+	 * Get the clamped Bezier segments of this curve and the hierarchy of their bounding boxes,
+	 * which are computed once and kept until the curve changes
+	 * 
+	 * @return the hierarchy used by the NURBSShapeProjection
+	 */
+	NURBSShapeProjection.BezierHierarchy getBezierHierarchy()
+	{
+		synchronized(curves)
+		{
+			if (bezierHierarchy==null)
+				bezierHierarchy = new NURBSShapeProjection.BezierHierarchy(this);
+			return bezierHierarchy;
+		}
+	}
 	public Point2D ProjectionPoint(Point2D d)
 	{
 		NURBSShapeProjection projection = new NURBSShapeProjection(this,d);
@@ -1121,7 +1676,7 @@ public class NURBSShape {
 			double nodei = 0.0d;
 			for (int j=1; j<=degree; j++)
 			{
-				nodei = nodei + (double)Knots.get(i+j);
+				nodei = nodei + knotArray[i+j];
 			}
 			nodei = nodei/degree;
 			if (Math.abs(position-nodei)<min)
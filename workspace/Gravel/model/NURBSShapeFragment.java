@@ -88,12 +88,12 @@ public class NURBSShapeFragment extends NURBSShape {
 	{
 		//Copy this to origCurve
 		origCurve.controlPoints = controlPoints;
-		origCurve.controlPointsHom = controlPointsHom;
 		origCurve.cpWeight = cpWeight;
 		origCurve.degree = degree;
 		origCurve.Knots = Knots;
 		origCurve.maxCPIndex = maxCPIndex;
 		origCurve.maxKnotIndex = maxKnotIndex;
+		origCurve.refreshInternalValues(); //the homogeneous values and the approximated curve of origCurve changed too
 		if ((!Double.isNaN(u1))&&(!Double.isNaN(u2)))
 			subcurve = ClampedSubCurve(u1,u2);
 		else
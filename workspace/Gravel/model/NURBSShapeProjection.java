@@ -1,6 +1,7 @@
 package model;
 
 import java.awt.geom.Point2D;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.Vector;
@@ -48,28 +49,56 @@ public class NURBSShapeProjection extends NURBSShape
 	public NURBSShapeProjection(NURBSShape Curve, Point2D p,VCommonGraphic debug, float z)
 	{
 		origCurve = Curve;
-		NURBSShape clone = Curve.clone(); //We clone with decorations - if anybody wants to project really only on curve - strip before init
-		//If it is unclamped - clamp it!
-		if ((clone.getType()&NURBSShape.UNCLAMPED)==NURBSShape.UNCLAMPED)
-			clone = clamp(clone);
+		//The clamped curve and its Bezier segments are computed once for each Curve
+		BezierHierarchy hierarchy = Curve.getBezierHierarchy();
+		NURBSShape clone = hierarchy.clamped.clone();
 		//Set internal Curve to this curve clone
 		setCurveTo(clone.Knots, clone.controlPoints, clone.cpWeight);
-		resultu=Knots.firstElement(); //u=a
+		resultu=knotArray[0]; //u=a
 		this.p = p;
-		Queue<NURBSShape> Parts = new LinkedList<NURBSShape>();
-		if (!isInBezierForm())
+		double alpha = Math.min(p.distanceSq(controlPoints.firstElement()), p.distanceSq(controlPoints.lastElement()));
+		if (p.distanceSq(controlPoints.firstElement()) > p.distanceSq(controlPoints.lastElement()))
+			resultu=knotArray[maxKnotIndex];
+		//Wander through the hierarchy, nearer boxes first, and skip all boxes that are further away than the
+		//nearest endpoint of a segment found so far. Each node is stored with the first and last+1 segment it contains
+		double[] segmentDistance = new double[hierarchy.segments.length];
+		Arrays.fill(segmentDistance, Double.POSITIVE_INFINITY);
+		int[] nodes = new int[3*64];
+		int top = 0;
+		nodes[top++] = 1; nodes[top++] = 0; nodes[top++] = hierarchy.segments.length;
+		while (top > 0)
 		{
-			Vector<NURBSShape> partsf = DecomposeCurve(this);
-			for (int i=0; i<partsf.size(); i++)
+			int to = nodes[--top], from = nodes[--top], node = nodes[--top];
+			double boxDistance = hierarchy.distanceSq(node,p);
+			if (boxDistance > alpha) //definetly outside
+				continue;
+			if (to-from==1)
 			{
-				Parts.offer(partsf.get(i));
+				NURBSShape segment = hierarchy.segments[from];
+				segmentDistance[from] = boxDistance;
+				alpha = Math.min(alpha, Math.min(p.distanceSq(segment.controlPoints.firstElement()), p.distanceSq(segment.controlPoints.lastElement())));
+				continue;
+			}
+			int middle = (from+to)/2;
+			if (top+6 > nodes.length)
+				nodes = Arrays.copyOf(nodes, 2*nodes.length);
+			boolean leftFirst = hierarchy.distanceSq(2*node,p) <= hierarchy.distanceSq(2*node+1,p);
+			//The nearer one is pushed last to be handled first
+			if (leftFirst)
+			{
+				nodes[top++] = 2*node+1; nodes[top++] = middle; nodes[top++] = to;
+			}
+			nodes[top++] = 2*node; nodes[top++] = from; nodes[top++] = middle;
+			if (!leftFirst)
+			{
+				nodes[top++] = 2*node+1; nodes[top++] = middle; nodes[top++] = to;
 			}
 		}
-		else
-			Parts.offer(clone()); //We are nondecorative so clone is okay
-		double alpha = Math.min(p.distanceSq(controlPoints.firstElement()), p.distanceSq(controlPoints.lastElement()));
-		if (p.distanceSq(controlPoints.firstElement()) > p.distanceSq(controlPoints.lastElement()))
-			resultu=Knots.lastElement();
+		//Only the segments, whose boxes are inside the circle, may contain the projection
+		Queue<NURBSShape> Parts = new LinkedList<NURBSShape>();
+		for (int i=0; i<hierarchy.segments.length; i++)
+			if (segmentDistance[i] <= alpha)
+				Parts.offer(hierarchy.segments[i]);
 		
 		Vector<Double> candidates = new Vector<Double>(); //because we may have more than one candidate Span 
 		while (!Parts.isEmpty()) 
@@ -94,8 +123,8 @@ public class NURBSShapeProjection extends NURBSShape
 			{}
 			else if (min==partAlpha) //might be projected onto one of the end-elements, add them to the candidates-> do nothing
 			{
-				candidates.add(actualPart.Knots.firstElement()); //Because its Bezier parts, first 
-				candidates.add(actualPart.Knots.lastElement()); //and last Element of Knot vector do
+				candidates.add(actualPart.knotArray[0]); //Because its Bezier parts, first 
+				candidates.add(actualPart.knotArray[actualPart.maxKnotIndex]); //and last Element of Knot vector do
 			}
 			else //may be inside polygon
 			{
@@ -117,23 +146,24 @@ public class NURBSShapeProjection extends NURBSShape
 				}
 				if (!prop2) //Split in the middle
 				{
-					double refinement = (actualPart.Knots.firstElement() + actualPart.Knots.lastElement())/2d;
+					double refinement = (actualPart.knotArray[0] + actualPart.knotArray[actualPart.maxKnotIndex])/2d;
 					Vector<Double> ref = new Vector<Double>();
 					ref.add(refinement);
-					actualPart.RefineKnots(ref);
-					Vector<NURBSShape> newParts = DecomposeCurve(actualPart);
+					NURBSShape refined = actualPart.clone(); //The segments of the hierarchy must not change
+					refined.RefineKnots(ref);
+					Vector<NURBSShape> newParts = DecomposeCurve(refined);
 					for (int i=0; i<newParts.size(); i++)
 						Parts.offer(newParts.get(i));
 				}
 				else //Newton Iteration on this part
 				{
-					umin = actualPart.Knots.firstElement();
-					umax = actualPart.Knots.lastElement();
+					umin = actualPart.knotArray[0];
+					umax = actualPart.knotArray[actualPart.maxKnotIndex];
 					//take a look at where the minimum in the qcCP was and take the startvalue inside actual [umin,umax]
 					//(+1 and +2 ensures INSIDE umax-umin) and the first Method can't return -1 because we took min from the qcCP
 					double startvalue = umin + (double)(qcControlPoints.indexOf(min)+1)/((double)qcControlPoints.size()+2)*(umax-umin);
 					
-					double candidate_u = NewtonIteration(actualPart.clone(), startvalue, p);
+					double candidate_u = NewtonIteration(actualPart, startvalue, p);
 					candidates.add(candidate_u);
 					double newdistsq = CurveAt(candidate_u).distanceSq(p);
 					if (alpha > newdistsq)
@@ -142,13 +172,19 @@ public class NURBSShapeProjection extends NURBSShape
 			} //End INside
 		} //End while
 		double min = Double.MAX_VALUE;
-		for (int i=0; i<candidates.size(); i++)
+		//Evaluate all candidates at once
+		double[] params = new double[candidates.size()];
+		for (int i=0; i<params.length; i++)
+			params[i] = candidates.get(i);
+		double[] points = new double[2*params.length];
+		evaluate(params, points);
+		for (int i=0; i<params.length; i++)
 		{
-			Point2D pcmp = CurveAt(candidates.get(i));
-			if (pcmp.distance(p)<min)
+			double dist = p.distance(points[2*i], points[2*i+1]);
+			if (dist<min)
 			{
-				resultu = candidates.get(i);
-				min = pcmp.distance(p);
+				resultu = params[i];
+				min = dist;
 			}
 		}
 	}
@@ -189,31 +225,29 @@ public class NURBSShapeProjection extends NURBSShape
 		double epsilon2 = 0.0003d;
 		//So now we 
 		boolean running = true;
-		Vector<Point2D> derivs = c.DerivateCurveValuesAt(2,startvalue);
-		Point2D.Double Value = (Point2D.Double) derivs.get(0); //c.CurveAt(startvalue);
-		Point2D.Double firstDeriv = (Point2D.Double) derivs.get(1); //c.DerivateCurveValuesAt(1,startvalue).get(1);
-		Point2D.Double secondDeriv = (Point2D.Double) derivs.get(2); //c.DerivateCurveValuesAt(2,startvalue).get(2);
-		Point2D.Double diff = new Point2D.Double(Value.x-p.getX(), Value.y-p.getY());
+		NURBSShape.Workspace ws = new NURBSShape.Workspace();
+		//Value, first and second derivative, x and y each
+		double[] derivs = new double[6];
+		c.DerivateCurveValuesAt(2,startvalue,derivs,ws);
+		double diffx = derivs[0]-p.getX(), diffy = derivs[1]-p.getY();
 		double u=startvalue;
 		int iterations=0;
 		while (running)
 		{
 			iterations++;
-			double nominator = firstDeriv.x*diff.x + firstDeriv.y*diff.y;
-			double denominator = secondDeriv.x*diff.x + secondDeriv.y*diff.y + firstDeriv.distanceSq(0d,0d);
+			double nominator = derivs[2]*diffx + derivs[3]*diffy;
+			double denominator = derivs[4]*diffx + derivs[5]*diffy + (derivs[2]*derivs[2] + derivs[3]*derivs[3]);
 			double unext = u - nominator/denominator;
-			if (unext > c.Knots.lastElement()) //Out of Range
-				unext = c.Knots.lastElement();
-			if (unext < c.Knots.firstElement()) //Out of Range
-				unext = c.Knots.firstElement();
-			derivs = c.DerivateCurveValuesAt(2,unext);
-			Value = (Point2D.Double) derivs.get(0); //c.CurveAt(startvalue);
-			firstDeriv = (Point2D.Double) derivs.get(1); //c.DerivateCurveValuesAt(1,startvalue).get(1);
-			secondDeriv = (Point2D.Double) derivs.get(2); //c.DerivateCurveValuesAt(2,startvalue).get(2);
-			diff = new Point2D.Double(Value.x-p.getX(), Value.y-p.getY());
-			double coincidence = diff.distance(0d,0d);
+			if (unext > c.knotArray[c.maxKnotIndex]) //Out of Range
+				unext = c.knotArray[c.maxKnotIndex];
+			if (unext < c.knotArray[0]) //Out of Range
+				unext = c.knotArray[0];
+			c.DerivateCurveValuesAt(2,unext,derivs,ws);
+			diffx = derivs[0]-p.getX();
+			diffy = derivs[1]-p.getY();
+			double coincidence = Math.sqrt(diffx*diffx + diffy*diffy);
 			double movement = Math.abs(nominator/denominator);
-			double movementu = Math.abs(unext-u)*Math.sqrt(firstDeriv.x*firstDeriv.x + firstDeriv.y*firstDeriv.y);
+			double movementu = Math.abs(unext-u)*Math.sqrt(derivs[2]*derivs[2] + derivs[3]*derivs[3]);
 			if (iterations>100) //it sould converge fast so here we should change sth
 			{
 	        	main.DEBUG.println(main.DEBUG.MIDDLE,"NURBSShapeProjection::NewtonIterationInit() - Warning: Newton-Iteration took too long.");
@@ -227,25 +261,25 @@ public class NURBSShapeProjection extends NURBSShape
 		  return u;
 	}
 	/**
-	 * Returns true if and only if the NURBS Curve in this Class is in Bezier Form, that is, 
+	 * Returns true if and only if the NURBS Curve c is in Bezier Form, that is, 
 	 * there are only knots at the start and end of the Interval
 	 * @return
 	 */
-	private boolean isInBezierForm()
+	private static boolean isInBezierForm(NURBSShape c)
 	{
-		double a = Knots.firstElement();		
-		double b = Knots.lastElement();
+		double a = c.knotArray[0];		
+		double b = c.knotArray[c.maxKnotIndex];
 		int counta=0, countb=0;
-		for (int i=0; i<=maxKnotIndex; i++)
+		for (int i=0; i<=c.maxKnotIndex; i++)
 		{
-			if (Knots.get(i).doubleValue()==a)
+			if (c.knotArray[i]==a)
 				counta++;
-			else if (Knots.get(i).doubleValue()==b)
+			else if (c.knotArray[i]==b)
 				countb++;
 			else
 				return false;
 		}
-		return ((degree==(counta-1))&&(degree==(countb-1)));
+		return ((c.degree==(counta-1))&&(c.degree==(countb-1)));
 	}
 	
 	/**
@@ -259,33 +293,38 @@ public class NURBSShapeProjection extends NURBSShape
 	{
 		c.translate(-p.getX(),-p.getY());
 		//Further donted as FV
-		double FirstValue = c.Knots.firstElement(); //In a pure Bezier-Curve on [0,1] this i 0, 
+		double FirstValue = c.knotArray[0]; //In a pure Bezier-Curve on [0,1] this i 0, 
 		//Futher denoted as LV
-		double LastValue = c.Knots.lastElement(); //this is 1
+		double LastValue = c.knotArray[c.maxKnotIndex]; //this is 1
 		
 		int Degree = c.maxCPIndex; //Old Degree of the given Bezier Curve
-		
-		Vector<Double> tP,tQ;
+		//ControlPoints and weights of c
+		double[] x = new double[Degree+1], y = new double[Degree+1], weight = new double[Degree+1];
+		for (int j=0; j<=Degree; j++)
+		{
+			x[j] = c.controlPoints.get(j).getX();
+			y[j] = c.controlPoints.get(j).getY();
+			weight[j] = c.cpWeight.get(j).doubleValue();
+		}
+		double[] tP = new double[3*Degree+2], tQ = new double[3*Degree+2]; //This is the length of P and Q
 		qcControlPoints = new Vector<Double>();
 		qcWeights = new Vector<Double>();
 		for (int i=0; i<=(2*Degree); i++)
 		{	//Compute new weights \hat w_i of the product with  i \in {0,...,2n}
 			//i also determines the number of ones in the Intervall for tP and tQ we may choose			
 			//Init tP and  tQ
-			tP = new Vector<Double>();
-			tQ = new Vector<Double>();
 			//Init tP with maximum number of FV, that is the min (n+1+i, 2n+1), because there are never more than 2n+1 FV
 			//Analog tQ as the max(n+1,i+1) because it starts with least possible zeros and ends with the max (2n+1)
 			for (int j=0; j<(3*Degree+2); j++) //This is the length of P and Q
 			{
 				if (j<Math.min(Degree+1+i,2*Degree+1)) //All befor this max to FV all other to LV
-					tP.add(FirstValue);
+					tP[j] = FirstValue;
 				else
-					tP.add(LastValue);
+					tP[j] = LastValue;
 				if (j<Math.max(Degree+1,i+1)) //All brfore this to FV all behind to LV
-					tQ.add(FirstValue);
+					tQ[j] = FirstValue;
 				else
-					tQ.add(LastValue);
+					tQ[j] = LastValue;
 			}
 			double dix = 0.0d, diy = 0.0d; //actualCoefficient
 			double diw = 0.0d;
@@ -303,15 +342,15 @@ public class NURBSShapeProjection extends NURBSShape
 				//that project t^P onto the old t-Vector, and t^Q onto the old t
 				double foronepx = 0.0d, foronepy = 0.0d; //actualCoefficient
 				double foronepw = 0.0d;
-				double[] alphaP = alphaVec(Degree, c.Knots, tP,i);
-				double[] alphaQ = alphaVec(Degree, c.Knots, tQ,i);
-				for (int j1=0; j1<c.controlPoints.size(); j1++)
+				double[] alphaP = alphaVec(Degree, c.knotArray, tP,i);
+				double[] alphaQ = alphaVec(Degree, c.knotArray, tQ,i);
+				for (int j1=0; j1<=Degree; j1++)
 				{
-					for (int j2=0; j2<c.controlPoints.size(); j2++)
+					for (int j2=0; j2<=Degree; j2++)
 					{
-						foronepx += c.controlPoints.get(j1).getX()*alphaP[j1]*c.controlPoints.get(j2).getX()*alphaQ[j2];
-						foronepy += c.controlPoints.get(j1).getY()*alphaP[j1]*c.controlPoints.get(j2).getY()*alphaQ[j2];
-						foronepw += c.cpWeight.get(j1).doubleValue()*alphaP[j1]*c.cpWeight.get(j2).doubleValue()*alphaQ[j2];
+						foronepx += x[j1]*alphaP[j1]*x[j2]*alphaQ[j2];
+						foronepy += y[j1]*alphaP[j1]*y[j2]*alphaQ[j2];
+						foronepw += weight[j1]*alphaP[j1]*weight[j2]*alphaQ[j2];
 					}
 				}
 				dix += foronepx*mult/wholenum;
@@ -319,14 +358,14 @@ public class NURBSShapeProjection extends NURBSShape
 				diw += foronepw*mult/wholenum;
 				//Change the t^P and t^Q, so that t^P its first LV set to FV and t^Q its last FV set to LV
 				int changeindex = 0;
-				while ((changeindex<tP.size()-1)&&(tP.get(changeindex).doubleValue()==FirstValue))
+				while ((changeindex<tP.length-1)&&(tP[changeindex]==FirstValue))
 					changeindex++;
-				tP.set(changeindex-1, LastValue);
+				tP[changeindex-1] = LastValue;
 				changeindex = 0;
 				//Search for a change
-				while ((changeindex<tQ.size()-1)&&(tQ.get(changeindex).doubleValue()==FirstValue))
+				while ((changeindex<tQ.length-1)&&(tQ[changeindex]==FirstValue))
 					changeindex++;
-				tQ.set(changeindex, FirstValue);
+				tQ[changeindex] = FirstValue;
 			} //End Cases
 			//Moved inside the summation for smaller results inside the loop
 //			dix /= binomial(2*Degree,Degree);
@@ -337,8 +376,8 @@ public class NURBSShapeProjection extends NURBSShape
 		}	//End i
 		//Update Degree
 		qcDegree = 2*Degree;
-		umin = c.Knots.firstElement().doubleValue();
-		umax = c.Knots.lastElement().doubleValue();
+		umin = c.knotArray[0];
+		umax = c.knotArray[c.maxKnotIndex];
 	}
 	/**
 	 * Computes the discrete B-Spline Coefficients of the projection-curve coefficient i from tau to t
@@ -348,12 +387,12 @@ public class NURBSShapeProjection extends NURBSShape
 	 * @param t
 	 * @param i index of the Coefficient these discrete stuff is needed for
 	**/
-	private double[] alphaVec(int k, Vector<Double> tau, Vector<Double> t, int i)
+	private double[] alphaVec(int k, double[] tau, double[] t, int i)
 	{
 		double[] temp = new double[2*k+1]; //0...2k
 		for (int j=0; j<=2*k; j++) //Init for degree 0
 		{
-			if ((tau.get(j)<=t.get(i))&&(t.get(i)<tau.get(j+1)))
+			if ((tau[j]<=t[i])&&(t[i]<tau[j+1]))
 				temp[j] = 1;
 			else
 				temp[j] = 0;	
@@ -362,7 +401,7 @@ public class NURBSShapeProjection extends NURBSShape
 		{
 			for (int j=0; j<=2*k-deg; j++) //For each higher degree one coefficient in the end less
 			{
-				temp[j] = w(j,deg,tau,t.get(i+deg))*temp[j] + (1-w(j+1,deg,tau,t.get(i+deg)))*temp[j+1];
+				temp[j] = w(j,deg,tau,t[i+deg])*temp[j] + (1-w(j+1,deg,tau,t[i+deg]))*temp[j+1];
 			}
 		}
 		double[] result = new double[k+1];
@@ -379,17 +418,17 @@ public class NURBSShapeProjection extends NURBSShape
 	 * @return alpha_j,i,tau,t(i)
 	 * @deprecated use the nonrecursive alphaVec-Funktion
 	 */
-	private double alpha(int j, int k, Vector<Double> tau, Vector<Double> t, int i)
+	private double alpha(int j, int k, double[] tau, double[] t, int i)
 	{
 		if (k==0)
 		{ //Formular after 1.2 with i=j, t=tau x=t.get(i) with shiftet k by 1
-			if ((tau.get(j)<=t.get(i))&&(t.get(i)<tau.get(j+1)))
+			if ((tau[j]<=t[i])&&(t[i]<tau[j+1]))
 				return 1;
 			else
 				return 0;
 		}	
 		else
-			return w(j,k,tau,t.get(i+k))*alpha(j,k-1,tau,t,i) + (1-w(j+1,k,tau,t.get(i+k)))*alpha(j+1,k-1,tau,t,i);
+			return w(j,k,tau,t[i+k])*alpha(j,k-1,tau,t,i) + (1-w(j+1,k,tau,t[i+k]))*alpha(j+1,k-1,tau,t,i);
 	}
 	/**
 	 * w from Formular (1.2) of K. Mørten
@@ -400,11 +439,11 @@ public class NURBSShapeProjection extends NURBSShape
 	 * @param x
 	 * @return
 	 */
-	private double w(int i, int k, Vector<Double> t, double x)
+	private double w(int i, int k, double[] t, double x)
 	{
-		if (t.get(i)<t.get(i+k)) //i is the first value and k+i the last, they are different so not zero
+		if (t[i]<t[i+k]) //i is the first value and k+i the last, they are different so not zero
 		{
-			return (x-t.get(i))/(t.get(i+k)-t.get(i));			
+			return (x-t[i])/(t[i+k]-t[i]);			
 		}
 		else
 		{
@@ -421,81 +460,82 @@ public class NURBSShapeProjection extends NURBSShape
 		int m = c.maxCPIndex+1;
 		int a = c.degree;
 		int b = c.degree+1;
+		int p = c.degree;
+		double[] U = c.knotArray, Pw = c.PwArray;
 		Vector<NURBSShape> BezierSegments = new Vector<NURBSShape>();
-		Vector<Point2dHom> bezierCP = new Vector<Point2dHom>();
-		Vector<Point2dHom> nextbezierCP = new Vector<Point2dHom>();
-		nextbezierCP.setSize(c.degree+1);
-		for (int i=0; i<=c.degree; i++)
-			bezierCP.add(c.controlPointsHom.get(i));
+		//ControlPoints of the actual and the next segment, each x,y,w
+		double[] bezierCP = new double[3*(p+1)];
+		double[] nextbezierCP = new double[3*(p+1)];
+		System.arraycopy(Pw, 0, bezierCP, 0, 3*(p+1));
 		while (b<m)
 		{
 			int i=b;
-			while ((b < m)&&(c.Knots.get(b+1).doubleValue()==c.Knots.get(b).doubleValue()))
+			while ((b < m)&&(U[b+1]==U[b]))
 				b++;
 			int multiplicity = b-i+1; //Multiplicity of actual Knot
-			if (multiplicity < c.degree) //Refine it until it is p
+			if (multiplicity < p) //Refine it until it is p
 			{
-				double numer = c.Knots.get(b).doubleValue() - c.Knots.get(a).doubleValue(); //Numerator of the alphas 
-				Vector<Double> alpha = new Vector<Double>();
-				alpha.setSize(c.degree-multiplicity);
-				for (int j=c.degree; j>multiplicity; j--)
-					alpha.set(j-multiplicity-1, numer/(c.Knots.get(a+j).doubleValue()-c.Knots.get(a).doubleValue()));
-				int insertionMultiplicity = c.degree-multiplicity;
+				double numer = U[b] - U[a]; //Numerator of the alphas 
+				double[] alpha = new double[p-multiplicity];
+				for (int j=p; j>multiplicity; j--)
+					alpha[j-multiplicity-1] = numer/(U[a+j]-U[a]);
+				int insertionMultiplicity = p-multiplicity;
 				for (int j=1; j<=insertionMultiplicity; j++) //Insert Knot as often as needed
 				{
 					int save = insertionMultiplicity - j;
 					int s = multiplicity+j; //These many new Points
-					for (int k=c.degree; k>=s; k--) //
+					for (int k=p; k>=s; k--) //
 					{
-						Point2dHom p1 = (Point2dHom) bezierCP.get(k).clone();
-						Point2dHom p2 = (Point2dHom) bezierCP.get(k-1).clone();
-						p1.scale(alpha.get(k-s)); p2.scale(1-alpha.get(k-s));						
-						p1.add(p2);
-						bezierCP.set(k,p1);
+						double al = alpha[k-s];
+						for (int l=0; l<3; l++)
+							bezierCP[3*k+l] = bezierCP[3*k+l]*al + bezierCP[3*(k-1)+l]*(1-al);
 					}
 					if (b<m) //then the last cp is also a CP of the next bezier segment
-						nextbezierCP.set(save, bezierCP.get(c.degree));
+						System.arraycopy(bezierCP, 3*p, nextbezierCP, 3*save, 3);
 				}
 			} //End of refinement
 			//Save actual
-			Vector<Double> bezierKnots = new Vector<Double>();
-			for (int k=0; k<=c.degree; k++)
-				bezierKnots.add(c.Knots.get(a));
-			for (int k=0; k<=c.degree; k++)
-				bezierKnots.add(c.Knots.get(b));
-			BezierSegments.add(new NURBSShape(bezierKnots, bezierCP));
+			BezierSegments.add(new NURBSShape(bezierKnots(U[a],U[b],p), bezierCP));
 			if (b<m) //init next
 			{
+				double[] temp = bezierCP;
 				bezierCP = nextbezierCP;
-				nextbezierCP = new Vector<Point2dHom>();
-				nextbezierCP.setSize(c.degree+1);
-				for (int k=(c.degree-multiplicity); k<=c.degree; k++)
-					bezierCP.set(k, c.controlPointsHom.get(b-c.degree+k));
+				nextbezierCP = temp;
+				for (int k=(p-multiplicity); k<=p; k++)
+					System.arraycopy(Pw, 3*(b-p+k), bezierCP, 3*k, 3);
 				a = b;
 				b++;
 			}
 		}
 		//save last
-		Vector<Double> bezierKnots = new Vector<Double>();
-		for (int k=0; k<=c.degree; k++)
-			bezierKnots.add(c.Knots.get(a));
-		for (int k=0; k<=c.degree; k++)
-			bezierKnots.add(c.Knots.get(b));
-		BezierSegments.add(new NURBSShape(bezierKnots, bezierCP));
+		BezierSegments.add(new NURBSShape(bezierKnots(U[a],U[b],p), bezierCP));
 		return BezierSegments;
 	}
+	/**
+	 * Knots of a Bezier segment of degree p on [a,b]
+	 */
+	private static double[] bezierKnots(double a, double b, int p)
+	{
+		double[] knots = new double[2*p+2];
+		for (int k=0; k<=p; k++)
+		{
+			knots[k] = a;
+			knots[p+1+k] = b;
+		}
+		return knots;
+	}
 	
 	public static NURBSShape clamp(NURBSShape c)
 	{
-		double u1 = c.Knots.get(c.degree);
-		double u2 = c.Knots.get(c.maxKnotIndex-c.degree);
+		double u1 = c.knotArray[c.degree];
+		double u2 = c.knotArray[c.maxKnotIndex-c.degree];
 		int multStart=0, multEnd=0;
 		//Raise both endvalues to multiplicity d to get an clamped curve
 		for (int i=0; i<=c.maxKnotIndex; i++)
 		{
-		 if (c.Knots.get(i).doubleValue()==u1)
+		 if (c.knotArray[i]==u1)
 			multStart++;
-		 if (c.Knots.get(i).doubleValue()==u2)
+		 if (c.knotArray[i]==u2)
 			multEnd++;
 		}
 		Vector<Double> Refinement = new Vector<Double>();
@@ -519,11 +559,11 @@ public class NURBSShapeProjection extends NURBSShape
 		Vector<Double> newKnots = new Vector<Double>();
 		newKnots.add(u1);
 		int index = 0;
-		while (subcurve.Knots.get(index)<u1)
+		while (subcurve.knotArray[index]<u1)
 			index++;
-		while (subcurve.Knots.get(index)<=u2)
+		while (subcurve.knotArray[index]<=u2)
 		{
-			newKnots.add(subcurve.Knots.get(index).doubleValue());
+			newKnots.add(subcurve.knotArray[index]);
 			index++;
 		}
 		newKnots.add(u2);
@@ -531,6 +571,89 @@ public class NURBSShapeProjection extends NURBSShape
 		return retval;
 	}
 	
+	/**
+	 * The clamped version of a NURBSShape, its rational Bezier segments and a hierarchy of the 
+	 * bounding boxes of their control polygons, which contain the segments for positive weights.
+	 * 
+	 * The hierarchy is a binary tree, whose nodes are numbered like a heap, 1 is the root, the children of n are 2n and 2n+1.
+	 * Node n containing the segments from,...,to-1 has the children containing from,...,(from+to)/2-1 and (from+to)/2,...,to-1.
+	 * 
+	 * It is computed once for each shape, see NURBSShape.getBezierHierarchy(), and not modified afterwards
+	 * 
+	 * @author Ronny Bergmann
+	 * @since 0.4
+	 */
+	static class BezierHierarchy
+	{
+		NURBSShape clamped;
+		NURBSShape[] segments;
+		//Bounding boxes of the nodes, minx,miny,maxx,maxy each
+		private double[] boxes;
+		
+		BezierHierarchy(NURBSShape c)
+		{
+			clamped = c.clone(); //We clone with decorations - if anybody wants to project really only on curve - strip before init
+			//If it is unclamped - clamp it!
+			if ((clamped.getType()&NURBSShape.UNCLAMPED)==NURBSShape.UNCLAMPED)
+				clamped = clamp(clamped);
+			if (!isInBezierForm(clamped))
+				segments = DecomposeCurve(clamped).toArray(new NURBSShape[0]);
+			else
+				segments = new NURBSShape[] {clamped.clone()};
+			int nodes = 1;
+			while (nodes < segments.length)
+				nodes *= 2;
+			boxes = new double[4*2*nodes];
+			buildBox(1,0,segments.length);
+		}
+		/**
+		 * Compute the box of node containing the segments from,...,to-1 and all its children
+		 */
+		private void buildBox(int node, int from, int to)
+		{
+			int b = 4*node;
+			if (to-from==1)
+			{
+				NURBSShape s = segments[from];
+				boxes[b] = Double.POSITIVE_INFINITY; boxes[b+1] = Double.POSITIVE_INFINITY;
+				boxes[b+2] = Double.NEGATIVE_INFINITY; boxes[b+3] = Double.NEGATIVE_INFINITY;
+				for (int i=0; i<=s.maxCPIndex; i++)
+				{
+					if (!(s.cpWeight.get(i).doubleValue() > 0d)) //The curve may leave the control polygon, never skip it
+					{
+						boxes[b] = Double.NEGATIVE_INFINITY; boxes[b+1] = Double.NEGATIVE_INFINITY;
+						boxes[b+2] = Double.POSITIVE_INFINITY; boxes[b+3] = Double.POSITIVE_INFINITY;
+						return;
+					}
+					Point2D q = s.controlPoints.get(i);
+					boxes[b] = Math.min(boxes[b],q.getX());
+					boxes[b+1] = Math.min(boxes[b+1],q.getY());
+					boxes[b+2] = Math.max(boxes[b+2],q.getX());
+					boxes[b+3] = Math.max(boxes[b+3],q.getY());
+				}
+				return;
+			}
+			int middle = (from+to)/2;
+			buildBox(2*node,from,middle);
+			buildBox(2*node+1,middle,to);
+			int l = 8*node, r = 8*node+4;
+			boxes[b] = Math.min(boxes[l],boxes[r]);
+			boxes[b+1] = Math.min(boxes[l+1],boxes[r+1]);
+			boxes[b+2] = Math.max(boxes[l+2],boxes[r+2]);
+			boxes[b+3] = Math.max(boxes[l+3],boxes[r+3]);
+		}
+		/**
+		 * Squared distance of p to the bounding box of a node
+		 */
+		double distanceSq(int node, Point2D p)
+		{
+			int b = 4*node;
+			double dx = Math.max(0d, Math.max(boxes[b]-p.getX(), p.getX()-boxes[b+2]));
+			double dy = Math.max(0d, Math.max(boxes[b+1]-p.getY(), p.getY()-boxes[b+3]));
+			return dx*dx+dy*dy;
+		}
+	}
+
 	long nint(double x)
 	{
 		if (x < 0.0) return (long) Math.ceil(x - 0.5);
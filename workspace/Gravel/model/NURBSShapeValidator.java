@@ -435,7 +435,7 @@ public class NURBSShapeValidator extends NURBSShape {
 			PointInfo p2Info = new PointInfo(n.getIndex(), Double.NaN, null,n.getIndex());
 			pointInformation.put(p2, p2Info);
 		}
-		int base = vG.getMathGraph().modifyNodes.getNextIndex();
+		int base = vG.getMathGraph().modifyNodes.getMaxIndex()+1;
 		for (int i=0; i<maxCPIndex-degree; i++)
 		{
 			Points.offer(controlPoints.get(i));
@@ -0,0 +1,250 @@
+package model;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Spatial index of the nodes of a VNodeSet
+ *
+ * The bounding box of a node is the square around its circle, i.e. around the points with a
+ * distance of at most size/2 to its position.
+ *
+ * The plane is divided into square cells and each node is kept in all cells its bounding box
+ * touches. Only cells containing nodes exist, so a point query
+ * only looks at the nodes of one cell and a rectangle query only at the cells covered by the
+ * rectangle (or at all existing cells, if these are fewer).
+ *
+ * Each VNode in such a set knows the index of its set and updates it, whenever its position
+ * or size changes. The bounding box of all nodes is kept too and only recomputed, if a node
+ * on its border moved inside or was removed.
+ *
+ * The indices of all nodes inserted, moved or removed are collected, so that the edges
+ * depending on their positions can be updated.
+ *
+ * @author Ronny Bergmann
+ * @since 0.4
+ */
+class NodeSpatialIndex {
+
+	//Edge length of the cells in px
+	private static final int CELLSIZE = 64;
+	private HashMap<Long,ArrayList<VNode>> cells;
+	//bounding box of each node as it is stored in the cells, by node index
+	private HashMap<Integer,Rectangle> boxes;
+	private Rectangle bounds;
+	private boolean boundsValid;
+	private BitSet moved;
+	private Lock SpatialLock;
+
+	NodeSpatialIndex()
+	{
+		cells = new HashMap<Long,ArrayList<VNode>>();
+		boxes = new HashMap<Integer,Rectangle>();
+		bounds = null;
+		boundsValid = true;
+		moved = new BitSet();
+		SpatialLock = new ReentrantLock();
+	}
+	private static int cell(int c)
+	{
+		return (int)Math.floor((double)c/(double)CELLSIZE);
+	}
+	private static long key(int cx, int cy)
+	{
+		return (((long)cx)<<32) | (cy & 0xffffffffL);
+	}
+	private static Rectangle box(VNode n)
+	{
+		int r = n.getSize()/2;
+		return new Rectangle(n.getPosition().x-r, n.getPosition().y-r, 2*r, 2*r);
+	}
+	/**
+	 * Insert a node or update its position in the index, if it is already contained
+	 * @param n the node
+	 */
+	void update(VNode n)
+	{
+		if ((n==null)||(n.getIndex() < 0))
+			return;
+		SpatialLock.lock();
+		try
+		{
+			remove_(n.getIndex());
+			moved.set(n.getIndex());
+			Rectangle b = box(n);
+			boxes.put(n.getIndex(),b);
+			for (int cx=cell(b.x); cx<=cell(b.x+b.width); cx++)
+				for (int cy=cell(b.y); cy<=cell(b.y+b.height); cy++)
+				{
+					ArrayList<VNode> c = cells.get(key(cx,cy));
+					if (c==null)
+					{
+						c = new ArrayList<VNode>();
+						cells.put(key(cx,cy),c);
+					}
+					c.add(n);
+				}
+			if (boundsValid)
+			{
+				if (bounds==null)
+					bounds = new Rectangle(b);
+				else
+					bounds.add(b);
+			}
+		}
+		finally {SpatialLock.unlock();}
+	}
+	/**
+	 * Remove the node with index i from the index
+	 * @param i index of the node
+	 */
+	void remove(int i)
+	{
+		SpatialLock.lock();
+		try
+		{
+			remove_(i);
+			moved.set(i);
+		}
+		finally {SpatialLock.unlock();}
+	}
+	/**
+	 * Get and reset the indices of all nodes inserted, moved or removed since the last call
+	 * @return a BitSet of the node indices
+	 */
+	BitSet takeMoved()
+	{
+		SpatialLock.lock();
+		try
+		{
+			BitSet b = moved;
+			moved = new BitSet();
+			return b;
+		}
+		finally {SpatialLock.unlock();}
+	}
+	private void remove_(int i)
+	{
+		Rectangle b = boxes.remove(i);
+		if (b==null)
+			return;
+		for (int cx=cell(b.x); cx<=cell(b.x+b.width); cx++)
+			for (int cy=cell(b.y); cy<=cell(b.y+b.height); cy++)
+			{
+				ArrayList<VNode> c = cells.get(key(cx,cy));
+				if (c==null)
+					continue;
+				for (int j=0; j<c.size(); j++)
+					if (c.get(j).getIndex()==i)
+					{
+						c.remove(j);
+						break;
+					}
+				if (c.isEmpty())
+					cells.remove(key(cx,cy));
+			}
+		//Bounds might shrink, if the box touched them
+		if ((bounds!=null)&&((b.x<=bounds.x)||(b.y<=bounds.y)
+				||(b.x+b.width>=bounds.x+bounds.width)||(b.y+b.height>=bounds.y+bounds.height)))
+			boundsValid = false;
+	}
+	/**
+	 * Get the node with the smallest index, whose circle contains the point p
+	 * @param p a point
+	 * @return the node or null, if there is none
+	 */
+	VNode getFirstAt(Point p)
+	{
+		SpatialLock.lock();
+		try
+		{
+			ArrayList<VNode> c = cells.get(key(cell(p.x),cell(p.y)));
+			if (c==null)
+				return null;
+			VNode result = null;
+			for (int j=0; j<c.size(); j++)
+			{
+				VNode n = c.get(j);
+				if ((n.getPosition().distance(p) <= n.getSize()/2)&&((result==null)||(n.getIndex() < result.getIndex())))
+					result = n;
+			}
+			return result;
+		}
+		finally {SpatialLock.unlock();}
+	}
+	/**
+	 * Add all nodes to a collection, whose bounding box intersects the rectangle r (including its border)
+	 * @param r a rectangle
+	 * @param result the collection the nodes are added to. Nodes lying in several cells
+	 * are added several times, so this should be a Set
+	 */
+	void collect(Rectangle r, Collection<VNode> result)
+	{
+		SpatialLock.lock();
+		try
+		{
+			int x1 = cell(r.x), x2 = cell(r.x+r.width), y1 = cell(r.y), y2 = cell(r.y+r.height);
+			if ((long)(x2-x1+1)*(long)(y2-y1+1) <= cells.size())
+			{
+				for (int cx=x1; cx<=x2; cx++)
+					for (int cy=y1; cy<=y2; cy++)
+						collect_(cells.get(key(cx,cy)),r,result);
+			}
+			else //Rectangle covers more cells than exist, so look at the existing ones
+			{
+				Iterator<ArrayList<VNode>> c = cells.values().iterator();
+				while (c.hasNext())
+					collect_(c.next(),r,result);
+			}
+		}
+		finally {SpatialLock.unlock();}
+	}
+	private void collect_(ArrayList<VNode> c, Rectangle r, Collection<VNode> result)
+	{
+		if (c==null)
+			return;
+		for (int j=0; j<c.size(); j++)
+		{
+			Rectangle b = boxes.get(c.get(j).getIndex());
+			//Closed intervals, so points and nodes of size zero are found too
+			if ((b.x <= r.x+r.width)&&(r.x <= b.x+b.width)&&(b.y <= r.y+r.height)&&(r.y <= b.y+b.height))
+				result.add(c.get(j));
+		}
+	}
+	/**
+	 * Get the bounding box of all nodes
+	 * @return a copy of the bounding box or null, if the index is empty
+	 */
+	Rectangle getBounds()
+	{
+		SpatialLock.lock();
+		try
+		{
+			if (!boundsValid)
+			{
+				bounds = null;
+				Iterator<Rectangle> b = boxes.values().iterator();
+				while (b.hasNext())
+				{
+					Rectangle r = b.next();
+					if (bounds==null)
+						bounds = new Rectangle(r);
+					else
+						bounds.add(r);
+				}
+				boundsValid = true;
+			}
+			if (bounds==null)
+				return null;
+			return new Rectangle(bounds);
+		}
+		finally {SpatialLock.unlock();}
+	}
+}
@@ -0,0 +1,159 @@
+package model;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the indices of all selected items of a VNodeSet, VEdgeSet or VHyperEdgeSet
+ * 
+ * Each VItem in such a set knows the SelectionIndex of its set and updates it, whenever
+ * its selection status changes. So the set can answer all selection queries
+ * by just looking at the selected items instead of iterating all items.
+ * 
+ * Beside the selected items the active items are tracked, i.e. those that are selected,
+ * soft selected or soft deselected, so the graphics find them without iterating all items
+ * 
+ * @author Ronny Bergmann
+ * @since 0.4
+ */
+class SelectionIndex {
+
+	private BitSet selected, active;
+	//Each status that makes an item active
+	private static final int ACTIVE = VItem.SELECTED|VItem.SOFT_SELECTED|VItem.SOFT_DESELECTED;
+	private Lock SelectionLock;
+	
+	SelectionIndex()
+	{
+		selected = new BitSet();
+		active = new BitSet();
+		SelectionLock = new ReentrantLock();
+	}
+	/**
+	 * Set the selection status of an index
+	 * @param index index of the item
+	 * @param status the selection status of the item, see VItem
+	 */
+	void update(int index, int status)
+	{
+		if (index < 0)
+			return;
+		SelectionLock.lock();
+		try
+		{
+			selected.set(index,(status&VItem.SELECTED)==VItem.SELECTED);
+			active.set(index,(status&ACTIVE)!=0);
+		}
+		finally {SelectionLock.unlock();}
+	}
+	/**
+	 * Move the status of an item that changed its index
+	 * @param oldi old index
+	 * @param newi new index
+	 */
+	void move(int oldi, int newi)
+	{
+		if ((oldi < 0)||(newi < 0))
+			return;
+		SelectionLock.lock();
+		try
+		{
+			boolean s = selected.get(oldi), a = active.get(oldi);
+			selected.clear(oldi);
+			active.clear(oldi);
+			selected.set(newi,s);
+			active.set(newi,a);
+		}
+		finally {SelectionLock.unlock();}
+	}
+	/**
+	 * @return true if no item is selected
+	 */
+	boolean isEmpty()
+	{
+		SelectionLock.lock();
+		try {return selected.isEmpty();}
+		finally {SelectionLock.unlock();}
+	}
+	/**
+	 * @return number of selected items
+	 */
+	int cardinality()
+	{
+		SelectionLock.lock();
+		try {return selected.cardinality();}
+		finally {SelectionLock.unlock();}
+	}
+	/**
+	 * Set the indices of all active items, i.e. selected, soft selected or soft deselected ones
+	 * @param b the indices are added to this BitSet
+	 */
+	void addActive(BitSet b)
+	{
+		SelectionLock.lock();
+		try {b.or(active);}
+		finally {SelectionLock.unlock();}
+	}
+	/**
+	 * Get the indices of all selected items
+	 * @return the indices in ascending order
+	 */
+	int[] getIndices()
+	{
+		SelectionLock.lock();
+		try
+		{
+			int[] result = new int[selected.cardinality()];
+			int j=0;
+			for (int i=selected.nextSetBit(0); i>=0; i=selected.nextSetBit(i+1))
+				result[j++] = i;
+			return result;
+		}
+		finally {SelectionLock.unlock();}
+	}
+	/**
+	 * Get an Iterator over the selected items. The Iterator works on the
+	 * selection at the time of its creation, so items may be (de)selected or removed
+	 * while iterating, removed items are skipped
+	 * 
+	 * @param items the items of the set by their index
+	 * @param itemLock the lock of the set, which is held while looking up an item in items
+	 * @return an Iterator over all selected items
+	 */
+	<T extends VItem> Iterator<T> iterator(final Map<Integer,T> items, final Lock itemLock)
+	{
+		final int[] indices = getIndices();
+		return new Iterator<T>()
+		{
+			private int pos = 0;
+			private T next = null;
+			public boolean hasNext()
+			{
+				//Look up lazily, so that items removed meanwhile are skipped
+				while ((next==null)&&(pos < indices.length))
+				{
+					itemLock.lock();
+					try {next = items.get(indices[pos++]);}
+					finally {itemLock.unlock();}
+				}
+				return next!=null;
+			}
+			public T next()
+			{
+				if (!hasNext())
+					throw new NoSuchElementException();
+				T t = next;
+				next = null;
+				return t;
+			}
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -27,6 +27,46 @@ public abstract class VEdge extends VItem {
 	private VEdgeText text;
 	private VEdgeLinestyle linestyle;
 	private VEdgeArrow arrow;
+	private EdgeSpatialIndex spatial; //Spatial index of the set this edge is in, null if it is in no set
+	
+	//Cached geometry, each part is valid as long as the values it was computed from stay the same
+	private GeometryKey basePathKey = new GeometryKey(), pathKey = new GeometryKey(), drawPathKey = new GeometryKey(),
+		arrowKey = new GeometryKey(), textKey = new GeometryKey();
+	private GeneralPath basePath, path, drawPath;
+	private Shape arrowShape;
+	private Point textCenter;
+	
+	/**
+	 * The values a cached part of the geometry of an edge was computed from:
+	 * the positions of the start and end node, the zoom and up to six further values
+	 * 
+	 * @author Ronny Bergmann
+	 * @since 0.4
+	 */
+	private static class GeometryKey
+	{
+		private boolean valid = false;
+		private int sx,sy,ex,ey;
+		private float zoom,v1,v2,v3,v4,v5,v6;
+		/**
+		 * Check whether the key has the given values and set them, if it hasn't
+		 * @return true if the key was valid and had the same values, else false
+		 */
+		boolean same(Point s, Point e, float z, float a1, float a2, float a3, float a4, float a5, float a6)
+		{
+			if (valid&&(sx==s.x)&&(sy==s.y)&&(ex==e.x)&&(ey==e.y)&&(zoom==z)
+					&&(v1==a1)&&(v2==a2)&&(v3==a3)&&(v4==a4)&&(v5==a5)&&(v6==a6))
+				return true;
+			sx = s.x; sy = s.y; ex = e.x; ey = e.y; zoom = z;
+			v1 = a1; v2 = a2; v3 = a3; v4 = a4; v5 = a5; v6 = a6;
+			valid = true;
+			return false;
+		}
+		void invalidate()
+		{
+			valid = false;
+		}
+	}
 
 	/**
 	 * Constructor that initializes the Arrow-Part of the Edge with the GeneralPreferences Standard
@@ -74,13 +114,36 @@ public abstract class VEdge extends VItem {
 	 * @return the edge type constant
 	 */
 	public abstract int getEdgeType();
+	/**
+	 * Compute the Path of an edge ignoring the line style. Each edge type implements this method,
+	 * the result is cached by getPath
+	 * @param Start Coordinates of the Start Node
+	 * @param End Coordinates of the End Node
+	 * @param zoom Zoomfactor in your computational environment
+	 * @return a path equal to a solid line style path
+	 */
+	protected abstract GeneralPath computePath(Point Start, Point End,float zoom);
 	/**
 	 * Returns the Path of an edge ignoring the line style, so only for computational cases
+	 * The path is cached for zoom 1.0 and one other zoom, so it must not be modified.
+	 * The cached values may be used from several threads, e.g. while exporting
 	 * @param Start Coordinates of the Start Node
 	 * @param End Coordinates of the End Node
 	 * @param zoom Zoomfactor in your computational environment
 	 * @return a path equal to a solid line style path
-	 */public abstract GeneralPath getPath(Point Start, Point End,float zoom);
+	 */
+	public synchronized GeneralPath getPath(Point Start, Point End,float zoom)
+	{
+		if (zoom==1.0f)
+		{
+			if (!basePathKey.same(Start,End,zoom,0f,0f,0f,0f,0f,0f))
+				basePath = computePath(Start,End,zoom);
+			return basePath;
+		}
+		if (!pathKey.same(Start,End,zoom,0f,0f,0f,0f,0f,0f))
+			path = computePath(Start,End,zoom);
+		return path;
+	}
 	/**
 	 * Translate an edge. The Start and End-Node are translated already so this method must move all internal
 	 * points of an edge
@@ -110,11 +173,13 @@ public abstract class VEdge extends VItem {
 	 * @param Start Start Node Coordinates
 	 * @param End End Node Coordinates
 	 * @param zoom Zoomfactor of your drwaig environment
-	 * @return
+	 * @return the cached path, that must not be modified
 	 */
-	public GeneralPath getDrawPath(Point Start, Point End, float zoom)
+	public synchronized GeneralPath getDrawPath(Point Start, Point End, float zoom)
 	{
-		return linestyle.modifyPath(getPath(Start,End,zoom), width, zoom);
+		if (!drawPathKey.same(Start,End,zoom,width,linestyle.getType(),linestyle.getLength(),linestyle.getDistance(),0f,0f))
+			drawPath = linestyle.modifyPath(getPath(Start,End,zoom), width, zoom);
+		return drawPath;
 	}
 	/**
 	 * Apply the Properties of this Edge to another (possibly clone) the given parameter edge is modified
@@ -140,9 +205,15 @@ public abstract class VEdge extends VItem {
 	 * @param startsize radius(!) of the startnode
 	 * @param endsize radius(!) of the endnode
 	 * @param zoom Zoomfactor for the size
-	 * @return
+	 * @return the cached shape, that must not be modified
 	 */
-	public Shape getArrowShape(Point Start, Point End, int startsize, int endsize, float zoom) 
+	public synchronized Shape getArrowShape(Point Start, Point End, int startsize, int endsize, float zoom) 
+	{
+		if (!arrowKey.same(Start,End,zoom,startsize,endsize,getArrow().getSize(),getArrow().getPart(),getArrow().getAngle(),getArrow().getPos()))
+			arrowShape = computeArrowShape(Start,End,startsize,endsize,zoom);
+		return arrowShape;
+	}
+	private Shape computeArrowShape(Point Start, Point End, int startsize, int endsize, float zoom) 
 	{
 		double[] coords = new double[2];
     	double x = 0.0, y = 0.0, lastx=0.0, lasty = 0.0;
@@ -355,6 +426,33 @@ public abstract class VEdge extends VItem {
 	public void setWidth(int i)
 	{
 		width = i;
+		geometryChanged();
+	}
+	/**
+	 * Set the spatial index of the set this edge belongs to. The edge is removed from the old
+	 * index and marked invalid in the new one
+	 * @param s the new index or null, if the edge is removed from its set
+	 */
+	void setSpatialIndex(EdgeSpatialIndex s)
+	{
+		if (spatial!=null)
+			spatial.remove(getIndex());
+		spatial = s;
+		geometryChanged();
+	}
+	/**
+	 * Each edge type calls this method, whenever a value its path depends on (besides the positions
+	 * of its nodes) changes, so that its set can update its geometry
+	 */
+	protected synchronized void geometryChanged()
+	{
+		basePathKey.invalidate();
+		pathKey.invalidate();
+		drawPathKey.invalidate();
+		arrowKey.invalidate();
+		textKey.invalidate();
+		if (spatial!=null)
+			spatial.invalidate(getIndex());
 	}
 	/**
 	 * return the class for the textproperties
@@ -368,7 +466,19 @@ public abstract class VEdge extends VItem {
 	{
 		text = newtext;
 	}
-	public Point getTextCenter(Point startNodePos, Point endNodePos)
+	/**
+	 * Get the center of the text of the edge (without zoom)
+	 * @param startNodePos Coordinates of the Startpoint
+	 * @param endNodePos Coordinates of the Endpoint of the Edge
+	 * @return a new point
+	 */
+	public synchronized Point getTextCenter(Point startNodePos, Point endNodePos)
+	{
+		if (!textKey.same(startNodePos,endNodePos,1.0f,getTextProperties().getPosition(),getTextProperties().getDistance(),0f,0f,0f,0f))
+			textCenter = computeTextCenter(startNodePos,endNodePos);
+		return new Point(textCenter);
+	}
+	private Point computeTextCenter(Point startNodePos, Point endNodePos)
 	{
 		float pos; boolean top; double part;
 		if (getTextProperties().getPosition() > .5f)
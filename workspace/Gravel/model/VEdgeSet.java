@@ -2,8 +2,12 @@ package model;
 
 
 import java.awt.Point;
+import java.awt.geom.Line2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
 import java.awt.geom.Point2D.Double;
 import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Observable;
@@ -27,6 +31,12 @@ import model.Messages.GraphMessage;
  * The Graph containing this Set should also subscribe to send specific messages to 
  * other Entities observing the Graph
  * 
+ * The edges are also kept in an index map for access by index in constant time
+ * and the indices of the selected edges are kept in a SelectionIndex.
+ * The bounding boxes and flattened paths of the edges are cached in an EdgeSpatialIndex,
+ * so hit tests only look at the edges near the point. Each edge marks its geometry invalid on
+ * changes itself, changes of the node positions are taken from the VNodeSet of the same graph
+ * 
  * @author Ronny Bergmann
  * @since 0.4
  */
@@ -35,20 +45,40 @@ public class VEdgeSet extends Observable implements Observer {
 	private Lock EdgeLock;
 	private MGraph mG;
 	private TreeSet<VEdge> vEdges;
+	//Same edges as above, accessible by their index
+	private HashMap<Integer,VEdge> vEdgeIndex;
+	private SelectionIndex selection;
+	private EdgeSpatialIndex spatial;
+	//The nodes of the same graph the edge paths depend on
+	private VNodeSet nodes;
+	//Flatness of the cached paths of the edges
+	private static final double FLATNESS = 0.05d;
 	
 	public VEdgeSet(MGraph g)
 	{
 		vEdges = new TreeSet<VEdge>(new VItem.IndexComparator());
+		vEdgeIndex = new HashMap<Integer,VEdge>();
+		selection = new SelectionIndex();
+		spatial = new EdgeSpatialIndex();
 		EdgeLock = new ReentrantLock();
 		mG = g;
 		mG.addObserver(this); //mG is VGraph-internal so node deletions are signaled through this message
 	}
+	/**
+	 * Set the nodes of the graph this set belongs to, so that the geometry of the
+	 * edges can be computed from their positions
+	 * @param n the node set of the same graph
+	 */
+	void setNodeSet(VNodeSet n)
+	{
+		nodes = n;
+	}
 	/**
 	 * Set all Edges to not selected
 	 */
 	public void deselect()
 	{
-		Iterator<VEdge> e = vEdges.iterator();
+		Iterator<VEdge> e = getSelectedIterator();
 		while (e.hasNext()) {
 			e.next().deselect();
 		}
@@ -183,12 +213,20 @@ public class VEdgeSet extends Observable implements Observer {
 					arr = temp.getArrow().clone();
 					VEdge tempcolorEdge = temp.clone();
 					vEdges.remove(temp);
+					temp.setSelectionIndex(null);
+					temp.setSpatialIndex(null);
 					temp = new VQuadCurveEdge(temp.getIndex(),temp.width,bz2);
 					temp.setArrow(arr);
 					tempcolorEdge.copyColorStatus(temp);
 					vEdges.add(temp); //add modified edge in counter directtion
+					vEdgeIndex.put(temp.getIndex(),temp);
+					temp.setSelectionIndex(selection);
+					temp.setSpatialIndex(spatial);
 				}
 				vEdges.add(edge); //add edge
+				vEdgeIndex.put(edge.getIndex(),edge);
+				edge.setSelectionIndex(selection);
+				edge.setSpatialIndex(spatial);
 				mG.modifyEdges.replace(medge);
 			} 
 			finally {EdgeLock.unlock();}
@@ -196,6 +234,31 @@ public class VEdgeSet extends Observable implements Observer {
 			notifyObservers(new GraphMessage(GraphConstraints.EDGE,edge.getIndex(),GraphConstraints.ADDITION,GraphConstraints.EDGE));	
 		}
 	}
+	/**
+	 * Add copies of all edges of another set including their color and selection
+	 * without notification. The mathematical edges have to be copied to the graph beneath already.
+	 * This is only used to clone a graph into a new and empty graph, where nobody has to be informed
+	 * @param s the set to copy the edges from
+	 */
+	void addAll_(VEdgeSet s)
+	{
+		EdgeLock.lock();
+		try
+		{
+			Iterator<VEdge> n = s.getIterator();
+			while (n.hasNext())
+			{
+				VEdge o = n.next();
+				VEdge c = o.clone();
+				o.copyColorStatus(c);
+				vEdges.add(c);
+				vEdgeIndex.put(c.getIndex(),c);
+				c.setSelectionIndex(selection);
+				c.setSpatialIndex(spatial);
+			}
+		}
+		finally {EdgeLock.unlock();}
+	}
 	/**
 	 * get the edge with a given index, if existens
 	 * @param i
@@ -204,14 +267,12 @@ public class VEdgeSet extends Observable implements Observer {
 	 * @return the edge, if existens, else null 
 	 */
 	public VEdge get(int i) {
-		Iterator<VEdge> n = vEdges.iterator();
-		while (n.hasNext()) {
-			VEdge temp = n.next();
-			if (temp.getIndex() == i) {
-				return temp;
-			}
+		EdgeLock.lock();
+		try
+		{
+			return vEdgeIndex.get(i);
 		}
-		return null;
+		finally {EdgeLock.unlock();}
 	}
 	/**
 	 * Replace the edge with index given by an copy of edge with the parameter,
@@ -232,20 +293,20 @@ public class VEdgeSet extends Observable implements Observer {
 		EdgeLock.lock(); //Find the edge to be replaced
 		try
 		{
-			Iterator<VEdge> ei = vEdges.iterator();				
-			while (ei.hasNext())
+			VEdge t = vEdgeIndex.get(e.getIndex());
+			if (t!=null)
 			{
-				VEdge t = ei.next();
-				if (t.getIndex()==e.getIndex())
-				{
-					vEdges.remove(t);
-					//Clone Color Status of e from t
-					t.copyColorStatus(e);
-					vEdges.add(e);
-					setChanged();
-					notifyObservers(new GraphMessage(GraphConstraints.EDGE,e.getIndex(), GraphConstraints.REPLACEMENT,GraphConstraints.EDGE));	
-					break;
-				}
+				vEdges.remove(t);
+				t.setSelectionIndex(null);
+				t.setSpatialIndex(null);
+				//Clone Color Status of e from t
+				t.copyColorStatus(e);
+				vEdges.add(e);
+				vEdgeIndex.put(e.getIndex(),e);
+				e.setSelectionIndex(selection);
+				e.setSpatialIndex(spatial);
+				setChanged();
+				notifyObservers(new GraphMessage(GraphConstraints.EDGE,e.getIndex(), GraphConstraints.REPLACEMENT,GraphConstraints.EDGE));	
 			}
 		}
 		finally {EdgeLock.unlock();}
@@ -283,6 +344,9 @@ public class VEdgeSet extends Observable implements Observer {
 		{
  			mG.modifyEdges.remove(i);
 			vEdges.remove(toDel);
+			vEdgeIndex.remove(i);
+			toDel.setSelectionIndex(null);
+			toDel.setSpatialIndex(null);
 		} 
 		finally {EdgeLock.unlock();}
 		return true;
@@ -339,6 +403,16 @@ public class VEdgeSet extends Observable implements Observer {
 	public Iterator<VEdge> getIterator() {
 		return vEdges.iterator();
 	}
+	/**
+	 * Get an Iterator over the selected edges only, ordered by index.
+	 * Edges may be (de)selected or removed while iterating
+	 * 
+	 * @return the Iterator typed with VEdge
+	 */
+	public Iterator<VEdge> getSelectedIterator()
+	{
+		return selection.iterator(vEdgeIndex,EdgeLock);
+	}
 	/**
 	 * get an Control point near the point m
 	 * a Control point is any point in a QuadCurveEdge or SegmentedEdge despite source and target
@@ -386,22 +460,139 @@ public class VEdgeSet extends Observable implements Observer {
 		}
 		return null; // keinen gefunden
 	}
+	/**
+	 * Get the first edge (by index) in range of a given point. An edge is in range, if its path
+	 * intersects the square around the point with edge length variation+width of the edge.
+	 * Only the edges whose bounding box is near the point are checked
+	 * @param m a point
+	 * @param variation the size of the square in addition to the width of the edges
+	 * 
+	 * @return the first edge in range, if there is one, else null
+	 */
+	public VEdge getFirstinRangeOf(Point m, double variation)
+	{
+		BitSet candidates = spatial.collect(candidatesRect(new Rectangle2D.Double(m.x,m.y,0d,0d),variation/2d));
+		Rectangle2D.Double r = new Rectangle2D.Double();
+		Line2D.Double l = new Line2D.Double();
+		for (int i=candidates.nextSetBit(0); i>=0; i=candidates.nextSetBit(i+1))
+		{
+			VEdge temp = get(i);
+			double[] line = spatial.getPolyline(i);
+			if ((temp==null)||(line==null))
+				continue;
+			double v = variation + (float)temp.width;
+			r.setRect(m.x-v/2,m.y-v/2,v,v);
+			for (int j=2; j<line.length; j+=2)
+			{
+				l.setLine(line[j-2],line[j-1],line[j],line[j+1]);
+				if (l.intersects(r))
+					return temp;
+			}
+		}
+		return null; // keinen gefunden
+	}
+	/**
+	 * Get all edges whose bounding box (the one of the path enlarged by half the width) intersects a rectangle.
+	 * These are all edges that might intersect the rectangle
+	 * @param r a rectangle
+	 * 
+	 * @return an Iterator over these edges, ordered by index
+	 */
+	public Iterator<VEdge> getEdgesinRectangle(Rectangle2D r)
+	{
+		BitSet candidates = spatial.collect(candidatesRect(r,0d));
+		TreeSet<VEdge> result = new TreeSet<VEdge>(new VItem.IndexComparator());
+		for (int i=candidates.nextSetBit(0); i>=0; i=candidates.nextSetBit(i+1))
+			if (get(i)!=null)
+				result.add(get(i));
+		return result.iterator();
+	}
+	/**
+	 * Update the geometry of all edges that changed or whose nodes moved and return the rectangle
+	 * enlarged by the variation to query the spatial index with
+	 */
+	private Rectangle2D candidatesRect(Rectangle2D r, double variation)
+	{
+		if (nodes!=null)
+		{
+			BitSet moved = nodes.takeMovedNodes();
+			for (int i=moved.nextSetBit(0); i>=0; i=moved.nextSetBit(i+1))
+			{
+				Iterator<Integer> adjacent = mG.modifyEdges.indicesFrom(i).iterator();
+				while (adjacent.hasNext())
+					spatial.invalidate(adjacent.next());
+				adjacent = mG.modifyEdges.indicesTo(i).iterator();
+				while (adjacent.hasNext())
+					spatial.invalidate(adjacent.next());
+			}
+		}
+		BitSet changed = spatial.takeInvalid();
+		for (int i=changed.nextSetBit(0); i>=0; i=changed.nextSetBit(i+1))
+		{
+			VEdge e = get(i);
+			MEdge me = mG.modifyEdges.get(i);
+			if ((e==null)||(me==null)||(nodes==null)||(nodes.get(me.StartIndex)==null)||(nodes.get(me.EndIndex)==null))
+			{
+				spatial.remove(i);
+				continue;
+			}
+			PathIterator path = e.getPath(nodes.get(me.StartIndex).getPosition(),nodes.get(me.EndIndex).getPosition(),1.0f).getPathIterator(null, FLATNESS);
+			double[] coords = new double[6];
+			double[] line = new double[16];
+			int count = 0;
+			Rectangle2D.Double box = null;
+			while (!path.isDone())
+			{
+				int type = path.currentSegment(coords);
+				if ((type==PathIterator.SEG_MOVETO)||(type==PathIterator.SEG_LINETO))
+				{
+					if (count+4 > line.length)
+					{
+						double[] longer = new double[2*line.length];
+						System.arraycopy(line,0,longer,0,count);
+						line = longer;
+					}
+					if ((type==PathIterator.SEG_MOVETO)&&(count > 0)) //Separate subpaths by NaN, a line to NaN intersects nothing
+					{
+						line[count++] = java.lang.Double.NaN;
+						line[count++] = java.lang.Double.NaN;
+					}
+					line[count++] = coords[0];
+					line[count++] = coords[1];
+					if (box==null)
+						box = new Rectangle2D.Double(coords[0],coords[1],0d,0d);
+					else
+						box.add(coords[0],coords[1]);
+				}
+				path.next();
+			}
+			if (box==null)
+			{
+				spatial.remove(i);
+				continue;
+			}
+			double[] result = new double[count];
+			System.arraycopy(line,0,result,0,count);
+			double w = (double)e.getWidth()/2d;
+			box.setRect(box.x-w, box.y-w, box.width+2*w, box.height+2*w);
+			spatial.put(i, box, result);
+		}
+		return new Rectangle2D.Double(r.getX()-variation, r.getY()-variation, r.getWidth()+2*variation, r.getHeight()+2*variation);
+	}
 	/**
 	 * Check, whether at least one node is selected
 	 * @return true, if there is at least one selected node, else false
 	 */
 	public boolean hasSelection() {
-		Iterator<VEdge> e = vEdges.iterator();
-		EdgeLock.lock();
-		boolean result = false;
-		try
-		{
-			while (e.hasNext())
-				if ((e.next().getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED)
-					result=true;
-		}
-		finally{EdgeLock.unlock();}	
-		return result;
+		return !selection.isEmpty();
+	}
+	/**
+	 * Add the indices of all edges that are selected, soft selected or soft deselected
+	 * @param b the indices are set in this BitSet
+	 */
+	public void collectActive(BitSet b)
+	{
+		selection.addActive(b);
 	}
 	/**
 	 * Get the one and simple selected Edge iff such an edge exists, in every other case null is returned
@@ -409,25 +600,17 @@ public class VEdgeSet extends Observable implements Observer {
 	 */
 	public VEdge getSingleSelectedEdge()
 	{
-		Iterator<VEdge> e = vEdges.iterator();
 		EdgeLock.lock();
-		VEdge result = null;
 		try
 		{
-			while (e.hasNext())
-			{
-				VEdge ve = e.next();
-				if ((ve.getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED)
-				{
-					if (result!=null) //This is the second selected Edge
-						return new VStraightLineEdge(-1,-1);
-					else
-						result = ve;
-				}
-			}
+			int[] selected = selection.getIndices();
+			if (selected.length==0)
+				return null;
+			if (selected.length > 1) //There is more than one selected Edge
+				return new VStraightLineEdge(-1,-1);
+			return vEdgeIndex.get(selected[0]);
 		}
 		finally{EdgeLock.unlock();}	
-		return result;
 	}	
 	//
 	//private Stuff for handling changes from other sets
@@ -8,10 +8,6 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.awt.geom.GeneralPath;
-import java.awt.geom.Line2D;
-import java.awt.geom.PathIterator;
-import java.awt.geom.Rectangle2D;
 
 import java.util.BitSet;
 import java.util.HashSet;
@@ -23,6 +19,8 @@ import model.VEdge;
 import model.VNode;
 import model.Messages.GraphConstraints;
 import model.Messages.GraphMessage;
+import model.Messages.GraphMessageBus;
+import model.Messages.GraphMessageListener;
 /**
  * VGraph encapsulates an MGraph and keeps visual information about every node, edge and subgraphs in the MGraph
  * each manipulation on the VGraph is also given to the MGraph
@@ -40,6 +38,8 @@ public class VGraph extends Observable implements VGraphInterface {
 	public VNodeSet modifyNodes;
 	public VEdgeSet modifyEdges;
 	public VSubgraphSet modifySubgraphs;
+	private GraphBatch batch;
+	private GraphMessageBus bus;
 	/**
 	 * Constructor
 	 * 
@@ -49,9 +49,21 @@ public class VGraph extends Observable implements VGraphInterface {
 	 */	
 	public VGraph(boolean d, boolean l, boolean m)
 	{
-		mG = new MGraph(d,l,m);
+		this(new MGraph(d,l,m));
+	}
+	/**
+	 * Create a visual graph on top of a given mathematical graph, that has to contain no nodes,
+	 * edges or subgraphs yet or whose elements are added to the visual sets afterwards
+	 * @param g the mathematical graph
+	 */
+	private VGraph(MGraph g)
+	{
+		batch = new GraphBatch();
+		bus = new GraphMessageBus();
+		mG = g;
 		modifyNodes = new VNodeSet(mG);
 		modifyEdges = new VEdgeSet(mG);
+		modifyEdges.setNodeSet(modifyNodes); //Edge paths depend on the node positions
 		modifySubgraphs = new VSubgraphSet(mG);
 		modifySubgraphs.addObserver(modifyNodes); //Nodes must react on SubgraphChanges (Color)
 		modifySubgraphs.addObserver(modifyEdges); //Edges must react on SubgraphChanges (Color)
@@ -108,26 +120,13 @@ public class VGraph extends Observable implements VGraphInterface {
 							GraphConstraints.REMOVAL|GraphConstraints.BLOCK_START, //Status 
 							GraphConstraints.NODE|GraphConstraints.EDGE|GraphConstraints.SELECTION) //Affected		
 			);
-		Iterator<VNode> n = modifyNodes.getIterator();
-		HashSet<VNode> selected = new HashSet<VNode>();
-		while (n.hasNext()) {
-			VNode node = n.next();
-			if ((node.getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED)
-				selected.add(node);
-		}
-		n = selected.iterator();
+		//The selected iterators skip items removed meanwhile, e.g. edges adjacent to removed nodes
+		Iterator<VNode> n = modifyNodes.getSelectedIterator();
 		while (n.hasNext())
 		{
 			modifyNodes.remove(n.next().getIndex());
 		}
-		Iterator<VEdge> n2 = modifyEdges.getIterator();
-		HashSet<VEdge> selected2 = new HashSet<VEdge>();
-		while (n2.hasNext()) {
-			VEdge edge = n2.next();
-			if ((edge.getSelectedStatus() & VItem.SELECTED) == VItem.SELECTED)
-				selected2.add(edge);
-		}
-		n2 = selected2.iterator();
+		Iterator<VEdge> n2 = modifyEdges.getSelectedIterator();
 		while (n2.hasNext())
 		{
 			modifyEdges.remove(n2.next().getIndex());
@@ -160,30 +159,30 @@ public class VGraph extends Observable implements VGraphInterface {
 			notifyObservers(new GraphMessage(GraphConstraints.EDGE|GraphConstraints.DIRECTION,GraphConstraints.UPDATE|GraphConstraints.BLOCK_START, GraphConstraints.EDGE));
 			if (!mG.isMultipleAllowed()) //Ist auch nur ein Problem, wenn keine Mehrfachkanten erlaubt sind
 			{
-					Iterator<VNode> n = modifyNodes.getIterator();
+					//Only pairs of nodes with an edge between them are affected, so iterate the edges
+					Vector<MEdge> edges = new Vector<MEdge>();
+					Iterator<MEdge> n = mG.modifyEdges.getIterator();
+					while (n.hasNext())
+						edges.add(n.next());
+					n = edges.iterator();
 					while (n.hasNext())
 					{
-						VNode t = n.next();
-						Iterator<VNode> n2 = modifyNodes.getIterator();			//jeweils
-						while (n2.hasNext())
+						MEdge t = n.next();
+						if ((t.StartIndex < t.EndIndex)&&(mG.modifyEdges.get(t.index)!=null))
 						{
-							VNode t2 = n2.next();
-							if (t.getIndex() < t2.getIndex())
+							Vector<Integer> ttot2 = mG.modifyEdges.indicesBetween(t.StartIndex, t.EndIndex);
+							Vector<Integer> t2tot = mG.modifyEdges.indicesBetween(t.EndIndex, t.StartIndex);
+							//In the nonmultiple case each Vector has exactely one or no edge in it
+							if ((!ttot2.isEmpty())&&(!t2tot.isEmpty()))
 							{
-								Vector<Integer> ttot2 = mG.modifyEdges.indicesBetween(t.getIndex(), t2.getIndex());
-								Vector<Integer> t2tot = mG.modifyEdges.indicesBetween(t2.getIndex(), t.getIndex());
-								//In the nonmultiple case each Vector has exactely one or no edge in it
-								if ((!ttot2.isEmpty())&&(!t2tot.isEmpty()))
-								{
-									int e1 = ttot2.firstElement();
-									int e2 = t2tot.firstElement();
-									MEdge m = mG.modifyEdges.get(e2);
-									m.Value = mG.modifyEdges.get(e2).Value+mG.modifyEdges.get(e1).Value;
-									modifyEdges.remove(e1);
-									removed.set(e1);
-								}
-							} //End no duplicate
-						}
+								int e1 = ttot2.firstElement();
+								int e2 = t2tot.firstElement();
+								MEdge m = mG.modifyEdges.get(e2);
+								m.Value = mG.modifyEdges.get(e2).Value+mG.modifyEdges.get(e1).Value;
+								modifyEdges.remove(e1);
+								removed.set(e1);
+							}
+						} //End no duplicate
 					}
 //					if (mG.setDirected(d).cardinality() > 0) {}
 			} //end of if !allowedmultiple
@@ -332,47 +331,11 @@ public class VGraph extends Observable implements VGraphInterface {
 	 */
 	public VGraph clone()
 	{
-		VGraph clone = new VGraph(mG.isDirected(),mG.isLoopAllowed(),mG.isMultipleAllowed());
-		//Untergraphen
-		Iterator<VSubgraph> n1 = modifySubgraphs.getIterator();
-		while (n1.hasNext())
-		{
-			VSubgraph actualSet = n1.next().clone();
-			//Add it as an empty SubSet
-			clone.modifySubgraphs.add(actualSet, new MSubgraph(actualSet.index, mG.modifySubgraphs.get(actualSet.index).getName())); //Jedes Set kopieren
-		}
-		//Knoten
-		Iterator<VNode> n2 = modifyNodes.getIterator();
-		while (n2.hasNext())
-		{
-			VNode nodeclone = n2.next().clone();
-			clone.modifyNodes.add(nodeclone, mG.modifyNodes.get(nodeclone.getIndex()).clone());
-			//In alle Sets einfuegen
-			n1 = modifySubgraphs.getIterator();
-			while (n1.hasNext())
-			{
-				VSubgraph actualSet = n1.next();
-				if (mG.modifySubgraphs.get(actualSet.index).containsNode(nodeclone.getIndex()))
-					clone.modifySubgraphs.addNodetoSubgraph(nodeclone.getIndex(), actualSet.index); //In jedes Set setzen wo er war
-			}
-		}
-		//Analog Kanten
-		Iterator<VEdge> n3 = modifyEdges.getIterator();
-		while (n3.hasNext())
-		{
-			VEdge cloneEdge = n3.next().clone();
-			MEdge me = mG.modifyEdges.get(cloneEdge.getIndex()).clone();
-			clone.modifyEdges.add(cloneEdge, me, modifyNodes.get(me.StartIndex).getPosition(), modifyNodes.get(me.EndIndex).getPosition());
-			//In alle Sets einfuegen
-			n1 = modifySubgraphs.getIterator();
-			while (n1.hasNext())
-			{
-				VSubgraph actualSet = n1.next();
-				if (mG.modifySubgraphs.get(actualSet.index).containsEdge(cloneEdge.getIndex()))
-					clone.modifySubgraphs.addEdgetoSubgraph(cloneEdge.getIndex(), actualSet.getIndex()); //Jedes Set kopieren
-			}
-		}
-		//und zurückgeben
+		//Copy the sets directly, this is linear in the number of elements and subgraphs
+		VGraph clone = new VGraph(mG.clone());
+		clone.modifyNodes.addAll_(modifyNodes);
+		clone.modifyEdges.addAll_(modifyEdges);
+		clone.modifySubgraphs.addAll_(modifySubgraphs);
 		return clone;
 	}
 	/* (non-Javadoc)
@@ -382,20 +345,20 @@ public class VGraph extends Observable implements VGraphInterface {
 	{
 		Graphics2D g2 = (Graphics2D) g;
 		Point maximum = new Point(0,0);
+		//Node circles are bounded by the spatial index of the nodes
+		Rectangle nodebounds = modifyNodes.getBounds();
+		if (nodebounds!=null)
+		{
+			maximum.x = Math.max(0,nodebounds.x+nodebounds.width+1);
+			maximum.y = Math.max(0,nodebounds.y+nodebounds.height+1);
+		}
+		//Node Text - only if Graphics are not null, they are null if there is no visible picture. 
 		Iterator<VNode> iter1 = modifyNodes.getIterator();
-		while (iter1.hasNext())
+		while ((g2!=null)&&(iter1.hasNext()))
 		{
 			VNode actual = iter1.next();
-			Point p = (Point) actual.getPosition().clone();
-			p.translate(Math.round(actual.getSize()/2), Math.round(actual.getSize()/2));
-			p.x++; p.y++;
-			if (p.x > maximum.x)
-				maximum.x = p.x;
-			if (p.y > maximum.y)
-				maximum.y = p.y;
-//			Node Text - only if Graphics are not null, they are null if there is no visible picture. 
 			//And if node name is visible
-			if ((g2!=null)&&(actual.isNameVisible()))
+			if (actual.isNameVisible())
 			{
 				Font f = new Font("Arial",Font.PLAIN, Math.round(actual.getNameSize()));
 				//mittelpunkt des Textes
@@ -430,20 +393,19 @@ public class VGraph extends Observable implements VGraphInterface {
 	{
 		Graphics2D g2 = (Graphics2D)g; 
 		Point minimum = new Point(Integer.MAX_VALUE,Integer.MAX_VALUE);
+		//Node circles are bounded by the spatial index of the nodes
+		Rectangle nodebounds = modifyNodes.getBounds();
+		if (nodebounds!=null)
+		{
+			minimum.x = (nodebounds.x > 0) ? nodebounds.x-1 : nodebounds.x;
+			minimum.y = (nodebounds.y > 0) ? nodebounds.y-1 : nodebounds.y;
+		}
+		//Node Text - only if Graphics are not null, they are null if there is no visible picture. 
 		Iterator<VNode> iter1 = modifyNodes.getIterator();
-		while (iter1.hasNext())
+		while ((g2!=null)&&(iter1.hasNext()))
 		{
 			VNode actual = iter1.next();
-			Point p = (Point) actual.getPosition().clone();
-			p.translate(-Math.round(actual.getSize()/2), -Math.round(actual.getSize()/2));
-			if (p.x>0) p.x--; 
-			if (p.y>0) p.y--; 
-			if (p.x < minimum.x)
-				minimum.x = p.x;
-			if (p.y < minimum.y)
-				minimum.y = p.y;
-			//Node Text - only if Graphics are not null, they are null if there is no visible picture. 
-			if ((g2!=null)&&(actual.isNameVisible()))
+			if (actual.isNameVisible())
 			{
 				Font f = new Font("Arial",Font.PLAIN, Math.round(actual.getNameSize()));
 				//mittelpunkt des Textes
@@ -482,55 +444,7 @@ public class VGraph extends Observable implements VGraphInterface {
 	 * @return the first edge in range, if there is one, else null
 	 */
 	public VEdge getEdgeinRangeOf(Point m, double variation) {
-		Iterator<VEdge> n = modifyEdges.getIterator();
-		while (n.hasNext()) {
-			VEdge temp = n.next();
-			// naechste Kante
-			MEdge me = mG.modifyEdges.get(temp.getIndex());
-			Point p1 = (Point)modifyNodes.get(me.StartIndex).getPosition().clone();
-			Point p2 = (Point)modifyNodes.get(me.EndIndex).getPosition().clone();
-			// getEdgeShape
-			GeneralPath p = temp.getPath(p1, p2,1.0f); //no zoom on check!
-		    PathIterator path = p.getPathIterator(null, 0.001); 
-		    // 0.005 = the flatness; reduce if result is not accurate enough!
-		    double[] coords = new double[2];
-		    double x = 0.0, y = 0.0, lastx=0.0, lasty = 0.0;
-		    double closestDistanceSquare = Double.MAX_VALUE;
-		    while( !path.isDone() ) 
-		    {
-		    	int type = path.currentSegment(coords);
-		    	x = coords[0]; y = coords[1];
-		    	switch(type)
-		    	{
-		    		case PathIterator.SEG_LINETO:
-		    		{
-		    			double v = variation + (float)temp.width;
-		    			Rectangle2D.Double r = new Rectangle.Double(m.x-v/2,m.y-v/2,v,v);
-		    			Line2D.Double l = new Line2D.Double(lastx,lasty,x,y);
-		    			if (l.intersects(r))
-		    			{
-		    				return temp;
-		    			}
-		    			break;
-		    		}
-		    		case PathIterator.SEG_MOVETO: break;
-		    		default:
-		    		{
-				    	double distanceSquare = Point.distanceSq(x,y,m.x,m.y);
-				    	if (distanceSquare < (variation+(double)temp.width)) 
-				    	{
-					    		return temp;
-					    }		    			
-		    		}
-		    	}
-		    	lastx = x; lasty = y;
-		    	path.next();
-		    }
-		    //if the shortest distance is smaller than  
-		    if (closestDistanceSquare < (variation+(double)temp.width))
-		    	return temp;
-		}
-		return null; // keinen gefunden
+		return modifyEdges.getFirstinRangeOf(m, variation);
 	}
 	/**
 	 * add edges from evey selected node to a given node
@@ -538,24 +452,28 @@ public class VGraph extends Observable implements VGraphInterface {
 	 * 				the target of all new edges
 	 */
 	public void addEdgesfromSelectedNodes(VNode Ende) {
-		pushNotify(new GraphMessage(GraphConstraints.EDGE,GraphConstraints.ADDITION|GraphConstraints.BLOCK_START));
-		Iterator<VNode> iter = modifyNodes.getIterator();
-		while (iter.hasNext()) 
+		beginBatch();
+		try
 		{
-				VNode temp = iter.next();
-				if (((temp.getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED) && (temp != Ende)) 
-				{
-					int i = mG.modifyEdges.getNextIndex();
-					//Standard ist eine StraightLineEdge
-					MEdge me;
-					if (Ende.getIndex()==0)
-						me = new MEdge(i,temp.getIndex(),Ende.getIndex(),GeneralPreferences.getInstance().getIntValue("edge.value"),"\u22C6");
-					else
-						me = new MEdge(i,temp.getIndex(),Ende.getIndex(),GeneralPreferences.getInstance().getIntValue("edge.value"),GeneralPreferences.getInstance().getEdgeName(i, temp.getIndex(), Ende.getIndex()));					
-						modifyEdges.add(new VStraightLineEdge(i,GeneralPreferences.getInstance().getIntValue("edge.width")), me,modifyNodes.get(temp.getIndex()).getPosition(), Ende.getPosition());
-				}
+			Iterator<VNode> iter = modifyNodes.getSelectedIterator();
+			while (iter.hasNext()) 
+			{
+					VNode temp = iter.next();
+					if (temp != Ende) 
+					{
+						int i = mG.modifyEdges.getNextIndex();
+						//Standard ist eine StraightLineEdge
+						MEdge me;
+						if (Ende.getIndex()==0)
+							me = new MEdge(i,temp.getIndex(),Ende.getIndex(),GeneralPreferences.getInstance().getIntValue("edge.value"),"\u22C6");
+						else
+							me = new MEdge(i,temp.getIndex(),Ende.getIndex(),GeneralPreferences.getInstance().getIntValue("edge.value"),GeneralPreferences.getInstance().getEdgeName(i, temp.getIndex(), Ende.getIndex()));					
+							modifyEdges.add(new VStraightLineEdge(i,GeneralPreferences.getInstance().getIntValue("edge.width")), me,modifyNodes.get(temp.getIndex()).getPosition(), Ende.getPosition());
+						mG.modifyEdges.releaseIndex(i); //If the edge was not added (e.g. multiple edges)
+					}
+			}
 		}
-		pushNotify(new GraphMessage(GraphConstraints.EDGE,GraphConstraints.BLOCK_END));
+		finally {commitBatch();}
 	}
 	/**
 	 * add edges from a given node to evey selected node
@@ -563,25 +481,29 @@ public class VGraph extends Observable implements VGraphInterface {
 	 * 				the source of all new edges
 	 */
 	public void addEdgestoSelectedNodes(VNode Start) {
-		pushNotify(new GraphMessage(GraphConstraints.EDGE,GraphConstraints.ADDITION|GraphConstraints.BLOCK_START));
-		Iterator<VNode> iter = modifyNodes.getIterator();
-		while (iter.hasNext()) 
+		beginBatch();
+		try
 		{
-				VNode temp = iter.next();
-				if (((temp.getSelectedStatus() & VItem.SELECTED) == VItem.SELECTED) && (temp != Start)) 
-				{
-					int i = mG.modifyEdges.getNextIndex();
-					//Standard ist eine StraightLineEdge
-					MEdge me;
-					if (Start.getIndex()==0)
-						me = new MEdge(i,Start.getIndex(),temp.getIndex(),GeneralPreferences.getInstance().getIntValue("edge.value"),"\u22C6");
-					else
-						me = new MEdge(i,Start.getIndex(),temp.getIndex(),GeneralPreferences.getInstance().getIntValue("edge.value"),GeneralPreferences.getInstance().getEdgeName(i, Start.getIndex(), temp.getIndex()));
+			Iterator<VNode> iter = modifyNodes.getSelectedIterator();
+			while (iter.hasNext()) 
+			{
+					VNode temp = iter.next();
+					if (temp != Start) 
+					{
+						int i = mG.modifyEdges.getNextIndex();
+						//Standard ist eine StraightLineEdge
+						MEdge me;
+						if (Start.getIndex()==0)
+							me = new MEdge(i,Start.getIndex(),temp.getIndex(),GeneralPreferences.getInstance().getIntValue("edge.value"),"\u22C6");
+						else
+							me = new MEdge(i,Start.getIndex(),temp.getIndex(),GeneralPreferences.getInstance().getIntValue("edge.value"),GeneralPreferences.getInstance().getEdgeName(i, Start.getIndex(), temp.getIndex()));
 					
-						modifyEdges.add(new VStraightLineEdge(i,GeneralPreferences.getInstance().getIntValue("edge.width")), me,	Start.getPosition(), temp.getPosition());
-				}
+							modifyEdges.add(new VStraightLineEdge(i,GeneralPreferences.getInstance().getIntValue("edge.width")), me,	Start.getPosition(), temp.getPosition());
+						mG.modifyEdges.releaseIndex(i); //If the edge was not added (e.g. multiple edges)
+					}
+			}
 		}
-		pushNotify(new GraphMessage(GraphConstraints.EDGE,GraphConstraints.BLOCK_END));
+		finally {commitBatch();}
 	}
 	/* (non-Javadoc)
 	 * @see model.VGraphInterface#pushNotify(java.lang.Object)
@@ -593,6 +515,70 @@ public class VGraph extends Observable implements VGraphInterface {
 		else
 			notifyObservers(o);
 	}
+	/* (non-Javadoc)
+	 * @see model.VGraphInterface#beginBatch()
+	 */
+	public void beginBatch()
+	{
+		batch.begin();
+	}
+	/* (non-Javadoc)
+	 * @see model.VGraphInterface#commitBatch()
+	 */
+	public void commitBatch()
+	{
+		GraphMessage m = batch.commit();
+		if (m!=null)
+		{
+			setChanged();
+			deliver(m);
+		}
+	}
+	/* (non-Javadoc)
+	 * @see model.VGraphInterface#addGraphMessageListener(model.Messages.GraphMessageListener, int)
+	 */
+	public void addGraphMessageListener(GraphMessageListener l, int mask)
+	{
+		bus.subscribe(l,mask);
+	}
+	/* (non-Javadoc)
+	 * @see model.VGraphInterface#removeGraphMessageListener(model.Messages.GraphMessageListener)
+	 */
+	public void removeGraphMessageListener(GraphMessageListener l)
+	{
+		bus.unsubscribe(l);
+	}
+	/**
+	 * Notify all Observers, as long as no batch is running. During a batch the
+	 * GraphMessages are recorded and sent as one message on commitBatch()
+	 * Messages of the History are always sent immediately
+	 */
+	public void notifyObservers(Object arg)
+	{
+		if ((batch.isRecording())&&(arg instanceof GraphMessage)
+				&&((((GraphMessage)arg).getModification()&GraphConstraints.HISTORY)!=GraphConstraints.HISTORY))
+		{
+			batch.record((GraphMessage)arg);
+			clearChanged();
+			return;
+		}
+		deliver(arg);
+	}
+	/**
+	 * Send a GraphMessage to the matching GraphMessageListeners and then
+	 * inform the remaining Observers
+	 */
+	private void deliver(Object arg)
+	{
+		if (!hasChanged())
+			return;
+		if (arg instanceof GraphMessage)
+			bus.publish((GraphMessage)arg);
+		if (countObservers()==0)
+			clearChanged();
+		else
+			super.notifyObservers(arg);
+	}
 	/* (non-Javadoc)
 	 * @see model.VGraphInterface#getType()
 	 */
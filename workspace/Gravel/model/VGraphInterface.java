@@ -5,6 +5,7 @@ import java.awt.Point;
 import java.util.Observer;
 
 import model.Messages.GraphConstraints;
+import model.Messages.GraphMessageListener;
 
 public interface VGraphInterface extends Observer {
 
@@ -70,6 +71,29 @@ public interface VGraphInterface extends Observer {
 	 * mit dem Oject o als Parameter
 	 */
 	public void pushNotify(Object o);
+	/**
+	 * Start a batch of modifications. Until the batch is committed, all messages
+	 * are collected and then sent as one GraphBatchMessage.
+	 * Batches may be nested, only the outermost commit sends the message
+	 */
+	public void beginBatch();
+	/**
+	 * End a batch of modifications and send one message summarizing all modifications
+	 * since beginBatch(), if there were any
+	 */
+	public void commitBatch();
+	/**
+	 * Subscribe a listener to the GraphMessages of this graph
+	 * @param l the listener
+	 * @param mask the element types (see GraphConstraints) the listener is interested in,
+	 * 	 GraphConstraints.ELEMENT_MASK for all messages
+	 */
+	public void addGraphMessageListener(GraphMessageListener l, int mask);
+	/**
+	 * Remove a listener from this graph
+	 * @param l the listener
+	 */
+	public void removeGraphMessageListener(GraphMessageListener l);
 
 	public int getType();
 
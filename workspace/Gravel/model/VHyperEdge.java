@@ -29,6 +29,7 @@ public class VHyperEdge extends VItem {
 	private VEdgeText text;
 	private VEdgeLinestyle linestyle;
 	private NURBSShape shape;
+	private EdgeSpatialIndex spatial; //Spatial index of the set this hyperedge is in, null if it is in no set
 	/**
 	 * Constructor that initializes the Arrow-Part of the Edge with the GeneralPreferences Standard
 	 * 
@@ -70,6 +71,7 @@ public class VHyperEdge extends VItem {
 	public void translate(int x,int y)
 	{
 		shape.translate(x,y);
+		geometryChanged();
 	}
 	/**
 	 * Returns true if the actual edge and the edge v are equal.
@@ -153,6 +155,7 @@ public class VHyperEdge extends VItem {
 	public void setWidth(int i)
 	{
 		width = i;
+		geometryChanged();
 	}
 	
 	public int getMinimumMargin()
@@ -187,6 +190,24 @@ public class VHyperEdge extends VItem {
 	 */
 	public void setShape(NURBSShape s) {
 		shape = s;
+		geometryChanged();
+	}
+	/**
+	 * Set the spatial index of the set this hyperedge belongs to. The hyperedge is removed from the old
+	 * index and marked invalid in the new one
+	 * @param s the new index or null, if the hyperedge is removed from its set
+	 */
+	void setSpatialIndex(EdgeSpatialIndex s)
+	{
+		if (spatial!=null)
+			spatial.remove(getIndex());
+		spatial = s;
+		geometryChanged();
+	}
+	private void geometryChanged()
+	{
+		if (spatial!=null)
+			spatial.invalidate(getIndex());
 	}
 	/**
 	 * Get the actual Shape
@@ -216,8 +237,10 @@ public class VHyperEdge extends VItem {
 			top = true;
 			part = ((double)pos)*2.0d;
 		}
-		Point2D p = shape.CurveRelativeAt(part);
-		Point2D dir = shape.DerivateCurveRelativeAt(1,part);
+		//part is relative to the length of the shape, so the text moves evenly along the edge
+		double u = shape.ParameterAtLength(part*shape.getLength());
+		Point2D p = shape.CurveAt(u);
+		Point2D dir = shape.DerivateCurveValuesAt(1,u).get(1);
 		double l = dir.distance(0.0d,0.0d);
 		//and norm dir
 		dir = new Point2D.Double(dir.getX()/l, dir.getY()/l);
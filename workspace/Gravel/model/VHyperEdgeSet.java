@@ -3,6 +3,9 @@ package model;
 
 import java.awt.Point;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Observable;
@@ -26,6 +29,9 @@ import model.Messages.GraphMessage;
  * The Graph containing this Set should also subscribe to send specific messages to 
  * other Entities observing the Graph, when this Set changes
  * 
+ * The edges are also kept in an index map for access by index in constant time
+ * and the indices of the selected edges are kept in a SelectionIndex
+ * 
  * @author Ronny Bergmann
  * @since 0.4
  */
@@ -34,10 +40,17 @@ public class VHyperEdgeSet extends Observable implements Observer {
 	private Lock HyperEdgeLock;
 	private MHyperGraph mG;
 	private TreeSet<VHyperEdge> vHyperEdges;
+	//Same edges as above, accessible by their index
+	private HashMap<Integer,VHyperEdge> vHyperEdgeIndex;
+	private SelectionIndex selection;
+	private EdgeSpatialIndex spatial;
 	
 	public VHyperEdgeSet(MHyperGraph g)
 	{
 		vHyperEdges = new TreeSet<VHyperEdge>(new VItem.IndexComparator());
+		vHyperEdgeIndex = new HashMap<Integer,VHyperEdge>();
+		selection = new SelectionIndex();
+		spatial = new EdgeSpatialIndex();
 		HyperEdgeLock = new ReentrantLock();
 		mG = g;
 		mG.addObserver(this); //mG is VGraph-internal so node deletions are signaled through this message
@@ -47,7 +60,7 @@ public class VHyperEdgeSet extends Observable implements Observer {
 	 */
 	public void deselect()
 	{
-		Iterator<VHyperEdge> e = vHyperEdges.iterator();
+		Iterator<VHyperEdge> e = getSelectedIterator();
 		while (e.hasNext()) {
 			e.next().deselect();
 		}
@@ -75,12 +88,40 @@ public class VHyperEdgeSet extends Observable implements Observer {
 			HyperEdgeLock.lock();
 			try {
 				vHyperEdges.add(edge); //add edge			
+				vHyperEdgeIndex.put(edge.getIndex(),edge);
+				edge.setSelectionIndex(selection);
+				edge.setSpatialIndex(spatial);
 			}
 			finally {HyperEdgeLock.unlock();}
 			setChanged();
 			notifyObservers(new GraphMessage(GraphConstraints.HYPEREDGE,edge.getIndex(),GraphConstraints.ADDITION,GraphConstraints.HYPEREDGE));	
 		}
 	}
+	/**
+	 * Add copies of all hyperedges of another set including their color and selection
+	 * without notification. The mathematical hyperedges have to be copied to the graph beneath already.
+	 * This is only used to clone a graph into a new and empty graph, where nobody has to be informed
+	 * @param s the set to copy the hyperedges from
+	 */
+	void addAll_(VHyperEdgeSet s)
+	{
+		HyperEdgeLock.lock();
+		try
+		{
+			Iterator<VHyperEdge> n = s.getIterator();
+			while (n.hasNext())
+			{
+				VHyperEdge o = n.next();
+				VHyperEdge c = o.clone();
+				o.copyColorStatus(c);
+				vHyperEdges.add(c);
+				vHyperEdgeIndex.put(c.getIndex(),c);
+				c.setSelectionIndex(selection);
+				c.setSpatialIndex(spatial);
+			}
+		}
+		finally {HyperEdgeLock.unlock();}
+	}
 	/**
 	 * get the hyper edge with a given index, if exists
 	 * @param i
@@ -89,14 +130,12 @@ public class VHyperEdgeSet extends Observable implements Observer {
 	 * @return the VHyperEdge, if exists, else null 
 	 */
 	public VHyperEdge get(int i) {
-		Iterator<VHyperEdge> n = vHyperEdges.iterator();
-		while (n.hasNext()) {
-			VHyperEdge temp = n.next();
-			if (temp.getIndex() == i) {
-				return temp;
-			}
+		HyperEdgeLock.lock();
+		try
+		{
+			return vHyperEdgeIndex.get(i);
 		}
-		return null;
+		finally {HyperEdgeLock.unlock();}
 	}
 	/**
 	 * Replace the hyper edge with index given by an copy of edge with the parameter,
@@ -117,20 +156,20 @@ public class VHyperEdgeSet extends Observable implements Observer {
 		HyperEdgeLock.lock(); //Find the edge to be replaced
 		try
 		{
-			Iterator<VHyperEdge> ei = vHyperEdges.iterator();				
-			while (ei.hasNext())
+			VHyperEdge t = vHyperEdgeIndex.get(e.getIndex());
+			if (t!=null)
 			{
-				VHyperEdge t = ei.next();
-				if (t.getIndex()==e.getIndex())
-				{
-					vHyperEdges.remove(t);
-					//Clone Color Status of e from t
-					t.copyColorStatus(e);
-					vHyperEdges.add(e);
-					setChanged();
-					notifyObservers(new GraphMessage(GraphConstraints.HYPEREDGE,e.getIndex(), GraphConstraints.REPLACEMENT|GraphConstraints.HYPEREDGESHAPE,GraphConstraints.HYPEREDGE));	
-					break;
-				}
+				vHyperEdges.remove(t);
+				t.setSelectionIndex(null);
+				t.setSpatialIndex(null);
+				//Clone Color Status of e from t
+				t.copyColorStatus(e);
+				vHyperEdges.add(e);
+				vHyperEdgeIndex.put(e.getIndex(),e);
+				e.setSelectionIndex(selection);
+				e.setSpatialIndex(spatial);
+				setChanged();
+				notifyObservers(new GraphMessage(GraphConstraints.HYPEREDGE,e.getIndex(), GraphConstraints.REPLACEMENT|GraphConstraints.HYPEREDGESHAPE,GraphConstraints.HYPEREDGE));	
 			}
 		}
 		finally {HyperEdgeLock.unlock();}
@@ -168,6 +207,9 @@ public class VHyperEdgeSet extends Observable implements Observer {
 		{
  			mG.modifyHyperEdges.remove(i);
 			vHyperEdges.remove(toDel);
+			vHyperEdgeIndex.remove(i);
+			toDel.setSelectionIndex(null);
+			toDel.setSpatialIndex(null);
 		} 
 		finally {HyperEdgeLock.unlock();}
 		return true;
@@ -205,6 +247,16 @@ public class VHyperEdgeSet extends Observable implements Observer {
 	public Iterator<VHyperEdge> getIterator() {
 		return vHyperEdges.iterator();
 	}
+	/**
+	 * Get an Iterator over the selected edges only, ordered by index.
+	 * Edges may be (de)selected or removed while iterating
+	 * 
+	 * @return the Iterator typed with VHyperEdge
+	 */
+	public Iterator<VHyperEdge> getSelectedIterator()
+	{
+		return selection.iterator(vHyperEdgeIndex,HyperEdgeLock);
+	}
 	/**
 	 * get an Control point near the point m
 	 * a Control point is any point in a QuadCurveEdge or SegmentedEdge despite source and target
@@ -236,17 +288,15 @@ public class VHyperEdgeSet extends Observable implements Observer {
 	 * @return true, if there is at least one selected node, else false
 	 */
 	public boolean hasSelection() {
-		Iterator<VHyperEdge> e = vHyperEdges.iterator();
-		HyperEdgeLock.lock();
-		boolean result = false;
-		try
-		{
-			while (e.hasNext())
-				if ((e.next().getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED)
-					result=true;
-		}
-		finally{HyperEdgeLock.unlock();}	
-		return result;
+		return !selection.isEmpty();
+	}
+	/**
+	 * Add the indices of all hyperedges that are selected, soft selected or soft deselected
+	 * @param b the indices are set in this BitSet
+	 */
+	public void collectActive(BitSet b)
+	{
+		selection.addActive(b);
 	}
 	/**
 	 * Get the one and simple selected Edge iff such an edge exists, in every other case null is returned
@@ -254,25 +304,88 @@ public class VHyperEdgeSet extends Observable implements Observer {
 	 */
 	public VHyperEdge getSingleSelectedEdge()
 	{
-		Iterator<VHyperEdge> e = vHyperEdges.iterator();
 		HyperEdgeLock.lock();
-		VHyperEdge result = null;
 		try
 		{
-			while (e.hasNext())
+			int[] selected = selection.getIndices();
+			if (selected.length==0)
+				return null;
+			if (selected.length > 1) //There is more than one selected Edge
+				return new VHyperEdge(-1,-1,-1);
+			return vHyperEdgeIndex.get(selected[0]);
+		}
+		finally{HyperEdgeLock.unlock();}	
+	}
+	/**
+	 * Get the first hyperedge (by index) whose shape is in range of a given point.
+	 * Only the hyperedges whose bounding box is near the point are checked
+	 * @param m a point
+	 * @param variation the distance the shape might have from the point in addition to its width
+	 * 
+	 * @return the first hyperedge in range, if there is one, else null
+	 */
+	public VHyperEdge getFirstinRangeOf(Point m, double variation)
+	{
+		BitSet candidates = spatial.collect(candidatesRect(new Rectangle2D.Double(m.x,m.y,0d,0d),variation));
+		for (int i=candidates.nextSetBit(0); i>=0; i=candidates.nextSetBit(i+1))
+		{
+			VHyperEdge temp = get(i);
+			if ((temp==null)||(temp.getShape().isEmpty()))
+				continue;
+			NURBSShapeProjection projection = new NURBSShapeProjection(temp.getShape(),m);
+			Point2D OnCurve = projection.getResultPoint();
+			if (OnCurve.distance(m)<=(variation+(double)temp.getWidth()))
+				return temp;
+		}
+		return null; // keinen gefunden
+	}
+	/**
+	 * Get all hyperedges whose bounding box (the one of the control points of the shape enlarged by
+	 * the width) intersects a rectangle. These are all hyperedges that might intersect the rectangle
+	 * @param r a rectangle
+	 * 
+	 * @return an Iterator over these hyperedges, ordered by index
+	 */
+	public Iterator<VHyperEdge> getHyperEdgesinRectangle(Rectangle2D r)
+	{
+		BitSet candidates = spatial.collect(candidatesRect(r,0d));
+		TreeSet<VHyperEdge> result = new TreeSet<VHyperEdge>(new VItem.IndexComparator());
+		for (int i=candidates.nextSetBit(0); i>=0; i=candidates.nextSetBit(i+1))
+			if (get(i)!=null)
+				result.add(get(i));
+		return result.iterator();
+	}
+	/**
+	 * Update the bounding boxes of all hyperedges whose shape changed and return the rectangle
+	 * enlarged by the variation to query the spatial index with
+	 */
+	private Rectangle2D candidatesRect(Rectangle2D r, double variation)
+	{
+		BitSet changed = spatial.takeInvalid();
+		for (int i=changed.nextSetBit(0); i>=0; i=changed.nextSetBit(i+1))
+		{
+			VHyperEdge e = get(i);
+			if ((e==null)||(e.getShape().isEmpty()))
 			{
-				VHyperEdge ve = e.next();
-				if ((ve.getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED)
-				{
-					if (result!=null) //This is the second selected Edge
-						return new VHyperEdge(-1,-1,-1);
-					else
-						result = ve;
-				}
+				spatial.remove(i);
+				continue;
 			}
+			//The shape lies inside the convex hull of its control points
+			Rectangle2D.Double box = null;
+			Iterator<Point2D> cp = e.getShape().controlPoints.iterator();
+			while (cp.hasNext())
+			{
+				Point2D p = cp.next();
+				if (box==null)
+					box = new Rectangle2D.Double(p.getX(),p.getY(),0d,0d);
+				else
+					box.add(p);
+			}
+			double w = (double)e.getWidth();
+			box.setRect(box.x-w, box.y-w, box.width+2*w, box.height+2*w);
+			spatial.put(i, box, null);
 		}
-		finally{HyperEdgeLock.unlock();}	
-		return result;
+		return new Rectangle2D.Double(r.getX()-variation, r.getY()-variation, r.getWidth()+2*variation, r.getHeight()+2*variation);
 	}
 	//
 	//private Stuff for handling changes from other sets
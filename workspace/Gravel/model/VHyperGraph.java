@@ -7,15 +7,16 @@ import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
-import java.awt.geom.Point2D;
+import java.awt.Rectangle;
 
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Observable;
 
 import model.VNode;
 import model.Messages.GraphConstraints;
 import model.Messages.GraphMessage;
+import model.Messages.GraphMessageBus;
+import model.Messages.GraphMessageListener;
 /**
  * VGraph encapsulates an MGraph and keeps visual information about every node, edge and subgraphs in the MGraph
  * each manipulation on the VGraph is also given to the MGraph
@@ -33,13 +34,26 @@ public class VHyperGraph extends Observable implements VGraphInterface {
 	public VNodeSet modifyNodes;
 	public VHyperEdgeSet modifyHyperEdges;
 	public VSubgraphSet modifySubgraphs;
+	private GraphBatch batch;
+	private GraphMessageBus bus;
 	/**
 	 * Constructor
 	 * 
 	 */	
 	public VHyperGraph()
 	{
-		mG = new MHyperGraph();
+		this(new MHyperGraph());
+	}
+	/**
+	 * Create a visual graph on top of a given mathematical graph, that has to contain no nodes,
+	 * edges or subgraphs yet or whose elements are added to the visual sets afterwards
+	 * @param g the mathematical graph
+	 */
+	private VHyperGraph(MHyperGraph g)
+	{
+		batch = new GraphBatch();
+		bus = new GraphMessageBus();
+		mG = g;
 		modifyNodes = new VNodeSet(mG);
 		modifyHyperEdges = new VHyperEdgeSet(mG);
 		modifySubgraphs = new VSubgraphSet(mG);
@@ -95,26 +109,13 @@ public class VHyperGraph extends Observable implements VGraphInterface {
 							GraphConstraints.REMOVAL|GraphConstraints.HYPEREDGESHAPE|GraphConstraints.BLOCK_START, //Status 
 							GraphConstraints.NODE|GraphConstraints.HYPEREDGE|GraphConstraints.SELECTION) //Affected		
 			);
-		Iterator<VNode> n = modifyNodes.getIterator();
-		HashSet<VNode> selected = new HashSet<VNode>();
-		while (n.hasNext()) {
-			VNode node = n.next();
-			if ((node.getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED)
-				selected.add(node);
-		}
-		n = selected.iterator();
+		//The selected iterators skip items removed meanwhile, e.g. edges adjacent to removed nodes
+		Iterator<VNode> n = modifyNodes.getSelectedIterator();
 		while (n.hasNext())
 		{
 			modifyNodes.remove(n.next().getIndex());
 		}
-		Iterator<VHyperEdge> n2 = modifyHyperEdges.getIterator();
-		HashSet<VHyperEdge> selected2 = new HashSet<VHyperEdge>();
-		while (n2.hasNext()) {
-			VHyperEdge edge = n2.next();
-			if ((edge.getSelectedStatus() & VItem.SELECTED) == VItem.SELECTED)
-				selected2.add(edge);
-		}
-		n2 = selected2.iterator();
+		Iterator<VHyperEdge> n2 = modifyHyperEdges.getSelectedIterator();
 		while (n2.hasNext())
 		{
 			modifyHyperEdges.remove(n2.next().getIndex());
@@ -223,47 +224,11 @@ public class VHyperGraph extends Observable implements VGraphInterface {
 	 */
 	public VHyperGraph clone()
 	{
-		VHyperGraph clone = new VHyperGraph();
-		//Knoten
-		//Untergraphen
-		Iterator<VSubgraph> n1 = modifySubgraphs.getIterator();
-		while (n1.hasNext())
-		{
-			VSubgraph actualSet = n1.next().clone();
-			//Add it as an empty SubSet
-			clone.modifySubgraphs.add(actualSet, new MSubgraph(actualSet.index, mG.modifySubgraphs.get(actualSet.index).getName())); //Jedes Set kopieren
-		}
-		Iterator<VNode> n2 = modifyNodes.getIterator();
-		while (n2.hasNext())
-		{
-			VNode nodeclone = n2.next().clone();
-			clone.modifyNodes.add(nodeclone, mG.modifyNodes.get(nodeclone.getIndex()).clone());
-			//In alle Sets einfuegen
-			n1 = modifySubgraphs.getIterator();
-			while (n1.hasNext())
-			{
-				VSubgraph actualSet = n1.next();
-				if (mG.modifySubgraphs.get(actualSet.index).containsNode(nodeclone.getIndex()))
-					clone.modifySubgraphs.addNodetoSubgraph(nodeclone.getIndex(), actualSet.index); //In jedes Set setzen wo er war
-			}
-		}
-		//Analog Kanten
-		Iterator<VHyperEdge> n3 = modifyHyperEdges.getIterator();
-		while (n3.hasNext())
-		{
-			VHyperEdge cloneEdge = n3.next().clone();
-			MHyperEdge me = mG.modifyHyperEdges.get(cloneEdge.getIndex());
-			clone.modifyHyperEdges.add(cloneEdge, me);
-			//In alle Sets einfuegen
-			n1 = modifySubgraphs.getIterator();
-			while (n1.hasNext())
-			{
-				VSubgraph actualSet = n1.next();
-				if (mG.modifySubgraphs.get(actualSet.index).containsEdge(cloneEdge.getIndex()))
-					clone.modifySubgraphs.addEdgetoSubgraph(cloneEdge.getIndex(), actualSet.getIndex()); //Jedes Set kopieren
-			}
-		}
-		//und zurückgeben
+		//Copy the sets directly, this is linear in the number of elements and subgraphs
+		VHyperGraph clone = new VHyperGraph(mG.clone());
+		clone.modifyNodes.addAll_(modifyNodes);
+		clone.modifyHyperEdges.addAll_(modifyHyperEdges);
+		clone.modifySubgraphs.addAll_(modifySubgraphs);
 		return clone;
 	}
 	/* (non-Javadoc)
@@ -273,20 +238,20 @@ public class VHyperGraph extends Observable implements VGraphInterface {
 	{
 		Graphics2D g2 = (Graphics2D) g;
 		Point maximum = new Point(0,0);
+		//Node circles are bounded by the spatial index of the nodes
+		Rectangle nodebounds = modifyNodes.getBounds();
+		if (nodebounds!=null)
+		{
+			maximum.x = Math.max(0,nodebounds.x+nodebounds.width+1);
+			maximum.y = Math.max(0,nodebounds.y+nodebounds.height+1);
+		}
+		//Node Text - only if Graphics are not null, they are null if there is no visible picture. 
 		Iterator<VNode> iter1 = modifyNodes.getIterator();
-		while (iter1.hasNext())
+		while ((g2!=null)&&(iter1.hasNext()))
 		{
 			VNode actual = iter1.next();
-			Point p = (Point) actual.getPosition().clone();
-			p.translate(Math.round(actual.getSize()/2), Math.round(actual.getSize()/2));
-			p.x++; p.y++;
-			if (p.x > maximum.x)
-				maximum.x = p.x;
-			if (p.y > maximum.y)
-				maximum.y = p.y;
-//			Node Text - only if Graphics are not null, they are null if there is no visible picture. 
 			//And if node name is visible
-			if ((g2!=null)&&(actual.isNameVisible()))
+			if (actual.isNameVisible())
 			{
 				Font f = new Font("Arial",Font.PLAIN, Math.round(actual.getNameSize()));
 				//mittelpunkt des Textes
@@ -321,20 +286,19 @@ public class VHyperGraph extends Observable implements VGraphInterface {
 	{
 		Graphics2D g2 = (Graphics2D)g; 
 		Point minimum = new Point(Integer.MAX_VALUE,Integer.MAX_VALUE);
+		//Node circles are bounded by the spatial index of the nodes
+		Rectangle nodebounds = modifyNodes.getBounds();
+		if (nodebounds!=null)
+		{
+			minimum.x = (nodebounds.x > 0) ? nodebounds.x-1 : nodebounds.x;
+			minimum.y = (nodebounds.y > 0) ? nodebounds.y-1 : nodebounds.y;
+		}
+		//Node Text - only if Graphics are not null, they are null if there is no visible picture. 
 		Iterator<VNode> iter1 = modifyNodes.getIterator();
-		while (iter1.hasNext())
+		while ((g2!=null)&&(iter1.hasNext()))
 		{
 			VNode actual = iter1.next();
-			Point p = (Point) actual.getPosition().clone();
-			p.translate(-Math.round(actual.getSize()/2), -Math.round(actual.getSize()/2));
-			if (p.x>0) p.x--; 
-			if (p.y>0) p.y--; 
-			if (p.x < minimum.x)
-				minimum.x = p.x;
-			if (p.y < minimum.y)
-				minimum.y = p.y;
-			//Node Text - only if Graphics are not null, they are null if there is no visible picture. 
-			if ((g2!=null)&&(actual.isNameVisible()))
+			if (actual.isNameVisible())
 			{
 				Font f = new Font("Arial",Font.PLAIN, Math.round(actual.getNameSize()));
 				//mittelpunkt des Textes
@@ -373,19 +337,7 @@ public class VHyperGraph extends Observable implements VGraphInterface {
 	 * @return the first edge in range, if there is one, else
 	 */
 	public VHyperEdge getEdgeinRangeOf(Point m, double variation) {
-		Iterator<VHyperEdge> n = modifyHyperEdges.getIterator();
-		while (n.hasNext()) {
-			VHyperEdge temp = n.next();
-			if (!temp.getShape().isEmpty())
-			{
-				NURBSShapeProjection projection = new NURBSShapeProjection(temp.getShape(),m);
-				Point2D OnCurve = projection.getResultPoint();
-			
-				if (OnCurve.distance(m)<=(variation+(double)temp.getWidth()))
-					return temp;
-			}
-		}
-		return null; // keinen gefunden
+		return modifyHyperEdges.getFirstinRangeOf(m, variation);
 	}
 	/**
 	 * add edges from evey selected node to a given node
@@ -395,20 +347,24 @@ public class VHyperGraph extends Observable implements VGraphInterface {
 	public void createHyperEdgefromfromSelectedNodes() {
 		if (!modifyNodes.hasSelection())
 			return;
-		pushNotify(new GraphMessage(GraphConstraints.HYPEREDGE,GraphConstraints.ADDITION|GraphConstraints.BLOCK_START));
-		Iterator<VNode> iter = modifyNodes.getIterator();
-		int i = mG.modifyHyperEdges.getNextIndex();
-		MHyperEdge me = new MHyperEdge(i,GeneralPreferences.getInstance().getIntValue("edge.value"),"HE"+i);
-		modifyHyperEdges.add(new VHyperEdge(i,GeneralPreferences.getInstance().getIntValue("edge.width"),GeneralPreferences.getInstance().getIntValue("hyperedge.margin")), me);
-		while (iter.hasNext()) 
+		beginBatch();
+		try
 		{
-				VNode temp = iter.next();
-				if ((temp.getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED) 
-				{
-						mG.modifyHyperEdges.addNodeto(temp.getIndex(), me.index);
-				}
+			Iterator<VNode> iter = modifyNodes.getSelectedIterator();
+			int i = mG.modifyHyperEdges.getNextIndex();
+			MHyperEdge me = new MHyperEdge(i,GeneralPreferences.getInstance().getIntValue("edge.value"),"HE"+i);
+			modifyHyperEdges.add(new VHyperEdge(i,GeneralPreferences.getInstance().getIntValue("edge.width"),GeneralPreferences.getInstance().getIntValue("hyperedge.margin")), me);
+			mG.modifyHyperEdges.releaseIndex(i); //If the hyperedge was not added (e.g. an equal one exists)
+			while (iter.hasNext()) 
+			{
+					VNode temp = iter.next();
+					if ((temp.getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED) 
+					{
+							mG.modifyHyperEdges.addNodeto(temp.getIndex(), me.index);
+					}
+			}
 		}
-		pushNotify(new GraphMessage(GraphConstraints.HYPEREDGE,GraphConstraints.BLOCK_END));
+		finally {commitBatch();}
 	}
 	/* (non-Javadoc)
 	 * @see model.VGraphInterface#pushNotify(java.lang.Object)
@@ -420,6 +376,70 @@ public class VHyperGraph extends Observable implements VGraphInterface {
 		else
 			notifyObservers(o);
 	}
+	/* (non-Javadoc)
+	 * @see model.VGraphInterface#beginBatch()
+	 */
+	public void beginBatch()
+	{
+		batch.begin();
+	}
+	/* (non-Javadoc)
+	 * @see model.VGraphInterface#commitBatch()
+	 */
+	public void commitBatch()
+	{
+		GraphMessage m = batch.commit();
+		if (m!=null)
+		{
+			setChanged();
+			deliver(m);
+		}
+	}
+	/* (non-Javadoc)
+	 * @see model.VGraphInterface#addGraphMessageListener(model.Messages.GraphMessageListener, int)
+	 */
+	public void addGraphMessageListener(GraphMessageListener l, int mask)
+	{
+		bus.subscribe(l,mask);
+	}
+	/* (non-Javadoc)
+	 * @see model.VGraphInterface#removeGraphMessageListener(model.Messages.GraphMessageListener)
+	 */
+	public void removeGraphMessageListener(GraphMessageListener l)
+	{
+		bus.unsubscribe(l);
+	}
+	/**
+	 * Notify all Observers, as long as no batch is running. During a batch the
+	 * GraphMessages are recorded and sent as one message on commitBatch()
+	 * Messages of the History are always sent immediately
+	 */
+	public void notifyObservers(Object arg)
+	{
+		if ((batch.isRecording())&&(arg instanceof GraphMessage)
+				&&((((GraphMessage)arg).getModification()&GraphConstraints.HISTORY)!=GraphConstraints.HISTORY))
+		{
+			batch.record((GraphMessage)arg);
+			clearChanged();
+			return;
+		}
+		deliver(arg);
+	}
+	/**
+	 * Send a GraphMessage to the matching GraphMessageListeners and then
+	 * inform the remaining Observers
+	 */
+	private void deliver(Object arg)
+	{
+		if (!hasChanged())
+			return;
+		if (arg instanceof GraphMessage)
+			bus.publish((GraphMessage)arg);
+		if (countObservers()==0)
+			clearChanged();
+		else
+			super.notifyObservers(arg);
+	}
 	/* (non-Javadoc)
 	 * @see model.VGraphInterface#getType()
 	 */
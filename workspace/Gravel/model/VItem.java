@@ -50,6 +50,8 @@ public abstract class VItem {
 	private Color colour; //Color of Element
 	private int setCount; //Number of Sets, this Item belngs to (needed for computaion of next color)
 	
+	private SelectionIndex selection; //Selection of the set this item is in, null if it is in no set
+	
 	/**
 	 * Standard Constructor that initializes the VItem with a specific index and
 	 * sets the new Item to Deselected 
@@ -73,6 +75,8 @@ public abstract class VItem {
 	 * @param index the index to set
 	 */
 	protected void setIndex(int index) {
+		if (selection!=null)
+			selection.move(this.index,index);
 		this.index = index;
 	}
 	/**
@@ -149,6 +153,7 @@ public abstract class VItem {
 	public void setSelectedStatus(int s)
 	{
 		status = s;
+		updateSelection();
 	}
 	/**
 	 * reset to the nonselected Standard
@@ -157,6 +162,7 @@ public abstract class VItem {
 	public void deselect()
 	{
 		status = DESELECTED;
+		updateSelection();
 	}
 	/**
 	 * get the actual Status of the Item
@@ -185,6 +191,33 @@ public abstract class VItem {
 	public void select()
 	{
 		status=SELECTED;
+		updateSelection();
+	}
+	/**
+	 * Set the SelectionIndex of the set this item belongs to. The item is removed
+	 * from the old one and its status is reported to the new one
+	 * 
+	 * @param s the new SelectionIndex or null, if the item is removed from its set
+	 */
+	void setSelectionIndex(SelectionIndex s)
+	{
+		if (selection!=null)
+			selection.update(index,DESELECTED);
+		selection = s;
+		updateSelection();
+	}
+	/**
+	 * Get the SelectionIndex the item reports its status to
+	 * @return the SelectionIndex or null
+	 */
+	SelectionIndex getSelectionIndex()
+	{
+		return selection;
+	}
+	private void updateSelection()
+	{
+		if (selection!=null)
+			selection.update(index,status);
 	}
 	
 	/**
@@ -49,7 +49,7 @@ public class VLoopEdge extends VEdge {
 		return new Point((new Double(getPath(tempstart,tempstart,1).getBounds().getMinX())).intValue(),(new Double(getPath(tempstart,tempstart,1).getBounds().getMinY())).intValue());
 	}
 
-	public GeneralPath getPath(Point Start, Point End, float zoom) {
+	protected GeneralPath computePath(Point Start, Point End, float zoom) {
 
 		if ((Start.x!=End.x)||(Start.y!=End.y))
 				return new GeneralPath();
@@ -97,6 +97,7 @@ public class VLoopEdge extends VEdge {
 
 	public void setDirection(int direction) {
 		this.direction = direction;
+		geometryChanged();
 	}
 
 	public int getLength() {
@@ -105,6 +106,7 @@ public class VLoopEdge extends VEdge {
 
 	public void setLength(int length) {
 		this.length = length;
+		geometryChanged();
 	}
 
 	public double getProportion() {
@@ -113,10 +115,12 @@ public class VLoopEdge extends VEdge {
 
 	public void setProportion(double proportion) {
 		this.proportion = proportion;
+		geometryChanged();
 	}
 	public void setClockwise(boolean b)
 	{
 		clockwise = b;
+		geometryChanged();
 	}
 	public boolean isClockwise()
 	{
@@ -156,6 +160,7 @@ public class VLoopEdge extends VEdge {
 			else
 				direction = 270 - (new Double(Math.acos(Math.abs(y))/Math.PI*180d)).intValue();
 		}
+		geometryChanged();
 	}
 	public boolean PathEquals(VEdge v)
 	{
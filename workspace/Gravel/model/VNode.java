@@ -15,6 +15,7 @@ public class VNode extends VItem {
 		
 		private int name_distance, name_rotation, name_size;
 		private boolean name_visible=false;
+		private NodeSpatialIndex spatial; //Spatial index of the set this node is in, null if it is in no set
 		
 		/**
 		 * Internal constructor for the std-values
@@ -83,6 +84,7 @@ public class VNode extends VItem {
 		public void setPosition(Point p)
 		{
 				Pos = p;
+				updateSpatial();
 		}
 		/**
 		 * Translate the node by 
@@ -97,6 +99,7 @@ public class VNode extends VItem {
 				Pos.x=0;
 			if (Pos.y < 0)
 				Pos.y = 0;
+			updateSpatial();
 		}
 		/**
 		 * Get the size of the node
@@ -113,6 +116,24 @@ public class VNode extends VItem {
 		public void setSize(int i)
 		{
 			size = i;
+			updateSpatial();
+		}
+		/**
+		 * Set the spatial index of the set this node belongs to. The node is inserted into the
+		 * new index and removed from the old one
+		 * @param s the new index or null, if the node is removed from its set
+		 */
+		void setSpatialIndex(NodeSpatialIndex s)
+		{
+			if (spatial!=null)
+				spatial.remove(getIndex());
+			spatial = s;
+			updateSpatial();
+		}
+		private void updateSpatial()
+		{
+			if (spatial!=null)
+				spatial.update(this);
 		}
 		public String toString()
 		{
@@ -1,7 +1,9 @@
 package model;
 
 import java.awt.Point;
-import java.util.HashSet;
+import java.awt.Rectangle;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Observable;
 import java.util.Observer;
@@ -25,12 +27,22 @@ import model.Messages.GraphMessage;
  * 
  * Visual Node Set is based on an mathematical structure, e.g. MGraph or MHyperGraph
  * 
+ * Beside the ordered Set the nodes are also kept in an index map, so that each access by index
+ * is in constant time. The indices of the selected nodes are kept in a SelectionIndex
+ * that is updated by the nodes themselves, so selection queries only look at selected nodes.
+ * In the same way the nodes keep a NodeSpatialIndex of their bounding boxes up to date, that
+ * answers the queries for nodes at a point or in a rectangle and for the bounds of all nodes
+ * 
  * @author Ronny Bergmann
  * @since 0.4
  *
  */
 public class VNodeSet extends Observable implements Observer {
 	private TreeSet<VNode> vNodes;
+	//Same nodes as above, accessible by their index
+	private HashMap<Integer,VNode> vNodeIndex;
+	private SelectionIndex selection;
+	private NodeSpatialIndex spatial;
 	//Every Modifying Action should Lock.
 	private Lock NodeLock;
 	private MGraphInterface mG;
@@ -39,6 +51,9 @@ public class VNodeSet extends Observable implements Observer {
 	{
 		mG = g;
 		vNodes = new TreeSet<VNode>(new VItem.IndexComparator());
+		vNodeIndex = new HashMap<Integer,VNode>();
+		selection = new SelectionIndex();
+		spatial = new NodeSpatialIndex();
 		NodeLock = new ReentrantLock();
 		if (mG.getType()==MGraphInterface.GRAPH)
 		{
@@ -54,7 +69,7 @@ public class VNodeSet extends Observable implements Observer {
 	 */
 	public void deselect()
 	{
-		Iterator<VNode> n = vNodes.iterator();
+		Iterator<VNode> n = getSelectedIterator();
 		while (n.hasNext()) {
 			n.next().deselect();
 		}
@@ -64,17 +79,10 @@ public class VNodeSet extends Observable implements Observer {
 	 */
 	public void removeSelection()
 	{
-		Iterator<VNode> n = vNodes.iterator();
-		HashSet<VNode> selected = new HashSet<VNode>();
-		while (n.hasNext()) {
-			VNode node = n.next();
-			if ((node.getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED)
-				selected.add(node);
-		}
-		n = selected.iterator();
-		while (n.hasNext())
+		int[] selected = selection.getIndices();
+		for (int i=0; i<selected.length; i++)
 		{
-			remove(n.next().getIndex());
+			remove(selected[i]);
 		}
 		setChanged();
 		notifyObservers(
@@ -99,26 +107,57 @@ public class VNodeSet extends Observable implements Observer {
 			if (mnode.index!=node.getIndex())
 				mnode.index = node.getIndex();
 			mnodes.add(mnode);
-			vNodes.add(node);
+			NodeLock.lock();
+			try
+			{
+				vNodes.add(node);
+				vNodeIndex.put(node.getIndex(),node);
+				node.setSelectionIndex(selection);
+				node.setSpatialIndex(spatial);
+			}
+			finally {NodeLock.unlock();}
 			setChanged();
 			//Graph changed with an add, only nodes affected
 			notifyObservers(new GraphMessage(GraphConstraints.NODE,node.getIndex(),GraphConstraints.ADDITION,GraphConstraints.NODE));	
 		}
 	}
+	/**
+	 * Add copies of all nodes of another set including their color and selection
+	 * without notification. The mathematical nodes have to be copied to the graph beneath already.
+	 * This is only used to clone a graph into a new and empty graph, where nobody has to be informed
+	 * @param s the set to copy the nodes from
+	 */
+	void addAll_(VNodeSet s)
+	{
+		NodeLock.lock();
+		try
+		{
+			Iterator<VNode> n = s.getIterator();
+			while (n.hasNext())
+			{
+				VNode o = n.next();
+				VNode c = o.clone();
+				o.copyColorStatus(c);
+				vNodes.add(c);
+				vNodeIndex.put(c.getIndex(),c);
+				c.setSelectionIndex(selection);
+				c.setSpatialIndex(spatial);
+			}
+		}
+		finally {NodeLock.unlock();}
+	}
 	/**
 	 * Get the Node with a given index
 	 * @param i the index of the Node
 	 * @return if a node with the given index, if it doesn't exist, it returns null
 	 */
 	public VNode get(int i) {
-		Iterator<VNode> n = vNodes.iterator();
-		while (n.hasNext()) {
-			VNode temp = n.next();
-			if (temp.getIndex() == i) {
-				return temp;
-			}
+		NodeLock.lock();
+		try
+		{
+			return vNodeIndex.get(i);
 		}
-		return null;
+		finally {NodeLock.unlock();}
 	}
 	/**
 	 * Change the index of a node
@@ -134,7 +173,19 @@ public class VNodeSet extends Observable implements Observer {
 		if ((get(oldi)==null)||(get(newi)!=null)) //old not or new already in use
 			return;
 		mnodes.changeIndex(oldi, newi);
-		get(oldi).setIndex(newi);
+		NodeLock.lock();
+		try
+		{
+			//Remove and reinsert, because both the Set and the index map are keyed by the index
+			VNode n = vNodeIndex.remove(oldi);
+			vNodes.remove(n);
+			n.setSpatialIndex(null);
+			n.setIndex(newi);
+			vNodes.add(n);
+			vNodeIndex.put(newi,n);
+			n.setSpatialIndex(spatial);
+		}
+		finally {NodeLock.unlock();}
 		setChanged();
 		notifyObservers(new GraphMessage(GraphConstraints.NODE,GraphConstraints.INDEXCHANGED, GraphConstraints.GRAPH_ALL_ELEMENTS));	
 	}
@@ -151,7 +202,15 @@ public class VNodeSet extends Observable implements Observer {
 		if (get(i)==null)
 			return;
 		mnodes.remove(i);
-		vNodes.remove(get(i));
+		NodeLock.lock();
+		try
+		{
+			VNode n = vNodeIndex.remove(i);
+			vNodes.remove(n);
+			n.setSelectionIndex(null);
+			n.setSpatialIndex(null);
+		}
+		finally {NodeLock.unlock();}
 		setChanged();
 		notifyObservers(new GraphMessage(GraphConstraints.NODE,i,GraphConstraints.REMOVAL,GraphConstraints.GRAPH_ALL_ELEMENTS));	
 	}
@@ -174,19 +233,19 @@ public class VNodeSet extends Observable implements Observer {
 		NodeLock.lock(); //Knoten finden
 		try
 		{
-			Iterator<VNode> n = vNodes.iterator();				
-			while (n.hasNext())
+			VNode t = vNodeIndex.get(node.getIndex());
+			if (t!=null)
 			{
-				VNode t = n.next();
-				if (t.getIndex()==node.getIndex())
-				{
-					vNodes.remove(t);
-					t.copyColorStatus(node);
-					vNodes.add(node);
-					setChanged();
-					notifyObservers(new GraphMessage(GraphConstraints.NODE,node.getIndex(), GraphConstraints.REPLACEMENT,GraphConstraints.NODE));	
-					break;
-				}
+				vNodes.remove(t);
+				t.setSelectionIndex(null);
+				t.setSpatialIndex(null);
+				t.copyColorStatus(node);
+				vNodes.add(node);
+				vNodeIndex.put(node.getIndex(),node);
+				node.setSelectionIndex(selection);
+				node.setSpatialIndex(spatial);
+				setChanged();
+				notifyObservers(new GraphMessage(GraphConstraints.NODE,node.getIndex(), GraphConstraints.REPLACEMENT,GraphConstraints.NODE));	
 			}
 		}
 		finally {NodeLock.unlock();}
@@ -199,26 +258,51 @@ public class VNodeSet extends Observable implements Observer {
 	 * @return the first node in range, if there is one, else null
 	 */
 	public VNode getFirstinRangeOf(Point p) {
-		Iterator<VNode> n = vNodes.iterator();
-		while (n.hasNext()) {
-			VNode temp = n.next();
-			if (temp.getPosition().distance(p) <= temp.getSize() / 2) {
-				return temp;
-			}
-		}
-		return null; // keinen gefunden
+		return spatial.getFirstAt(p);
+	}
+	/**
+	 * Get all nodes whose bounding box (the square around the node circle) intersects a rectangle
+	 * @param r a rectangle in graph coordinates
+	 * 
+	 * @return an Iterator over these nodes, ordered by index
+	 */
+	public Iterator<VNode> getNodesinRectangle(Rectangle r)
+	{
+		TreeSet<VNode> result = new TreeSet<VNode>(new VItem.IndexComparator());
+		spatial.collect(r, result);
+		return result.iterator();
+	}
+	/**
+	 * Get the bounding box of all node circles
+	 * @return the bounding box or null, if the set is empty
+	 */
+	Rectangle getBounds()
+	{
+		return spatial.getBounds();
+	}
+	/**
+	 * Get and reset the indices of all nodes added, moved or removed since the last call.
+	 * This is used by the edges to update their geometry
+	 * @return a BitSet of the node indices
+	 */
+	BitSet takeMovedNodes()
+	{
+		return spatial.takeMoved();
 	}
 	/**
 	 * Check, whether at least one node is selected
 	 * @return true, if there is at least one selected node, else false
 	 */
 	public boolean hasSelection() {
-		Iterator<VNode> n = vNodes.iterator();
-		while (n.hasNext()) {
-			if ((n.next().getSelectedStatus() & VItem.SELECTED) == VItem.SELECTED)
-				return true;
-		}
-		return false;
+		return !selection.isEmpty();
+	}
+	/**
+	 * Add the indices of all nodes that are selected, soft selected or soft deselected
+	 * @param b the indices are set in this BitSet
+	 */
+	public void collectActive(BitSet b)
+	{
+		selection.addActive(b);
 	}
 	/**
 	 * Get the one and simple selected Node iff such an edge exists, in every other case null is returned
@@ -226,25 +310,17 @@ public class VNodeSet extends Observable implements Observer {
 	 */
 	public VNode getSingleSelectedNode()
 	{
-		Iterator<VNode> n = vNodes.iterator();
 		NodeLock.lock();
-		VNode result = null;
 		try
 		{
-			while (n.hasNext())
-			{
-				VNode vn = n.next();
-				if ((vn.getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED)
-				{
-					if (result!=null) //This is the second selected Edge
-						return new VNode(-1,-1,-1,-1,-1,-1,-1,false);
-					else
-						result = vn;
-				}
-			}
+			int[] selected = selection.getIndices();
+			if (selected.length==0)
+				return null;
+			if (selected.length > 1) //There is more than one selected Node
+				return new VNode(-1,-1,-1,-1,-1,-1,-1,false);
+			return vNodeIndex.get(selected[0]);
 		}
 		finally{NodeLock.unlock();}	
-		return result;
 	}
 	/**
 	 * Get a new Node Iterator
@@ -255,6 +331,16 @@ public class VNodeSet extends Observable implements Observer {
 	{
 		return vNodes.iterator();
 	}
+	/**
+	 * Get an Iterator over the selected nodes only, ordered by index.
+	 * Nodes may be (de)selected or removed while iterating
+	 * 
+	 * @return the Iterator typed with VNode
+	 */
+	public Iterator<VNode> getSelectedIterator()
+	{
+		return selection.iterator(vNodeIndex,NodeLock);
+	}
 	/**
 	 * Handle internal Color Update. A Subgraph has changed the color of a node
 	 * so change that
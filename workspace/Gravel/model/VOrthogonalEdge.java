@@ -21,9 +21,10 @@ public class VOrthogonalEdge extends VEdge {
 	{
 		super(i,w);
 		verticalfirst = v;
+		geometryChanged();
 	}
 
-	public GeneralPath getPath(Point Start, Point End,float zoom) {
+	protected GeneralPath computePath(Point Start, Point End,float zoom) {
 		GeneralPath p = new GeneralPath();
 		p.moveTo(Start.x*zoom,Start.y*zoom);
 		if (verticalfirst)
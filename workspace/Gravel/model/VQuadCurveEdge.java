@@ -32,9 +32,10 @@ public class VQuadCurveEdge extends VEdge
 	{
 		if (p.size()>0)
 			bezierpoint = p.firstElement();
+		geometryChanged();
 	}
 	
-	public GeneralPath getPath(Point p1, Point p2, float zoom) 
+	protected GeneralPath computePath(Point p1, Point p2, float zoom) 
 	{
 		GeneralPath p = new GeneralPath();
 		p.moveTo(p1.x*zoom,p1.y*zoom);
@@ -51,6 +52,7 @@ public class VQuadCurveEdge extends VEdge
 			bezierpoint.x = 0;
 		if (bezierpoint.y < 0)
 			bezierpoint.y = 0;
+		geometryChanged();
 	}
 	public Point getMax()
 	{	return bezierpoint;
@@ -24,7 +24,7 @@ public class VSegmentedEdge extends VEdge
 		points = p;
 	}
 
-	public GeneralPath getPath(Point Start, Point End,float zoom) {
+	protected GeneralPath computePath(Point Start, Point End,float zoom) {
 		GeneralPath p = new GeneralPath();
 		p.moveTo(Start.x*zoom, Start.y*zoom);
 		for (int i=0; i<points.size(); i++)
@@ -42,6 +42,7 @@ public class VSegmentedEdge extends VEdge
 	{
 		if (p.size() > 0)
 			points = p;
+		geometryChanged();
 	}
 	
 	public int getEdgeType() 
@@ -59,6 +60,7 @@ public class VSegmentedEdge extends VEdge
 				points.get(i).y = 0;
 			
 		}
+		geometryChanged();
 	}
 	public Point getMax()
 	{	
@@ -84,10 +86,12 @@ public class VSegmentedEdge extends VEdge
 		}
 		return min;
 	}
-	@SuppressWarnings("unchecked")
 	public VEdge clone()
 	{
-		Vector<Point> p = (Vector<Point>) points.clone();
+		//Copy the points themselves, they are changed in place e.g. by translate
+		Vector<Point> p = new Vector<Point>();
+		for (int i=0; i<points.size(); i++)
+			p.add((points.get(i)==null) ? null : (Point)points.get(i).clone());
 		VEdge cloneedge =  new VSegmentedEdge(getIndex(),width,p);
 		return copyCommonProperties(cloneedge);
 	}
@@ -17,7 +17,7 @@ public class VStraightLineEdge extends VEdge
 	public VStraightLineEdge(int i, int w) {
 		super(i, w);
 	}
-	public GeneralPath getPath(Point p1, Point End,float zoom) {
+	protected GeneralPath computePath(Point p1, Point End,float zoom) {
 		GeneralPath p = new GeneralPath();
 		p.moveTo(p1.x*zoom,p1.y*zoom);
 		p.lineTo(End.x*zoom,End.y*zoom);
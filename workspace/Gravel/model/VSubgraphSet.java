@@ -58,6 +58,18 @@ public class VSubgraphSet extends Observable implements Observer {
 		}
 	}
 
+	/**
+	 * Add copies of all subgraphs of another set without notification. The mathematical subgraphs
+	 * and the colors of the elements have to be copied already.
+	 * This is only used to clone a graph into a new and empty graph, where nobody has to be informed
+	 * @param s the set to copy the subgraphs from
+	 */
+	void addAll_(VSubgraphSet s)
+	{
+		Iterator<VSubgraph> n = s.getIterator();
+		while (n.hasNext())
+			vSubgraphs.add(n.next().clone());
+	}
 	/**
 	 * Add a new Subgraph to the VGraph
 	 * The Index of the MSubgraph is ignored (if differs from VSubgraph-Index)
@@ -81,7 +93,7 @@ public class VSubgraphSet extends Observable implements Observer {
 		//Update Edges / HyperEdges 
 		if (mG.getType()==MGraphInterface.GRAPH)
 		{
-			for (int i=0; i<((MGraph)mG).modifyEdges.getNextIndex(); i++)
+			for (int i=0; i<=((MGraph)mG).modifyEdges.getMaxIndex(); i++)
 			{
 				if ((((MGraph)mG).modifyEdges.get(i)!=null)&&(msubgraph.containsEdge(i)))
 				{
@@ -92,7 +104,7 @@ public class VSubgraphSet extends Observable implements Observer {
 		}
 		else
 		{
-			for (int i=0; i<((MHyperGraph)mG).modifyHyperEdges.getNextIndex(); i++)
+			for (int i=0; i<=((MHyperGraph)mG).modifyHyperEdges.getMaxIndex(); i++)
 			{
 				if ((((MHyperGraph)mG).modifyHyperEdges.get(i)!=null)&&(msubgraph.containsEdge(i)))
 				{
@@ -102,7 +114,7 @@ public class VSubgraphSet extends Observable implements Observer {
 			}
 		}
 		//Nodes
-		for (int i=0; i<mnodes.getNextIndex(); i++)
+		for (int i=0; i<=mnodes.getMaxIndex(); i++)
 		{
 			if ((mnodes.get(i)!=null)&&(msubgraph.containsNode(i)))
 			{
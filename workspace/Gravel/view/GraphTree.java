@@ -20,23 +20,21 @@ import javax.swing.tree.TreeSelectionModel;
 import model.*;
 import model.Messages.GraphConstraints;
 import model.Messages.GraphMessage;
+import model.Messages.GraphMessageListener;
 
-import java.util.Observable;
-import java.util.Observer;
 
 import dialogs.*;
 /**
  * Sidebar Containing a Tree with the elements of the actual graph
  * 
- * This Sidebar may only subscribe itself (as Observer) to Classes that ONLY
- * provide GraphMessage-Updates
+ * This Sidebar subscribes itself as GraphMessageListener to the graph
  * @author Ronny Bergmann
  *
  */
 public class GraphTree extends JTree implements TreeSelectionListener, 
 												MouseListener, 
 												ActionListener,
-												Observer
+												GraphMessageListener
 {
 
 	private static final long serialVersionUID = 1L;
@@ -66,7 +64,7 @@ public class GraphTree extends JTree implements TreeSelectionListener,
 		if (Graph.getType()==VGraphInterface.GRAPH)
 		{
 			vG = (VGraph)Graph;
-			vG.addObserver(this);
+			vG.addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 			Kanten = new DefaultMutableTreeNode("Kanten");
 			root.add(Kanten);
 			vhG=null; //to be secure
@@ -74,7 +72,7 @@ public class GraphTree extends JTree implements TreeSelectionListener,
 		else if (Graph.getType()==VGraphInterface.HYPERGRAPH)
 		{
 			vhG = (VHyperGraph)Graph;
-			vhG.addObserver(this);
+			vhG.addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 			Kanten = new DefaultMutableTreeNode("Hyperkanten");
 			root.add(Kanten);
 			vG=null; 
@@ -259,19 +257,19 @@ public class GraphTree extends JTree implements TreeSelectionListener,
 			//Else select item in (Hyper)Graph
 			if (vG!=null)
 			{
-				vG.deleteObserver(this);
+				vG.removeGraphMessageListener(this);
 				vG.deselect();
 				vG.modifyNodes.get(index).setSelectedStatus(VItem.SELECTED);
 				vG.pushNotify(new GraphMessage(GraphConstraints.SELECTION,index,GraphConstraints.UPDATE,GraphConstraints.SELECTION|GraphConstraints.NODE));
-				vG.addObserver(this);
+				vG.addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 			}
 			else if (vhG!=null)
 			{
-				vhG.deleteObserver(this);
+				vhG.removeGraphMessageListener(this);
 				vhG.deselect();
 				vhG.modifyNodes.get(index).setSelectedStatus(VItem.SELECTED);
 				vhG.pushNotify(new GraphMessage(GraphConstraints.SELECTION,index,GraphConstraints.UPDATE,GraphConstraints.SELECTION|GraphConstraints.NODE));
-				vhG.addObserver(this);
+				vhG.addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 			}
 		}
 		else if (selectedNode.getParent().toString().equals("Kanten"))
@@ -287,11 +285,11 @@ public class GraphTree extends JTree implements TreeSelectionListener,
 				Text.setText(t);
 				if (e.isPopupTrigger())
 					return true;
-				vG.deleteObserver(this);
+				vG.removeGraphMessageListener(this);
 				vG.deselect();
 				vG.modifyEdges.get(index).setSelectedStatus(VItem.SELECTED);
 				vG.pushNotify(new GraphMessage(GraphConstraints.SELECTION,index,GraphConstraints.UPDATE,GraphConstraints.SELECTION|GraphConstraints.EDGE));
-				vG.addObserver(this);
+				vG.addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 			}
 		}
 		else if (selectedNode.getParent().toString().equals("Hyperkanten"))
@@ -303,11 +301,11 @@ public class GraphTree extends JTree implements TreeSelectionListener,
 				Text.setText(vhG.getMathGraph().modifyHyperEdges.get(index).name);
 				if (e.isPopupTrigger())
 					return true;
-				vhG.deleteObserver(this);
+				vhG.removeGraphMessageListener(this);
 				vhG.deselect();
 				vhG.modifyHyperEdges.get(index).setSelectedStatus(VItem.SELECTED);
 				vhG.pushNotify(new GraphMessage(GraphConstraints.SELECTION,index,GraphConstraints.UPDATE,GraphConstraints.SELECTION|GraphConstraints.HYPEREDGE));
-				vhG.addObserver(this);
+				vhG.addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 			}
 		}
 		else if (selectedNode.getParent().toString().equals("Untergraphen"))
@@ -465,12 +463,9 @@ public class GraphTree extends JTree implements TreeSelectionListener,
 		}
 		return pos-1;
 	}
-	public void update(Observable o, Object arg)
+	public void handleGraphMessage(GraphMessage m)
 	{
-		GraphMessage m = (GraphMessage)arg;
-		if (m==null)
-			return;
-		if ((o.equals(vG))||(o.equals(vhG))) //Der Graph wurde aktualisiert und auch echt ein String gegeben, der Auftr�ge enth�lt
+		if ((vG!=null)||(vhG!=null)) //Der Graph wurde aktualisiert und auch echt ein String gegeben, der Auftr�ge enth�lt
 		{
 			if ((m.getAffectedElementTypes()&GraphConstraints.NODE)==GraphConstraints.NODE) //Ein Knoten ist beteiligt
 			{
@@ -485,7 +480,7 @@ public class GraphTree extends JTree implements TreeSelectionListener,
 				updateSubgraphs();
 //			if ((m.getAffectedElementTypes()&GraphConstraints.SELECTION)==GraphConstraints.SELECTION)
 //			{
-				VItem v = ((VGraphInterface)o).getSingleSelectedItem();
+				VItem v = (vG!=null) ? vG.getSingleSelectedItem() : vhG.getSingleSelectedItem();
 				if (v==null)
 				{
 					removeSelectionPaths(getSelectionPaths()); //Deselect
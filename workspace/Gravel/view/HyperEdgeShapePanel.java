@@ -11,8 +11,6 @@ import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.geom.Point2D;
 import java.util.Iterator;
-import java.util.Observable;
-import java.util.Observer;
 import java.util.Vector;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -73,7 +71,7 @@ import model.Messages.*;
  * @since 0.4
  *
  */
-public class HyperEdgeShapePanel implements ActionListener, Observer, CaretListener, ChangeListener {
+public class HyperEdgeShapePanel implements ActionListener, GraphMessageListener, CaretListener, ChangeListener {
 
 	private Container cont;
 	private JComboBox cBasicShape;
@@ -179,7 +177,7 @@ public class HyperEdgeShapePanel implements ActionListener, Observer, CaretListe
 		ValidatorStartLock = new ReentrantLock();
 		HEdgeRefIndex = index;
 		HGraphRef = vhg.getGraph();
-		HGraphRef.addObserver(this);
+		HGraphRef.addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 		HShapeGraphicRef = vhg;
 		cont = new Container();
 		cont.setLayout(new GridBagLayout());
@@ -897,11 +895,8 @@ public class HyperEdgeShapePanel implements ActionListener, Observer, CaretListe
 		}
 	}
 
-	public void update(Observable o, Object arg)
+	public void handleGraphMessage(GraphMessage m)
 	{
-		if (arg instanceof GraphMessage) //All Other GraphUpdates are handled in VGRaphCommons
-		{
-			update((GraphMessage) arg);
-		}
+		update(m);
 	}
 }
@@ -10,8 +10,6 @@ import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.io.File;
 import java.util.Iterator;
-import java.util.Observable;
-import java.util.Observer;
 
 import javax.swing.ActionMap;
 import javax.swing.ButtonGroup;
@@ -32,6 +30,7 @@ import model.VHyperGraph;
 import model.VItem;
 import model.Messages.GraphConstraints;
 import model.Messages.GraphMessage;
+import model.Messages.GraphMessageListener;
 
 import dialogs.JFileDialogs;
 import dialogs.JPreferencesDialog;
@@ -47,7 +46,7 @@ import view.pieces.GridComponent;
  * @author Ronny Bergmann
  * @since 0.2
  */
-public class MainMenu extends JMenuBar implements ActionListener, Observer
+public class MainMenu extends JMenuBar implements ActionListener, GraphMessageListener
 {	
 	private static final long serialVersionUID = 1L;
 	//	Die Menüeinträge
@@ -81,7 +80,7 @@ public class MainMenu extends JMenuBar implements ActionListener, Observer
         setPreferredSize(new Dimension(200, 20));
         if (isGraph)
         {
-        	((VGraphic)graphpart).getGraph().addObserver(this);
+        	((VGraphic)graphpart).getGraph().addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
     		isFileKnown = ( (GeneralPreferences.getInstance().getBoolValue("graph.loadfileonstart"))
     				&& (!GeneralPreferences.getInstance().getStringValue("graph.lastfile").equals("$NONE"))
     				&& (((VGraphic)graphpart).getGraph().getMathGraph().modifyNodes.cardinality()>0));
@@ -89,7 +88,7 @@ public class MainMenu extends JMenuBar implements ActionListener, Observer
         }
         else
         {
-        	((VHyperGraphic)graphpart).getGraph().addObserver(this);
+        	((VHyperGraphic)graphpart).getGraph().addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
     		isFileKnown = ( (GeneralPreferences.getInstance().getBoolValue("graph.loadfileonstart"))
     				&& (!GeneralPreferences.getInstance().getStringValue("graph.lastfile").equals("$NONE"))
     				&& (((VHyperGraphic)graphpart).getGraph().getMathGraph().modifyNodes.cardinality()>0));
@@ -99,9 +98,9 @@ public class MainMenu extends JMenuBar implements ActionListener, Observer
 	{
 		//remove old observerstuff
         if (isGraph)
-        	((VGraphic)graphpart).getGraph().deleteObserver(this);
+        	((VGraphic)graphpart).getGraph().removeGraphMessageListener(this);
         else
-        	((VHyperGraphic)graphpart).getGraph().deleteObserver(this);
+        	((VHyperGraphic)graphpart).getGraph().removeGraphMessageListener(this);
         
         graphpart = vgraphic;
         GraphHistory = graphpart.getGraphHistoryManager();
@@ -120,9 +119,9 @@ public class MainMenu extends JMenuBar implements ActionListener, Observer
         	}
         }
         if (isGraph)
-        	((VGraphic)graphpart).getGraph().addObserver(this);
+        	((VGraphic)graphpart).getGraph().addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
         else
-        	((VHyperGraphic)graphpart).getGraph().addObserver(this);
+        	((VHyperGraphic)graphpart).getGraph().addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK);
 		mVModusOCM.setEnabled(!Gui.getInstance().isShapeModificationActive());
 		mVModusNormal.setEnabled(!Gui.getInstance().isShapeModificationActive());
         validate();
@@ -516,7 +515,7 @@ public class MainMenu extends JMenuBar implements ActionListener, Observer
 	private int getIndexofSingeSelectedHyperEdge()
 	{
    		//Check whether exactely one edge is selected
-		Iterator<VHyperEdge> HEIt = ((VHyperGraphic)graphpart).getGraph().modifyHyperEdges.getIterator();
+		Iterator<VHyperEdge> HEIt = ((VHyperGraphic)graphpart).getGraph().modifyHyperEdges.getSelectedIterator();
 		int selindex = -1;
 		while (HEIt.hasNext())
 		{
@@ -717,11 +716,8 @@ public class MainMenu extends JMenuBar implements ActionListener, Observer
 		Gui.getInstance().refresh();
 	}
 	
-	public void update(Observable arg0, Object arg1) 
+	public void handleGraphMessage(GraphMessage m) 
 	{
-		GraphMessage m = (GraphMessage)arg1;
-		if (m==null)
-			return;
 		if ((m.getModification()&GraphConstraints.HISTORY)>0)
 		{
 			mEdUndo.setEnabled(GraphHistory.CanUndo());
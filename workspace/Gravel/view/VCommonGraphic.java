@@ -3,6 +3,7 @@ package view;
 import history.CommonGraphHistoryManager;
 import io.GeneralPreferences;
 
+import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Component;
@@ -13,6 +14,12 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Observable;
@@ -24,10 +31,12 @@ import view.pieces.GridComponent;
 import view.pieces.ZoomComponent;
 
 import model.*;
+import model.Messages.GraphBatchMessage;
 import model.Messages.GraphConstraints;
 import model.Messages.GraphMessage;
+import model.Messages.GraphMessageListener;
 
-public abstract class VCommonGraphic extends Component implements Observer
+public abstract class VCommonGraphic extends Component implements Observer, GraphMessageListener
 {
 	/**
 	 * These are Different MODI a VCommonGraphic may depend its controlers on
@@ -65,11 +74,51 @@ public abstract class VCommonGraphic extends Component implements Observer
 	//
 	public static final int VGRAPHIC = 1;
 	public static final int VHYPERGRAPHIC = 2;
+	//Items are painted, if their bounds intersect the painted area enlarged by this margin (in px of the graph),
+	//so that labels, arrows and selection borders of items just outside are painted too
+	protected static final int CULLING_MARGIN = 200;
+	//Stroke of thin lines like the grid, control points and the selection rectangle
+	//Several of these lines were painted with new BasicStroke(w,JOIN_ROUND,JOIN_ROUND) before, whose cap
+	//argument JOIN_ROUND has the value of CAP_ROUND, so round caps keep these lines as they were
+	protected static final BasicStroke THIN_STROKE = new BasicStroke(1.0f, BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND);
+	//The static layer covers the painted area enlarged by this margin (in px), so that small scrolls don't rebuild it
+	protected static final int LAYER_MARGIN = 256;
+	//If more items are moved within one block, the layer is rebuilt instead of painting them on top
+	private static final int MAX_MOVED_ITEMS = 128;
+	//Maximal distance in pixel of two points of a simplified hyperedge shape
+	protected static final double COARSE_SEGMENT = 8d;
+	//Margin in pixel around a repainted region for antialiasing
+	private static final int REGION_MARGIN = 3;
+	//Items the paint methods paint at the moment, see isNodePainted and isEdgePainted
+	protected static final int PAINT_ALL = 0;
+	protected static final int PAINT_STATIC = 1;
+	protected static final int PAINT_ACTIVE = 2;
 //	public static final int VHYPERSHAPEGRAPHIC = 4; contained in previous Variable
 	
 	protected HashMap<String,Observable> Controls;
 	protected Color selColor; //Color of selected Elements
 	protected int selWidth; //Width of selection border
+	protected int cpSize; //Size of the control point crosses
+	protected boolean cpShow; //Indicator whether control points are painted
+	private float lodLabelZoom, lodShapeZoom, lodAntialiasZoom; //Zoom thresholds of the level of detail
+	private boolean detailReduction;
+	//Strokes, fonts and font metrics are created once for each width or size and kept until the zoom changes
+	private float cachedZoom;
+	private HashMap<Integer,BasicStroke> strokes, roundedStrokes;
+	private HashMap<Integer,Font> fonts;
+	private HashMap<Integer,FontMetrics> metrics;
+	private FontRenderContext metricsContext;
+	//Static layer: an image of the grid and all items that are not active (selected or moved)
+	private BufferedImage staticLayer;
+	private Rectangle staticArea; //Area of the layer in coordinates of this component
+	private float staticZoom;
+	private boolean staticValid, blockOpen;
+	private int paintedItems;
+	//Active items while painting, active items the layer was built for and items moved in the actual block
+	//The edge sets contain edge indices in a graph and hyperedge indices in a hypergraph
+	private BitSet activeNodes, activeEdges, staticActiveNodes, staticActiveEdges, movedNodes, movedEdges;
+	//Regions of the nodes and edges (or hyperedges) in the graph, where they were painted after the last message about them
+	private HashMap<Integer,Rectangle> nodeRegions, edgeRegions;
 
 	protected float zoomfactor; //protected for all subelements
 	protected int gridx,gridy;
@@ -93,8 +142,159 @@ public abstract class VCommonGraphic extends Component implements Observer
 		gridorientated = gp.getBoolValue("grid.orientated");
 
 		Controls = new HashMap<String,Observable>();
+		strokes = new HashMap<Integer,BasicStroke>();
+		roundedStrokes = new HashMap<Integer,BasicStroke>();
+		fonts = new HashMap<Integer,Font>();
+		metrics = new HashMap<Integer,FontMetrics>();
+		activeNodes = new BitSet(); activeEdges = new BitSet();
+		staticActiveNodes = new BitSet(); staticActiveEdges = new BitSet();
+		movedNodes = new BitSet(); movedEdges = new BitSet();
+		nodeRegions = new HashMap<Integer,Rectangle>();
+		edgeRegions = new HashMap<Integer,Rectangle>();
+		staticValid = false; blockOpen = false;
+		paintedItems = PAINT_ALL;
+		detailReduction = true;
+		loadPaintPreferences();
+	}
+	/**
+	 * Load the values of the GeneralPreferences used while painting, so they are not looked up
+	 * for each element, and clear the cached strokes and fonts
+	 */
+	protected void loadPaintPreferences()
+	{
 		selColor = new Color(gp.getIntValue("vgraphic.selcolr"),gp.getIntValue("vgraphic.selcolg"),gp.getIntValue("vgraphic.selcolb"));
 		selWidth = gp.getIntValue("vgraphic.selwidth");
+		cpSize = gp.getIntValue("vgraphic.cpsize");
+		cpShow = gp.getBoolValue("vgraphic.cpshow");
+		lodLabelZoom = gp.getFloatValue("vgraphic.lod_labelzoom");
+		lodShapeZoom = gp.getFloatValue("vgraphic.lod_shapezoom");
+		lodAntialiasZoom = gp.getFloatValue("vgraphic.lod_antialiaszoom");
+		clearPaintCache_();
+	}
+	/**
+	 * Enable or disable the level of detail. If it is enabled, labels, exact shapes and antialiasing
+	 * are left out, if the zoom is below the thresholds vgraphic.lod_labelzoom, vgraphic.lod_shapezoom
+	 * and vgraphic.lod_antialiaszoom in the GeneralPreferences. 
+	 * It should be disabled while painting for an export, then everything is painted directly
+	 * without the static layer, so tiles of an export may be painted in parallel.
+	 * @param reduce true to enable the level of detail
+	 */
+	public void setDetailReduction(boolean reduce)
+	{
+		if (detailReduction!=reduce)
+			staticValid = false;
+		detailReduction = reduce;
+	}
+	/**
+	 * Indicates whether the level of detail is enabled
+	 * @return true if details are left out at small zoom levels
+	 */
+	public boolean isDetailReduction()
+	{
+		return detailReduction;
+	}
+	/**
+	 * Indicates whether labels of nodes, edges and hyperedges are painted at the actual zoom
+	 * @return true, if labels are painted
+	 */
+	protected boolean showLabels()
+	{
+		return (!detailReduction)||(zoomfactor >= lodLabelZoom);
+	}
+	/**
+	 * Indicates whether the exact shapes are painted at the actual zoom.
+	 * If not, nodes are painted as squares, edges as lines between their nodes without arrows
+	 * and hyperedges with a coarse approximation of their shape
+	 * @return true, if the exact shapes are painted
+	 */
+	protected boolean showShapes()
+	{
+		return (!detailReduction)||(zoomfactor >= lodShapeZoom);
+	}
+	/**
+	 * Enable antialiasing in a Graphics, if the actual zoom is not below its threshold
+	 * @param g2 the Graphics to paint in
+	 */
+	protected void setAntialiasing(Graphics2D g2)
+	{
+		if ((!detailReduction)||(zoomfactor >= lodAntialiasZoom))
+			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		else
+			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+	}
+	private void clearPaintCache_()
+	{
+		strokes.clear();
+		roundedStrokes.clear();
+		fonts.clear();
+		metrics.clear();
+		metricsContext = null;
+		cachedZoom = zoomfactor;
+		staticValid = false;
+	}
+	/**
+	 * Get the stroke for a line of a given width in the graph (e.g. an edge) at the actual zoom
+	 * @param width width of the line in the graph
+	 * @param round whether the zoomed width is rounded to full pixels
+	 * @return the stroke with round caps and joins
+	 * (the same as the former new BasicStroke(w,JOIN_ROUND,JOIN_ROUND) of hyperedges and control polygons,
+	 * because JOIN_ROUND and CAP_ROUND are both 1)
+	 */
+	protected synchronized BasicStroke getStroke(int width, boolean round)
+	{
+		if (cachedZoom!=zoomfactor)
+			clearPaintCache_();
+		HashMap<Integer,BasicStroke> cache = round ? roundedStrokes : strokes;
+		BasicStroke s = cache.get(width);
+		if (s==null)
+		{
+			if (round)
+				s = new BasicStroke(Math.round(width*zoomfactor),BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+			else
+				s = new BasicStroke(width*zoomfactor,BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+			cache.put(width,s);
+		}
+		return s;
+	}
+	/**
+	 * Get the font for texts of a given size in the graph (e.g. node names) at the actual zoom
+	 * @param size size of the text in the graph
+	 * @return the font
+	 */
+	protected synchronized Font getLabelFont(int size)
+	{
+		if (cachedZoom!=zoomfactor)
+			clearPaintCache_();
+		Font f = fonts.get(size);
+		if (f==null)
+		{
+			f = new Font("Arial",Font.PLAIN, Math.round(size*zoomfactor));
+			fonts.put(size,f);
+		}
+		return f;
+	}
+	/**
+	 * Get the metrics of the font getLabelFont(size) in a Graphics
+	 * @param g2 the Graphics the text is painted in
+	 * @param size size of the text in the graph
+	 * @return the font metrics
+	 */
+	protected synchronized FontMetrics getLabelMetrics(Graphics2D g2, int size)
+	{
+		Font f = getLabelFont(size);
+		FontRenderContext frc = g2.getFontRenderContext();
+		if (!frc.equals(metricsContext)) //Metrics depend on the Graphics, e.g. on export
+		{
+			metrics.clear();
+			metricsContext = frc;
+		}
+		FontMetrics m = metrics.get(size);
+		if (m==null)
+		{
+			m = g2.getFontMetrics(f);
+			metrics.put(size,m);
+		}
+		return m;
 	}
 	/**
 	 * Paint nodes in the Graphic g
@@ -116,30 +316,45 @@ public abstract class VCommonGraphic extends Component implements Observer
 			mnodes = ((VHyperGraph)vG).getMathGraph().modifyNodes;
 		}
 		Graphics2D g2 = (Graphics2D) g;
-		Iterator<VNode> nodeiter = nodes.getIterator();
+		Rectangle area = getPaintArea(g);
+		Iterator<VNode> nodeiter;
+		if (area==null)
+			nodeiter = nodes.getIterator();
+		else
+			nodeiter = nodes.getNodesinRectangle(area);
+		boolean shapes = showShapes(), labels = showLabels();
 		while (nodeiter.hasNext()) // drawNodes
 		{
 			VNode temp = nodeiter.next();
-			
+			if (!isNodePainted(temp.getIndex()))
+				continue;
 			if ((((temp.getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED)||((temp.getSelectedStatus()&VItem.SOFT_SELECTED)==VItem.SOFT_SELECTED))&&((temp.getSelectedStatus()&VItem.SOFT_DESELECTED)!=VItem.SOFT_DESELECTED))
 			{ //Draw all Nodes that are selected or temporarily selected as selected in the GUI
 				g2.setColor(selColor);
-				g2.fillOval(Math.round((temp.getdrawpoint().x-selWidth/2)*zoomfactor), 
+				if (shapes)
+					g2.fillOval(Math.round((temp.getdrawpoint().x-selWidth/2)*zoomfactor), 
+						Math.round((temp.getdrawpoint().y-selWidth/2)*zoomfactor),
+						Math.round((temp.getSize() + selWidth)*zoomfactor),
+						Math.round((temp.getSize() + selWidth)*zoomfactor));
+				else
+					g2.fillRect(Math.round((temp.getdrawpoint().x-selWidth/2)*zoomfactor), 
 						Math.round((temp.getdrawpoint().y-selWidth/2)*zoomfactor),
 						Math.round((temp.getSize() + selWidth)*zoomfactor),
 						Math.round((temp.getSize() + selWidth)*zoomfactor));
 			}
 			g2.setColor(temp.getColor());
-			g2.fillOval(Math.round(temp.getdrawpoint().x*zoomfactor), Math.round(temp.getdrawpoint().y*zoomfactor), Math.round(temp.getSize()*zoomfactor), Math.round(temp.getSize()*zoomfactor));
-			if (temp.isNameVisible())
+			if (shapes)
+				g2.fillOval(Math.round(temp.getdrawpoint().x*zoomfactor), Math.round(temp.getdrawpoint().y*zoomfactor), Math.round(temp.getSize()*zoomfactor), Math.round(temp.getSize()*zoomfactor));
+			else
+				g2.fillRect(Math.round(temp.getdrawpoint().x*zoomfactor), Math.round(temp.getdrawpoint().y*zoomfactor), Math.round(temp.getSize()*zoomfactor), Math.round(temp.getSize()*zoomfactor));
+			if (temp.isNameVisible()&&labels)
 			{	
 				g2.setColor(Color.black);					
-				Font f = new Font("Arial",Font.PLAIN, Math.round(temp.getNameSize()*zoomfactor));
-				g2.setFont(f);
+				g2.setFont(getLabelFont(temp.getNameSize()));
 				//mittelpunkt des Textes
 				Point m = temp.getTextCenter();
 				
-			    FontMetrics metrics = g2.getFontMetrics(f);
+			    FontMetrics metrics = getLabelMetrics(g2,temp.getNameSize());
 			    int hgt = metrics.getAscent()-metrics.getLeading()-metrics.getDescent();
 			    int adv = metrics.stringWidth(mnodes.get(temp.getIndex()).name);
 			    m.x = Math.round(m.x*zoomfactor); m.y = Math.round(m.y*zoomfactor); //Zoom
@@ -150,6 +365,272 @@ public abstract class VCommonGraphic extends Component implements Observer
 		}
 		g2.setColor(Color.black);
 	}
+	/**
+	 * Get the part of the graph that has to be painted, that is the clip of the Graphics
+	 * (e.g. the visible part of the viewport) in coordinates of the graph enlarged by the CULLING_MARGIN
+	 * @param g the Graphics to paint in
+	 * @return the area or null, if the whole graph has to be painted (e.g. on export, where no clip is set)
+	 */
+	protected Rectangle getPaintArea(Graphics g)
+	{
+		Rectangle clip = g.getClipBounds();
+		if ((clip==null)||(zoomfactor<=0f))
+			return null;
+		return new Rectangle((int)Math.floor((float)clip.x/zoomfactor)-CULLING_MARGIN,
+				(int)Math.floor((float)clip.y/zoomfactor)-CULLING_MARGIN,
+				(int)Math.ceil((float)clip.width/zoomfactor)+2*CULLING_MARGIN,
+				(int)Math.ceil((float)clip.height/zoomfactor)+2*CULLING_MARGIN);
+	}
+	/**
+	 * Paint the items of the graph, i.e. its edges or hyperedges and its nodes (and nothing else)
+	 * Only those items are painted, that are accepted by isNodePainted and isEdgePainted
+	 * @param g2 the Graphics to paint in
+	 */
+	protected abstract void paintItems(Graphics2D g2);
+	/**
+	 * Set the indices of all edges (in a graph) or hyperedges (in a hypergraph) that are active,
+	 * i.e. (soft) selected or soft deselected, or move with an active node.
+	 * The nodes of active edges are set active too, so they are still painted on top of their edges
+	 * @param nodes indices of the active nodes, the nodes of active edges are added
+	 * @param edges the active edges are set here
+	 */
+	protected abstract void collectActiveItems(BitSet nodes, BitSet edges);
+	/**
+	 * Indicates whether the node with index i is painted at the moment
+	 * @param i index of the node
+	 * @return true, if all items are painted or the node belongs to the layer that is painted
+	 */
+	protected boolean isNodePainted(int i)
+	{
+		if (paintedItems==PAINT_ALL)
+			return true;
+		return activeNodes.get(i)==(paintedItems==PAINT_ACTIVE);
+	}
+	/**
+	 * Indicates whether the edge (or hyperedge) with index i is painted at the moment
+	 * @param i index of the edge
+	 * @return true, if all items are painted or the edge belongs to the layer that is painted
+	 */
+	protected boolean isEdgePainted(int i)
+	{
+		if (paintedItems==PAINT_ALL)
+			return true;
+		return activeEdges.get(i)==(paintedItems==PAINT_ACTIVE);
+	}
+	/**
+	 * Paint the grid and all items of the graph.
+	 * 
+	 * If the Graphics has a clip and is not scaled, the grid and all items that are not active
+	 * are taken from the static layer, that is only rebuilt, if it doesn't cover the clip,
+	 * the zoom or the set of active items changed or a GraphMessage modified an item in it.
+	 * Only the active items are painted on top of it. Else or without detail reduction everything is painted directly (e.g. on export).
+	 * 
+	 * @param g2 the Graphics to paint in
+	 */
+	protected void paintLayered(Graphics2D g2)
+	{
+		Rectangle clip = g2.getClipBounds();
+		if ((clip==null)||(clip.isEmpty())||(!detailReduction)||((g2.getTransform().getType()&~AffineTransform.TYPE_TRANSLATION)!=0))
+		{
+			paintgrid(g2);
+			paintItems(g2);
+			return;
+		}
+		collectActiveItems_();
+		if ((!staticValid)||(staticZoom!=zoomfactor)||(!staticArea.contains(clip))
+				||(!activeNodes.equals(staticActiveNodes))||(!activeEdges.equals(staticActiveEdges)))
+			buildStaticLayer_(g2,clip);
+		g2.drawImage(staticLayer,staticArea.x,staticArea.y,null);
+		paintedItems = PAINT_ACTIVE;
+		paintItems(g2);
+		paintedItems = PAINT_ALL;
+	}
+	private void collectActiveItems_()
+	{
+		VNodeSet nodes=null;
+		if (vG.getType()==VGraphInterface.GRAPH)
+			nodes = ((VGraph)vG).modifyNodes;
+		else if (vG.getType()==VGraphInterface.HYPERGRAPH)
+			nodes = ((VHyperGraph)vG).modifyNodes;
+		activeNodes.clear();
+		activeEdges.clear();
+		nodes.collectActive(activeNodes); //kept up to date by the nodes themselves
+		activeNodes.or(movedNodes);
+		activeEdges.or(movedEdges);
+		collectActiveItems(activeNodes,activeEdges);
+	}
+	private void buildStaticLayer_(Graphics2D g2, Rectangle clip)
+	{
+		if (vp!=null) //A repainted region is small, the layer should cover the whole visible part
+			clip = clip.union(vp.getViewRect());
+		int w = clip.width+2*LAYER_MARGIN, h = clip.height+2*LAYER_MARGIN;
+		if ((staticLayer==null)||(staticLayer.getWidth() < w)||(staticLayer.getHeight() < h))
+			staticLayer = new BufferedImage(w,h,BufferedImage.TYPE_INT_ARGB_PRE);
+		staticArea = new Rectangle(clip.x-LAYER_MARGIN,clip.y-LAYER_MARGIN,staticLayer.getWidth(),staticLayer.getHeight());
+		Graphics2D lg = staticLayer.createGraphics();
+		lg.setComposite(AlphaComposite.Clear);
+		lg.fillRect(0,0,staticLayer.getWidth(),staticLayer.getHeight());
+		lg.setComposite(AlphaComposite.SrcOver);
+		lg.setRenderingHints(g2.getRenderingHints());
+		lg.translate(-staticArea.x,-staticArea.y);
+		lg.setClip(staticArea.x,staticArea.y,staticArea.width,staticArea.height);
+		paintedItems = PAINT_STATIC;
+		paintgrid(lg);
+		paintItems(lg);
+		paintedItems = PAINT_ALL;
+		lg.dispose();
+		staticActiveNodes.clear();
+		staticActiveNodes.or(activeNodes);
+		staticActiveEdges.clear();
+		staticActiveEdges.or(activeEdges);
+		staticZoom = zoomfactor;
+		staticValid = true;
+	}
+	/**
+	 * Update the static layer for a GraphMessage.
+	 * 
+	 * Items that are modified within a block (e.g. a node while it is dragged) are marked as moved
+	 * and painted on top of the static layer until the block ends.
+	 * Messages that only modify selected items keep the layer, all other messages invalidate it.
+	 * 
+	 * @param m the message
+	 */
+	protected void handleLayerUpdate(GraphMessage m)
+	{
+		int type = m.getModifiedElementTypes();
+		int mod = m.getModification();
+		if ((mod&GraphConstraints.BLOCK_START)==GraphConstraints.BLOCK_START)
+			blockOpen = true;
+		if ((m instanceof GraphBatchMessage)&&(((GraphBatchMessage)m).isComplete())&&blockOpen
+				&&(((GraphBatchMessage)m).getSubgraphs().isEmpty()))
+		{
+			movedNodes.or(((GraphBatchMessage)m).getNodes());
+			movedEdges.or(((GraphBatchMessage)m).getEdges());
+			movedEdges.or(((GraphBatchMessage)m).getHyperEdges());
+		}
+		else if ((m.getElementID() > 0)&&blockOpen&&(type==GraphConstraints.NODE))
+			movedNodes.set(m.getElementID());
+		else if ((m.getElementID() > 0)&&blockOpen&&((type==GraphConstraints.EDGE)||(type==GraphConstraints.HYPEREDGE)))
+			movedEdges.set(m.getElementID());
+		else if ((mod==GraphConstraints.HISTORY)||(type==GraphConstraints.SELECTION)||(((type&GraphConstraints.SELECTION)==GraphConstraints.SELECTION)
+				&&((type&GraphConstraints.SUBGRAPH)==0)
+				&&((mod&GraphConstraints.ACTIONMASK&~(GraphConstraints.UPDATE|GraphConstraints.TRANSLATION))==0)))
+		{} //Only the history or selected items changed, the latter are active and not in the layer
+		else
+			staticValid = false;
+		if (((mod&(GraphConstraints.BLOCK_END|GraphConstraints.BLOCK_ABORT))!=0)
+				||(movedNodes.cardinality()+movedEdges.cardinality() > MAX_MOVED_ITEMS))
+		{ //Put the moved items back into the layer
+			if ((mod&(GraphConstraints.BLOCK_END|GraphConstraints.BLOCK_ABORT))!=0)
+				blockOpen = false;
+			movedNodes.clear();
+			movedEdges.clear();
+		}
+	}
+	/**
+	 * Get the region (in coordinates of the graph) the node with index i and everything that
+	 * depends on its position (e.g. its adjacent edges) is painted in
+	 * @param i index of the node
+	 * @return the region or null, if the node does not exist
+	 */
+	protected abstract Rectangle getNodeRegion(int i);
+	/**
+	 * Get the region (in coordinates of the graph) the edge (or hyperedge) with index i is painted in
+	 * @param i index of the edge
+	 * @return the region or null, if the edge does not exist
+	 */
+	protected abstract Rectangle getEdgeRegion(int i);
+	/**
+	 * Get the region (in coordinates of the graph) a node and its name are painted in
+	 * @param n the node
+	 * @param name name of the node
+	 * @return the region including the selection border
+	 */
+	protected Rectangle getNodeBounds(VNode n, String name)
+	{
+		int r = (n.getSize()+selWidth)/2+1;
+		Rectangle b = new Rectangle(n.getPosition().x-r, n.getPosition().y-r, 2*r, 2*r);
+		if (n.isNameVisible())
+			b.add(getLabelBounds(n.getTextCenter(),name,n.getNameSize()));
+		return b;
+	}
+	/**
+	 * Get a region (in coordinates of the graph) that contains a text of a given size painted around its center.
+	 * No character of the label font is wider than its size, so no metrics are needed
+	 * @param m center of the text
+	 * @param text the text
+	 * @param size size of the text
+	 * @return the region
+	 */
+	protected static Rectangle getLabelBounds(Point m, String text, int size)
+	{
+		int w = ((text==null) ? 1 : text.length()+1)*size;
+		return new Rectangle(m.x-w/2, m.y-size, w, 2*size);
+	}
+	/**
+	 * Repaint the part of this component a GraphMessage changed.
+	 * 
+	 * If the message modifies or moves a single node, edge or hyperedge, only the union of
+	 * the region it was painted in after the last message about it and its new region is repainted.
+	 * Messages that only inform about the history are ignored,
+	 * every other message and the first message about an item repaint the whole component.
+	 * 
+	 * @param m the message
+	 */
+	protected void repaintMessage(GraphMessage m)
+	{
+		int type = m.getModifiedElementTypes();
+		int id = m.getElementID();
+		int mod = m.getModification();
+		Rectangle region = null, old = null;
+		if (mod==GraphConstraints.HISTORY) //Only the history changed, e.g. an action was recorded
+			return;
+		if ((id > 0)&&((mod&GraphConstraints.ACTIONMASK&~(GraphConstraints.UPDATE|GraphConstraints.TRANSLATION))==0))
+		{
+			if (type==GraphConstraints.NODE)
+			{
+				region = getNodeRegion(id);
+				old = nodeRegions.get(id);
+				edgeRegions.clear(); //Their regions depend on the nodes
+				if (region!=null)
+					nodeRegions.put(id,region);
+			}
+			else if ((type==GraphConstraints.EDGE)||(type==GraphConstraints.HYPEREDGE))
+			{
+				region = getEdgeRegion(id);
+				old = edgeRegions.get(id);
+				nodeRegions.clear(); //Their regions contain the adjacent edges
+				if (region!=null)
+					edgeRegions.put(id,region);
+			}
+		}
+		if ((region==null)||((mod&(GraphConstraints.BLOCK_END|GraphConstraints.BLOCK_ABORT))!=0))
+		{
+			nodeRegions.clear();
+			edgeRegions.clear();
+		}
+		if ((region==null)||(old==null))
+		{
+			repaint();
+			return;
+		}
+		region = region.union(old);
+		int x = (int)Math.floor(region.x*zoomfactor)-REGION_MARGIN;
+		int y = (int)Math.floor(region.y*zoomfactor)-REGION_MARGIN;
+		repaint(x, y,
+				(int)Math.ceil((region.x+region.width)*zoomfactor)+REGION_MARGIN-x,
+				(int)Math.ceil((region.y+region.height)*zoomfactor)+REGION_MARGIN-y);
+	}
+	/**
+	 * Get the approximation of a NURBSShape as a path zoomed to the coordinates of this component
+	 * @param s the shape
+	 * @param maxdist maximal distance of two consecutive points of the path in pixel
+	 * @return the path
+	 */
+	protected GeneralPath getZoomedCurve(NURBSShape s, double maxdist)
+	{
+		return s.getCurve(maxdist/(double)zoomfactor, AffineTransform.getScaleInstance(zoomfactor,zoomfactor));
+	}
 	/**
 	 * Draw a single ControllPoint in
 	 * @param g the Graphic g
@@ -157,12 +638,11 @@ public abstract class VCommonGraphic extends Component implements Observer
 	 */
 	public void drawCP(Graphics g, Point p, Color c)
 	{
-		int cpsize = gp.getIntValue("vgraphic.cpsize");
 		Graphics2D g2 = (Graphics2D) g;
-		g2.setStroke(new BasicStroke(1.0f, BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND));
+		g2.setStroke(THIN_STROKE);
 		g2.setColor(c);
-		g2.drawLine(Math.round((p.x-cpsize)*zoomfactor),Math.round(p.y*zoomfactor),Math.round((p.x+cpsize)*zoomfactor),Math.round(p.y*zoomfactor));
-		g2.drawLine(Math.round(p.x*zoomfactor),Math.round((p.y-cpsize)*zoomfactor),Math.round(p.x*zoomfactor),Math.round((p.y+cpsize)*zoomfactor));
+		g2.drawLine(Math.round((p.x-cpSize)*zoomfactor),Math.round(p.y*zoomfactor),Math.round((p.x+cpSize)*zoomfactor),Math.round(p.y*zoomfactor));
+		g2.drawLine(Math.round(p.x*zoomfactor),Math.round((p.y-cpSize)*zoomfactor),Math.round(p.x*zoomfactor),Math.round((p.y+cpSize)*zoomfactor));
 		
 	}
 	/**
@@ -174,12 +654,15 @@ public abstract class VCommonGraphic extends Component implements Observer
 		Graphics2D g2 = (Graphics2D) g;
 		if ((!gridenabled)||(vp==null))
 			return;
-		int minX = vp.getViewRect().x;
-		int maxX = vp.getViewRect().x + vp.getViewRect().width;
-		int minY = vp.getViewRect().y;
-		int maxY = vp.getViewRect().y + vp.getViewRect().height;
+		Rectangle r = g2.getClipBounds(); //Only the painted part, e.g. of the static layer
+		if (r==null)
+			r = vp.getViewRect();
+		int minX = r.x;
+		int maxX = r.x + r.width;
+		int minY = r.y;
+		int maxY = r.y + r.height;
 		g2.setColor(Color.GRAY);
-		g2.setStroke(new BasicStroke(1,BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+		g2.setStroke(THIN_STROKE);
 		//Draw vertical Lines
 		for (int i=Math.round(gridx*zoomfactor); i<maxX; i+=Math.round(gridx*zoomfactor))
 		{
@@ -302,8 +785,7 @@ public abstract class VCommonGraphic extends Component implements Observer
 		gridy = gp.getIntValue("grid.y");
 		gridenabled = gp.getBoolValue("grid.enabled");
 		gridorientated = gp.getBoolValue("grid.orientated");
-		selColor = new Color(gp.getIntValue("vgraphic.selcolr"),gp.getIntValue("vgraphic.selcolg"),gp.getIntValue("vgraphic.selcolb"));
-		selWidth = gp.getIntValue("vgraphic.selwidth");
+		loadPaintPreferences();
 		vG.pushNotify(new GraphMessage(GraphConstraints.SELECTION,GraphConstraints.UPDATE)); //Zoom and Selection stuff belong to the mark actions on a graph - they don't change the state to "not saved yet"
 		repaint();
 	}
@@ -4,7 +4,9 @@ import history.CommonGraphHistoryManager;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
+import java.awt.geom.Line2D;
 
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.Observable;
 import java.util.Vector;
@@ -41,7 +43,7 @@ public class VGraphic extends VCommonGraphic
 		vEdgeStyle = new BasicStroke(5.0f, BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND);
 		
 		vG = Graph;
-		vG.addObserver(this); //Die Graphikumgebung als Observer der Datenstruktur eintragen
+		vG.addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK); //Die Graphikumgebung als Listener der Datenstruktur eintragen
 		vGh = new CommonGraphHistoryManager(vG);
 		gp.addObserver(this);
 	}
@@ -55,52 +57,133 @@ public class VGraphic extends VCommonGraphic
 	
 	public void paint(Graphics2D g2)
 	{
-		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		paintgrid(g2);
-		paintEdges(g2);
-		paintNodes(g2);
-		if (gp.getBoolValue("vgraphic.cpshow"))
+		setAntialiasing(g2);
+		paintLayered(g2);
+		if (cpShow)
 			paintControllPoints(g2);
 		if ((Drag!=null)&&(Drag.getSelectionRectangle()!=null))
 		{
 			g2.setColor(selColor);
-			g2.setStroke(new BasicStroke(1,BasicStroke.JOIN_ROUND, BasicStroke.JOIN_ROUND));
+			g2.setStroke(THIN_STROKE);
 			g2.draw(Drag.getSelectionRectangle());
 		}
 	}
+	protected void paintItems(Graphics2D g2)
+	{
+		paintEdges(g2);
+		paintNodes(g2);
+	}
+	protected void collectActiveItems(BitSet nodes, BitSet edges)
+	{
+		vG.modifyEdges.collectActive(edges);
+		//Adjacent edges move with their nodes
+		for (int i=nodes.nextSetBit(0); i>=0; i=nodes.nextSetBit(i+1))
+		{
+			Iterator<Integer> adj = vG.getMathGraph().modifyEdges.indicesFrom(i).iterator();
+			while (adj.hasNext())
+				edges.set(adj.next());
+			adj = vG.getMathGraph().modifyEdges.indicesTo(i).iterator();
+			while (adj.hasNext())
+				edges.set(adj.next());
+		}
+		for (int i=edges.nextSetBit(0); i>=0; i=edges.nextSetBit(i+1))
+		{
+			MEdge me = vG.getMathGraph().modifyEdges.get(i);
+			if (me!=null)
+			{
+				nodes.set(me.StartIndex);
+				nodes.set(me.EndIndex);
+			}
+		}
+	}
+	protected Rectangle getNodeRegion(int i)
+	{
+		VNode n = vG.modifyNodes.get(i);
+		MNode mn = vG.getMathGraph().modifyNodes.get(i);
+		if ((n==null)||(mn==null))
+			return null;
+		Rectangle r = getNodeBounds(n,mn.name);
+		//Adjacent edges move with the node
+		Iterator<Integer> adj = vG.getMathGraph().modifyEdges.indicesFrom(i).iterator();
+		while (adj.hasNext())
+		{
+			Rectangle er = getEdgeRegion(adj.next());
+			if (er!=null)
+				r.add(er);
+		}
+		adj = vG.getMathGraph().modifyEdges.indicesTo(i).iterator();
+		while (adj.hasNext())
+		{
+			Rectangle er = getEdgeRegion(adj.next());
+			if (er!=null)
+				r.add(er);
+		}
+		return r;
+	}
+	protected Rectangle getEdgeRegion(int i)
+	{
+		VEdge e = vG.modifyEdges.get(i);
+		MEdge me = vG.getMathGraph().modifyEdges.get(i);
+		if ((e==null)||(me==null))
+			return null;
+		VNode s = vG.modifyNodes.get(me.StartIndex), t = vG.modifyNodes.get(me.EndIndex);
+		if ((s==null)||(t==null))
+			return null;
+		Point p1 = s.getPosition(), p2 = t.getPosition();
+		Rectangle r = e.getPath(p1,p2,1.0f).getBounds();
+		int w = Math.max(e.getWidth()+selWidth, Math.round(e.getArrow().getSize()));
+		r.grow(w,w);
+		if (e.getTextProperties().isVisible())
+		{
+			String text = e.getTextProperties().isshowvalue() ? ""+me.Value : me.name;
+			r.add(getLabelBounds(e.getTextCenter(p1,p2),text,e.getTextProperties().getSize()));
+		}
+		return r;
+	}
 	/**
 	 * @param g
 	 */
 	private void paintEdges(Graphics g)
 	{
 		Graphics2D g2 = (Graphics2D) g;
-		Iterator<VEdge> ei = vG.modifyEdges.getIterator();
+		Rectangle area = getPaintArea(g);
+		Iterator<VEdge> ei;
+		if (area==null)
+			ei = vG.modifyEdges.getIterator();
+		else
+			ei = vG.modifyEdges.getEdgesinRectangle(area);
 		g2.setStroke(vEdgeStyle);
 		boolean directed = vG.getMathGraph().isDirected();
+		boolean shapes = showShapes(), labels = showLabels();
+		Line2D.Float chord = new Line2D.Float();
 		while (ei.hasNext()) // drawEdges
 		{
 			VEdge temp = ei.next(); //Grafischer Teil
+			if (!isEdgePainted(temp.getIndex()))
+				continue;
 			MEdge tempm = vG.getMathGraph().modifyEdges.get(temp.getIndex());
 			Point p1 = vG.modifyNodes.get(tempm.StartIndex).getPosition(); //Startkoordinaten
 			VNode EndNode = vG.modifyNodes.get(tempm.EndIndex); //Endknoten
 			VNode StartNode = vG.modifyNodes.get(tempm.StartIndex); //Endknoten
 			Point p2 = EndNode.getPosition();
+			//Without exact shapes draw the line between the nodes, only loops keep their shape
+			boolean simple = (!shapes)&&(tempm.StartIndex!=tempm.EndIndex);
+			if (simple)
+				chord.setLine(p1.x*zoomfactor, p1.y*zoomfactor, p2.x*zoomfactor, p2.y*zoomfactor);
 			if ((((temp.getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED)||((temp.getSelectedStatus()&VItem.SOFT_SELECTED)==VItem.SOFT_SELECTED))&&((temp.getSelectedStatus()&VItem.SOFT_DESELECTED)!=VItem.SOFT_DESELECTED))
 			{
 				//Falls die Kante Selektiert ist (und nicht temporär deselektiert, zeichne drunter eine etwas dickere Kante in der selectioncolor
 				g2.setColor(selColor);
-				vEdgeStyle = new BasicStroke(Math.round((temp.getWidth()+selWidth)*zoomfactor),BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
-				g2.setStroke(vEdgeStyle);
-				g2.draw(temp.getPath(p1,p2,zoomfactor));
-				if (directed) g2.fill(temp.getArrowShape(p1,p2,Math.round(StartNode.getSize()/2),Math.round(EndNode.getSize()/2),zoomfactor));
+				g2.setStroke(getStroke(temp.getWidth()+selWidth,true));
+				g2.draw(simple ? chord : temp.getPath(p1,p2,zoomfactor));
+				if (directed&&shapes) g2.fill(temp.getArrowShape(p1,p2,Math.round(StartNode.getSize()/2),Math.round(EndNode.getSize()/2),zoomfactor));
 			}
 			g2.setColor(temp.getColor());
-			vEdgeStyle = new BasicStroke(Math.round(temp.getWidth()*zoomfactor),BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
-			g2.setStroke(vEdgeStyle);
-			g2.draw(temp.getDrawPath(p1,p2,zoomfactor));
-			if (directed) g2.fill(temp.getArrowShape(p1,p2,Math.round(StartNode.getSize()/2),Math.round(EndNode.getSize()/2),zoomfactor));
+			g2.setStroke(getStroke(temp.getWidth(),true));
+			g2.draw(simple ? chord : temp.getDrawPath(p1,p2,zoomfactor));
+			if (directed&&shapes) g2.fill(temp.getArrowShape(p1,p2,Math.round(StartNode.getSize()/2),Math.round(EndNode.getSize()/2),zoomfactor));
 			//And finally draw the text if visible
-			if (temp.getTextProperties().isVisible()) //Visible
+			if (temp.getTextProperties().isVisible()&&labels) //Visible
 			{
 				Point m = temp.getTextCenter(p1,p2);
 				//get the text wich should be displayd
@@ -110,10 +193,9 @@ public class VGraphic extends VCommonGraphic
 			    else
 			    	text = tempm.name;
 			    //Show it
-				Font f = new Font("Arial",Font.PLAIN, Math.round(temp.getTextProperties().getSize()*zoomfactor));
-				g2.setFont(f);
+				g2.setFont(getLabelFont(temp.getTextProperties().getSize()));
 				g2.setColor(Color.black);
-				FontMetrics metrics = g2.getFontMetrics(f);
+				FontMetrics metrics = getLabelMetrics(g2,temp.getTextProperties().getSize());
 			    int hgt = metrics.getAscent()-metrics.getLeading()-metrics.getDescent();
 			    if (text==null)
 			    	text = "";
@@ -132,13 +214,16 @@ public class VGraphic extends VCommonGraphic
 	 */
 	private void paintControllPoints(Graphics g)
 	{
+		//Control points may lie outside of the bounds of their edge, so check them directly
+		Rectangle area = getPaintArea(g);
 		Iterator<VEdge> edgeiter = vG.modifyEdges.getIterator();
 		while (edgeiter.hasNext()) // drawEdges
 		{
 			VEdge temp = edgeiter.next(); //Grafischer Teil
 			Vector<Point> p = temp.getControlPoints();
 			for (int i=0; i<p.size(); i++)
-				drawCP(g,p.get(i), Color.BLUE.brighter());
+				if ((area==null)||(area.contains(p.get(i))))
+					drawCP(g,p.get(i), Color.BLUE.brighter());
 		}
 	}
 	/**
@@ -222,14 +307,22 @@ public class VGraphic extends VCommonGraphic
 	public void update(Observable o, Object arg)
 	{
 		super.updateControls(o,arg);
-		if (arg instanceof GraphMessage) //All Other GraphUpdates are handled in VGRaphCommons
+		if (arg instanceof GraphMessage) //GraphMessages from other Observables, e.g. Algorithms
+			handleGraphMessage((GraphMessage)arg);
+		else if (super.Controls.containsKey((String)arg)) //We got news from grid or zoom
+			handlePreferencesUpdate();
+		else if (o==gp) //A preference changed, that might be used while painting
 		{
-			if (Click!=null) 
-				Click.update(o,arg);
+			loadPaintPreferences();
 			repaint();
 		}
-		else if (super.Controls.containsKey((String)arg)) //We got news from grid or zoom
-			handlePreferencesUpdate();
+	}
+	public void handleGraphMessage(GraphMessage m)
+	{
+		handleLayerUpdate(m);
+		if (Click!=null) 
+			Click.update(vG,m);
+		repaintMessage(m);
 	}
 
 	public int getType() {
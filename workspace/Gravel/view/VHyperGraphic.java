@@ -6,8 +6,10 @@ import history.CommonGraphHistoryManager;
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.geom.GeneralPath;
-//import java.awt.geom.Point2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 //import javax.swing.*;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.Observable;
 //import java.util.Vector;
@@ -46,11 +48,9 @@ public class VHyperGraphic extends VCommonGraphic
 		//GeneralPreferences als beobachter eintragen
 
 		vHyperEdgeStyle = new BasicStroke(5.0f, BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND);
-		selColor = new Color(gp.getIntValue("vgraphic.selcolr"),gp.getIntValue("vgraphic.selcolg"),gp.getIntValue("vgraphic.selcolb"));
-		selWidth = gp.getIntValue("vgraphic.selwidth");
 		
 		vG = Graph;
-		vG.addObserver(this); //Die Graphikumgebung als Observer der Datenstruktur eintragen
+		vG.addGraphMessageListener(this, GraphConstraints.ELEMENT_MASK); //Die Graphikumgebung als Listener der Datenstruktur eintragen
 		vGh = new CommonGraphHistoryManager(vG);
 	}
 	public void paint(Graphics g) 
@@ -61,14 +61,12 @@ public class VHyperGraphic extends VCommonGraphic
 	}	
 	public void paint(Graphics2D g2)
 	{
-		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		paintgrid(g2);
-		paintHyperEdges(g2);
-		paintNodes(g2);
+		setAntialiasing(g2);
+		paintLayered(g2);
 		if ((Drag!=null)&&(Drag.getSelectionRectangle()!=null))
 		{
 			g2.setColor(selColor);
-			g2.setStroke(new BasicStroke(1,BasicStroke.JOIN_ROUND, BasicStroke.JOIN_ROUND));
+			g2.setStroke(THIN_STROKE);
 			g2.draw(Drag.getSelectionRectangle());
 		}
 //		paintDerivDEBUG(g2);
@@ -308,33 +306,87 @@ public class VHyperGraphic extends VCommonGraphic
 //        SimpleDateFormat sdf = new SimpleDateFormat("ss:SSS");
 //        main.DEBUG.println(main.DEBUG.LOW,"Die "+(projectionpoints.size()-1)+" Projektionen benötigten "+sdf.format(time)+" Sekunden");  
 //	}
+	protected void paintItems(Graphics2D g2)
+	{
+		paintHyperEdges(g2);
+		paintNodes(g2);
+	}
+	protected void collectActiveItems(BitSet nodes, BitSet edges)
+	{
+		vG.modifyHyperEdges.collectActive(edges);
+		for (int i=edges.nextSetBit(0); i>=0; i=edges.nextSetBit(i+1))
+		{
+			MHyperEdge me = vG.getMathGraph().modifyHyperEdges.get(i);
+			if (me!=null)
+				nodes.or(me.getEndNodes());
+		}
+	}
+	protected Rectangle getNodeRegion(int i)
+	{
+		VNode n = vG.modifyNodes.get(i);
+		MNode mn = vG.getMathGraph().modifyNodes.get(i);
+		if ((n==null)||(mn==null))
+			return null;
+		return getNodeBounds(n,mn.name);
+	}
+	protected Rectangle getEdgeRegion(int i)
+	{
+		VHyperEdge e = vG.modifyHyperEdges.get(i);
+		MHyperEdge me = vG.getMathGraph().modifyHyperEdges.get(i);
+		if ((e==null)||(me==null)||(e.getShape().isEmpty()))
+			return null;
+		//The shape lies inside the convex hull of its control points
+		Rectangle2D.Double box = null;
+		Iterator<Point2D> cp = e.getShape().stripDecorations().controlPoints.iterator();
+		while (cp.hasNext())
+		{
+			Point2D p = cp.next();
+			if (box==null)
+				box = new Rectangle2D.Double(p.getX(),p.getY(),0d,0d);
+			else
+				box.add(p);
+		}
+		Rectangle r = box.getBounds();
+		int w = e.getWidth()+selWidth;
+		r.grow(w,w);
+		if (e.getTextProperties().isVisible())
+		{
+			String text = e.getTextProperties().isshowvalue() ? ""+me.Value : me.name;
+			r.add(getLabelBounds(e.getTextCenter(),text,e.getTextProperties().getSize()));
+		}
+		return r;
+	}
 	/**
 	 * @param g
 	 */
 	private void paintHyperEdges(Graphics2D g2)
 	{
-		Iterator<VHyperEdge> ei = vG.modifyHyperEdges.getIterator();
+		Rectangle area = getPaintArea(g2);
+		Iterator<VHyperEdge> ei;
+		if (area==null)
+			ei = vG.modifyHyperEdges.getIterator();
+		else
+			ei = vG.modifyHyperEdges.getHyperEdgesinRectangle(area);
 		g2.setStroke(vHyperEdgeStyle);
+		boolean shapes = showShapes(), labels = showLabels();
 		while (ei.hasNext()) // drawEdges
 		{
 			VHyperEdge temp = ei.next();
 			MHyperEdge tempm = vG.getMathGraph().modifyHyperEdges.get(temp.getIndex());
-			if (!temp.getShape().isEmpty())
+			if ((!temp.getShape().isEmpty())&&isEdgePainted(temp.getIndex()))
 			{
-				NURBSShape s = temp.getShape().stripDecorations().clone();
-				s.scale(zoomfactor);
-				GeneralPath p = s.getCurve(Math.min(2.5d,5d/(double)zoomfactor));
+				GeneralPath p = getZoomedCurve(temp.getShape().stripDecorations(), shapes ? Math.min(2.5d,5d/(double)zoomfactor) : COARSE_SEGMENT);
 				if ((((temp.getSelectedStatus()&VItem.SELECTED)==VItem.SELECTED)||((temp.getSelectedStatus()&VItem.SOFT_SELECTED)==VItem.SOFT_SELECTED))&&((temp.getSelectedStatus()&VItem.SOFT_DESELECTED)!=VItem.SOFT_DESELECTED))
 				{
 					//Falls die Kante Selektiert ist (und nicht temporär deselektiert, zeichne drunter eine etwas dickere Kante in der selectioncolor
 					g2.setColor(selColor);
-					g2.setStroke(new BasicStroke(Math.round((temp.getWidth()+selWidth)*zoomfactor),BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-					g2.draw(temp.getLinestyle().modifyPath(p,temp.getWidth()+selWidth,zoomfactor));
+					g2.setStroke(getStroke(temp.getWidth()+selWidth,true));
+					g2.draw(shapes ? temp.getLinestyle().modifyPath(p,temp.getWidth()+selWidth,zoomfactor) : p);
 				}
 				g2.setColor(temp.getColor());
-				g2.setStroke(new BasicStroke(temp.getWidth()*zoomfactor,BasicStroke.JOIN_ROUND, BasicStroke.JOIN_ROUND));
-				g2.draw(temp.getLinestyle().modifyPath(p,temp.getWidth(),zoomfactor));
-				if (temp.getTextProperties().isVisible()) //Visible
+				g2.setStroke(getStroke(temp.getWidth(),false));
+				g2.draw(shapes ? temp.getLinestyle().modifyPath(p,temp.getWidth(),zoomfactor) : p);
+				if (temp.getTextProperties().isVisible()&&labels) //Visible
 				{
 					Point m = temp.getTextCenter();
 					//get the text wich should be displayd
@@ -344,10 +396,9 @@ public class VHyperGraphic extends VCommonGraphic
 				    else
 				    	text = tempm.name;
 				    //Show it
-					Font f = new Font("Arial",Font.PLAIN, Math.round(temp.getTextProperties().getSize()*zoomfactor));
-					g2.setFont(f);
+					g2.setFont(getLabelFont(temp.getTextProperties().getSize()));
 					g2.setColor(Color.black);
-					FontMetrics metrics = g2.getFontMetrics(f);
+					FontMetrics metrics = getLabelMetrics(g2,temp.getTextProperties().getSize());
 				    int hgt = metrics.getAscent()-metrics.getLeading()-metrics.getDescent();
 				    if (text==null)
 				    	text = "";
@@ -439,14 +490,22 @@ public class VHyperGraphic extends VCommonGraphic
 	public void update(Observable o, Object arg)
 	{
 		super.updateControls(o,arg);
-		if (arg instanceof GraphMessage) //All Other GraphUpdates are handled in VGRaphCommons
+		if (arg instanceof GraphMessage) //GraphMessages from other Observables, e.g. Algorithms
+			handleGraphMessage((GraphMessage)arg);
+		else if (super.Controls.containsKey((String)arg)) //We got news from grid or zoom
+			handlePreferencesUpdate();
+		else if (o==gp) //A preference changed, that might be used while painting
 		{
-			if (Click!=null) 
-				Click.update(o,arg);
+			loadPaintPreferences();
 			repaint();
 		}
-		else if (super.Controls.containsKey((String)arg)) //We got news from grid or zoom
-			handlePreferencesUpdate();
+	}
+	public void handleGraphMessage(GraphMessage m)
+	{
+		handleLayerUpdate(m);
+		if (Click!=null) 
+			Click.update(vG,m);
+		repaintMessage(m);
 	}
 	
 	public int getType() {
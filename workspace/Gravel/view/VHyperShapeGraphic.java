@@ -1,13 +1,10 @@
 package view;
 
-import io.GeneralPreferences;
-
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
 import java.util.Iterator;
-import java.util.Observable;
 import java.util.Vector;
 
 import history.*;
@@ -43,8 +40,6 @@ public class VHyperShapeGraphic extends VHyperGraphic
 		super(d,Graph);
 		//GeneralPreferences als beobachter eintragen
 		vHyperEdgeStyle = new BasicStroke(5.0f, BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND);
-		selColor = new Color(gp.getIntValue("vgraphic.selcolr"),gp.getIntValue("vgraphic.selcolg"),gp.getIntValue("vgraphic.selcolb"));
-		selWidth = gp.getIntValue("vgraphic.selwidth");
 		actualMouseState = NO_MOUSEHANDLING;
 		highlightedHyperEdge = hyperedgeindex;
 		invalidNodesforShape = new Vector<Integer>();
@@ -55,12 +50,12 @@ public class VHyperShapeGraphic extends VHyperGraphic
 	
 	public void finalize()
 	{
-		((VHyperGraph)Gui.getInstance().getVGraph()).deleteObserver(this);		
+		((VHyperGraph)Gui.getInstance().getVGraph()).removeGraphMessageListener(this);		
 	}
 
 	public void paint(Graphics2D g2)
 	{
-		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		setAntialiasing(g2);
 		paintgrid(g2);
 		displaySelection(g2);
 		paintMouseModeDetails(g2);
@@ -69,10 +64,10 @@ public class VHyperShapeGraphic extends VHyperGraphic
 		if ((firstModus!=null)&&(firstModus.getSelectionRectangle()!=null))
 		{
 			g2.setColor(selColor);
-			g2.setStroke(new BasicStroke(1,BasicStroke.JOIN_ROUND, BasicStroke.JOIN_ROUND));
+			g2.setStroke(THIN_STROKE);
 			g2.draw(firstModus.getSelectionRectangle());
 		}
-		if (GeneralPreferences.getInstance().getBoolValue("vgraphic.cpshow"))
+		if (cpShow)
 			paintControlPolygon(g2);
 	}
 	/**
@@ -99,11 +94,10 @@ public class VHyperShapeGraphic extends VHyperGraphic
 				g2.setColor(temp.getColor());
 			else
 				g2.setColor(this.selColor.brighter());
-			g2.setStroke(new BasicStroke(temp.getWidth()*zoomfactor,BasicStroke.JOIN_ROUND, BasicStroke.JOIN_ROUND));
+			g2.setStroke(getStroke(temp.getWidth(),false));
 
-			NURBSShape s = temp.getShape().stripDecorations().clone(); //really only nurbs
-			s.scale(zoomfactor);
-			g2.draw(temp.getLinestyle().modifyPath(s.getCurve(5d/(double)zoomfactor),temp.getWidth(),zoomfactor));
+			NURBSShape s = temp.getShape().stripDecorations(); //really only nurbs
+			g2.draw(temp.getLinestyle().modifyPath(getZoomedCurve(s,5d/(double)zoomfactor),temp.getWidth(),zoomfactor));
 			if (temp.getTextProperties().isVisible()) //Visible
 			{
 				Point m = temp.getTextCenter();
@@ -114,12 +108,11 @@ public class VHyperShapeGraphic extends VHyperGraphic
 			    else
 			    	text = tempm.name;
 			    //Show it
-				Font f = new Font("Arial",Font.PLAIN, Math.round(temp.getTextProperties().getSize()*zoomfactor));
-				g2.setFont(f);
+				g2.setFont(getLabelFont(temp.getTextProperties().getSize()));
 				if (active)
 					g2.setColor(Color.black);
 				//else stay inactive color
-				FontMetrics metrics = g2.getFontMetrics(f);
+				FontMetrics metrics = getLabelMetrics(g2,temp.getTextProperties().getSize());
 			    int hgt = metrics.getAscent()-metrics.getLeading()-metrics.getDescent();
 			    if (text==null)
 			    	text = "";
@@ -141,11 +134,10 @@ public class VHyperShapeGraphic extends VHyperGraphic
 		if (s==null)
 			return;
 		float selSize = (float)selWidth/2f + (float) vG.modifyHyperEdges.get(highlightedHyperEdge).getWidth();
-		NURBSShape drawSel = s.getSubCurve().clone().stripDecorations(); //really only nurbs
-		drawSel.scale(zoomfactor);
+		NURBSShape drawSel = s.getSubCurve().stripDecorations(); //really only nurbs
 		g2.setColor(selColor);
 		g2.setStroke(new BasicStroke(selSize*zoomfactor,BasicStroke.JOIN_ROUND, BasicStroke.JOIN_ROUND));
-		g2.draw(drawSel.getCurve(5d/(double)zoomfactor)); //draw only a preview				
+		g2.draw(getZoomedCurve(drawSel,5d/(double)zoomfactor)); //draw only a preview				
 	}
 	private void paintControlPolygon(Graphics2D g2)
 	{
@@ -158,7 +150,7 @@ public class VHyperShapeGraphic extends VHyperGraphic
 			Point2D p = (Point2D) pi.next();
 			if (first==null)
 				first = p;
-			g2.setStroke(new BasicStroke(1,BasicStroke.JOIN_ROUND, BasicStroke.JOIN_ROUND));
+			g2.setStroke(THIN_STROKE);
 			g2.setColor(Color.blue.brighter());
 			g2.drawLine(Math.round(((float)p.getX()-3)),Math.round((float)p.getY()),Math.round(((float)p.getX()+3)),Math.round((float)p.getY()));
 			g2.drawLine(Math.round(((float)p.getX())),Math.round(((float)p.getY()-3)),Math.round((float)p.getX()),Math.round(((float)p.getY()+3)));
@@ -194,13 +186,12 @@ public class VHyperShapeGraphic extends VHyperGraphic
 			{	
 				if (hEdge.containsNode(temp.getIndex()))
 						g2.setColor(Color.black);					
-				Font f = new Font("Arial",Font.PLAIN, Math.round(temp.getNameSize()*zoomfactor));
-				g2.setFont(f);
+				g2.setFont(getLabelFont(temp.getNameSize()));
 				//mittelpunkt des Textes
 				int x = temp.getPosition().x + Math.round((float)temp.getNameDistance()*(float)Math.cos(Math.toRadians((double)temp.getNameRotation())));
 				int y = temp.getPosition().y - Math.round((float)temp.getNameDistance()*(float)Math.sin(Math.toRadians((double)temp.getNameRotation())));
 				
-			    FontMetrics metrics = g2.getFontMetrics(f);
+			    FontMetrics metrics = getLabelMetrics(g2,temp.getNameSize());
 			    int hgt = metrics.getAscent()-metrics.getLeading()-metrics.getDescent();
 			    int adv = metrics.stringWidth(vG.getMathGraph().modifyNodes.get(temp.getIndex()).name);
 			    x = Math.round(x*zoomfactor);
@@ -230,11 +221,10 @@ public class VHyperShapeGraphic extends VHyperGraphic
 		NURBSShape tempshape = firstModus.getShape();
 		if ((tempshape!=null)&&(firstModus.dragged()))
 		{
-			NURBSShape draw = tempshape.stripDecorations().clone(); //really only NURBS
-			draw.scale(zoomfactor);
-			g2.setStroke(new BasicStroke(1*zoomfactor,BasicStroke.JOIN_ROUND, BasicStroke.JOIN_ROUND));
+			NURBSShape draw = tempshape.stripDecorations(); //really only NURBS
+			g2.setStroke(getStroke(1,false));
 			g2.setColor(selColor);
-			g2.draw(draw.getCurve(5d/(double)zoomfactor)); //draw only a preview
+			g2.draw(getZoomedCurve(draw,5d/(double)zoomfactor)); //draw only a preview
 		}			
 		if (actualMouseState==INTERPOLATION_MOUSEHANDLING)
 		{
@@ -249,14 +239,13 @@ public class VHyperShapeGraphic extends VHyperGraphic
 			}
 			if ((nm.getCurve().getDecorationTypes()&NURBSShape.FRAGMENT)==NURBSShape.FRAGMENT)
 			{
-				NURBSShape draw = ((NURBSShapeFragment)nm.getCurve()).getSubCurve().stripDecorations().clone();
-				draw.scale(zoomfactor);
-				g2.setStroke(new BasicStroke(1*zoomfactor,BasicStroke.JOIN_ROUND, BasicStroke.JOIN_ROUND));
+				NURBSShape draw = ((NURBSShapeFragment)nm.getCurve()).getSubCurve().stripDecorations();
+				g2.setStroke(getStroke(1,false));
 				Color nsel = new Color((3*selColor.getBlue()+Color.DARK_GRAY.getBlue())/4,
 						(3*selColor.getBlue()+Color.DARK_GRAY.getBlue())/4,
 						(3*selColor.getBlue()+Color.DARK_GRAY.getBlue())/4);
 				g2.setColor(nsel);
-				g2.draw(draw.getCurve(5d/(double)zoomfactor)); //draw only a preview
+				g2.draw(getZoomedCurve(draw,5d/(double)zoomfactor)); //draw only a preview
 			}
 			
 		}
@@ -317,7 +306,7 @@ public class VHyperShapeGraphic extends VHyperGraphic
 		if (!secondModus.dragged())
 			return; //Draw all other stuff only while drag
 		g2.setColor(selColor);
-		g2.setStroke(new BasicStroke(1,BasicStroke.JOIN_ROUND, BasicStroke.JOIN_ROUND));
+		g2.setStroke(THIN_STROKE);
 		if ((actualMouseState&SHAPE_MOUSEHANDLING) > 0) //ShapeModification always means to indicate the Drag with a line
 		{
 			Point2D p = secondModus.getDragStartPoint();
@@ -328,18 +317,16 @@ public class VHyperShapeGraphic extends VHyperGraphic
 		}
 		if ((actualMouseState&SUBCURVE_MOUSEHANDLING) > 0)
 		{ //This modus always delivers the shape including an subcurve, though this might be an empty shape
-			NURBSShape drawSel = ((NURBSShapeFragment)tempshape).getSubCurve().clone(); //Is only a NURBS
-			drawSel.scale(zoomfactor);
+			NURBSShape drawSel = ((NURBSShapeFragment)tempshape).getSubCurve(); //Is only a NURBS
 			g2.setColor(selColor.darker());
 			g2.setStroke(new BasicStroke(((float)selWidth/2f+(float)vG.modifyHyperEdges.get(highlightedHyperEdge).getWidth())*zoomfactor,BasicStroke.JOIN_ROUND, BasicStroke.JOIN_ROUND));
-			g2.draw(drawSel.getCurve(5d/(double)zoomfactor)); //draw only a preview				
+			g2.draw(getZoomedCurve(drawSel,5d/(double)zoomfactor)); //draw only a preview				
 		}
 		else
 		{
-			NURBSShape draw = tempshape.stripDecorations().clone(); //Just Curve itself
-			draw.scale(zoomfactor);
-			g2.setStroke(new BasicStroke(1,BasicStroke.JOIN_ROUND, BasicStroke.JOIN_ROUND));
-			g2.draw(draw.getCurve(5d/(double)zoomfactor)); //draw only a preview
+			NURBSShape draw = tempshape.stripDecorations(); //Just Curve itself
+			g2.setStroke(THIN_STROKE);
+			g2.draw(getZoomedCurve(draw,5d/(double)zoomfactor)); //draw only a preview
 		}
 	}
 	public int getMouseHandling()
@@ -528,20 +515,17 @@ public class VHyperShapeGraphic extends VHyperGraphic
 		return !vG.modifyHyperEdges.get(highlightedHyperEdge).getShape().isEmpty();
 	}
 	
-	public void update(Observable o, Object arg)
+	public void handleGraphMessage(GraphMessage m)
 	{
-		super.update(o, arg);
-		if (arg instanceof GraphMessage)
+		super.handleGraphMessage(m);
+		repaint(); //The shape modification details are not part of the regions of the items
+		if ((m.getModification()&GraphConstraints.HISTORY)>0)//We got an undo/redp
 		{
-			GraphMessage m = (GraphMessage)arg;
- 			if ((m.getModification()&GraphConstraints.HISTORY)>0)//We got an undo/redp
-			{
- 				//Update startShape in the modi
- 				if (secondModus!=null)
- 					secondModus.resetShape();
- 				else if (firstModus!=null)
- 					firstModus.resetShape();
- 			}
+			//Update startShape in the modi
+			if (secondModus!=null)
+				secondModus.resetShape();
+			else if (firstModus!=null)
+				firstModus.resetShape();
 		}
 	}
 
@@ -6,8 +6,6 @@ import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Observable;
-import java.util.Observer;
 
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
@@ -22,7 +20,7 @@ import dialogs.JNodeDialog;
 import model.*;
 import model.Messages.*;
 
-public class ItemInformationComponent implements Observer, ActionListener
+public class ItemInformationComponent implements GraphMessageListener, ActionListener
 {
 	private VGraphInterface graphRef;
 	private VItem Selected=null;
@@ -45,16 +43,8 @@ public class ItemInformationComponent implements Observer, ActionListener
 		bInformation.setSize(new Dimension(32,32));
 		bInformation.addActionListener(this);
 		content.add(bInformation,c);
-		if (PvG.getType()==VGraphInterface.GRAPH)
-		{
-			((VGraph)PvG).addObserver(this);
-			update(((VGraph)PvG),new GraphMessage(GraphConstraints.SELECTION,GraphConstraints.UPDATE));
-		}
-		else if (PvG.getType()==VGraphInterface.HYPERGRAPH)
-		{
-			((VHyperGraph)PvG).addObserver(this);
-			update(((VHyperGraph)PvG),new GraphMessage(GraphConstraints.SELECTION,GraphConstraints.UPDATE));
-		}
+		updateActivity();
+		graphRef.addGraphMessageListener(this, GraphConstraints.SELECTION);
 	}
 	public JPanel getContent()
 	{
@@ -81,19 +71,10 @@ public class ItemInformationComponent implements Observer, ActionListener
 			}
 		}
 	}
-	public void update(Observable o, Object arg)
+	public void handleGraphMessage(GraphMessage m)
 	{
-		if (arg instanceof GraphMessage) //Not nice but haven't found a beautiful way after hours
-		{
-			GraphMessage m = (GraphMessage)arg;
-			if ( ((m.getAffectedElementTypes()&GraphConstraints.SELECTION)==0)
-					&& ((m.getModifiedElementTypes()&GraphConstraints.SELECTION)==0))
-				return; //Only update here if selection
-			if (graphRef==o)
-			{
-				updateActivity();
-			}
-		}
+		//Only subscribed to selection changes of graphRef
+		updateActivity();
 	}
 	public void actionPerformed(ActionEvent e) {
 		if (Selected == null)